@@ -58,4 +58,17 @@ public interface DocumentSnapshot {
 
     public int findLineNumber(int offset);
 
+    /**
+     * Creates a cursor for reading the text of this snapshot sequentially,
+     * initially positioned on the line containing {@code offset}.
+     *
+     * @param offset The initial offset of the cursor.
+     * @return A new text cursor for this snapshot.
+     * @throws IndexOutOfBoundsException
+     *      if {@code offset < 0}
+     *      or
+     *      {@code offset > }{@link #length length()}
+     */
+    public @NonNull DocumentSnapshotTextCursor createTextCursor(int offset);
+
 }
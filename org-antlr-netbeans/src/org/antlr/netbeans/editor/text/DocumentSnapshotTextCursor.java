@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.editor.text;
+
+import org.netbeans.api.annotations.common.NonNull;
+
+/**
+ * Provides sequential access to the text of a {@link DocumentSnapshot}, one line
+ * at a time. Moving the cursor to the previous or next line, or to an offset
+ * within the current line, does not search the line data of the snapshot, so
+ * reading a snapshot in order is linear in its length.
+ *
+ * <p>Instances of this interface are not thread-safe.</p>
+ *
+ * @author Sam Harwell
+ */
+public interface DocumentSnapshotTextCursor {
+
+    public @NonNull DocumentSnapshot getSnapshot();
+
+    /**
+     * Gets the line number of the current line.
+     */
+    public int getLineNumber();
+
+    /**
+     * Gets the offset within the snapshot of the start of the current line.
+     */
+    public int getLineStart();
+
+    /**
+     * Gets the text of the current line, including the line break (if any).
+     */
+    public @NonNull String getLineText();
+
+    /**
+     * Moves the cursor to the next line.
+     *
+     * @return {@code true} if the cursor moved; otherwise, {@code false} if the
+     * cursor was already positioned on the last line.
+     */
+    public boolean moveNext();
+
+    /**
+     * Moves the cursor to the previous line.
+     *
+     * @return {@code true} if the cursor moved; otherwise, {@code false} if the
+     * cursor was already positioned on the first line.
+     */
+    public boolean movePrevious();
+
+    /**
+     * Moves the cursor to the line containing {@code offset}. If {@code offset}
+     * is on the current line or an adjacent line, this operation does not
+     * search the line data.
+     *
+     * @param offset The target offset.
+     * @throws IndexOutOfBoundsException
+     *      if {@code offset < 0}
+     *      or
+     *      {@code offset > }{@link DocumentSnapshot#length getSnapshot().length()}
+     */
+    public void moveTo(int offset);
+
+    /**
+     * Gets the character at {@code offset}, moving the cursor to the line
+     * containing it.
+     *
+     * @param offset The offset of the character.
+     * @throws IndexOutOfBoundsException
+     *      if {@code offset < 0}
+     *      or
+     *      {@code offset >= }{@link DocumentSnapshot#length getSnapshot().length()}
+     */
+    public char charAt(int offset);
+
+}
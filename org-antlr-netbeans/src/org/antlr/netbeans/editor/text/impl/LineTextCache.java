@@ -193,7 +193,7 @@ public class LineTextCache {
                 if (oldBlock == _lineData.size()) {
                     // special handling for updates at the end of the last block
                     if (!modifiedBlock.isEmpty()) {
-                        next._lineData.add(modifiedBlock);
+                        next.addBlock(modifiedBlock, null);
                     }
 
                     modifiedBlock = null;
@@ -206,17 +206,17 @@ public class LineTextCache {
                         }
 
                         if (!modifiedBlock.isEmpty()) {
-                            next._lineData.add(modifiedBlock);
+                            next.addBlock(modifiedBlock, null);
                         }
                     } else {
                         if (!modifiedBlock.isEmpty()) {
-                            next._lineData.add(modifiedBlock);
+                            next.addBlock(modifiedBlock, null);
                         }
 
                         if (oldBlockLine > 0) {
-                            next._lineData.add(new ArrayList<>(remainingLines));
+                            next.addBlock(new ArrayList<>(remainingLines), null);
                         } else {
-                            next._lineData.add(_lineData.get(oldBlock));
+                            next.addBlock(_lineData.get(oldBlock), _lineOffsets.get(oldBlock));
                         }
 
                         for (String text : remainingLines) {
@@ -235,13 +235,13 @@ public class LineTextCache {
             while (oldBlock < _lineData.size() && (currentChange == null || blockEndsBeforeChange(oldBlock, currentChange))) {
                 if (modifiedBlock != null) {
                     if (!modifiedBlock.isEmpty()) {
-                        next._lineData.add(modifiedBlock);
+                        next.addBlock(modifiedBlock, null);
                     }
                     modifiedBlock = null;
                 }
 
                 newPosition += getBlockEnd(oldBlock) - _blockOffsets.get(oldBlock);
-                next._lineData.add(_lineData.get(oldBlock));
+                next.addBlock(_lineData.get(oldBlock), _lineOffsets.get(oldBlock));
                 oldLine = _blockLineOffsets.get(oldBlock) + _lineData.get(oldBlock).size();
                 oldBlock++;
                 oldBlockLine = 0;
@@ -250,7 +250,7 @@ public class LineTextCache {
             // 4. now move any whole lines we can
             while (oldLine < getLineCount() && (currentChange == null || lineEndsBeforeChange(oldBlock, oldLine, currentChange))) {
                 if (modifiedBlock != null && modifiedBlock.size() == MaximumBlockLength) {
-                    next._lineData.add(modifiedBlock);
+                    next.addBlock(modifiedBlock, null);
                     modifiedBlock = null;
                 }
 
@@ -333,7 +333,7 @@ public class LineTextCache {
 
         if (modifiedBlock != null) {
             if (!modifiedBlock.isEmpty()) {
-                next._lineData.add(modifiedBlock);
+                next.addBlock(modifiedBlock, null);
             }
             modifiedBlock = null;
         }
@@ -345,23 +345,40 @@ public class LineTextCache {
             ArrayList<String> block = next._lineData.get(newBlock);
             next._blockOffsets.add(newBlockOffset);
             next._blockLineOffsets.add(newLine);
-            next._lineOffsets.add(new IntegerList(MaximumBlockLength));
-            int blockLineOffset = 0;
-            for (int newBlockLine = 0; newBlockLine < block.size(); newBlockLine++) {
-                next._lineOffsets.get(newBlock).add(blockLineOffset);
-                blockLineOffset += block.get(newBlockLine).length();
-                newLine++;
-                // all lines before last end with \n
-                assert (newBlock == next._lineData.size() - 1 && newBlockLine == block.size() - 1) || block.get(newBlockLine).endsWith("\n");
-                // last line does not end with \n
-                assert newBlock < next._lineData.size() - 1 || newBlockLine < block.size() - 1 || !block.get(newBlockLine).endsWith("\n");
+            IntegerList blockLineOffsets = next._lineOffsets.get(newBlock);
+            int blockLineOffset;
+            if (blockLineOffsets != null) {
+                // this block is shared with the previous version, so the line
+                // offsets relative to the start of the block are unchanged
+                assert blockLineOffsets.size() == block.size();
+                blockLineOffset = blockLineOffsets.get(block.size() - 1) + block.get(block.size() - 1).length();
+                newLine += block.size();
+            } else {
+                block.trimToSize();
+                blockLineOffsets = new IntegerList(block.size());
+                next._lineOffsets.set(newBlock, blockLineOffsets);
+                blockLineOffset = 0;
+                for (int newBlockLine = 0; newBlockLine < block.size(); newBlockLine++) {
+                    blockLineOffsets.add(blockLineOffset);
+                    blockLineOffset += block.get(newBlockLine).length();
+                    newLine++;
+                    // all lines before last end with \n
+                    assert (newBlock == next._lineData.size() - 1 && newBlockLine == block.size() - 1) || block.get(newBlockLine).endsWith("\n");
+                    // last line does not end with \n
+                    assert newBlock < next._lineData.size() - 1 || newBlockLine < block.size() - 1 || !block.get(newBlockLine).endsWith("\n");
+                }
             }
 
             assert next._lineOffsets.get(newBlock).size() == block.size();
             newBlockOffset += blockLineOffset;
         }
 
-        trimToSize();
+        // only trim the containers of the new cache, since the blocks are
+        // either trimmed above or shared with the previous version
+        next._lineData.trimToSize();
+        next._blockOffsets.trimToSize();
+        next._blockLineOffsets.trimToSize();
+        next._lineOffsets.trimToSize();
 
         assert next._blockOffsets.size() == next._lineData.size();
         assert next._blockLineOffsets.size() == next._lineData.size();
@@ -424,6 +441,20 @@ public class LineTextCache {
         return _lineData.get(block).get(blockLine);
     }
 
+    /**
+     * Adds a block of lines to a cache under construction by
+     * {@link #applyChanges}.
+     *
+     * @param block The lines of the block.
+     * @param blockLineOffsets The line offsets of {@code block} if it was
+     * taken unchanged from another cache, otherwise {@code null} to compute the
+     * offsets after all blocks are added.
+     */
+    private void addBlock(@NonNull ArrayList<String> block, IntegerList blockLineOffsets) {
+        _lineData.add(block);
+        _lineOffsets.add(blockLineOffsets);
+    }
+
     private void trimToSize() {
         _lineData.trimToSize();
         _blockOffsets.trimToSize();
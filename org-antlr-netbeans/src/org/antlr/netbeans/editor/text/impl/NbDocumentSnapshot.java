@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import org.antlr.netbeans.editor.text.DocumentSnapshot;
 import org.antlr.netbeans.editor.text.DocumentSnapshotLine;
+import org.antlr.netbeans.editor.text.DocumentSnapshotTextCursor;
 import org.antlr.netbeans.editor.text.OffsetRegion;
 import org.antlr.netbeans.editor.text.TrackingFidelity;
 import org.antlr.netbeans.editor.text.TrackingPosition;
@@ -104,6 +105,11 @@ public class NbDocumentSnapshot implements DocumentSnapshot {
         return getVersion().getLineData().getLineNumberFromPosition(offset);
     }
 
+    @Override
+    public DocumentSnapshotTextCursor createTextCursor(int offset) {
+        return new NbDocumentSnapshotTextCursor(this, offset);
+    }
+
     @Override
     public int length() {
         return getVersion().getLineData().getLength();
@@ -117,9 +123,9 @@ public class NbDocumentSnapshot implements DocumentSnapshot {
 
         LineTextCache lineData = getVersion().getLineData();
         int block = lineData.getBlockFromPosition(index);
-        int line = lineData.getLineNumberFromPosition(index);
-        int lineStart = lineData.getLineStart(block, line);
-        String lineText = lineData.getLineText(block, line);
+        int blockLine = lineData.getBlockLineFromPosition(block, index);
+        int lineStart = lineData.getBlockOffsets().get(block) + lineData.getLineOffsets().get(block).get(blockLine);
+        String lineText = lineData.getLineData().get(block).get(blockLine);
         return lineText.charAt(index - lineStart);
     }
 
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.editor.text.impl;
+
+import java.util.List;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.DocumentSnapshotTextCursor;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ *
+ * @author Sam Harwell
+ */
+class NbDocumentSnapshotTextCursor implements DocumentSnapshotTextCursor {
+    @NonNull
+    private final NbDocumentSnapshot snapshot;
+    @NonNull
+    private final LineTextCache lineData;
+
+    private int block;
+    private int blockLine;
+    private int lineNumber;
+    private int lineStart;
+    private String lineText;
+
+    public NbDocumentSnapshotTextCursor(@NonNull NbDocumentSnapshot snapshot, int offset) {
+        Parameters.notNull("snapshot", snapshot);
+
+        this.snapshot = snapshot;
+        this.lineData = snapshot.getVersion().getLineData();
+        seek(offset);
+    }
+
+    @Override
+    public DocumentSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    @Override
+    public String getLineText() {
+        return lineText;
+    }
+
+    @Override
+    public boolean moveNext() {
+        List<String> blockData = lineData.getLineData().get(block);
+        if (blockLine + 1 < blockData.size()) {
+            blockLine++;
+        } else if (block + 1 < lineData.getLineData().size()) {
+            block++;
+            blockLine = 0;
+        } else {
+            return false;
+        }
+
+        lineNumber++;
+        lineStart += lineText.length();
+        lineText = lineData.getLineData().get(block).get(blockLine);
+        return true;
+    }
+
+    @Override
+    public boolean movePrevious() {
+        if (blockLine > 0) {
+            blockLine--;
+        } else if (block > 0) {
+            block--;
+            blockLine = lineData.getLineData().get(block).size() - 1;
+        } else {
+            return false;
+        }
+
+        lineNumber--;
+        lineText = lineData.getLineData().get(block).get(blockLine);
+        lineStart -= lineText.length();
+        return true;
+    }
+
+    @Override
+    public void moveTo(int offset) {
+        if (offset < 0 || offset > lineData.getLength()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (offset >= lineStart) {
+            if (offset < lineStart + lineText.length()) {
+                return;
+            }
+
+            if (moveNext()) {
+                if (offset < lineStart + lineText.length()) {
+                    return;
+                }
+            } else {
+                // offset is the end of the snapshot
+                return;
+            }
+        } else if (movePrevious() && offset >= lineStart) {
+            return;
+        }
+
+        seek(offset);
+    }
+
+    @Override
+    public char charAt(int offset) {
+        if (offset < 0 || offset >= lineData.getLength()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        moveTo(offset);
+        return lineText.charAt(offset - lineStart);
+    }
+
+    private void seek(int offset) {
+        if (offset < 0 || offset > lineData.getLength()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        block = lineData.getBlockFromPosition(offset);
+        blockLine = lineData.getBlockLineFromPosition(block, offset);
+        lineNumber = lineData.getBlockLineOffsets().get(block) + blockLine;
+        lineStart = lineData.getLineStart(block, lineNumber);
+        lineText = lineData.getLineData().get(block).get(blockLine);
+    }
+
+}
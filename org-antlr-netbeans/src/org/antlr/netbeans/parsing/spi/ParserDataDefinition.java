@@ -10,6 +10,8 @@ package org.antlr.netbeans.parsing.spi;
 
 import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
 import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.api.annotations.common.NullAllowed;
@@ -21,6 +23,19 @@ import org.openide.util.Parameters;
  * @param <T>
  */
 public class ParserDataDefinition<T> {
+    /**
+     * The default estimate of the number of bytes retained per character of the
+     * snapshot, which roughly matches a token stream plus a parse tree.
+     */
+    private static final int DEFAULT_BYTES_PER_CHARACTER = 16;
+    private static final int DEFAULT_BASE_SIZE = 64;
+    /**
+     * The estimated number of bytes retained per token spanned by a parse
+     * tree, which covers the token, its terminal node, and a share of the rule
+     * contexts above it.
+     */
+    private static final int PARSE_TREE_BYTES_PER_TOKEN = 96;
+
     @NonNull
     private final String name;
     @NonNull
@@ -71,6 +86,36 @@ public class ParserDataDefinition<T> {
         return false;
     }
 
+    /** Gets an estimate of the number of bytes retained by {@code data}, not
+     *  counting the snapshot itself. The task manager uses this value to bound
+     *  the memory held by cached data. The default implementation assumes the
+     *  size of the data is proportional to the length of the snapshot.
+     * @return
+     */
+    public long estimateRetainedSize(@NonNull ParserData<T> data) {
+        return DEFAULT_BASE_SIZE + (long)DEFAULT_BYTES_PER_CHARACTER * data.getSnapshot().length();
+    }
+
+    /** Gets an estimate of the number of bytes retained by a parse tree, based
+     *  on the number of tokens it spans. Definitions which hold parse trees may
+     *  use this from {@link #estimateRetainedSize}.
+     * @return
+     */
+    protected static long estimateParseTreeSize(@NullAllowed ParserRuleContext parseTree) {
+        if (parseTree == null) {
+            return 0;
+        }
+
+        Token start = parseTree.getStart();
+        Token stop = parseTree.getStop();
+        if (start == null || stop == null || start.getTokenIndex() < 0 || stop.getTokenIndex() < start.getTokenIndex()) {
+            return DEFAULT_BASE_SIZE;
+        }
+
+        long tokenCount = stop.getTokenIndex() - start.getTokenIndex() + 1;
+        return DEFAULT_BASE_SIZE + PARSE_TREE_BYTES_PER_TOKEN * tokenCount;
+    }
+
     @CheckForNull
     public Class<? extends ParserTaskScheduler> getScheduler() {
         return scheduler;
@@ -12,8 +12,10 @@ import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -33,7 +35,10 @@ import org.netbeans.api.annotations.common.NullAllowed;
 import org.netbeans.api.editor.mimelookup.MimeLookup;
 import org.openide.filesystems.FileObject;
 import org.openide.util.Lookup;
+import org.openide.util.LookupEvent;
+import org.openide.util.LookupListener;
 import org.openide.util.Parameters;
+import org.openide.util.RequestProcessor;
 
 /**
  *
@@ -67,6 +72,21 @@ public abstract class ParserTaskScheduler {
     private final Map<VersionedDocument, Map<ParserTaskProvider, Reference<ScheduledFuture<Collection<? extends ParserData<?>>>>>> scheduledDocumentTasks =
         new WeakHashMap<>();
 
+    /**
+     * When {@code true}, repeated calls to {@link #schedule(ParseContext, long, TimeUnit)}
+     * for a document only restart the delay for a single pending update, and
+     * the data tasks are not created until that delay expires.
+     */
+    private static final boolean COALESCE_SCHEDULE_REQUESTS = true;
+
+    private static final RequestProcessor RP = new RequestProcessor(ParserTaskScheduler.class.getName(), 1, false, false);
+
+    private final Map<VersionedDocument, PendingSchedule> pendingSchedules =
+        new WeakHashMap<>();
+
+    private final Map<String, ScheduledDataDefinitions> scheduledDataDefinitions =
+        new HashMap<>();
+
     private boolean initialized;
 
     public final void initialize() {
@@ -85,6 +105,10 @@ public abstract class ParserTaskScheduler {
             dataDocuments = new ArrayList<>(scheduledDocumentDataTasks.keySet());
         }
 
+        synchronized (pendingSchedules) {
+            dataDocuments.addAll(pendingSchedules.keySet());
+        }
+
         synchronized (scheduledDocumentTasks) {
             taskDocuments = new ArrayList<>(scheduledDocumentTasks.keySet());
         }
@@ -105,6 +129,13 @@ public abstract class ParserTaskScheduler {
     }
 
     public void cancelDataTasks(VersionedDocument document, boolean mayInterruptIfRunning) {
+        synchronized (pendingSchedules) {
+            PendingSchedule pending = pendingSchedules.remove(document);
+            if (pending != null) {
+                pending.task.cancel();
+            }
+        }
+
         Map<ParserDataDefinition<?>, Reference<ScheduledFuture<ParserData<?>>>> dataTasks;
         synchronized (scheduledDocumentDataTasks) {
             dataTasks = scheduledDocumentDataTasks.remove(document);
@@ -151,15 +182,34 @@ public abstract class ParserTaskScheduler {
 
         assert context.getSchedulerClass() == getClass();
 
-        // Schedule data updates
-        String mimeType = context.getDocument().getMimeType();
-        Set<ParserDataDefinition<?>> currentScheduledData = new HashSet<>();
-        for (ParserDataDefinition<?> data : MimeLookup.getLookup(mimeType).lookupAll(ParserDataDefinition.class)) {
-            if (getClass().equals(data.getScheduler())) {
-                currentScheduledData.add(data);
+        if (!COALESCE_SCHEDULE_REQUESTS) {
+            scheduleData(context, delay, timeUnit);
+            return;
+        }
+
+        VersionedDocument document = context.getDocument();
+        if (getScheduledDataDefinitions(document.getMimeType()).isEmpty()) {
+            return;
+        }
+
+        // Only the most recent request for a document is kept. The data tasks
+        // are created when the delay for that request expires.
+        int delayMilliseconds = (int)Math.min(Integer.MAX_VALUE, timeUnit.toMillis(delay));
+        synchronized (pendingSchedules) {
+            PendingSchedule pending = pendingSchedules.get(document);
+            if (pending == null) {
+                pending = new PendingSchedule(document);
+                pendingSchedules.put(document, pending);
             }
+
+            pending.context = context;
+            pending.task.schedule(delayMilliseconds);
         }
+    }
 
+    private void scheduleData(ParseContext context, long delay, TimeUnit timeUnit) {
+        // Schedule data updates
+        Collection<ParserDataDefinition<?>> currentScheduledData = getScheduledDataDefinitions(context.getDocument().getMimeType());
         if (!currentScheduledData.isEmpty()) {
             VersionedDocument document = context.getDocument();
             Map<ParserDataDefinition<?>, Reference<ScheduledFuture<ParserData<?>>>> existing;
@@ -266,6 +316,24 @@ public abstract class ParserTaskScheduler {
         return false;
     }
 
+    /**
+     * Gets the data definitions for {@code mimeType} which are updated by this
+     * scheduler. The result is cached until the registered definitions change.
+     */
+    @NonNull
+    private Collection<ParserDataDefinition<?>> getScheduledDataDefinitions(@NonNull String mimeType) {
+        ScheduledDataDefinitions definitions;
+        synchronized (scheduledDataDefinitions) {
+            definitions = scheduledDataDefinitions.get(mimeType);
+            if (definitions == null) {
+                definitions = new ScheduledDataDefinitions(mimeType);
+                scheduledDataDefinitions.put(mimeType, definitions);
+            }
+        }
+
+        return definitions.getDefinitions();
+    }
+
     protected int getParseDelayMilliseconds() {
         return 500;
     }
@@ -293,4 +361,60 @@ public abstract class ParserTaskScheduler {
             return timeUnit.name().toLowerCase();
         }
     }
+
+    private final class PendingSchedule implements Runnable {
+        private final VersionedDocument document;
+        private final RequestProcessor.Task task;
+        private ParseContext context;
+
+        public PendingSchedule(VersionedDocument document) {
+            this.document = document;
+            this.task = RP.create(this);
+        }
+
+        @Override
+        public void run() {
+            ParseContext currentContext;
+            synchronized (pendingSchedules) {
+                if (pendingSchedules.get(document) == this) {
+                    pendingSchedules.remove(document);
+                }
+
+                currentContext = context;
+            }
+
+            scheduleData(currentContext, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final class ScheduledDataDefinitions implements LookupListener {
+        @SuppressWarnings("rawtypes")
+        private final Lookup.Result<ParserDataDefinition> lookupResult;
+        private Collection<ParserDataDefinition<?>> definitions;
+
+        public ScheduledDataDefinitions(String mimeType) {
+            this.lookupResult = MimeLookup.getLookup(mimeType).lookupResult(ParserDataDefinition.class);
+            this.lookupResult.addLookupListener(this);
+        }
+
+        public synchronized Collection<ParserDataDefinition<?>> getDefinitions() {
+            if (definitions == null) {
+                List<ParserDataDefinition<?>> result = new ArrayList<>();
+                for (ParserDataDefinition<?> data : lookupResult.allInstances()) {
+                    if (ParserTaskScheduler.this.getClass().equals(data.getScheduler())) {
+                        result.add(data);
+                    }
+                }
+
+                definitions = Collections.unmodifiableList(result);
+            }
+
+            return definitions;
+        }
+
+        @Override
+        public synchronized void resultChanged(LookupEvent ev) {
+            definitions = null;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.parsing.spi.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.openide.util.Parameters;
+
+/**
+ * A {@link ScheduledFuture} for a task which is not submitted to an executor
+ * until some other tasks complete. Until the task is submitted,
+ * {@link #getDelay} returns {@link Long#MAX_VALUE}.
+ *
+ * @author Sam Harwell
+ */
+class DeferredScheduledFuture<V> implements ScheduledFuture<V> {
+    private final CountDownLatch submitted = new CountDownLatch(1);
+    @NullAllowed
+    private final Runnable cancelAction;
+
+    private volatile ScheduledFuture<V> delegate;
+    private boolean cancelled;
+
+    /**
+     * Constructs a new deferred future.
+     *
+     * @param cancelAction An action to run after this future is cancelled
+     * before its task completes, or {@code null} if no action is required.
+     */
+    public DeferredScheduledFuture(@NullAllowed Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
+    public void setDelegate(@NonNull ScheduledFuture<V> delegate) {
+        Parameters.notNull("delegate", delegate);
+
+        synchronized (this) {
+            if (this.delegate != null) {
+                throw new IllegalStateException("The task was already submitted.");
+            }
+
+            this.delegate = delegate;
+            if (cancelled) {
+                delegate.cancel(false);
+            }
+        }
+
+        submitted.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean result;
+        synchronized (this) {
+            if (delegate != null) {
+                result = delegate.cancel(mayInterruptIfRunning);
+            } else {
+                result = !cancelled;
+                cancelled = true;
+            }
+        }
+
+        if (result) {
+            submitted.countDown();
+            if (cancelAction != null) {
+                cancelAction.run();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return delegate != null ? delegate.isCancelled() : cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return delegate != null ? delegate.isDone() : cancelled;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        submitted.await();
+        ScheduledFuture<V> task = getSubmittedTask();
+        return task.get();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!submitted.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+
+        ScheduledFuture<V> task = getSubmittedTask();
+        return task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        ScheduledFuture<V> task = delegate;
+        return task != null ? task.getDelay(unit) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (o == this) {
+            return 0;
+        }
+
+        long delay = getDelay(TimeUnit.NANOSECONDS);
+        long otherDelay = o.getDelay(TimeUnit.NANOSECONDS);
+        return delay < otherDelay ? -1 : (delay > otherDelay ? 1 : 0);
+    }
+
+    private synchronized ScheduledFuture<V> getSubmittedTask() {
+        if (delegate == null) {
+            throw new CancellationException();
+        }
+
+        return delegate;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.parsing.spi.impl;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.netbeans.parsing.spi.ParserData;
+import org.antlr.netbeans.parsing.spi.ParserDataDefinition;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * Tracks the memory retained by cached {@link ParserData}. Recently used
+ * entries are held strongly until the total estimated size exceeds the budget,
+ * at which point the least recently used entries are only held through a
+ * {@link SoftReference}. Since cached data can always be recomputed from its
+ * snapshot, the garbage collector is free to release these entries.
+ *
+ * @author Sam Harwell
+ */
+class ParserDataCache {
+    // -J-Dorg.antlr.netbeans.parsing.spi.impl.ParserDataCache.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(ParserDataCache.class.getName());
+
+    private final long maxRetainedBytes;
+
+    /**
+     * The strongly held entries, in access order.
+     */
+    private final LinkedHashMap<Entry, Boolean> strongEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<ParserDataDefinition<?>, long[]> retainedBytes = new HashMap<>();
+    private long totalRetainedBytes;
+
+    public ParserDataCache(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    public synchronized long getRetainedBytes() {
+        return totalRetainedBytes;
+    }
+
+    public synchronized long getRetainedBytes(@NonNull ParserDataDefinition<?> definition) {
+        long[] bytes = retainedBytes.get(definition);
+        return bytes != null ? bytes[0] : 0;
+    }
+
+    @NonNull
+    public synchronized Map<ParserDataDefinition<?>, Long> getRetainedBytesByDefinition() {
+        Map<ParserDataDefinition<?>, Long> result = new HashMap<>();
+        for (Map.Entry<ParserDataDefinition<?>, long[]> entry : retainedBytes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[0]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new entry for {@code data} and marks it as the most recently
+     * used entry, releasing other entries as necessary to stay within the
+     * budget.
+     */
+    @NonNull
+    public synchronized <T> Entry add(@NonNull ParserData<T> data) {
+        Parameters.notNull("data", data);
+
+        long size = Math.max(0, data.getDefinition().estimateRetainedSize(data));
+        Entry entry = new Entry(data, size);
+        retain(entry);
+        return entry;
+    }
+
+    /**
+     * Gets the data for an entry, marking it as the most recently used entry.
+     *
+     * @return The cached data, or {@code null} if the data was released by the
+     * garbage collector.
+     */
+    @CheckForNull
+    public synchronized ParserData<?> get(@NonNull Entry entry) {
+        Parameters.notNull("entry", entry);
+
+        if (entry.strongData != null) {
+            strongEntries.get(entry);
+            return entry.strongData;
+        }
+
+        ParserData<?> data = entry.softData.get();
+        if (data != null && !entry.removed) {
+            entry.strongData = data;
+            retain(entry);
+        }
+
+        return data;
+    }
+
+    /**
+     * Removes an entry which was replaced or cleared from the cache.
+     */
+    public synchronized void remove(@NonNull Entry entry) {
+        Parameters.notNull("entry", entry);
+
+        entry.removed = true;
+        if (strongEntries.remove(entry) != null) {
+            release(entry);
+        }
+    }
+
+    private void retain(Entry entry) {
+        strongEntries.put(entry, Boolean.TRUE);
+        totalRetainedBytes += entry.size;
+        long[] bytes = retainedBytes.get(entry.definition);
+        if (bytes == null) {
+            bytes = new long[1];
+            retainedBytes.put(entry.definition, bytes);
+        }
+
+        bytes[0] += entry.size;
+
+        Iterator<Entry> iterator = strongEntries.keySet().iterator();
+        while (totalRetainedBytes > maxRetainedBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest == entry) {
+                // always keep the entry which was just used
+                break;
+            }
+
+            iterator.remove();
+            release(eldest);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Released {0} ({1} bytes) to stay within the {2} byte cache budget.", new Object[] { eldest.definition.getName(), eldest.size, maxRetainedBytes });
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        entry.strongData = null;
+        totalRetainedBytes -= entry.size;
+        long[] bytes = retainedBytes.get(entry.definition);
+        bytes[0] -= entry.size;
+        if (bytes[0] == 0) {
+            retainedBytes.remove(entry.definition);
+        }
+    }
+
+    public static final class Entry {
+        private final ParserDataDefinition<?> definition;
+        private final SoftReference<ParserData<?>> softData;
+        private final long size;
+
+        private ParserData<?> strongData;
+        private boolean removed;
+
+        private Entry(ParserData<?> data, long size) {
+            this.definition = data.getDefinition();
+            this.softData = new SoftReference<ParserData<?>>(data);
+            this.size = size;
+            this.strongData = data;
+        }
+
+        public ParserDataDefinition<?> getDefinition() {
+            return definition;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+}
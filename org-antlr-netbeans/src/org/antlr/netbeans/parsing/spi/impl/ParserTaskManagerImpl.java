@@ -8,18 +8,26 @@
  */
 package org.antlr.netbeans.parsing.spi.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledFuture;
@@ -28,6 +36,8 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.text.JTextComponent;
@@ -45,7 +55,9 @@ import org.antlr.netbeans.parsing.spi.ParserTaskDefinition;
 import org.antlr.netbeans.parsing.spi.ParserTaskManager;
 import org.antlr.netbeans.parsing.spi.ParserTaskProvider;
 import org.antlr.netbeans.parsing.spi.ParserTaskScheduler;
+import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
 import org.netbeans.api.editor.mimelookup.MimeLookup;
 import org.netbeans.lib.editor.util.ListenerList;
 import org.openide.filesystems.FileObject;
@@ -72,6 +84,28 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
     private static final int HIGH_THREAD_PRIORITY_VALUE = Thread.NORM_PRIORITY;
     private static final int LOW_THREAD_PRIORITY_VALUE = Thread.NORM_PRIORITY - 2;
 
+    // -J-Dorg.antlr.netbeans.parsing.spi.impl.ParserTaskManagerImpl.highPriorityThreads=4
+    private static final String HIGH_PRIORITY_POOL_SIZE_PROPERTY = ParserTaskManagerImpl.class.getName() + ".highPriorityThreads";
+    // -J-Dorg.antlr.netbeans.parsing.spi.impl.ParserTaskManagerImpl.lowPriorityThreads=8
+    private static final String LOW_PRIORITY_POOL_SIZE_PROPERTY = ParserTaskManagerImpl.class.getName() + ".lowPriorityThreads";
+
+    // -J-Dorg.antlr.netbeans.parsing.spi.impl.ParserTaskManagerImpl.maxCacheSize=67108864
+    private static final String MAX_CACHE_SIZE_PROPERTY = ParserTaskManagerImpl.class.getName() + ".maxCacheSize";
+    private static final long DEFAULT_MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Tasks which wait longer than this in an executor queue (beyond their
+     * requested delay) are reported at level FINE.
+     */
+    private static final long SLOW_START_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /**
+     * When {@code true}, tasks scheduled together are started in the order
+     * given by their declared inputs and outputs, so a task does not start
+     * until the tasks producing its inputs have finished.
+     */
+    private static final boolean DEPENDENCY_ORDERED_TASKS = true;
+
     private final ListenerList<ParserDataListener<Object>> globalListeners = new ListenerList<>();
 
     private final Map<ParserDataDefinition<?>, ListenerList<ParserDataListener<?>>> dataListeners =
@@ -83,18 +117,68 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
     private static final String COMPONENT_PROPERTIES_KEY = ParserTaskManagerImpl.class.getName() + "-comp-properties";
     private static final String DOCUMENT_PROPERTIES_KEY = ParserTaskManagerImpl.class.getName() + "-properties";
 
+    private final ParserDataCache dataCache;
     private final RejectionHandler rejectionHandler;
-    private final ScheduledThreadPoolExecutor highPriorityExecutor;
-    private final ScheduledThreadPoolExecutor lowPriorityExecutor;
+    private final PriorityInsertionScheduledThreadPoolExecutor highPriorityExecutor;
+    private final PriorityInsertionScheduledThreadPoolExecutor lowPriorityExecutor;
 
     public ParserTaskManagerImpl() {
+        long defaultCacheSize = Math.min(DEFAULT_MAX_CACHE_SIZE, Runtime.getRuntime().maxMemory() / 8);
+        dataCache = new ParserDataCache(Long.getLong(MAX_CACHE_SIZE_PROPERTY, defaultCacheSize));
         rejectionHandler = new RejectionHandler();
 
-        int highPriorityPoolSize = 2;
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        int highPriorityPoolSize = Math.max(1, Integer.getInteger(HIGH_PRIORITY_POOL_SIZE_PROPERTY, Math.max(2, processors / 2)));
         highPriorityExecutor = new PriorityInsertionScheduledThreadPoolExecutor(highPriorityPoolSize, new ParserThreadFactory(HIGH_THREAD_PRIORITY_VALUE), rejectionHandler);
 
-        int lowPriorityPoolSize = 2;//Math.max(2, Runtime.getRuntime().availableProcessors());
+        int lowPriorityPoolSize = Math.max(1, Integer.getInteger(LOW_PRIORITY_POOL_SIZE_PROPERTY, Math.max(2, processors)));
         lowPriorityExecutor = new PriorityInsertionScheduledThreadPoolExecutor(lowPriorityPoolSize, new ParserThreadFactory(LOW_THREAD_PRIORITY_VALUE), rejectionHandler);
+
+        LOGGER.log(Level.FINE, "Parser task executors created with {0} foreground and {1} background threads.", new Object[] { highPriorityPoolSize, lowPriorityPoolSize });
+    }
+
+    /**
+     * Gets statistics for the executor which runs tasks scheduled through
+     * {@link #scheduleHighPriority}.
+     */
+    @NonNull
+    public ExecutorStatistics getHighPriorityStatistics() {
+        return highPriorityExecutor.getStatistics();
+    }
+
+    /**
+     * Gets statistics for the executor which runs parser tasks and tasks
+     * scheduled through {@link #scheduleLowPriority}.
+     */
+    @NonNull
+    public ExecutorStatistics getLowPriorityStatistics() {
+        return lowPriorityExecutor.getStatistics();
+    }
+
+    /**
+     * Gets the number of parser tasks for {@code document} which are waiting to
+     * execute in either executor.
+     */
+    public int getQueuedTaskCount(@NonNull VersionedDocument document) {
+        Parameters.notNull("document", document);
+        return highPriorityExecutor.getQueuedTaskCount(document)
+            + lowPriorityExecutor.getQueuedTaskCount(document);
+    }
+
+    /**
+     * Gets the estimated number of bytes strongly retained by cached parser
+     * data of each definition. Data which was released to stay within the cache
+     * budget is not included.
+     */
+    @NonNull
+    public Map<ParserDataDefinition<?>, Long> getRetainedBytes() {
+        return dataCache.getRetainedBytesByDefinition();
+    }
+
+    public long getRetainedBytes(@NonNull ParserDataDefinition<?> definition) {
+        Parameters.notNull("definition", definition);
+        return dataCache.getRetainedBytes(definition);
     }
 
     @Override
@@ -119,12 +203,12 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
 
     @Override
     public <T> Future<ParserData<T>> getData(DocumentSnapshot snapshot, JTextComponent component, ParserDataDefinition<T> definition) {
-        return getData(snapshot, definition, EnumSet.noneOf(ParserDataOptions.class));
+        return getData(snapshot, component, definition, EnumSet.noneOf(ParserDataOptions.class));
     }
 
     @Override
     public Future<ParserData<?>>[] getData(DocumentSnapshot snapshot, JTextComponent component, Collection<? extends ParserDataDefinition<?>> definitions) {
-        return getData(snapshot, definitions, EnumSet.noneOf(ParserDataOptions.class));
+        return getData(snapshot, component, definitions, EnumSet.noneOf(ParserDataOptions.class));
     }
 
     @Override
@@ -133,24 +217,9 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         Parameters.notNull("definition", definition);
         Parameters.notNull("options", options);
 
-        @SuppressWarnings("unchecked")
-        ParserData<T> cachedData = getCachedData(snapshot.getVersionedDocument(), component, definition);
-        boolean useCached = options.contains(ParserDataOptions.NO_UPDATE);
-        boolean allowStale = options.contains(ParserDataOptions.ALLOW_STALE);
-        if (!useCached && cachedData != null) {
-            if (allowStale) {
-                useCached = true;
-            } else if (cachedData.getSnapshot().equals(snapshot)) {
-                useCached = true;
-            }
-        }
-
-        if (useCached) {
-            if (!allowStale && cachedData != null && !cachedData.getSnapshot().equals(snapshot)) {
-                cachedData = null;
-            }
-
-            return new CompletedFuture<>(cachedData, null);
+        Future<ParserData<T>> cachedResult = getCachedResult(snapshot, component, definition, options);
+        if (cachedResult != null) {
+            return cachedResult;
         }
 
         ParseContext context = new ParseContext(ParserTaskScheduler.MANUAL_TASK_SCHEDULER, snapshot, component);
@@ -169,18 +238,76 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public Future<ParserData<?>>[] getData(DocumentSnapshot snapshot, JTextComponent component, Collection<? extends ParserDataDefinition<?>> definitions, Collection<ParserDataOptions> options) {
         Parameters.notNull("snapshot", snapshot);
         Parameters.notNull("definitions", definitions);
         Parameters.notNull("options", options);
 
-        throw new UnsupportedOperationException("Not supported yet.");
-//        List<ParserData<?>> data = new ArrayList<ParserData<?>>();
-//        for (ParserDataDefinition<?> definition : definitions) {
-//            data.add(getData(snapshot, definition, options));
-//        }
-//
-//        return data.toArray(new ParserData<?>[0]);
+        List<ParserDataDefinition<?>> definitionList = new ArrayList<>(definitions);
+        Future<ParserData<?>>[] result = (Future<ParserData<?>>[])new Future<?>[definitionList.size()];
+        ParserTaskProvider[] providers = new ParserTaskProvider[definitionList.size()];
+
+        // group the definitions which need an update by the provider which
+        // computes them, so each provider runs at most once for this request
+        Map<ParserTaskProvider, Set<ParserDataDefinition<?>>> updates = new LinkedHashMap<>();
+        for (int i = 0; i < definitionList.size(); i++) {
+            ParserDataDefinition<?> definition = definitionList.get(i);
+            Future<?> cachedResult = getCachedResult(snapshot, component, definition, options);
+            if (cachedResult != null) {
+                result[i] = (Future<ParserData<?>>)cachedResult;
+                continue;
+            }
+
+            ParserTaskProvider provider = getTaskProvider(snapshot.getVersionedDocument(), definition);
+            if (provider == null) {
+                LOGGER.log(Level.WARNING, "No provider found for parser data \"{0}\".", definition.getName());
+                result[i] = new CompletedFuture<>(null, null);
+                continue;
+            }
+
+            providers[i] = provider;
+            Set<ParserDataDefinition<?>> providerDefinitions = updates.get(provider);
+            if (providerDefinitions == null) {
+                providerDefinitions = new LinkedHashSet<>();
+                updates.put(provider, providerDefinitions);
+            }
+
+            providerDefinitions.add(definition);
+        }
+
+        if (updates.isEmpty()) {
+            return result;
+        }
+
+        ParseContext context = new ParseContext(ParserTaskScheduler.MANUAL_TASK_SCHEDULER, snapshot, component);
+        boolean synchronous = options.contains(ParserDataOptions.SYNCHRONOUS) || isParserThread();
+        Map<ParserTaskProvider, Future<Collection<? extends ParserData<?>>>> providerResults = new HashMap<>();
+        for (Map.Entry<ParserTaskProvider, Set<ParserDataDefinition<?>>> entry : updates.entrySet()) {
+            Callable<Collection<? extends ParserData<?>>> callable = new UpdateDataSetCallable(this, context, entry.getKey(), entry.getValue());
+            Future<Collection<? extends ParserData<?>>> future;
+            if (synchronous) {
+                try {
+                    future = new CompletedFuture<Collection<? extends ParserData<?>>>(callable.call(), null);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "An exception occurred while handling a parse request.", ex);
+                    future = new CompletedFuture<>(null, ex);
+                }
+            } else {
+                callable = decorateCallable(callable);
+                future = lowPriorityExecutor.schedule(callable, 0, TimeUnit.NANOSECONDS);
+            }
+
+            providerResults.put(entry.getKey(), future);
+        }
+
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] == null) {
+                result[i] = new SelectedDataFuture(providerResults.get(providers[i]), definitionList.get(i));
+            }
+        }
+
+        return result;
     }
 
     @Override
@@ -247,8 +374,47 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         }
 
         Map<ParserDataDefinition<?>, ScheduledFuture<ParserData<?>>> futures = new HashMap<>();
+        if (!DEPENDENCY_ORDERED_TASKS || data.size() == 1) {
+            for (ParserDataDefinition dataDefinition : data) {
+                futures.put(dataDefinition, (ScheduledFuture<ParserData<?>>)scheduleData(context, dataDefinition, delay, timeUnit));
+            }
+
+            return futures;
+        }
+
+        // group the definitions by the provider which computes them, so each
+        // provider runs at most once and after the providers of its inputs
+        Map<ParserTaskProvider, Set<ParserDataDefinition<?>>> providerData = new LinkedHashMap<>();
         for (ParserDataDefinition dataDefinition : data) {
-            futures.put(dataDefinition, (ScheduledFuture<ParserData<?>>)scheduleData(context, dataDefinition, delay, timeUnit));
+            ParserTaskProvider provider = getTaskProvider(context.getDocument(), dataDefinition);
+            if (provider == null) {
+                futures.put(dataDefinition, (ScheduledFuture<ParserData<?>>)scheduleData(context, dataDefinition, delay, timeUnit));
+                continue;
+            }
+
+            Set<ParserDataDefinition<?>> definitions = providerData.get(provider);
+            if (definitions == null) {
+                definitions = new LinkedHashSet<>();
+                providerData.put(provider, definitions);
+            }
+
+            definitions.add(dataDefinition);
+        }
+
+        List<TaskNode> nodes = new ArrayList<>();
+        for (Map.Entry<ParserTaskProvider, Set<ParserDataDefinition<?>>> entry : providerData.entrySet()) {
+            TaskNode node = new TaskNode(this, context, entry.getKey(), entry.getValue());
+            nodes.add(node);
+            for (ParserDataDefinition<?> dataDefinition : entry.getValue()) {
+                futures.put(dataDefinition, node.select(dataDefinition));
+            }
+        }
+
+        linkTaskGraph(nodes);
+        for (TaskNode node : nodes) {
+            if (node.pendingInputs.get() == 0) {
+                submitTaskNode(node, delay, timeUnit);
+            }
         }
 
         return futures;
@@ -277,14 +443,126 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
             return Collections.emptyMap();
         }
 
-        Map<ParserTaskProvider, ScheduledFuture<Collection<? extends ParserData<?>>>> result = new HashMap<>();
+        if (!DEPENDENCY_ORDERED_TASKS || providers.size() == 1) {
+            Map<ParserTaskProvider, ScheduledFuture<Collection<? extends ParserData<?>>>> result = new HashMap<>();
+            for (ParserTaskProvider provider : providers) {
+                result.put(provider, scheduleTask(context, provider, delay, timeUnit));
+            }
+
+            return result;
+        }
+
+        List<TaskNode> nodes = new ArrayList<>();
         for (ParserTaskProvider provider : providers) {
-            result.put(provider, scheduleTask(context, provider, delay, timeUnit));
+            nodes.add(new TaskNode(this, context, provider, null));
+        }
+
+        linkTaskGraph(nodes);
+        Map<ParserTaskProvider, ScheduledFuture<Collection<? extends ParserData<?>>>> result = new HashMap<>();
+        for (TaskNode node : nodes) {
+            result.put(node.provider, node.future);
+        }
+
+        for (TaskNode node : nodes) {
+            if (node.pendingInputs.get() == 0) {
+                submitTaskNode(node, delay, timeUnit);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Links the dependency graph for a set of tasks scheduled together. A task
+     * depends on every other task in the set which produces one of the inputs
+     * declared by its provider. Tasks which are part of a dependency cycle do
+     * not wait on any other task.
+     */
+    private void linkTaskGraph(List<TaskNode> nodes) {
+        Map<ParserDataDefinition<?>, List<TaskNode>> producers = new HashMap<>();
+        for (TaskNode node : nodes) {
+            for (ParserDataDefinition<?> output : node.outputs) {
+                List<TaskNode> outputProducers = producers.get(output);
+                if (outputProducers == null) {
+                    outputProducers = new ArrayList<>();
+                    producers.put(output, outputProducers);
+                }
+
+                outputProducers.add(node);
+            }
+        }
+
+        Map<TaskNode, Set<TaskNode>> prerequisites = new HashMap<>();
+        for (TaskNode node : nodes) {
+            Set<TaskNode> nodePrerequisites = new LinkedHashSet<>();
+            for (ParserDataDefinition<?> input : node.provider.getDefinition().getInputs()) {
+                List<TaskNode> inputProducers = producers.get(input);
+                if (inputProducers != null) {
+                    nodePrerequisites.addAll(inputProducers);
+                }
+            }
+
+            nodePrerequisites.remove(node);
+            prerequisites.put(node, nodePrerequisites);
+        }
+
+        // Kahn's algorithm; any node which is never reached is part of a cycle
+        Set<TaskNode> ordered = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (TaskNode node : nodes) {
+                if (!ordered.contains(node) && ordered.containsAll(prerequisites.get(node))) {
+                    ordered.add(node);
+                    changed = true;
+                }
+            }
+        }
+
+        for (TaskNode node : nodes) {
+            if (!ordered.contains(node)) {
+                LOGGER.log(Level.FINE, "Task \"{0}\" is part of a dependency cycle and will not wait for its inputs.", node.provider.getDefinition().getName());
+                continue;
+            }
+
+            for (TaskNode prerequisite : prerequisites.get(node)) {
+                prerequisite.dependents.add(node);
+                node.pendingInputs.incrementAndGet();
+            }
+        }
+    }
+
+    private void submitTaskNode(TaskNode node, long delay, TimeUnit timeUnit) {
+        if (node.future.isCancelled()) {
+            // the cancellation was already passed on to the dependents
+            return;
+        }
+
+        node.future.setDelegate(lowPriorityExecutor.schedule(node.callable, delay, timeUnit));
+    }
+
+    /**
+     * Called once a task in a dependency graph finishes or is cancelled. The
+     * dependents of a completed task are submitted after their last
+     * prerequisite completes. A cancelled task belongs to a batch which was
+     * superseded, so its dependents are cancelled as well rather than started
+     * against inputs which were never computed.
+     */
+    void taskNodeCompleted(TaskNode node) {
+        if (!node.completed.compareAndSet(false, true)) {
+            return;
+        }
+
+        boolean cancelled = node.future.isCancelled();
+        for (TaskNode dependent : node.dependents) {
+            if (cancelled) {
+                dependent.future.cancel(false);
+            } else if (dependent.pendingInputs.decrementAndGet() == 0) {
+                submitTaskNode(dependent, 0, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     @Override
     public <T> ScheduledFuture<T> scheduleLowPriority(Callable<T> callable) {
         Parameters.notNull("callable", callable);
@@ -372,6 +650,36 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         }
     }
 
+    /**
+     * Gets a completed future holding the cached data for {@code definition}
+     * if {@code options} allow the request to be satisfied from the cache.
+     *
+     * @return A completed future, or {@code null} if the data needs to be
+     * updated.
+     */
+    private <T> Future<ParserData<T>> getCachedResult(DocumentSnapshot snapshot, JTextComponent component, ParserDataDefinition<T> definition, Collection<ParserDataOptions> options) {
+        ParserData<T> cachedData = getCachedData(snapshot.getVersionedDocument(), component, definition);
+        boolean useCached = options.contains(ParserDataOptions.NO_UPDATE);
+        boolean allowStale = options.contains(ParserDataOptions.ALLOW_STALE);
+        if (!useCached && cachedData != null) {
+            if (allowStale) {
+                useCached = true;
+            } else if (cachedData.getSnapshot().equals(snapshot)) {
+                useCached = true;
+            }
+        }
+
+        if (!useCached) {
+            return null;
+        }
+
+        if (!allowStale && cachedData != null && !cachedData.getSnapshot().equals(snapshot)) {
+            cachedData = null;
+        }
+
+        return new CompletedFuture<>(cachedData, null);
+    }
+
     private static boolean isParserThread() {
         return Thread.currentThread() instanceof ParserThread;
     }
@@ -445,34 +753,47 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
             return null;
         }
 
+        ParserDataCache.Entry entry = null;
         if (definition.isComponentSpecific()) {
-            Map<ParserDataDefinition<?>, Map<JTextComponent, ParserData<?>>> documentProperties = (Map<ParserDataDefinition<?>, Map<JTextComponent, ParserData<?>>>)versionedDocument.getProperty(COMPONENT_PROPERTIES_KEY);
+            ComponentPropertiesMap documentProperties = (ComponentPropertiesMap)versionedDocument.getProperty(COMPONENT_PROPERTIES_KEY);
             if (documentProperties != null) {
-                Map<JTextComponent, ParserData<?>> componentProperties = documentProperties.get(definition);
+                ComponentDataMap componentProperties = documentProperties.get(definition);
                 if (componentProperties != null) {
-                    return (ParserData<T>)componentProperties.get(component);
+                    entry = componentProperties.get(component);
                 }
             }
         } else {
-            Map<ParserDataDefinition<?>, ParserData<?>> documentProperties = (Map<ParserDataDefinition<?>, ParserData<?>>)versionedDocument.getProperty(DOCUMENT_PROPERTIES_KEY);
+            DocumentPropertiesMap documentProperties = (DocumentPropertiesMap)versionedDocument.getProperty(DOCUMENT_PROPERTIES_KEY);
             if (documentProperties != null) {
-                return (ParserData<T>)documentProperties.get(definition);
+                entry = documentProperties.get(definition);
             }
         }
 
-        return null;
+        return entry != null ? (ParserData<T>)dataCache.get(entry) : null;
     }
 
     private synchronized boolean clearCachedData(VersionedDocument versionedDocument, ParserDataDefinition<?> definition) {
         if (definition.isComponentSpecific()) {
-            Map<?, ?> componentProperties = (Map<?, ?>)versionedDocument.getProperty(COMPONENT_PROPERTIES_KEY);
+            ComponentPropertiesMap componentProperties = (ComponentPropertiesMap)versionedDocument.getProperty(COMPONENT_PROPERTIES_KEY);
             if (componentProperties != null) {
-                return componentProperties.remove(definition) != null;
+                ComponentDataMap removed = componentProperties.remove(definition);
+                if (removed != null) {
+                    for (ParserDataCache.Entry entry : removed.values()) {
+                        dataCache.remove(entry);
+                    }
+                }
+
+                return removed != null;
             }
         } else {
-            Map<?, ?> documentProperties = (Map<?, ?>)versionedDocument.getProperty(DOCUMENT_PROPERTIES_KEY);
+            DocumentPropertiesMap documentProperties = (DocumentPropertiesMap)versionedDocument.getProperty(DOCUMENT_PROPERTIES_KEY);
             if (documentProperties != null) {
-                return documentProperties.remove(definition) != null;
+                ParserDataCache.Entry removed = documentProperties.remove(definition);
+                if (removed != null) {
+                    dataCache.remove(removed);
+                }
+
+                return removed != null;
             }
         }
 
@@ -495,13 +816,14 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 versionedDocument.putProperty(COMPONENT_PROPERTIES_KEY, documentProperties);
             }
 
-            ComponentDataMap componentProperties = (ComponentDataMap)documentProperties.get(definition);
+            ComponentDataMap componentProperties = documentProperties.get(definition);
             if (componentProperties == null) {
                 componentProperties = new ComponentDataMap();
+                documentProperties.put(definition, componentProperties);
             }
 
-            ParserData<?> previousData = componentProperties.get(data.getContext().getComponent());
-            //ParserData<?> previousData = previousDataRef != null ? 
+            ParserDataCache.Entry previousEntry = componentProperties.get(data.getContext().getComponent());
+            ParserData<?> previousData = previousEntry != null ? dataCache.get(previousEntry) : null;
             if (previousData == data || (previousData != null && previousData.equals(data))) {
                 return false;
             }
@@ -510,7 +832,11 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 return false;
             }
 
-            componentProperties.put(data.getContext().getComponent(), data);
+            if (previousEntry != null) {
+                dataCache.remove(previousEntry);
+            }
+
+            componentProperties.put(data.getContext().getComponent(), dataCache.add(data));
             return true;
         } else {
             DocumentPropertiesMap documentProperties = (DocumentPropertiesMap)versionedDocument.getProperty(DOCUMENT_PROPERTIES_KEY);
@@ -519,7 +845,8 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 versionedDocument.putProperty(DOCUMENT_PROPERTIES_KEY, documentProperties);
             }
 
-            ParserData<?> previousData = documentProperties.get(definition);
+            ParserDataCache.Entry previousEntry = documentProperties.get(definition);
+            ParserData<?> previousData = previousEntry != null ? dataCache.get(previousEntry) : null;
             if (previousData == data || (previousData != null && previousData.equals(data))) {
                 return false;
             }
@@ -528,7 +855,11 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 return false;
             }
 
-            documentProperties.put(definition, data);
+            if (previousEntry != null) {
+                dataCache.remove(previousEntry);
+            }
+
+            documentProperties.put(definition, dataCache.add(data));
             return true;
         }
     }
@@ -541,13 +872,13 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         return true;
     }
 
-    private static class ComponentPropertiesMap extends HashMap<ParserDataDefinition<?>, Map<JTextComponent, ParserData<?>>> {
+    private static class ComponentPropertiesMap extends HashMap<ParserDataDefinition<?>, ComponentDataMap> {
     }
 
-    private static class ComponentDataMap extends WeakHashMap<JTextComponent, ParserData<?>> {
+    private static class ComponentDataMap extends WeakHashMap<JTextComponent, ParserDataCache.Entry> {
     }
 
-    private static class DocumentPropertiesMap extends HashMap<ParserDataDefinition<?>, ParserData<?>> {
+    private static class DocumentPropertiesMap extends HashMap<ParserDataDefinition<?>, ParserDataCache.Entry> {
     }
 
     private static class RejectionHandler implements RejectedExecutionHandler {
@@ -608,11 +939,16 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
             } catch (Exception | Error ex) {
                 LOGGER.log(Level.WARNING, Bundle.taskFailedException(), ex);
                 throw ex;
+            } finally {
+                completed();
             }
         }
 
         protected abstract Result callImpl() throws Exception;
 
+        protected void completed() {
+        }
+
     }
 
     private static class UpdateDataCallable<T> extends UpdateCallable<ParserData<T>> {
@@ -677,10 +1013,23 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
 
     private static class UpdateTaskCallable extends UpdateCallable<Collection<? extends ParserData<?>>> {
         private final ParserTaskProvider provider;
+        private final TaskNode node;
 
         public UpdateTaskCallable(ParserTaskManagerImpl outer, ParseContext context, ParserTaskProvider provider) {
+            this(outer, context, provider, null);
+        }
+
+        public UpdateTaskCallable(ParserTaskManagerImpl outer, ParseContext context, ParserTaskProvider provider, TaskNode node) {
             super(outer, context);
             this.provider = provider;
+            this.node = node;
+        }
+
+        @Override
+        protected void completed() {
+            if (node != null) {
+                outer.taskNodeCompleted(node);
+            }
         }
 
         @Override
@@ -718,6 +1067,138 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         }
     }
 
+    private static class UpdateDataSetCallable extends UpdateCallable<Collection<? extends ParserData<?>>> {
+        private final ParserTaskProvider provider;
+        private final Collection<ParserDataDefinition<?>> data;
+        private final TaskNode node;
+
+        public UpdateDataSetCallable(ParserTaskManagerImpl outer, ParseContext context, ParserTaskProvider provider, Collection<ParserDataDefinition<?>> data) {
+            this(outer, context, provider, data, null);
+        }
+
+        public UpdateDataSetCallable(ParserTaskManagerImpl outer, ParseContext context, ParserTaskProvider provider, Collection<ParserDataDefinition<?>> data, TaskNode node) {
+            super(outer, context);
+            this.provider = provider;
+            this.data = data;
+            this.node = node;
+        }
+
+        @Override
+        protected void completed() {
+            if (node != null) {
+                outer.taskNodeCompleted(node);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Collection<? extends ParserData<?>> callImpl() throws Exception {
+            VersionedDocument document = context.getDocument();
+            DocumentSnapshot snapshot = context.getSnapshot();
+            if (snapshot == null) {
+                snapshot = document.getCurrentSnapshot();
+            }
+
+            // another request may have updated the data while this one was queued
+            List<ParserData<?>> cachedResults = new ArrayList<>();
+            for (ParserDataDefinition<?> definition : data) {
+                ParserData<?> cachedData = definition.isCacheable() ? outer.getCachedData(document, context.getComponent(), definition) : null;
+                if (cachedData == null || !cachedData.getSnapshot().equals(snapshot)) {
+                    cachedResults = null;
+                    break;
+                }
+
+                cachedResults.add(cachedData);
+            }
+
+            if (cachedResults != null) {
+                return cachedResults;
+            }
+
+            final ParserTask task = provider.createTask(document);
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                String messageFormat = "{0}: Updating data {1} with task \"{2}\" for {3}#{4}";
+                FileObject fileObject = document.getFileObject();
+                String path = fileObject != null ? fileObject.getPath() : "";
+                Object[] args =
+                    {
+                        Thread.currentThread().getName(),
+                        data,
+                        task.getDefinition().getName(),
+                        path,
+                        snapshot.getVersion().getVersionNumber()
+                    };
+                LOGGER.log(Level.FINE, messageFormat, args);
+            }
+
+            ResultAggregator handler = new ResultAggregator(outer, context);
+            task.parse(outer, context, snapshot, data, handler);
+
+            for (ParserData<?> result : handler.getUpdatedResults()) {
+                outer.fireDataChanged((ParserDataDefinition)result.getDefinition(), result);
+            }
+
+            return handler.getResults();
+        }
+    }
+
+    /**
+     * A task in the dependency graph linked by {@link #linkTaskGraph}. A node
+     * either runs every output of its provider, or only the data definitions
+     * scheduled for it through {@link #scheduleData}.
+     */
+    private static final class TaskNode implements SelectedScheduledDataFuture.CancelHandler {
+        private final ParserTaskProvider provider;
+        private final Collection<? extends ParserDataDefinition<?>> outputs;
+        private final UpdateCallable<Collection<? extends ParserData<?>>> callable;
+        private final DeferredScheduledFuture<Collection<? extends ParserData<?>>> future;
+        private final List<TaskNode> dependents = new ArrayList<>();
+        private final AtomicInteger pendingInputs = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // the selections are only weakly held by the schedulers, so the node keeps them alive
+        private final List<SelectedScheduledDataFuture> selections = new ArrayList<>();
+        private final AtomicInteger activeSelections = new AtomicInteger();
+        private final AtomicBoolean interruptable = new AtomicBoolean(true);
+
+        public TaskNode(final ParserTaskManagerImpl outer, ParseContext context, ParserTaskProvider provider, @NullAllowed Set<ParserDataDefinition<?>> data) {
+            this.provider = provider;
+            if (data != null) {
+                this.outputs = data;
+                this.callable = new UpdateDataSetCallable(outer, context, provider, data, this);
+            } else {
+                this.outputs = provider.getDefinition().getOutputs();
+                this.callable = new UpdateTaskCallable(outer, context, provider, this);
+            }
+
+            this.future = new DeferredScheduledFuture<>(new Runnable() {
+                @Override
+                public void run() {
+                    outer.taskNodeCompleted(TaskNode.this);
+                }
+            });
+        }
+
+        public ScheduledFuture<ParserData<?>> select(ParserDataDefinition<?> definition) {
+            SelectedScheduledDataFuture selection = new SelectedScheduledDataFuture(future, definition, this);
+            selections.add(selection);
+            activeSelections.incrementAndGet();
+            return selection;
+        }
+
+        @Override
+        public void selectionCancelled(boolean mayInterruptIfRunning) {
+            if (!mayInterruptIfRunning) {
+                interruptable.set(false);
+            }
+
+            // the shared task is only cancelled once none of its data is wanted
+            if (activeSelections.decrementAndGet() == 0) {
+                future.cancel(interruptable.get());
+            }
+        }
+    }
+
     private static class ResultAggregator implements ParserResultHandler {
         private final List<ParserData<?>> results = new ArrayList<>();
         private final List<ParserData<?>> updatedResults = new ArrayList<>();
@@ -755,10 +1236,135 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
         }
     }
 
+    /**
+     * A point-in-time view of the load on one of the parser task executors.
+     */
+    public static final class ExecutorStatistics {
+        private final int poolSize;
+        private final int activeCount;
+        private final int queueDepth;
+        private final long startedTaskCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        ExecutorStatistics(int poolSize, int activeCount, int queueDepth, long startedTaskCount, long totalWaitNanos, long maxWaitNanos) {
+            this.poolSize = poolSize;
+            this.activeCount = activeCount;
+            this.queueDepth = queueDepth;
+            this.startedTaskCount = startedTaskCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        /**
+         * Gets the number of tasks waiting in the queue, including tasks whose
+         * requested delay has not yet elapsed.
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getStartedTaskCount() {
+            return startedTaskCount;
+        }
+
+        /**
+         * Gets the average time a task spent waiting for a thread after its
+         * requested delay elapsed.
+         */
+        public long getAverageWaitTime(@NonNull TimeUnit timeUnit) {
+            if (startedTaskCount == 0) {
+                return 0;
+            }
+
+            return timeUnit.convert(totalWaitNanos / startedTaskCount, TimeUnit.NANOSECONDS);
+        }
+
+        public long getMaxWaitTime(@NonNull TimeUnit timeUnit) {
+            return timeUnit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pool=%d, active=%d, queued=%d, started=%d, avgWait=%dms, maxWait=%dms",
+                poolSize, activeCount, queueDepth, startedTaskCount, getAverageWaitTime(TimeUnit.MILLISECONDS), getMaxWaitTime(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Schedules parser tasks with fair sharing between documents. The
+     * scheduled executor itself only waits for the requested delay of each
+     * task, and then moves the task to a ready queue for its document. A
+     * separate pool of worker threads takes the ready tasks, serving the
+     * documents with ready tasks of the highest priority round-robin, so one
+     * document with many pending updates cannot starve the others.
+     */
     private static class PriorityInsertionScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+        /**
+         * Key used in {@link #queuedTasks} and {@link #readyTasks} for tasks
+         * which are not associated with a document.
+         */
+        private static final Object NO_DOCUMENT = new Object();
+
+        /**
+         * The number of queued tasks for each document, including tasks whose
+         * requested delay has not yet elapsed.
+         */
+        private final Map<Object, int[]> queuedTasks = new WeakHashMap<>();
+
+        /**
+         * The ready tasks, by priority and then by document. The documents of
+         * each priority are kept in the order they will next be served.
+         */
+        private final TreeMap<Integer, LinkedHashMap<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>>> readyTasks = new TreeMap<>();
+        private int readyTaskCount;
+
+        private final ThreadPoolExecutor workers;
+        private final Runnable runNextReadyTask = new Runnable() {
+            @Override
+            public void run() {
+                PriorityInsertionRunnableScheduledFuture<?> task = pollReadyTask();
+                if (task != null) {
+                    task.runTask();
+                }
+            }
+        };
+
+        private final Object statisticsLock = new Object();
+        private long startedTaskCount;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        public PriorityInsertionScheduledThreadPoolExecutor(int poolSize, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+            // the scheduler thread only moves tasks to the ready queues
+            super(1, threadFactory, handler);
+            workers = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory, handler);
+        }
+
+        public ExecutorStatistics getStatistics() {
+            int readyCount;
+            synchronized (readyTasks) {
+                readyCount = readyTaskCount;
+            }
+
+            synchronized (statisticsLock) {
+                return new ExecutorStatistics(workers.getCorePoolSize(), workers.getActiveCount(), getQueue().size() + readyCount, startedTaskCount, totalWaitNanos, maxWaitNanos);
+            }
+        }
 
-        public PriorityInsertionScheduledThreadPoolExecutor(int corePoolSize, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
-            super(corePoolSize, threadFactory, handler);
+        public int getQueuedTaskCount(VersionedDocument document) {
+            synchronized (queuedTasks) {
+                int[] count = queuedTasks.get(document);
+                return count != null ? count[0] : 0;
+            }
         }
 
         @Override
@@ -768,14 +1374,16 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 priority += PRIORITY_IMMEDIATE_OFFSET;
             }
 
+            VersionedDocument document = null;
             if (callable instanceof UpdateCallable<?>) {
                 UpdateCallable<?> updateCallable = (UpdateCallable<?>)callable;
-                if (updateCallable.context.getDocument().getDocument() != null) {
+                document = updateCallable.context.getDocument();
+                if (document.getDocument() != null) {
                     priority += PRIORITY_FOREGROUND_OFFSET;
                 }
             }
 
-            return new PriorityInsertionRunnableScheduledFuture<>(task, priority);
+            return createTask(task, priority, document);
         }
 
         @Override
@@ -785,14 +1393,132 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
                 priority += PRIORITY_IMMEDIATE_OFFSET;
             }
 
-            if (runnable instanceof UpdateCallable<?>) {
-                UpdateCallable<?> updateCallable = (UpdateCallable<?>)runnable;
-                if (updateCallable.context.getDocument().getDocument() != null) {
-                    priority += PRIORITY_FOREGROUND_OFFSET;
+            return createTask(task, priority, null);
+        }
+
+        private <V> RunnableScheduledFuture<V> createTask(RunnableScheduledFuture<V> task, int priority, VersionedDocument document) {
+            Object key = document != null ? document : NO_DOCUMENT;
+            synchronized (queuedTasks) {
+                int[] count = queuedTasks.get(key);
+                if (count == null) {
+                    count = new int[1];
+                    queuedTasks.put(key, count);
                 }
+
+                count[0]++;
+            }
+
+            long expectedStart = System.nanoTime() + Math.max(0, task.getDelay(TimeUnit.NANOSECONDS));
+            return new PriorityInsertionRunnableScheduledFuture<>(this, task, priority, key, expectedStart);
+        }
+
+        /**
+         * Called on the scheduler thread when the requested delay of a task
+         * elapsed.
+         */
+        void taskReady(@NonNull PriorityInsertionRunnableScheduledFuture<?> task) {
+            synchronized (readyTasks) {
+                LinkedHashMap<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>> documents = readyTasks.get(task.priority);
+                if (documents == null) {
+                    documents = new LinkedHashMap<>();
+                    readyTasks.put(task.priority, documents);
+                }
+
+                ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>> tasks = documents.get(task.documentKey);
+                if (tasks == null) {
+                    tasks = new ArrayDeque<>();
+                    documents.put(task.documentKey, tasks);
+                }
+
+                tasks.add(task);
+                readyTaskCount++;
             }
 
-            return new PriorityInsertionRunnableScheduledFuture<>(task, priority);
+            // each ready task submits one request to run the next ready task
+            workers.execute(runNextReadyTask);
+        }
+
+        @CheckForNull
+        private PriorityInsertionRunnableScheduledFuture<?> pollReadyTask() {
+            synchronized (readyTasks) {
+                Map.Entry<Integer, LinkedHashMap<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>>> level = readyTasks.firstEntry();
+                if (level == null) {
+                    return null;
+                }
+
+                LinkedHashMap<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>> documents = level.getValue();
+                Iterator<Map.Entry<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>>> iterator = documents.entrySet().iterator();
+                Map.Entry<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>> next = iterator.next();
+                iterator.remove();
+
+                ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>> tasks = next.getValue();
+                PriorityInsertionRunnableScheduledFuture<?> task = tasks.remove();
+                if (!tasks.isEmpty()) {
+                    // the document goes to the back of the round
+                    documents.put(next.getKey(), tasks);
+                } else if (documents.isEmpty()) {
+                    readyTasks.remove(level.getKey());
+                }
+
+                readyTaskCount--;
+                return task;
+            }
+        }
+
+        void taskCancelled(@NonNull PriorityInsertionRunnableScheduledFuture<?> task) {
+            synchronized (readyTasks) {
+                LinkedHashMap<Object, ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>>> documents = readyTasks.get(task.priority);
+                ArrayDeque<PriorityInsertionRunnableScheduledFuture<?>> tasks = documents != null ? documents.get(task.documentKey) : null;
+                if (tasks == null || !tasks.remove(task)) {
+                    return;
+                }
+
+                readyTaskCount--;
+                if (tasks.isEmpty()) {
+                    documents.remove(task.documentKey);
+                    if (documents.isEmpty()) {
+                        readyTasks.remove(task.priority);
+                    }
+                }
+            }
+        }
+
+        void taskDequeued(Object key) {
+            synchronized (queuedTasks) {
+                int[] count = queuedTasks.get(key);
+                if (count != null && --count[0] == 0) {
+                    queuedTasks.remove(key);
+                }
+            }
+        }
+
+        void taskStarted(Object key, long expectedStart) {
+            taskDequeued(key);
+
+            long waitNanos = Math.max(0, System.nanoTime() - expectedStart);
+            synchronized (statisticsLock) {
+                startedTaskCount++;
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            }
+
+            if (waitNanos >= SLOW_START_THRESHOLD_NANOS && LOGGER.isLoggable(Level.FINE)) {
+                Object[] args = { Thread.currentThread().getName(), TimeUnit.NANOSECONDS.toMillis(waitNanos), getStatistics() };
+                LOGGER.log(Level.FINE, "{0}: Task started {1}ms late ({2})", args);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            workers.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> result = super.shutdownNow();
+            workers.shutdownNow();
+            return result;
         }
 
     }
@@ -802,13 +1528,22 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
     private static final int PRIORITY_FOREGROUND_OFFSET = -2;
 
     private static class PriorityInsertionRunnableScheduledFuture<V> implements RunnableScheduledFuture<V> {
+        private final PriorityInsertionScheduledThreadPoolExecutor executor;
         private final RunnableScheduledFuture<V> wrappedTask;
         private final int priority;
+        private final Object documentKey;
+        private final long expectedStart;
+        private final AtomicBoolean dequeued = new AtomicBoolean();
 
-        public PriorityInsertionRunnableScheduledFuture(@NonNull RunnableScheduledFuture<V> wrappedTask, int priority) {
+        public PriorityInsertionRunnableScheduledFuture(@NonNull PriorityInsertionScheduledThreadPoolExecutor executor, @NonNull RunnableScheduledFuture<V> wrappedTask, int priority, @NonNull Object documentKey, long expectedStart) {
+            Parameters.notNull("executor", executor);
             Parameters.notNull("wrappedTask", wrappedTask);
+            Parameters.notNull("documentKey", documentKey);
+            this.executor = executor;
             this.wrappedTask = wrappedTask;
             this.priority = priority;
+            this.documentKey = documentKey;
+            this.expectedStart = expectedStart;
         }
 
         @Override
@@ -818,12 +1553,33 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
 
         @Override
         public void run() {
+            executor.taskReady(this);
+        }
+
+        /**
+         * Runs the task on a worker thread, after it was taken from the ready
+         * queue of its document.
+         */
+        void runTask() {
+            if (dequeued.compareAndSet(false, true)) {
+                executor.taskStarted(documentKey, expectedStart);
+            }
+
             wrappedTask.run();
         }
 
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
-            return wrappedTask.cancel(mayInterruptIfRunning);
+            boolean cancelled = wrappedTask.cancel(mayInterruptIfRunning);
+            if (cancelled && dequeued.compareAndSet(false, true)) {
+                // the wrapped task is not in the queue, so the executor's
+                // remove-on-cancel handling never sees it
+                executor.remove(this);
+                executor.taskCancelled(this);
+                executor.taskDequeued(documentKey);
+            }
+
+            return cancelled;
         }
 
         @Override
@@ -853,12 +1609,9 @@ public class ParserTaskManagerImpl implements ParserTaskManager {
 
         @Override
         public int compareTo(Delayed o) {
+            // the scheduler queue is ordered by time only; priorities apply
+            // to the ready queues
             if (o instanceof PriorityInsertionRunnableScheduledFuture<?>) {
-                PriorityInsertionRunnableScheduledFuture<?> other = (PriorityInsertionRunnableScheduledFuture<?>)o;
-                if (this.priority != other.priority) {
-                    return this.priority - other.priority;
-                }
-
                 return wrappedTask.compareTo(((PriorityInsertionRunnableScheduledFuture<?>)o).wrappedTask);
             }
 
@@ -0,0 +1,80 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.parsing.spi.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.antlr.netbeans.parsing.spi.ParserData;
+import org.antlr.netbeans.parsing.spi.ParserDataDefinition;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * Selects the result for a single {@link ParserDataDefinition} from a task
+ * which computes several of them at once. The underlying task is shared with
+ * other instances, so it cannot be cancelled through this future.
+ *
+ * @author Sam Harwell
+ */
+class SelectedDataFuture implements Future<ParserData<?>> {
+    @NonNull
+    private final Future<? extends Collection<? extends ParserData<?>>> results;
+    @NonNull
+    private final ParserDataDefinition<?> definition;
+
+    public SelectedDataFuture(@NonNull Future<? extends Collection<? extends ParserData<?>>> results, @NonNull ParserDataDefinition<?> definition) {
+        Parameters.notNull("results", results);
+        Parameters.notNull("definition", definition);
+        this.results = results;
+        this.definition = definition;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return results.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return results.isDone();
+    }
+
+    @Override
+    public ParserData<?> get() throws InterruptedException, ExecutionException {
+        return select(results.get());
+    }
+
+    @Override
+    public ParserData<?> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return select(results.get(timeout, unit));
+    }
+
+    private ParserData<?> select(Collection<? extends ParserData<?>> data) {
+        if (data == null) {
+            return null;
+        }
+
+        for (ParserData<?> result : data) {
+            if (result.getDefinition().equals(definition)) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.netbeans.parsing.spi.impl;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.antlr.netbeans.parsing.spi.ParserData;
+import org.antlr.netbeans.parsing.spi.ParserDataDefinition;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * Selects the result for a single {@link ParserDataDefinition} from a
+ * scheduled task which computes several of them at once. Cancelling this
+ * future only marks the selection as cancelled and notifies the owner of the
+ * shared task, which decides when the task itself may be cancelled.
+ *
+ * @author Sam Harwell
+ */
+class SelectedScheduledDataFuture extends SelectedDataFuture implements ScheduledFuture<ParserData<?>> {
+    @NonNull
+    private final ScheduledFuture<? extends Collection<? extends ParserData<?>>> results;
+    @NonNull
+    private final CancelHandler cancelHandler;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    public SelectedScheduledDataFuture(@NonNull ScheduledFuture<? extends Collection<? extends ParserData<?>>> results, @NonNull ParserDataDefinition<?> definition, @NonNull CancelHandler cancelHandler) {
+        super(results, definition);
+        Parameters.notNull("cancelHandler", cancelHandler);
+        this.results = results;
+        this.cancelHandler = cancelHandler;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (results.isDone() || !cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+
+        cancelHandler.selectionCancelled(mayInterruptIfRunning);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get() || super.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return cancelled.get() || super.isDone();
+    }
+
+    @Override
+    public ParserData<?> get() throws InterruptedException, ExecutionException {
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+
+        return super.get();
+    }
+
+    @Override
+    public ParserData<?> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+
+        return super.get(timeout, unit);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return results.getDelay(unit);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (o == this) {
+            return 0;
+        }
+
+        long delay = getDelay(TimeUnit.NANOSECONDS);
+        long otherDelay = o.getDelay(TimeUnit.NANOSECONDS);
+        return delay < otherDelay ? -1 : (delay > otherDelay ? 1 : 0);
+    }
+
+    /**
+     * Receives the cancellation of a selection from a shared task.
+     */
+    interface CancelHandler {
+
+        void selectionCancelled(boolean mayInterruptIfRunning);
+
+    }
+}
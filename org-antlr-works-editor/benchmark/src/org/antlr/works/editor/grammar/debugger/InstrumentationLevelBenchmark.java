@@ -0,0 +1,236 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Vocabulary;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.works.editor.grammar.debugger.ParserDebuggerReferenceAnchorsParserTask.TracingParserInterpreter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the overhead of each {@link InstrumentationLevel} of
+ * {@link StatisticsParserATNSimulator} and {@link TracingParserInterpreter}
+ * against a plain {@link ParserInterpreter} and {@link ParserATNSimulator}.
+ * The input is lexed once per trial, and the ATN is shared by every
+ * invocation, so the results describe the steady state of a warm DFA.
+ *
+ * <p>This class is not part of the module build, since the suite does not
+ * provide JMH. To run it, compile it against the module classes, the ANTLR 4
+ * tool, and {@code jmh-core}, with {@code jmh-generator-annprocess} on the
+ * annotation processor path, and run {@link #main}.</p>
+ *
+ * @author Sam Harwell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InstrumentationLevelBenchmark {
+    private static final String GRAMMAR =
+        "grammar Benchmark;\n"
+        + "program : statement* EOF ;\n"
+        + "statement\n"
+        + "  : expression ';'\n"
+        + "  | ID '=' expression ';'\n"
+        + "  | 'if' '(' expression ')' statement ('else' statement)?\n"
+        + "  | '{' statement* '}'\n"
+        + "  ;\n"
+        + "expression\n"
+        + "  : expression ('*' | '/') expression\n"
+        + "  | expression ('+' | '-') expression\n"
+        + "  | '(' expression ')'\n"
+        + "  | ID '(' (expression (',' expression)*)? ')'\n"
+        + "  | ID\n"
+        + "  | INT\n"
+        + "  ;\n"
+        + "ID : [a-zA-Z_] [a-zA-Z_0-9]* ;\n"
+        + "INT : [0-9]+ ;\n"
+        + "WS : [ \\t\\r\\n]+ -> skip ;\n";
+
+    /**
+     * {@code BASELINE} parses with a plain {@link ParserInterpreter}, and the
+     * other values name the {@link InstrumentationLevel} of the statistics
+     * simulator.
+     */
+    @Param({"BASELINE", "OFF", "COUNTERS", "SAMPLED", "FULL"})
+    public String level;
+
+    @Param({"2000"})
+    public int statementCount;
+
+    private String grammarFileName;
+    private Vocabulary vocabulary;
+    private List<String> ruleNames;
+    private ATN atn;
+    private int startRuleIndex;
+    private CommonTokenStream tokenStream;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Grammar grammar = new Grammar(GRAMMAR);
+        grammarFileName = grammar.fileName;
+        vocabulary = grammar.getVocabulary();
+        ruleNames = Arrays.asList(grammar.getRuleNames());
+        atn = grammar.atn;
+        startRuleIndex = grammar.getRule("program").index;
+
+        LexerInterpreter lexer = grammar.createLexerInterpreter(new ANTLRInputStream(createInput(statementCount)));
+        lexer.removeErrorListeners();
+        tokenStream = new CommonTokenStream(lexer);
+        tokenStream.fill();
+    }
+
+    @Benchmark
+    public ParserRuleContext parse() {
+        tokenStream.seek(0);
+
+        ParserInterpreter parser;
+        if ("BASELINE".equals(level)) {
+            parser = new ParserInterpreter(grammarFileName, vocabulary, ruleNames, atn, tokenStream);
+            parser.setInterpreter(new ParserATNSimulator(parser, atn));
+        } else {
+            InstrumentationLevel instrumentationLevel = InstrumentationLevel.valueOf(level);
+            TracingParserInterpreter tracingParser = new TracingParserInterpreter(grammarFileName, vocabulary, ruleNames, atn, tokenStream);
+            tracingParser.setInstrumentationLevel(instrumentationLevel, StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL);
+            StatisticsParserATNSimulator simulator = new StatisticsParserATNSimulator(tracingParser, atn);
+            simulator.setInstrumentationLevel(instrumentationLevel, StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL);
+            tracingParser.setInterpreter(simulator);
+            parser = tracingParser;
+        }
+
+        parser.removeErrorListeners();
+        parser.setBuildParseTree(true);
+        return parser.parse(startRuleIndex);
+    }
+
+    private static String createInput(int statementCount) {
+        // a fixed seed keeps the input identical across forks and levels
+        Random random = new Random(0);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < statementCount; i++) {
+            appendStatement(builder, random, 0);
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendStatement(StringBuilder builder, Random random, int depth) {
+        switch (depth < 3 ? random.nextInt(4) : random.nextInt(2)) {
+        case 0:
+            appendExpression(builder, random, 0);
+            builder.append(';');
+            break;
+
+        case 1:
+            builder.append("x").append(random.nextInt(100)).append(" = ");
+            appendExpression(builder, random, 0);
+            builder.append(';');
+            break;
+
+        case 2:
+            builder.append("if (");
+            appendExpression(builder, random, 0);
+            builder.append(") ");
+            appendStatement(builder, random, depth + 1);
+            if (random.nextBoolean()) {
+                builder.append(" else ");
+                appendStatement(builder, random, depth + 1);
+            }
+
+            break;
+
+        default:
+            builder.append("{ ");
+            for (int i = random.nextInt(4); i > 0; i--) {
+                appendStatement(builder, random, depth + 1);
+                builder.append(' ');
+            }
+
+            builder.append('}');
+            break;
+        }
+    }
+
+    private static void appendExpression(StringBuilder builder, Random random, int depth) {
+        switch (depth < 4 ? random.nextInt(6) : 4 + random.nextInt(2)) {
+        case 0:
+            appendExpression(builder, random, depth + 1);
+            builder.append(random.nextBoolean() ? " * " : " / ");
+            appendExpression(builder, random, depth + 1);
+            break;
+
+        case 1:
+            appendExpression(builder, random, depth + 1);
+            builder.append(random.nextBoolean() ? " + " : " - ");
+            appendExpression(builder, random, depth + 1);
+            break;
+
+        case 2:
+            builder.append('(');
+            appendExpression(builder, random, depth + 1);
+            builder.append(')');
+            break;
+
+        case 3:
+            builder.append('f').append(random.nextInt(10)).append('(');
+            for (int i = random.nextInt(3); i > 0; i--) {
+                appendExpression(builder, random, depth + 1);
+                if (i > 1) {
+                    builder.append(", ");
+                }
+            }
+
+            builder.append(')');
+            break;
+
+        case 4:
+            builder.append('y').append(random.nextInt(100));
+            break;
+
+        default:
+            builder.append(random.nextInt(1000));
+            break;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(InstrumentationLevelBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -28,7 +28,9 @@ import org.antlr.v4.runtime.Token;
 import org.antlr.works.editor.grammar.codemodel.FileModel;
 import org.antlr.works.editor.grammar.experimental.CurrentRuleContextData;
 import org.antlr.works.editor.grammar.experimental.generated.AbstractGrammarParser.GrammarSpecContext;
+import org.antlr.works.editor.grammar.parser.CompiledFileModelV4;
 import org.antlr.works.editor.grammar.parser.CompiledModel;
+import org.antlr.works.editor.grammar.parser.CompiledModelV4;
 import org.antlr.works.editor.grammar.semantics.GrammarAnnotatedParseTree;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 
@@ -39,6 +41,14 @@ import org.netbeans.api.editor.mimelookup.MimeRegistration;
 public class GrammarParserDataDefinitions {
     private static final Logger LOGGER = Logger.getLogger(GrammarParserDataDefinitions.class.getName());
 
+    /**
+     * The estimated number of bytes retained per token of a compiled grammar,
+     * which covers the token, its AST node, and the share of the rule and ATN
+     * structures created by the tool.
+     */
+    private static final int COMPILED_MODEL_BYTES_PER_TOKEN = 512;
+    private static final int CODE_ELEMENT_SIZE = 256;
+
     public static final ParserDataDefinition<CompiledModel> COMPILED_MODEL = new CompiledModelDataDefinition();
 
     public static final ParserDataDefinition<List<Anchor>> REFERENCE_ANCHOR_POINTS = new ReferenceAnchorPointsDataDefinition();
@@ -130,6 +140,25 @@ public class GrammarParserDataDefinitions {
             super("Grammar Compiled Model", CompiledModel.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<CompiledModel> data) {
+            CompiledModel model = data.getData();
+            if (model == null || model.getResult().getTokens() == null) {
+                return super.estimateRetainedSize(data);
+            }
+
+            long tokenCount = model.getResult().getTokens().length;
+            if (model instanceof CompiledModelV4) {
+                for (CompiledFileModelV4 importedResult : ((CompiledModelV4)model).getImportedGrammarResults()) {
+                    if (importedResult.getTokens() != null) {
+                        tokenCount += importedResult.getTokens().length;
+                    }
+                }
+            }
+
+            return COMPILED_MODEL_BYTES_PER_TOKEN * tokenCount;
+        }
+
     }
 
     private static final class ReferenceAnchorPointsDataDefinition extends ParserDataDefinition<List<Anchor>> {
@@ -147,6 +176,11 @@ public class GrammarParserDataDefinitions {
             super("Grammar Reference Parse Tree", GrammarSpecContext.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<GrammarSpecContext> data) {
+            return estimateParseTreeSize(data.getData());
+        }
+
     }
 
     private static final class AnnotatedParseTreeDataDefinition extends ParserDataDefinition<GrammarAnnotatedParseTree> {
@@ -155,6 +189,17 @@ public class GrammarParserDataDefinitions {
             super("Grammar Annotated Parse Tree", GrammarAnnotatedParseTree.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<GrammarAnnotatedParseTree> data) {
+            GrammarAnnotatedParseTree annotatedParseTree = data.getData();
+            if (annotatedParseTree == null) {
+                return 0;
+            }
+
+            // the annotations hold about as much as the tree itself
+            return 2 * estimateParseTreeSize(annotatedParseTree.getParseTree());
+        }
+
     }
 
     private static final class DynamicAnchorPointsDataDefinition extends ParserDataDefinition<List<Anchor>> {
@@ -189,6 +234,18 @@ public class GrammarParserDataDefinitions {
             super("Grammar File Model", FileModel.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<FileModel> data) {
+            FileModel fileModel = data.getData();
+            if (fileModel == null) {
+                return 0;
+            }
+
+            long elementCount = 1 + fileModel.getRules().size() + fileModel.getModes().size() + fileModel.getChannels().size()
+                + fileModel.getImportDeclarations().size() + fileModel.getTokenVocabDeclaration().size();
+            return CODE_ELEMENT_SIZE * elementCount;
+        }
+
     }
 
     private static final class NavigatorRootDataDefinition extends ParserDataDefinition<Description> {
@@ -27,7 +27,7 @@ public abstract class AbstractAttributeModel extends AbstractCodeElementModel im
     private final OffsetRegion span;
 
     protected AbstractAttributeModel(String name, String type, FileModelImpl file, Collection<? extends TerminalNode> definitions, Collection<? extends TerminalNode> uses) {
-        super(name, file);
+        super(name, file.getReference());
         this.type = type;
 
         if (definitions != null && !definitions.isEmpty()) {
@@ -41,7 +41,7 @@ public abstract class AbstractAttributeModel extends AbstractCodeElementModel im
     }
 
     protected AbstractAttributeModel(String name, String type, FileModelImpl file, TerminalNode seek, ParserRuleContext span) {
-        super(name, file);
+        super(name, file.getReference());
         this.type = type;
         this.seek = getOffsetRegion(seek);
         this.span = getOffsetRegion(span);
@@ -40,18 +40,28 @@ public abstract class AbstractCodeElementModel implements CodeElementModel {
     private final String packagePath;
     @NullAllowed
     private final FileModelImpl file;
+    @NullAllowed
+    private final FileReference fileReference;
 
     private boolean frozen;
 
     public AbstractCodeElementModel(@NonNull String name, @NullAllowed Project project, @NonNull String packagePath) {
-        this(name, project, packagePath, null);
+        this(name, project, packagePath, null, null);
     }
 
     public AbstractCodeElementModel(@NonNull String name, @NonNull FileModelImpl file) {
-        this(name, file.getProject(), file.getPackagePath(), file);
+        this(name, file.getProject(), file.getPackagePath(), file, file.getReference());
+    }
+
+    /**
+     * Creates an element which does not hold a reference to a particular
+     * version of its file model, so it can be shared by several versions.
+     */
+    AbstractCodeElementModel(@NonNull String name, @NonNull FileReference fileReference) {
+        this(name, fileReference.getProject(), fileReference.getPackagePath(), null, fileReference);
     }
 
-    private AbstractCodeElementModel(@NonNull String name, @NullAllowed Project project, @NonNull String packagePath, @NullAllowed FileModelImpl file) {
+    private AbstractCodeElementModel(@NonNull String name, @NullAllowed Project project, @NonNull String packagePath, @NullAllowed FileModelImpl file, @NullAllowed FileReference fileReference) {
         Parameters.notNull("name", name);
         Parameters.notNull("packagePath", packagePath);
 
@@ -59,6 +69,7 @@ public abstract class AbstractCodeElementModel implements CodeElementModel {
         this.project = project;
         this.packagePath = packagePath;
         this.file = file;
+        this.fileReference = fileReference;
     }
 
     @CheckForNull
@@ -94,11 +105,22 @@ public abstract class AbstractCodeElementModel implements CodeElementModel {
         return name;
     }
 
+    /**
+     * Gets the file model this element belongs to. Rules and their members
+     * may be shared by several versions of a file, so this returns
+     * {@code null} for them; use {@link #getFileReference} to identify their
+     * file.
+     */
     @CheckForNull
     public FileModelImpl getFile() {
         return file;
     }
 
+    @CheckForNull
+    FileReference getFileReference() {
+        return fileReference;
+    }
+
     @Override
     public abstract Collection<? extends AbstractCodeElementModel> getMembers();
 
@@ -29,6 +29,20 @@ public class ChannelModelImpl extends AbstractCodeElementModel implements Channe
         this.span = getOffsetRegion(span);
     }
 
+    ChannelModelImpl(String name, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file);
+        this.seek = seek;
+        this.span = span;
+    }
+
+    OffsetRegion getSeekRegion() {
+        return seek;
+    }
+
+    OffsetRegion getSpanRegion() {
+        return span;
+    }
+
     @Override
     public Collection<? extends AbstractCodeElementModel> getMembers() {
         return Collections.emptyList();
@@ -37,12 +37,12 @@ public class CodeElementPositionRegionImpl implements CodeElementPositionRegion
         this._model = model;
         this._region = region;
 
-        FileModelImpl fileModel = model.getFile();
-        if (fileModel == null) {
+        FileReference fileReference = model.getFileReference();
+        if (fileReference == null) {
             throw new IllegalArgumentException();
         }
 
-        FileObject fileObject = fileModel.getFileObject();
+        FileObject fileObject = fileReference.getFileObject();
         if (fileObject == null) {
             throw new IllegalArgumentException();
         }
@@ -0,0 +1,435 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.grammar.codemodel.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.netbeans.editor.text.OffsetRegion;
+import org.antlr.works.editor.grammar.codemodel.TokenData;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.modules.Places;
+import org.openide.util.Parameters;
+
+/**
+ * Stores the top-level code model of the grammars in a project on disk, so
+ * the code model for files which have not been opened is available without
+ * parsing them again.
+ *
+ * <p>The index file is read into memory in a single pass when it is loaded,
+ * and the model of a file is only decoded when it is requested. A stored model is only returned
+ * if the size and time stamp of the file match the values recorded when the
+ * model was stored.</p>
+ *
+ * <p>The index holds rules, tokens, modes, channels, imports and token
+ * vocabulary declarations. Rule members (parameters, return values, locals
+ * and labels) are not stored; they are built when a file is opened.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class CodeModelIndex {
+    // -J-Dorg.antlr.works.editor.grammar.codemodel.impl.CodeModelIndex.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(CodeModelIndex.class.getName());
+
+    private static final String CACHE_FOLDER = "antlrworks/codemodel";
+    private static final int MAGIC = 0x414E4958;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte PARSER_RULE = 0;
+    private static final byte LEXER_RULE = 1;
+    private static final byte TOKEN_RULE = 2;
+
+    @NonNull
+    private final Project project;
+    @NonNull
+    private final FileObject projectDirectory;
+    @NonNull
+    private final File indexFile;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean modified;
+
+    private CodeModelIndex(@NonNull Project project, @NonNull File indexFile) {
+        this.project = project;
+        this.projectDirectory = project.getProjectDirectory();
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Loads the index for a project. If the index does not exist or cannot be
+     * read, an empty index is returned.
+     */
+    @NonNull
+    public static CodeModelIndex load(@NonNull Project project) {
+        Parameters.notNull("project", project);
+
+        String projectPath = project.getProjectDirectory().getPath();
+        File folder = Places.getCacheSubdirectory(CACHE_FOLDER);
+        File indexFile = new File(folder, Integer.toHexString(projectPath.hashCode()) + ".idx");
+        CodeModelIndex index = new CodeModelIndex(project, indexFile);
+        if (!indexFile.isFile()) {
+            return index;
+        }
+
+        try {
+            // the index is read rather than memory mapped: a mapping keeps the
+            // file open until the buffer is collected, which prevents save()
+            // from replacing it on Windows, and the decoded entries of a
+            // project index are small enough that the copy is not a concern
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !projectPath.equals(readString(buffer))) {
+                LOGGER.log(Level.FINE, "Ignoring incompatible code model index {0}.", indexFile);
+                return index;
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                long lastModified = buffer.getLong();
+                long size = buffer.getLong();
+                int length = buffer.getInt();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                index.entries.put(path, new Entry(lastModified, size, ByteBuffer.wrap(payload)));
+            }
+
+            LOGGER.log(Level.FINE, "Loaded code model index {0} with {1} files.", new Object[] { indexFile, count });
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException ex) {
+            LOGGER.log(Level.FINE, "Could not read code model index " + indexFile, ex);
+            index.entries.clear();
+        }
+
+        return index;
+    }
+
+    @NonNull
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * Gets the path of {@code fileObject} relative to the project directory,
+     * which is the key used for the file in this index.
+     */
+    @CheckForNull
+    public String getRelativePath(@NonNull FileObject fileObject) {
+        return FileUtil.getRelativePath(projectDirectory, fileObject);
+    }
+
+    /**
+     * Gets the stored model for {@code fileObject}, if it is still up to date.
+     *
+     * @return The file model, or {@code null} if the file is not in the index
+     * or has changed since its model was stored.
+     */
+    @CheckForNull
+    public synchronized FileModelImpl getFileModel(@NonNull FileObject fileObject) {
+        String path = getRelativePath(fileObject);
+        Entry entry = path != null ? entries.get(path) : null;
+        if (entry == null || !entry.isCurrent(fileObject)) {
+            return null;
+        }
+
+        try {
+            return readFileModel(fileObject, entry.data.duplicate());
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            LOGGER.log(Level.FINE, "Discarding corrupt code model index entry for " + path, ex);
+            entries.remove(path);
+            modified = true;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the model of {@code fileObject}, as built from the saved contents
+     * which had the specified modification time and size.
+     */
+    public synchronized void putFileModel(@NonNull FileObject fileObject, @NonNull FileModelImpl fileModel, long lastModified, long size) {
+        String path = getRelativePath(fileObject);
+        if (path == null) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            writeFileModel(output, fileModel);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        entries.put(path, new Entry(lastModified, size, ByteBuffer.wrap(bytes.toByteArray())));
+        modified = true;
+    }
+
+    /**
+     * Removes every file from the index which is not in {@code paths}.
+     */
+    public synchronized void retainAll(@NonNull Collection<String> paths) {
+        if (entries.keySet().retainAll(paths)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the index to disk if it changed since it was loaded.
+     */
+    public synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        File temporaryFile = new File(indexFile.getPath() + ".tmp");
+        try (OutputStream stream = new FileOutputStream(temporaryFile);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            writeString(output, projectDirectory.getPath());
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                ByteBuffer data = entry.getValue().data.duplicate();
+                byte[] payload = new byte[data.remaining()];
+                data.get(payload);
+
+                writeString(output, entry.getKey());
+                output.writeLong(entry.getValue().lastModified);
+                output.writeLong(entry.getValue().size);
+                output.writeInt(payload.length);
+                output.write(payload);
+            }
+        }
+
+        try {
+            // a concurrent load sees either the old or the new index, and a
+            // crash cannot leave the index missing
+            Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            temporaryFile.delete();
+            throw new IOException("Could not replace code model index " + indexFile, ex);
+        }
+
+        modified = false;
+    }
+
+    private FileModelImpl readFileModel(FileObject fileObject, ByteBuffer data) {
+        String packagePath = readString(data);
+        FileModelImpl fileModel = new FileModelImpl(fileObject, project, packagePath);
+
+        int importCount = data.getInt();
+        for (int i = 0; i < importCount; i++) {
+            String name = readString(data);
+            String target = readString(data);
+            fileModel.getImportDeclarations().add(new ImportDeclarationModelImpl(name, target, fileModel, readRegion(data), readRegion(data)));
+        }
+
+        int vocabCount = data.getInt();
+        for (int i = 0; i < vocabCount; i++) {
+            fileModel.getTokenVocabDeclaration().add(new TokenVocabDeclarationModelImpl(readString(data), fileModel));
+        }
+
+        int channelCount = data.getInt();
+        for (int i = 0; i < channelCount; i++) {
+            String name = readString(data);
+            fileModel.getChannels().add(new ChannelModelImpl(name, fileModel, readRegion(data), readRegion(data)));
+        }
+
+        int modeCount = data.getInt();
+        for (int i = 0; i < modeCount; i++) {
+            String name = readString(data);
+            ModeModelImpl modeModel = new ModeModelImpl(name, fileModel, readRegion(data), readRegion(data));
+            readRules(data, fileModel, modeModel, modeModel.getRules());
+            fileModel.getModes().add(modeModel);
+        }
+
+        readRules(data, fileModel, null, fileModel.getRules());
+        fileModel.freeze();
+        return fileModel;
+    }
+
+    private static void readRules(ByteBuffer data, FileModelImpl fileModel, @NullAllowed ModeModelImpl modeModel, Collection<RuleModelImpl> rules) {
+        int count = data.getInt();
+        for (int i = 0; i < count; i++) {
+            byte kind = data.get();
+            String name = readString(data);
+            boolean fragment = data.get() != 0;
+            boolean generateTokenType = data.get() != 0;
+            String literal = readString(data);
+            boolean explicitEof = data.get() != 0;
+            OffsetRegion seek = readRegion(data);
+            OffsetRegion span = readRegion(data);
+
+            RuleModelImpl ruleModel;
+            switch (kind) {
+            case PARSER_RULE:
+                ruleModel = new ParserRuleModelImpl(name, fileModel, seek, span);
+                break;
+
+            case LEXER_RULE:
+                ruleModel = new LexerRuleModelImpl(name, modeModel, fragment, generateTokenType, literal, fileModel, seek, span);
+                break;
+
+            case TOKEN_RULE:
+                ruleModel = new TokenRuleModelImpl(name, literal, fileModel, seek, span);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown rule kind: " + kind);
+            }
+
+            ruleModel.setExplicitEof(explicitEof);
+            rules.add(ruleModel);
+        }
+    }
+
+    private static void writeFileModel(DataOutputStream output, FileModelImpl fileModel) throws IOException {
+        writeString(output, fileModel.getPackagePath());
+
+        output.writeInt(fileModel.getImportDeclarations().size());
+        for (ImportDeclarationModelImpl importModel : fileModel.getImportDeclarations()) {
+            writeString(output, importModel.getName());
+            writeString(output, importModel.getTarget());
+            writeRegion(output, importModel.getSeekRegion());
+            writeRegion(output, importModel.getSpanRegion());
+        }
+
+        output.writeInt(fileModel.getTokenVocabDeclaration().size());
+        for (TokenVocabDeclarationModelImpl vocabModel : fileModel.getTokenVocabDeclaration()) {
+            writeString(output, vocabModel.getName());
+        }
+
+        output.writeInt(fileModel.getChannels().size());
+        for (ChannelModelImpl channelModel : fileModel.getChannels()) {
+            writeString(output, channelModel.getName());
+            writeRegion(output, channelModel.getSeekRegion());
+            writeRegion(output, channelModel.getSpanRegion());
+        }
+
+        output.writeInt(fileModel.getModes().size());
+        for (ModeModelImpl modeModel : fileModel.getModes()) {
+            writeString(output, modeModel.getName());
+            writeRegion(output, modeModel.getSeekRegion());
+            writeRegion(output, modeModel.getSpanRegion());
+            writeRules(output, modeModel.getRules());
+        }
+
+        writeRules(output, fileModel.getRules());
+    }
+
+    private static void writeRules(DataOutputStream output, Collection<RuleModelImpl> rules) throws IOException {
+        List<RuleModelImpl> ruleList = new ArrayList<>(rules);
+        output.writeInt(ruleList.size());
+        for (RuleModelImpl ruleModel : ruleList) {
+            byte kind;
+            boolean fragment = false;
+            TokenData tokenData = null;
+            if (ruleModel instanceof TokenRuleModelImpl) {
+                kind = TOKEN_RULE;
+                tokenData = ((TokenRuleModelImpl)ruleModel).getTokenData();
+            } else if (ruleModel instanceof LexerRuleModelImpl) {
+                kind = LEXER_RULE;
+                fragment = ((LexerRuleModelImpl)ruleModel).isFragment();
+                tokenData = ((LexerRuleModelImpl)ruleModel).getTokenData();
+            } else {
+                kind = PARSER_RULE;
+            }
+
+            output.writeByte(kind);
+            writeString(output, ruleModel.getName());
+            output.writeBoolean(fragment);
+            output.writeBoolean(tokenData != null);
+            writeString(output, tokenData != null ? tokenData.getLiteral() : null);
+            output.writeBoolean(ruleModel.hasExplicitEof());
+            writeRegion(output, ruleModel.getSeekRegion());
+            writeRegion(output, ruleModel.getSpanRegion());
+        }
+    }
+
+    @CheckForNull
+    private static String readString(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, @NullAllowed String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @CheckForNull
+    private static OffsetRegion readRegion(ByteBuffer data) {
+        int start = data.getInt();
+        int length = data.getInt();
+        if (start < 0) {
+            return null;
+        }
+
+        return new OffsetRegion(start, length);
+    }
+
+    private static void writeRegion(DataOutputStream output, @NullAllowed OffsetRegion region) throws IOException {
+        if (region == null) {
+            output.writeInt(-1);
+            output.writeInt(0);
+            return;
+        }
+
+        output.writeInt(region.getStart());
+        output.writeInt(region.getLength());
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+        private final long size;
+        @NonNull
+        private final ByteBuffer data;
+
+        public Entry(long lastModified, long size, @NonNull ByteBuffer data) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.data = data;
+        }
+
+        public boolean isCurrent(@NonNull FileObject fileObject) {
+            return fileObject.getSize() == size && fileObject.lastModified().getTime() == lastModified;
+        }
+    }
+}
@@ -13,12 +13,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.api.annotations.common.NullAllowed;
@@ -30,12 +35,21 @@ import org.openide.util.Exceptions;
  * @author Sam Harwell
  */
 public class CodeModelProjectCache {
+    // -J-Dorg.antlr.works.editor.grammar.codemodel.impl.CodeModelProjectCache.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(CodeModelProjectCache.class.getName());
+
     @NullAllowed
     private final Project project;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    private final Map<String, FileModelImpl> files = new HashMap<>();
+    /**
+     * Serializes writers of {@link #files} and the package file maps, so each
+     * package holds the version of a file which was last put in
+     * {@link #files}. Readers do not take this lock.
+     */
+    private final Object fileUpdateLock = new Object();
+
+    private final ConcurrentMap<String, FileModelImpl> files = new ConcurrentHashMap<>();
     private final Set<PackageModelImpl> packages = new HashSet<>();
     private final Map<String, PackageModelImpl> packagesByPath = new HashMap<>();
     private final Map<String, Collection<PackageModelImpl>> packagesByName = new HashMap<>();
@@ -89,23 +103,87 @@ public class CodeModelProjectCache {
         });
     }
 
+    /**
+     * Publishes a new version of a file, replacing the previous version as a
+     * whole. Rules which did not change are shared by both versions (see
+     * {@link FileModelImpl#reuseRule}), so they keep their identity. The
+     * package structure is only locked for writing when the file belongs to a
+     * package which is not in the cache yet, so readers are not blocked by
+     * routine updates of open files.
+     */
     public void updateFile(@NonNull final FileModelImpl fileModel) {
         assert fileModel.isFrozen();
         assert fileModel.getProject() == getProject();
 
-        lockedWrite(new Runnable() {
+        String packagePath = fileModel.getPackagePath();
+        PackageModelImpl packageModel = getOrCreatePackage(packagePath);
 
-            @Override
-            public void run() {
-                files.put(fileModel.getName(), fileModel);
+        FileModelImpl previous;
+        synchronized (fileUpdateLock) {
+            previous = files.put(fileModel.getName(), fileModel);
+            if (previous != null && previous != fileModel && !previous.getPackagePath().equals(packagePath)) {
+                PackageModelImpl previousPackage = getUniquePackage(previous.getPackagePath());
+                if (previousPackage != null) {
+                    previousPackage.removeFile(previous);
+                }
+            }
+
+            packageModel.updateFile(fileModel);
+        }
+
+        if (LOGGER.isLoggable(Level.FINE) && previous != null && previous != fileModel) {
+            int shared = 0;
+            Set<RuleModelImpl> previousRules = Collections.newSetFromMap(new IdentityHashMap<RuleModelImpl, Boolean>());
+            previousRules.addAll(previous.getRules());
+            for (RuleModelImpl rule : fileModel.getRules()) {
+                if (previousRules.contains(rule)) {
+                    shared++;
+                }
+            }
+
+            LOGGER.log(Level.FINE, "Replaced file {0}: {1} rules shared with the previous version, {2} rebuilt.",
+                new Object[] { fileModel.getName(), shared, fileModel.getRules().size() - shared });
+        }
+    }
+
+    /**
+     * Adds a file which was loaded from the on-disk index, unless a version of
+     * the file has already been published by the editor.
+     *
+     * @return {@code true} if the file was added.
+     */
+    public boolean addIndexedFile(@NonNull FileModelImpl fileModel) {
+        assert fileModel.isFrozen();
+        assert fileModel.getProject() == getProject();
+
+        PackageModelImpl packageModel = getOrCreatePackage(fileModel.getPackagePath());
+        synchronized (fileUpdateLock) {
+            if (files.putIfAbsent(fileModel.getName(), fileModel) != null) {
+                return false;
+            }
+
+            packageModel.updateFile(fileModel);
+            return true;
+        }
+    }
 
-                String packagePath = fileModel.getPackagePath();
-                PackageModelImpl packageModel = getUniquePackage(packagePath);
-                if (packageModel == null) {
+    @NonNull
+    private PackageModelImpl getOrCreatePackage(@NonNull final String packagePath) {
+        PackageModelImpl packageModel = getUniquePackage(packagePath);
+        if (packageModel != null) {
+            return packageModel;
+        }
+
+        return lockedWrite(new Callable<PackageModelImpl>() {
+
+            @Override
+            public PackageModelImpl call() {
+                PackageModelImpl result = packagesByPath.get(packagePath);
+                if (result == null) {
                     String packageName = packagePath.substring(packagePath.lastIndexOf('/') + 1);
-                    packageModel = new PackageModelImpl(packageName, project, packagePath);
-                    packages.add(packageModel);
-                    packagesByPath.put(packagePath, packageModel);
+                    result = new PackageModelImpl(packageName, project, packagePath);
+                    packages.add(result);
+                    packagesByPath.put(packagePath, result);
 
                     Collection<PackageModelImpl> set = packagesByName.get(packageName);
                     if (set == null) {
@@ -113,10 +191,10 @@ public class CodeModelProjectCache {
                         packagesByName.put(packageName, set);
                     }
 
-                    set.add(packageModel);
+                    set.add(result);
                 }
 
-                packageModel.updateFile(fileModel);
+                return result;
             }
 
         });
@@ -139,6 +217,23 @@ public class CodeModelProjectCache {
         }
     }
 
+    protected <T> T lockedWrite(Callable<T> callable) {
+        Lock writeLock = lock.writeLock();
+        boolean locked = false;
+        try {
+            writeLock.lock();
+            locked = true;
+            return callable.call();
+        } catch (Exception ex) {
+            Exceptions.printStackTrace(ex);
+            throw new RuntimeException(ex);
+        } finally {
+            if (locked) {
+                writeLock.unlock();
+            }
+        }
+    }
+
     protected void lockedWrite(Runnable runnable) {
         Lock writeLock = lock.writeLock();
         boolean locked = false;
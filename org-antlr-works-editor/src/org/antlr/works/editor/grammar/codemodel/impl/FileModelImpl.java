@@ -27,6 +27,8 @@ public class FileModelImpl extends AbstractCodeElementModel implements FileModel
     @NullAllowed
     private final FileObject fileObject;
     @NonNull
+    private final FileReference reference;
+    @NonNull
     private final FreezableArrayList<ImportDeclarationModelImpl> importDeclarations = new FreezableArrayList<>();
     @NonNull
     private final FreezableArrayList<TokenVocabDeclarationModelImpl> tokenVocabDeclarations = new FreezableArrayList<>();
@@ -42,17 +44,24 @@ public class FileModelImpl extends AbstractCodeElementModel implements FileModel
     public FileModelImpl(@NonNull FileObject fileObject, @NullAllowed Project project, @NonNull String packagePath) {
         super(fileObject.getNameExt(), project, packagePath);
         this.fileObject = fileObject;
+        this.reference = new FileReference(getName(), project, packagePath, fileObject);
     }
 
     public FileModelImpl(String name, Project project, String packagePath) {
         super(name, project, packagePath);
         this.fileObject = null;
+        this.reference = new FileReference(name, project, packagePath, null);
     }
 
     public FileObject getFileObject() {
         return fileObject;
     }
 
+    @NonNull
+    FileReference getReference() {
+        return reference;
+    }
+
     @Override
     public Collection<ImportDeclarationModelImpl> getImportDeclarations() {
         return importDeclarations;
@@ -99,6 +108,34 @@ public class FileModelImpl extends AbstractCodeElementModel implements FileModel
         return CodeModelCacheImpl.findElementsByName(getRules(), name);
     }
 
+    /**
+     * Adds a rule which was created for a previous version of this file and
+     * whose source has not changed since. Rules only refer to their file
+     * through a {@link FileReference}, so the frozen rule is shared with the
+     * previous version instead of being copied.
+     *
+     * @param rule The rule to reuse.
+     * @return {@code true} if {@code rule} was added to this file, or
+     * {@code false} if the rule cannot be shared with this file and must be
+     * rebuilt.
+     */
+    public boolean reuseRule(@NonNull RuleModelImpl rule) {
+        ensureModifiable();
+
+        FileReference ruleFile = rule.getFileReference();
+        if (!rule.isFrozen() || ruleFile == null || !ruleFile.isSameFile(reference)) {
+            return false;
+        }
+
+        // lexer rules in a mode refer to the mode model of the previous file
+        if (rule.getMode() != null) {
+            return false;
+        }
+
+        rules.add(rule);
+        return true;
+    }
+
     @NonNull
     @Override
     public Collection<? extends AbstractCodeElementModel> getMembers() {
@@ -118,6 +155,10 @@ public class FileModelImpl extends AbstractCodeElementModel implements FileModel
         channels.freeze();
         modes.freeze();
         rules.freeze();
+        for (RuleModelImpl rule : rules) {
+            rule.freeze();
+        }
+
         super.freezeImpl();
     }
 
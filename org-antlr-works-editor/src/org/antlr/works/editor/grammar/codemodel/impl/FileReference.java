@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.grammar.codemodel.impl;
+
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.util.Parameters;
+
+/**
+ * Identifies the file a code element is declared in without referring to a
+ * particular {@link FileModelImpl} version of that file. Rules and their members
+ * hold a reference instead of the file model, so a frozen rule which did not
+ * change between two versions of a file can be shared by both versions.
+ *
+ * @author Sam Harwell
+ */
+final class FileReference {
+    @NonNull
+    private final String name;
+    @NullAllowed
+    private final Project project;
+    @NonNull
+    private final String packagePath;
+    @NullAllowed
+    private final FileObject fileObject;
+
+    public FileReference(@NonNull String name, @NullAllowed Project project, @NonNull String packagePath, @NullAllowed FileObject fileObject) {
+        Parameters.notNull("name", name);
+        Parameters.notNull("packagePath", packagePath);
+
+        this.name = name;
+        this.project = project;
+        this.packagePath = packagePath;
+        this.fileObject = fileObject;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @CheckForNull
+    public Project getProject() {
+        return project;
+    }
+
+    @NonNull
+    public String getPackagePath() {
+        return packagePath;
+    }
+
+    @CheckForNull
+    public FileObject getFileObject() {
+        return fileObject;
+    }
+
+    /**
+     * Determines whether this reference and {@code other} identify the same
+     * file.
+     */
+    public boolean isSameFile(@NonNull FileReference other) {
+        return name.equals(other.name)
+            && project == other.project
+            && packagePath.equals(other.packagePath)
+            && (fileObject == null ? other.fileObject == null : fileObject.equals(other.fileObject));
+    }
+}
@@ -35,6 +35,25 @@ public class ImportDeclarationModelImpl extends AbstractCodeElementModel impleme
         this.span = getOffsetRegion(span);
     }
 
+    ImportDeclarationModelImpl(String name, String target, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file);
+        this.target = target;
+        this.seek = seek;
+        this.span = span;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    OffsetRegion getSeekRegion() {
+        return seek;
+    }
+
+    OffsetRegion getSpanRegion() {
+        return span;
+    }
+
     @Override
     public Collection<? extends AbstractCodeElementModel> getMembers() {
         return Collections.emptyList();
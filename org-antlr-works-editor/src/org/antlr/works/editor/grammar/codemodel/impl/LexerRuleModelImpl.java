@@ -10,6 +10,7 @@ package org.antlr.works.editor.grammar.codemodel.impl;
 
 import java.util.Collection;
 import java.util.Collections;
+import org.antlr.netbeans.editor.text.OffsetRegion;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.works.editor.grammar.codemodel.LexerRuleModel;
@@ -36,6 +37,14 @@ public class LexerRuleModelImpl extends RuleModelImpl implements LexerRuleModel
         this.literal = literal;
     }
 
+    LexerRuleModelImpl(String name, ModeModelImpl mode, boolean isFragment, boolean generateTokenType, String literal, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file, seek, span);
+        this.mode = mode;
+        this.isFragment = isFragment;
+        this.generateTokenType = generateTokenType;
+        this.literal = literal;
+    }
+
     @Override
     public RuleKind getRuleKind() {
         return RuleKind.LEXER;
@@ -32,6 +32,20 @@ public class ModeModelImpl extends AbstractCodeElementModel implements ModeModel
         this.span = getOffsetRegion(span);
     }
 
+    ModeModelImpl(String name, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file);
+        this.seek = seek;
+        this.span = span;
+    }
+
+    OffsetRegion getSeekRegion() {
+        return seek;
+    }
+
+    OffsetRegion getSpanRegion() {
+        return span;
+    }
+
     @Override
     public Collection<RuleModelImpl> getRules() {
         return rules;
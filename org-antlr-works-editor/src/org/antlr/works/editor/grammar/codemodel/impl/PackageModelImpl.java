@@ -10,6 +10,7 @@ package org.antlr.works.editor.grammar.codemodel.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +23,11 @@ import org.netbeans.api.project.Project;
  * @author Sam Harwell
  */
 public class PackageModelImpl extends AbstractCodeElementModel implements PackageModel {
-    private final Map<String, FileModelImpl> files = new HashMap<>();
+    /*
+     * Updates replace this map instead of modifying it, so readers never need
+     * to lock.
+     */
+    private volatile Map<String, FileModelImpl> files = Collections.emptyMap();
 
     public PackageModelImpl(String name, Project project, String path) {
         super(name, project, path);
@@ -38,8 +43,36 @@ public class PackageModelImpl extends AbstractCodeElementModel implements Packag
         return files.values();
     }
 
-    public void updateFile(FileModelImpl fileModel) {
-        files.put(fileModel.getName(), fileModel);
+    /**
+     * Publishes a new version of a file in this package.
+     *
+     * @return The previous version of the file, or {@code null} if the file
+     * was not part of this package.
+     */
+    public synchronized FileModelImpl updateFile(FileModelImpl fileModel) {
+        FileModelImpl previous = files.get(fileModel.getName());
+        if (previous == fileModel) {
+            return previous;
+        }
+
+        Map<String, FileModelImpl> updated = new HashMap<>(files);
+        updated.put(fileModel.getName(), fileModel);
+        files = Collections.unmodifiableMap(updated);
+        return previous;
+    }
+
+    /**
+     * Removes a file from this package if {@code fileModel} is its current
+     * version.
+     */
+    public synchronized void removeFile(FileModelImpl fileModel) {
+        if (files.get(fileModel.getName()) != fileModel) {
+            return;
+        }
+
+        Map<String, FileModelImpl> updated = new HashMap<>(files);
+        updated.remove(fileModel.getName());
+        files = Collections.unmodifiableMap(updated);
     }
 
     @Override
@@ -8,6 +8,7 @@
  */
 package org.antlr.works.editor.grammar.codemodel.impl;
 
+import org.antlr.netbeans.editor.text.OffsetRegion;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.works.editor.grammar.codemodel.ModeModel;
@@ -23,6 +24,10 @@ public class ParserRuleModelImpl extends RuleModelImpl {
         super(name, file, seek, span);
     }
 
+    ParserRuleModelImpl(String name, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file, seek, span);
+    }
+
     @Override
     public RuleKind getRuleKind() {
         return RuleKind.PARSER;
@@ -37,11 +37,17 @@ public abstract class RuleModelImpl extends AbstractCodeElementModel implements
     private boolean explicitEof;
 
     public RuleModelImpl(String name, FileModelImpl file, TerminalNode seek, ParserRuleContext span) {
-        super(name, file);
+        super(name, file.getReference());
         this.seek = getOffsetRegion(seek);
         this.span = getOffsetRegion(span);
     }
 
+    protected RuleModelImpl(String name, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, file.getReference());
+        this.seek = seek;
+        this.span = span;
+    }
+
     @Override
     public boolean hasExplicitEof() {
         return explicitEof;
@@ -102,6 +108,14 @@ public abstract class RuleModelImpl extends AbstractCodeElementModel implements
         return members;
     }
 
+    OffsetRegion getSeekRegion() {
+        return seek;
+    }
+
+    OffsetRegion getSpanRegion() {
+        return span;
+    }
+
     @Override
     public CodeElementPositionRegion getSeek() {
         if (this.seek == null) {
@@ -8,6 +8,7 @@
  */
 package org.antlr.works.editor.grammar.codemodel.impl;
 
+import org.antlr.netbeans.editor.text.OffsetRegion;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.works.editor.grammar.codemodel.RuleKind;
@@ -22,6 +23,10 @@ public class TokenRuleModelImpl extends LexerRuleModelImpl {
         super(name, null, false, true, literal, file, seek, span);
     }
 
+    TokenRuleModelImpl(String name, String literal, FileModelImpl file, OffsetRegion seek, OffsetRegion span) {
+        super(name, null, false, true, literal, file, seek, span);
+    }
+
     @Override
     public RuleKind getRuleKind() {
         return RuleKind.TOKEN;
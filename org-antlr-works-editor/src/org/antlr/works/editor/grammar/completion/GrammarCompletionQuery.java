@@ -59,10 +59,12 @@ import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.Rule;
 import org.antlr.works.editor.antlr4.classification.TaggerTokenSource;
 import org.antlr.works.editor.antlr4.completion.AbstractCompletionQuery;
+import org.antlr.works.editor.antlr4.completion.AbstractForestParser;
 import org.antlr.works.editor.antlr4.completion.CaretReachedException;
 import org.antlr.works.editor.antlr4.completion.CaretToken;
 import org.antlr.works.editor.antlr4.completion.CodeCompletionErrorStrategy;
 import org.antlr.works.editor.antlr4.completion.CodeCompletionTokenSource;
+import org.antlr.works.editor.antlr4.completion.ForestParseCache;
 import org.antlr.works.editor.antlr4.parsing.ParseTrees;
 import org.antlr.works.editor.grammar.GrammarParserDataDefinitions;
 import org.antlr.works.editor.grammar.codemodel.AttributeModel;
@@ -162,6 +164,8 @@ public final class GrammarCompletionQuery extends AbstractCompletionQuery {
 
             Map<RuleContext, CaretReachedException> parseTrees = null;
             CaretToken caretToken = null;
+            // the caret token of this query, when the parse trees were reused from a previous query
+            CaretToken reusedParseTreesCaretToken = null;
 
             final Collection<Description> rules = new ArrayList<>();
 
@@ -196,11 +200,30 @@ public final class GrammarCompletionQuery extends AbstractCompletionQuery {
                 TokenSource tokenSource = new CodeCompletionTokenSource(getCaretOffset(), taggerTokenSource);
                 CommonTokenStream tokens = new CommonTokenStream(tokenSource);
 
-                CodeCompletionGrammarParser parser = ParserFactory.DEFAULT.getParser(tokens);
-                parser.setBuildParseTree(true);
-                parser.setErrorHandler(new CodeCompletionErrorStrategy());
-                ATN atn = parser.getATN();
-                parseTrees = forestParser.getParseTrees(parser);
+                ATN atn = GrammarParser._ATN;
+
+                List<Token> tokensThroughCaret = ForestParseCache.getTokensThroughCaret(tokens);
+                if (tokensThroughCaret != null) {
+                    parseTrees = ForestParseCache.DEFAULT.getParseTrees(textBuffer, forestParser, tokensThroughCaret);
+                    if (parseTrees != null) {
+                        reusedParseTreesCaretToken = (CaretToken)tokensThroughCaret.get(tokensThroughCaret.size() - 1);
+                    }
+                }
+
+                if (parseTrees == null) {
+                    CodeCompletionGrammarParser parser = ParserFactory.DEFAULT.getParser(tokens);
+                    try {
+                        parser.setBuildParseTree(true);
+                        parser.setErrorHandler(new CodeCompletionErrorStrategy());
+                        parseTrees = forestParser.getParseTrees(parser);
+                    } finally {
+                        ParserFactory.DEFAULT.putParser(parser);
+                    }
+
+                    if (tokensThroughCaret != null && parseTrees != null && AbstractForestParser.isComplete(parseTrees)) {
+                        ForestParseCache.DEFAULT.putParseTrees(textBuffer, forestParser, tokensThroughCaret, parseTrees);
+                    }
+                }
 
                 boolean hasActionConfig = false;
                 boolean hasNonActionConfig = false;
@@ -357,6 +380,11 @@ public final class GrammarCompletionQuery extends AbstractCompletionQuery {
                 }
             }
 
+            if (reusedParseTreesCaretToken != null && caretToken != null) {
+                // the cached trees reference the caret token of the query which created them
+                caretToken = reusedParseTreesCaretToken;
+            }
+
             OffsetRegion applicableToSpan = getApplicableToSpan(snapshot, caretToken);
             applicableTo = snapshot.createTrackingRegion(applicableToSpan, TrackingPositionRegion.Bias.Inclusive);
         }
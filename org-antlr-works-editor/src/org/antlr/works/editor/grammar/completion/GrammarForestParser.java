@@ -12,7 +12,9 @@ import org.antlr.v4.runtime.Dependents;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.RuleDependencies;
 import org.antlr.v4.runtime.RuleDependency;
+import org.antlr.v4.runtime.TokenStream;
 import org.antlr.works.editor.antlr4.completion.AbstractForestParser;
+import org.antlr.works.editor.antlr4.completion.CodeCompletionErrorStrategy;
 import org.antlr.works.editor.grammar.experimental.GrammarParser;
 
 /**
@@ -42,6 +44,25 @@ public class GrammarForestParser extends AbstractForestParser<CodeCompletionGram
         _startRule = startRule;
     }
 
+    @Override
+    protected CodeCompletionGrammarParser createParser(TokenStream input, CodeCompletionGrammarParser parser) {
+        if (parser.getInterpreter().getClass() != CompletionParserATNSimulator.class
+            || parser.getErrorHandler().getClass() != CodeCompletionErrorStrategy.class) {
+            // customized parsers (e.g. for indentation) are parsed serially
+            return null;
+        }
+
+        CodeCompletionGrammarParser result = ParserFactory.DEFAULT.getParser(input);
+        result.setBuildParseTree(parser.getBuildParseTree());
+        result.setErrorHandler(new CodeCompletionErrorStrategy());
+        return result;
+    }
+
+    @Override
+    protected void releaseParser(CodeCompletionGrammarParser parser) {
+        ParserFactory.DEFAULT.putParser(parser);
+    }
+
     @Override
     protected RuleContext parseImpl(CodeCompletionGrammarParser parser) {
         switch (_startRule) {
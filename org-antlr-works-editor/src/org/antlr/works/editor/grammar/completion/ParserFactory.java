@@ -8,7 +8,12 @@
  */
 package org.antlr.works.editor.grammar.completion;
 
+import java.util.Collections;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.works.editor.antlr4.completion.AbstractParserCache;
+import org.antlr.works.editor.antlr4.completion.MultipleDecisionData;
 import org.netbeans.api.annotations.common.NonNull;
 
 /**
@@ -18,6 +23,15 @@ import org.netbeans.api.annotations.common.NonNull;
 public class ParserFactory {
     public static final ParserFactory DEFAULT = new ParserFactory();
 
+    private final AbstractParserCache<CodeCompletionGrammarParser> cache = new AbstractParserCache<CodeCompletionGrammarParser>(ParserFactory.class.getName()) {
+
+        @Override
+        protected CodeCompletionGrammarParser createParser(TokenStream input) {
+            return ParserFactory.this.createParser(input);
+        }
+
+    };
+
     @NonNull
     protected CodeCompletionGrammarParser createParser(@NonNull TokenStream input) {
         CodeCompletionGrammarParser parser = new CodeCompletionGrammarParser(input);
@@ -27,6 +41,24 @@ public class ParserFactory {
 
     @NonNull
     public CodeCompletionGrammarParser getParser(@NonNull TokenStream input) {
-        return createParser(input);
+        CodeCompletionGrammarParser result = cache.getParser(input);
+        result.removeErrorListeners();
+        result.setBuildParseTree(true);
+        result.setErrorHandler(new DefaultErrorStrategy());
+        result.getInterpreter().setFixedDecisions(Collections.<MultipleDecisionData>emptyList(), new IntegerList());
+        return result;
+    }
+
+    /**
+     * Returns a parser obtained from {@link #getParser} to the pool after the
+     * caller is done with it.
+     */
+    public void putParser(@NonNull CodeCompletionGrammarParser parser) {
+        cache.putParser(parser);
+    }
+
+    @NonNull
+    public AbstractParserCache<CodeCompletionGrammarParser> getCache() {
+        return cache;
     }
 }
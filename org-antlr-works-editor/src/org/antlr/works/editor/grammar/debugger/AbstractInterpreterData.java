@@ -9,8 +9,13 @@
 
 package org.antlr.works.editor.grammar.debugger;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.antlr.v4.runtime.Vocabulary;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNDeserializer;
 
 /**
  *
@@ -19,9 +24,126 @@ import org.antlr.v4.runtime.Vocabulary;
 public class AbstractInterpreterData {
 
     public String grammarFileName;
+    /**
+     * The full path of the grammar file. Unlike {@link #grammarFileName}, this
+     * distinguishes grammars with the same name in different folders.
+     */
+    public String grammarPath;
     public String serializedAtn;
     public Vocabulary vocabulary;
     public List<String> ruleNames;
     public int startRuleIndex;
 
+    private static final int MAX_SHARED_ATNS = Math.max(1, Integer.getInteger(AbstractInterpreterData.class.getName() + ".maxSharedAtns", 8));
+
+    /**
+     * Deserialized ATNs shared by every interpreter data instance built from
+     * the same serialized ATN. Since the DFA cache is stored in the ATN,
+     * sharing the ATN allows repeated runs over the same grammar to reuse the
+     * DFA produced by earlier runs. The keys are held strongly; an entry is
+     * removed when its grammar is rebuilt with a different ATN, or when more
+     * than {@link #MAX_SHARED_ATNS} grammars were used more recently.
+     */
+    private static final Map<String, ATN> SHARED_ATNS = new LinkedHashMap<String, ATN>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ATN> eldest) {
+            return size() > MAX_SHARED_ATNS;
+        }
+    };
+
+    /**
+     * The serialized ATN of the most recent interpreter data built for each
+     * grammar, keyed by the interpreter data type and grammar path.
+     */
+    private static final Map<String, String> CURRENT_SERIALIZED_ATNS = new HashMap<>();
+
+    private ATN atn;
+
+    /**
+     * Gets the deserialized form of {@link #serializedAtn}. The result is
+     * shared with other interpreter data for the same grammar, so its DFA is
+     * warm after the first parse. The DFA of this runtime is safe for use by
+     * multiple recognizers at the same time, so lexers and parsers on
+     * different threads may share the result.
+     *
+     * <p>A warm DFA changes the results of instrumented runs: decisions which
+     * were already predicted by an earlier run follow existing DFA edges, so
+     * the computed transition and full-context counts are lower, and
+     * ambiguities which are resolved by cached DFA states are not reported
+     * again. Runs which must report every ambiguity in their input should use
+     * {@link #createPrivateATN()} instead.</p>
+     *
+     * @return The deserialized ATN.
+     */
+    public ATN getATN() {
+        synchronized (SHARED_ATNS) {
+            if (atn == null && !isCurrent()) {
+                // keep working, but do not publish an ATN for an outdated grammar
+                atn = new ATNDeserializer().deserialize(serializedAtn.toCharArray());
+            } else if (atn == null) {
+                atn = SHARED_ATNS.get(serializedAtn);
+                if (atn == null) {
+                    atn = new ATNDeserializer().deserialize(serializedAtn.toCharArray());
+                    SHARED_ATNS.put(serializedAtn, atn);
+                }
+            }
+
+            return atn;
+        }
+    }
+
+    /**
+     * Deserializes a new ATN for {@link #serializedAtn} with an empty DFA. The
+     * result is not shared, so statistics and ambiguity reports gathered with
+     * it do not depend on earlier runs.
+     *
+     * @return The deserialized ATN.
+     */
+    public ATN createPrivateATN() {
+        return new ATNDeserializer().deserialize(serializedAtn.toCharArray());
+    }
+
+    /**
+     * Determines if this interpreter data was built from the most recent
+     * version of its grammar. Interpreter data for an outdated grammar may
+     * still be used by open documents, but its ATN is not shared, so the
+     * shared ATN removed by {@link #grammarUpdated} is not added back.
+     */
+    private boolean isCurrent() {
+        assert Thread.holdsLock(SHARED_ATNS);
+
+        if (grammarPath == null) {
+            return true;
+        }
+
+        String current = CURRENT_SERIALIZED_ATNS.get(getGrammarKey(this));
+        return current == null || current.equals(serializedAtn);
+    }
+
+    private static String getGrammarKey(AbstractInterpreterData data) {
+        return data.getClass().getName() + ":" + data.grammarPath;
+    }
+
+    /**
+     * Records {@code data} as the current interpreter data for its grammar. If
+     * the grammar changed since interpreter data was last built for it, the
+     * shared ATN of the previous version is removed from the cache so its DFA
+     * is released once the documents using it are closed.
+     *
+     * @param data The interpreter data which was built for a grammar.
+     */
+    static void grammarUpdated(AbstractInterpreterData data) {
+        if (data.grammarPath == null || data.serializedAtn == null) {
+            return;
+        }
+
+        String key = getGrammarKey(data);
+        synchronized (SHARED_ATNS) {
+            String previous = CURRENT_SERIALIZED_ATNS.put(key, data.serializedAtn);
+            if (previous != null && !previous.equals(data.serializedAtn)) {
+                SHARED_ATNS.remove(previous);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,266 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.antlr.v4.runtime.atn.ATN;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+
+/**
+ * The statistics gathered by {@link CorpusProfiler} for a corpus of input
+ * files. The per-decision arrays are indexed by decision number and hold the
+ * sum (or the minimum and maximum) of the values recorded by every worker.
+ *
+ * @author Sam Harwell
+ */
+public class CorpusProfileResult {
+    private final ParserInterpreterData parserInterpreterData;
+    private final long elapsedTime;
+    private final List<FileProfile> fileProfiles = new ArrayList<>();
+
+    public final long[] decisionInvocations;
+    public final long[] decisionTime;
+    public final long[] fullContextFallback;
+    public final long[] nonSll;
+    public final long[] ambiguousResult;
+    public final long[] parserTotalTransitions;
+    public final long[] parserComputedTransitions;
+    public final long[] parserFullContextTransitions;
+    public final long[] totalLookaheadSll;
+    public final long[] totalLookaheadLl;
+    public final long[] minLookaheadSll;
+    public final long[] maxLookaheadSll;
+    public final long[] minLookaheadLl;
+    public final long[] maxLookaheadLl;
+
+    CorpusProfileResult(@NonNull ParserInterpreterData parserInterpreterData, long elapsedTime) {
+        this.parserInterpreterData = parserInterpreterData;
+        this.elapsedTime = elapsedTime;
+
+        int decisionCount = parserInterpreterData.getATN().decisionToState.size();
+        decisionInvocations = new long[decisionCount];
+        decisionTime = new long[decisionCount];
+        fullContextFallback = new long[decisionCount];
+        nonSll = new long[decisionCount];
+        ambiguousResult = new long[decisionCount];
+        parserTotalTransitions = new long[decisionCount];
+        parserComputedTransitions = new long[decisionCount];
+        parserFullContextTransitions = new long[decisionCount];
+        totalLookaheadSll = new long[decisionCount];
+        totalLookaheadLl = new long[decisionCount];
+        minLookaheadSll = new long[decisionCount];
+        maxLookaheadSll = new long[decisionCount];
+        minLookaheadLl = new long[decisionCount];
+        maxLookaheadLl = new long[decisionCount];
+        Arrays.fill(minLookaheadSll, Long.MAX_VALUE);
+        Arrays.fill(minLookaheadLl, Long.MAX_VALUE);
+        Arrays.fill(maxLookaheadSll, Long.MIN_VALUE);
+        Arrays.fill(maxLookaheadLl, Long.MIN_VALUE);
+    }
+
+    void addWorkerStatistics(@NonNull StatisticsParserATNSimulator simulator, @NonNull List<FileProfile> files) {
+        for (int i = 0; i < decisionInvocations.length; i++) {
+            decisionInvocations[i] += simulator.decisionInvocations[i];
+            decisionTime[i] += simulator.decisionTime[i];
+            fullContextFallback[i] += simulator.fullContextFallback[i];
+            nonSll[i] += simulator.nonSll[i];
+            ambiguousResult[i] += simulator.ambiguousResult[i];
+            parserTotalTransitions[i] += simulator.totalTransitions[i];
+            parserComputedTransitions[i] += simulator.computedTransitions[i];
+            parserFullContextTransitions[i] += simulator.fullContextTransitions[i];
+            totalLookaheadSll[i] += simulator.totalLookaheadSll[i];
+            totalLookaheadLl[i] += simulator.totalLookaheadLl[i];
+            minLookaheadSll[i] = Math.min(minLookaheadSll[i], simulator.minLookaheadSll[i]);
+            maxLookaheadSll[i] = Math.max(maxLookaheadSll[i], simulator.maxLookaheadSll[i]);
+            minLookaheadLl[i] = Math.min(minLookaheadLl[i], simulator.minLookaheadLl[i]);
+            maxLookaheadLl[i] = Math.max(maxLookaheadLl[i], simulator.maxLookaheadLl[i]);
+        }
+
+        fileProfiles.addAll(files);
+    }
+
+    /**
+     * Gets the wall clock time of the complete run, in nanoseconds.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @NonNull
+    public List<FileProfile> getFileProfiles() {
+        return Collections.unmodifiableList(fileProfiles);
+    }
+
+    /**
+     * Gets the decisions which spent the most time in prediction.
+     *
+     * @param count The maximum number of decisions to return.
+     * @return The decision numbers, ordered by decreasing prediction time.
+     */
+    @NonNull
+    public List<Integer> getSlowestDecisions(int count) {
+        List<Integer> decisions = new ArrayList<>();
+        for (int i = 0; i < decisionInvocations.length; i++) {
+            if (decisionInvocations[i] > 0) {
+                decisions.add(i);
+            }
+        }
+
+        Collections.sort(decisions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(decisionTime[o2], decisionTime[o1]);
+            }
+        });
+
+        return decisions.subList(0, Math.min(count, decisions.size()));
+    }
+
+    /**
+     * Gets the files which took the longest to lex and parse.
+     *
+     * @param count The maximum number of files to return.
+     * @return The file profiles, ordered by decreasing parse time.
+     */
+    @NonNull
+    public List<FileProfile> getSlowestFiles(int count) {
+        List<FileProfile> files = new ArrayList<>(fileProfiles);
+        Collections.sort(files, new Comparator<FileProfile>() {
+            @Override
+            public int compare(FileProfile o1, FileProfile o2) {
+                return Long.compare(o2.elapsedTime, o1.elapsedTime);
+            }
+        });
+
+        return files.subList(0, Math.min(count, files.size()));
+    }
+
+    /**
+     * Writes a summary of the results followed by the slowest decisions and
+     * files.
+     *
+     * @param writer The output writer.
+     * @param count The maximum number of decisions and files to list.
+     */
+    public void write(@NonNull PrintWriter writer, int count) {
+        long totalParseTime = 0;
+        long totalPredictionTime = 0;
+        long totalTokens = 0;
+        int syntaxErrors = 0;
+        int failures = 0;
+        for (FileProfile fileProfile : fileProfiles) {
+            totalParseTime += fileProfile.elapsedTime;
+            totalTokens += fileProfile.tokenCount;
+            syntaxErrors += fileProfile.syntaxErrors;
+            if (fileProfile.failure != null) {
+                failures++;
+            }
+        }
+
+        for (long time : decisionTime) {
+            totalPredictionTime += time;
+        }
+
+        writer.format("Parsed %d files (%d tokens) in %.1fms; %.1fms total parse time.%n", fileProfiles.size(), totalTokens, toMillis(elapsedTime), toMillis(totalParseTime));
+        writer.format("Prediction: %.1fms; syntax errors: %d; failed files: %d.%n", toMillis(totalPredictionTime), syntaxErrors, failures);
+
+        writer.println();
+        writer.println("Slowest decisions:");
+        writer.println("Decision\tRule\tInvocations\tTime (ms)\t% Prediction\tFull Context\tContext Sensitivities\tAmbiguities\tAvg SLL k\tMax SLL k\tAvg LL k\tMax LL k");
+        ATN atn = parserInterpreterData.getATN();
+        for (int decision : getSlowestDecisions(count)) {
+            int ruleIndex = atn.decisionToState.get(decision).ruleIndex;
+            String ruleName = parserInterpreterData.ruleNames.get(ruleIndex);
+            double percent = totalPredictionTime > 0 ? 100.0 * decisionTime[decision] / totalPredictionTime : 0;
+            writer.format("%d\t%s\t%d\t%.2f\t%.1f\t%d\t%d\t%d\t%s\t%s\t%s\t%s%n",
+                decision,
+                ruleName,
+                decisionInvocations[decision],
+                toMillis(decisionTime[decision]),
+                percent,
+                fullContextFallback[decision],
+                nonSll[decision],
+                ambiguousResult[decision],
+                formatAverage(totalLookaheadSll[decision], decisionInvocations[decision]),
+                formatLimit(maxLookaheadSll[decision]),
+                formatAverage(totalLookaheadLl[decision], fullContextFallback[decision]),
+                formatLimit(maxLookaheadLl[decision]));
+        }
+
+        writer.println();
+        writer.println("Slowest files:");
+        writer.println("Time (ms)\tTokens\tSyntax Errors\tFile");
+        for (FileProfile fileProfile : getSlowestFiles(count)) {
+            if (fileProfile.failure != null) {
+                writer.format("-\t-\t-\t%s (%s)%n", fileProfile.file.getPath(), fileProfile.failure);
+            } else {
+                writer.format("%.2f\t%d\t%d\t%s%n", toMillis(fileProfile.elapsedTime), fileProfile.tokenCount, fileProfile.syntaxErrors, fileProfile.file.getPath());
+            }
+        }
+
+        writer.flush();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static String formatAverage(long total, long count) {
+        if (count == 0) {
+            return "-";
+        }
+
+        return String.format("%.2f", (double)total / count);
+    }
+
+    private static String formatLimit(long value) {
+        if (value == Long.MIN_VALUE || value == Long.MAX_VALUE) {
+            return "-";
+        }
+
+        return Long.toString(value);
+    }
+
+    /**
+     * The result of lexing and parsing a single file of the corpus.
+     */
+    public static final class FileProfile {
+        @NonNull
+        public final File file;
+        public final int tokenCount;
+        public final int syntaxErrors;
+        /**
+         * The time spent lexing and parsing the file, in nanoseconds.
+         */
+        public final long elapsedTime;
+        /**
+         * A description of the exception which prevented the file from being
+         * parsed, or {@code null} if the file was parsed.
+         */
+        @CheckForNull
+        public final String failure;
+
+        public FileProfile(@NonNull File file, int tokenCount, int syntaxErrors, long elapsedTime, @NullAllowed String failure) {
+            this.file = file;
+            this.tokenCount = tokenCount;
+            this.syntaxErrors = syntaxErrors;
+            this.elapsedTime = elapsedTime;
+            this.failure = failure;
+        }
+    }
+}
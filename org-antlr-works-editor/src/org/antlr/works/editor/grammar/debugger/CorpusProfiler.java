@@ -0,0 +1,287 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Runs the parser interpreter for a grammar over a corpus of input files and
+ * aggregates the decision statistics of {@link StatisticsParserATNSimulator}
+ * across the files. This class does not depend on the editor, so it may be
+ * used outside of a parser debugger document.
+ *
+ * <p>The files are parsed in parallel. Each worker thread owns a single lexer,
+ * parser, and statistics simulator, while the ATN and DFA of the grammar are
+ * shared by all workers of a run. When the prediction options report
+ * ambiguities, or {@link ParserInterpreterData#coldDfa} is set, each run
+ * creates its own ATNs with {@link AbstractInterpreterData#createPrivateATN()},
+ * so the full context and ambiguity counts do not depend on earlier runs or
+ * parser debugger sessions. Otherwise the workers use the shared ATNs from
+ * {@link AbstractInterpreterData#getATN()}, and the results describe the
+ * steady state of a warm DFA.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class CorpusProfiler {
+    // -J-Dorg.antlr.works.editor.grammar.debugger.CorpusProfiler.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(CorpusProfiler.class.getName());
+
+    public static final int DEFAULT_THREAD_COUNT =
+        Math.max(1, Integer.getInteger(CorpusProfiler.class.getName() + ".threads", Runtime.getRuntime().availableProcessors()));
+
+    private static final RequestProcessor RP = new RequestProcessor(CorpusProfiler.class.getName(), DEFAULT_THREAD_COUNT, true, false);
+
+    private final ParserInterpreterData parserInterpreterData;
+    private final Charset encoding;
+    private InstrumentationLevel instrumentationLevel;
+    private int sampleInterval;
+
+    public CorpusProfiler(@NonNull ParserInterpreterData parserInterpreterData, @NonNull Charset encoding) {
+        Parameters.notNull("parserInterpreterData", parserInterpreterData);
+        Parameters.notNull("encoding", encoding);
+        this.parserInterpreterData = parserInterpreterData;
+        this.encoding = encoding;
+        this.instrumentationLevel = parserInterpreterData.instrumentationLevel;
+        this.sampleInterval = parserInterpreterData.sampleInterval;
+    }
+
+    public InstrumentationLevel getInstrumentationLevel() {
+        return instrumentationLevel;
+    }
+
+    /**
+     * Sets the instrumentation level of the statistics simulators used by the
+     * workers. Profiling the same corpus at each level measures the overhead
+     * of the instrumentation, since {@link CorpusProfileResult#getElapsedTime()}
+     * and the per-file times include the time spent gathering statistics.
+     *
+     * @param level The instrumentation level.
+     * @param sampleInterval The sample interval for
+     * {@link InstrumentationLevel#SAMPLED}.
+     */
+    public void setInstrumentationLevel(@NonNull InstrumentationLevel level, int sampleInterval) {
+        Parameters.notNull("level", level);
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval must be positive");
+        }
+
+        this.instrumentationLevel = level;
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Gets the files of a corpus directory. Hidden files and directories are
+     * excluded.
+     *
+     * @param directory The root directory of the corpus.
+     * @return The files in {@code directory} and its subdirectories, in a
+     * stable order.
+     */
+    @NonNull
+    public static List<File> findCorpusFiles(@NonNull File directory) {
+        Parameters.notNull("directory", directory);
+
+        List<File> result = new ArrayList<>();
+        findCorpusFiles(directory, result);
+        return result;
+    }
+
+    private static void findCorpusFiles(File directory, List<File> result) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isHidden()) {
+                continue;
+            }
+
+            if (child.isDirectory()) {
+                findCorpusFiles(child, result);
+            } else if (child.isFile()) {
+                result.add(child);
+            }
+        }
+    }
+
+    /**
+     * Parses the specified files and returns the aggregated statistics. This
+     * method blocks until every file is parsed.
+     *
+     * @param files The input files.
+     * @param threadCount The maximum number of files to parse at the same time.
+     * @return The aggregated statistics.
+     * @throws InterruptedException if the current thread was interrupted
+     * while waiting for the workers.
+     */
+    @NonNull
+    public CorpusProfileResult profile(@NonNull List<File> files, int threadCount) throws InterruptedException {
+        Parameters.notNull("files", files);
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be positive");
+        }
+
+        Queue<File> pending = new ConcurrentLinkedQueue<>(files);
+        int workerCount = Math.min(threadCount, Math.max(1, files.size()));
+        List<Worker> workers = new ArrayList<>(workerCount);
+        List<RequestProcessor.Task> tasks = new ArrayList<>(workerCount);
+
+        // cached DFA states suppress full context and ambiguity reports
+        boolean reportsAmbiguities = !parserInterpreterData.fastPrediction || parserInterpreterData.detectAmbiguities;
+        boolean privateAtn = reportsAmbiguities || parserInterpreterData.coldDfa;
+        LexerInterpreterData lexerInterpreterData = parserInterpreterData.lexerInterpreterData;
+        ATN lexerAtn = privateAtn ? lexerInterpreterData.createPrivateATN() : lexerInterpreterData.getATN();
+        ATN parserAtn = privateAtn ? parserInterpreterData.createPrivateATN() : parserInterpreterData.getATN();
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = new Worker(pending, lexerAtn, parserAtn);
+            workers.add(worker);
+            tasks.add(RP.post(worker));
+        }
+
+        try {
+            for (RequestProcessor.Task task : tasks) {
+                task.waitFinished(0);
+            }
+        } catch (InterruptedException ex) {
+            for (RequestProcessor.Task task : tasks) {
+                task.cancel();
+            }
+
+            throw ex;
+        }
+
+        long elapsedTime = System.nanoTime() - startTime;
+        CorpusProfileResult result = new CorpusProfileResult(parserInterpreterData, elapsedTime);
+        for (Worker worker : workers) {
+            result.addWorkerStatistics(worker.simulator, worker.fileProfiles);
+        }
+
+        return result;
+    }
+
+    private final class Worker implements Runnable {
+        private final Queue<File> pending;
+        private final List<CorpusProfileResult.FileProfile> fileProfiles = new ArrayList<>();
+        private final ParserInterpreter parser;
+        private final StatisticsParserATNSimulator simulator;
+        private final ATN lexerAtn;
+
+        public Worker(Queue<File> pending, ATN lexerAtn, ATN atn) {
+            this.pending = pending;
+            this.lexerAtn = lexerAtn;
+
+            parser = new ParserInterpreter(parserInterpreterData.grammarFileName, parserInterpreterData.vocabulary, parserInterpreterData.ruleNames, atn, null);
+            simulator = new StatisticsParserATNSimulator(parser, atn);
+            simulator.setInstrumentationLevel(instrumentationLevel, sampleInterval);
+            parser.setInterpreter(simulator);
+            parser.removeErrorListeners();
+            parser.addErrorListener(new StatisticsParserErrorListener());
+            parser.setBuildParseTree(false);
+        }
+
+        @Override
+        public void run() {
+            for (File file = pending.poll(); file != null; file = pending.poll()) {
+                if (Thread.interrupted()) {
+                    return;
+                }
+
+                try {
+                    fileProfiles.add(profileFile(file));
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.log(Level.FINE, "An exception occurred while parsing " + file, ex);
+                    fileProfiles.add(new CorpusProfileResult.FileProfile(file, 0, 0, 0, ex.toString()));
+                }
+            }
+        }
+
+        private CorpusProfileResult.FileProfile profileFile(File file) throws IOException {
+            ANTLRInputStream input;
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), encoding)) {
+                input = new ANTLRInputStream(reader);
+            }
+
+            input.name = file.getPath();
+
+            long startTime = System.nanoTime();
+            LexerInterpreterData lexerInterpreterData = parserInterpreterData.lexerInterpreterData;
+            LexerInterpreter lexer = new LexerInterpreter(lexerInterpreterData.grammarFileName, lexerInterpreterData.vocabulary, lexerInterpreterData.ruleNames, lexerInterpreterData.modeNames, lexerAtn, input);
+            lexer.removeErrorListeners();
+            CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+            tokenStream.fill();
+
+            // use the same prediction strategy as the parser debugger
+            boolean parsed = false;
+            if (parserInterpreterData.fastPrediction && !parserInterpreterData.detectAmbiguities) {
+                parser.setInputStream(tokenStream);
+                simulator.setPredictionMode(PredictionMode.SLL);
+                simulator.reportAmbiguities = false;
+                parser.setErrorHandler(new BailErrorStrategy());
+                try {
+                    parser.parse(parserInterpreterData.startRuleIndex);
+                    parsed = true;
+                } catch (ParseCancellationException ex) {
+                    if (!(ex.getCause() instanceof RecognitionException)) {
+                        throw ex;
+                    }
+
+                    tokenStream.reset();
+                }
+            }
+
+            if (!parsed) {
+                parser.setInputStream(tokenStream);
+                if (parserInterpreterData.fastPrediction) {
+                    simulator.setPredictionMode(PredictionMode.LL);
+                    simulator.reportAmbiguities = parserInterpreterData.detectAmbiguities;
+                } else {
+                    simulator.optimize_ll1 = false;
+                    simulator.setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
+                    simulator.reportAmbiguities = true;
+                }
+
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.parse(parserInterpreterData.startRuleIndex);
+            }
+
+            long elapsedTime = System.nanoTime() - startTime;
+            return new CorpusProfileResult.FileProfile(file, tokenStream.size(), parser.getNumberOfSyntaxErrors(), elapsedTime, null);
+        }
+    }
+}
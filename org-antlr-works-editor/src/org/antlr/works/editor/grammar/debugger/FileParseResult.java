@@ -38,6 +38,7 @@ public class FileParseResult {
     public final int checksum;
     public final ParseTree parseTree;
     public final Map<ParseTree, Transition> associatedTransitions;
+    public final long[] parserTransitionCounts;
     public final int tokenCount;
     public final long startTime;
     public final long endTime;
@@ -99,8 +100,10 @@ public class FileParseResult {
         if (parser != null) {
             if (parser instanceof TracingParserInterpreter) {
                 associatedTransitions = ((TracingParserInterpreter)parser).associatedTransitions;
+                parserTransitionCounts = ((TracingParserInterpreter)parser).transitionCounts;
             } else {
                 associatedTransitions = null;
+                parserTransitionCounts = new long[0];
             }
 
             ParserATNSimulator interpreter = parser.getInterpreter();
@@ -144,6 +147,7 @@ public class FileParseResult {
             parserDFASize = dfaSize;
         } else {
             associatedTransitions = null;
+            parserTransitionCounts = new long[0];
             parserDFASize = 0;
             decisionInvocations = new long[0];
             fullContextFallback = new long[0];
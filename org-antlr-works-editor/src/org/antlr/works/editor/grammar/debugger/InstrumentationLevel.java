@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.util.Locale;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+
+/**
+ * The amount of information gathered by {@link StatisticsParserATNSimulator}
+ * and {@link ParserDebuggerReferenceAnchorsParserTask.TracingParserInterpreter}
+ * while parsing.
+ *
+ * @author Sam Harwell
+ */
+public enum InstrumentationLevel {
+    /**
+     * No statistics are gathered, except for the full context fallback counts
+     * which are needed to select the decisions checked for ambiguities.
+     */
+    OFF,
+    /**
+     * Only the invocation, fallback, and transition counters are updated.
+     * Lookahead depths, prediction times, and parse tree transitions are not
+     * recorded.
+     */
+    COUNTERS,
+    /**
+     * The counters are updated for every prediction, and the full statistics
+     * are gathered for one of every {@code sampleInterval} predictions. Sampled
+     * totals are scaled by the sample interval, so they estimate the totals
+     * of a full trace.
+     */
+    SAMPLED,
+    /**
+     * The full statistics are gathered for every prediction.
+     */
+    FULL;
+
+    /**
+     * Parses an instrumentation level from a configuration value.
+     *
+     * @param value The name of the level, in any case.
+     * @param defaultValue The level to use if {@code value} is {@code null} or
+     * does not name a level.
+     * @return The instrumentation level.
+     */
+    @NonNull
+    public static InstrumentationLevel fromString(@NullAllowed String value, @NonNull InstrumentationLevel defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return defaultValue;
+        }
+    }
+}
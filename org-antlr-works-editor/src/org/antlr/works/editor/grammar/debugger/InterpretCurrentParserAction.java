@@ -13,7 +13,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import javax.swing.SwingUtilities;
 import javax.swing.text.Document;
 import org.antlr.netbeans.editor.text.DocumentSnapshot;
@@ -22,6 +26,8 @@ import org.antlr.netbeans.util.NotificationIcons;
 import org.antlr.works.editor.grammar.GrammarEditorKit;
 import org.antlr.works.editor.grammar.actions.RunInTestRigAction;
 import org.antlr.works.editor.grammar.codemodel.FileModel;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.progress.ProgressHandleFactory;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.openide.DialogDisplayer;
 import org.openide.WizardDescriptor;
@@ -36,8 +42,13 @@ import org.openide.filesystems.FileSystem;
 import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
 import org.openide.loaders.DataObjectNotFoundException;
+import org.openide.util.Cancellable;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle.Messages;
+import org.openide.util.RequestProcessor;
+import org.openide.windows.IOProvider;
+import org.openide.windows.InputOutput;
+import org.openide.windows.OutputWriter;
 
 /**
  *
@@ -51,6 +62,14 @@ import org.openide.util.NbBundle.Messages;
 @ActionReference(path = "Menu/BuildProject", position = 249, separatorBefore = 223)
 @Messages("CTL_InterpretCurrentParserAction=Interpret Parser...")
 public class InterpretCurrentParserAction implements ActionListener {
+    /**
+     * Inputs larger than this are always parsed in streaming mode.
+     */
+    private static final long MAX_BUFFERED_INPUT_SIZE = 1024 * 1024;
+
+    private static final RequestProcessor RP = new RequestProcessor(InterpretCurrentParserAction.class.getName(), 1, true, false);
+
+    private static final int REPORT_SIZE = Integer.getInteger(InterpretCurrentParserAction.class.getName() + ".reportSize", 25);
 
     private final EditorCookie context;
 
@@ -99,15 +118,12 @@ public class InterpretCurrentParserAction implements ActionListener {
             return;
         }
 
-        File inputFile = new File(ParserDebuggerWizardOptions.getInputFile(wizard));
+        final File inputFile = new File(ParserDebuggerWizardOptions.getInputFile(wizard));
         if (!inputFile.isFile()) {
             return;
         }
 
-        if (inputFile.length() > 1024 * 1024) {
-            displayError("This specified input file is too large. Please choose a file smaller than 1MB.");
-            return;
-        }
+        boolean streaming = ParserDebuggerWizardOptions.isStreaming(wizard) || inputFile.length() > MAX_BUFFERED_INPUT_SIZE;
 
         String startRule = ParserDebuggerWizardOptions.getStartRule(wizard);
         parserInterpreterData.startRuleIndex = parserInterpreterData.ruleNames.indexOf(startRule);
@@ -116,6 +132,30 @@ public class InterpretCurrentParserAction implements ActionListener {
             return;
         }
 
+        parserInterpreterData.fastPrediction = ParserDebuggerWizardOptions.isFastPrediction(wizard);
+        parserInterpreterData.detectAmbiguities = ParserDebuggerWizardOptions.isDetectAmbiguities(wizard);
+        parserInterpreterData.coldDfa = ParserDebuggerWizardOptions.isColdDfa(wizard);
+        parserInterpreterData.instrumentationLevel = ParserDebuggerWizardOptions.getInstrumentationLevel(wizard);
+        parserInterpreterData.sampleInterval = ParserDebuggerWizardOptions.getSampleInterval(wizard);
+        parserInterpreterData.streaming = streaming;
+        parserInterpreterData.treeWindowStart = ParserDebuggerWizardOptions.getTreeWindowStart(wizard);
+        parserInterpreterData.treeWindowStop = ParserDebuggerWizardOptions.getTreeWindowStop(wizard);
+
+        if (streaming) {
+            Charset charset = Charset.defaultCharset();
+            if (ParserDebuggerWizardOptions.isEncodingSpecified(wizard)) {
+                try {
+                    charset = Charset.forName(ParserDebuggerWizardOptions.getEncoding(wizard));
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                    displayError(String.format("The encoding '%s' is not supported.", ParserDebuggerWizardOptions.getEncoding(wizard)));
+                    return;
+                }
+            }
+
+            interpretStreaming(parserInterpreterData, inputFile, charset);
+            return;
+        }
+
         try {
             FileSystem fileSystem = FileUtil.createMemoryFileSystem();
             FileObject tempFileObject = FileUtil.copyFile(FileUtil.toFileObject(inputFile), fileSystem.getRoot(), inputFile.getName(), "pinterp");
@@ -140,10 +180,63 @@ public class InterpretCurrentParserAction implements ActionListener {
         }
     }
 
+    /**
+     * Parses an input which is too large for the parser debugger editor. The
+     * input is read directly from the file, and the results are written to an
+     * output window instead of opening a document.
+     */
+    private void interpretStreaming(ParserInterpreterData parserInterpreterData, File inputFile, Charset encoding) {
+        StreamingInterpreterTask streamingTask = new StreamingInterpreterTask(parserInterpreterData, inputFile, encoding);
+        streamingTask.task = RP.create(streamingTask);
+        streamingTask.task.schedule(0);
+    }
+
     private void displayError(String message) {
         NotificationDisplayer.getDefault().notify("Interpret Current Parser", NotificationIcons.ERROR, message, null);
     }
 
+    private final class StreamingInterpreterTask implements Runnable, Cancellable {
+        private final ParserInterpreterData parserInterpreterData;
+        private final File inputFile;
+        private final Charset encoding;
+        private final ProgressHandle progress;
+        private RequestProcessor.Task task;
+
+        public StreamingInterpreterTask(ParserInterpreterData parserInterpreterData, File inputFile, Charset encoding) {
+            this.parserInterpreterData = parserInterpreterData;
+            this.inputFile = inputFile;
+            this.encoding = encoding;
+            this.progress = ProgressHandleFactory.createHandle("Interpreting " + inputFile.getName(), this);
+        }
+
+        @Override
+        public void run() {
+            progress.start();
+            InputOutput inputOutput = IOProvider.getDefault().getIO("ANTLR Parser Interpreter", false);
+            inputOutput.select();
+            try (OutputWriter outputWriter = inputOutput.getOut()) {
+                outputWriter.format("Interpreting %s (streaming)...%n", inputFile.getPath());
+                StreamingParserInterpreter interpreter = new StreamingParserInterpreter(parserInterpreterData, encoding);
+                interpreter.parse(inputFile, outputWriter, REPORT_SIZE, progress);
+            } catch (CancellationException ex) {
+                inputOutput.getErr().println("Cancelled.");
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+                displayError("An error occurred while reading the input. See the IDE Log output window for details.");
+            } finally {
+                progress.finish();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            // the request processor interrupts the running interpreter, which
+            // stops at the next token
+            task.cancel();
+            return true;
+        }
+    }
+
     private void doOpen(final OpenCookie oc) {
         if (SwingUtilities.isEventDispatchThread()) {
             oc.open();
@@ -85,10 +85,12 @@ public class LexerInterpreterData extends AbstractInterpreterData {
 
         LexerInterpreterData data = new LexerInterpreterData();
         data.grammarFileName = lexerGrammar.fileName;
+        data.grammarPath = snapshot.getVersionedDocument().getFileObject().getPath();
         data.serializedAtn = ATNSerializer.getSerializedAsString(lexerGrammar.atn, Arrays.asList(lexerGrammar.getRuleNames()));
         data.vocabulary = lexerGrammar.getVocabulary();
         data.ruleNames = new ArrayList<>(lexerGrammar.rules.keySet());
         data.modeNames = new ArrayList<>(lexerGrammar.modes.keySet());
+        grammarUpdated(data);
         return data;
     }
 
@@ -22,7 +22,6 @@ import org.antlr.netbeans.parsing.spi.ParserDataOptions;
 import org.antlr.netbeans.parsing.spi.ParserTaskManager;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.atn.ATN;
-import org.antlr.v4.runtime.atn.ATNDeserializer;
 import org.antlr.v4.runtime.tree.ErrorNode;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
@@ -408,7 +407,7 @@ public final class ParserDebuggerControllerTopComponent extends TopComponent {
                     return;
                 }
 
-                ATN atn = new ATNDeserializer().deserialize(parserInterpreterData.serializedAtn.toCharArray());
+                ATN atn = parserInterpreterData.getATN();
 
                 ParserTaskManager taskManager = Lookup.getDefault().lookup(ParserTaskManager.class);
                 DocumentSnapshot snapshot = VersionedDocumentUtilities.getVersionedDocument(document).getCurrentSnapshot();
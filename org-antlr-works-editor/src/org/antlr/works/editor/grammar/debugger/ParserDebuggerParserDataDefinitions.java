@@ -32,6 +32,15 @@ import org.netbeans.api.editor.mimelookup.MimeRegistration;
 public class ParserDebuggerParserDataDefinitions {
     private static final Logger LOGGER = Logger.getLogger(ParserDebuggerParserDataDefinitions.class.getName());
 
+    /**
+     * The estimated size of an entry in {@link FileParseResult#associatedTransitions}.
+     */
+    private static final int ASSOCIATED_TRANSITION_ENTRY_SIZE = 48;
+    /**
+     * The number of per-decision statistics arrays held by a {@link FileParseResult}.
+     */
+    private static final int DECISION_STATISTICS_COUNT = 13;
+
     public static final ParserDataDefinition<FileParseResult> FILE_PARSE_RESULT = new FileParseResultDataDefinition();
     public static final ParserDataDefinition<ParserRuleContext> REFERENCE_PARSE_TREE = new ReferenceParseTreeDataDefinition();
     public static final ParserDataDefinition<Tagger<TokenTag<Token>>> LEXER_TOKENS = new LexerTokensDataDefinition();
@@ -83,6 +92,20 @@ public class ParserDebuggerParserDataDefinitions {
             super("Parser Debugger File Parse Result", FileParseResult.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<FileParseResult> data) {
+            FileParseResult result = data.getData();
+            if (result == null) {
+                return 0;
+            }
+
+            // the parse tree is shared with REFERENCE_PARSE_TREE and counted there
+            long size = ASSOCIATED_TRANSITION_ENTRY_SIZE * (result.associatedTransitions != null ? result.associatedTransitions.size() : 0);
+            size += 8L * result.parserTransitionCounts.length;
+            size += 8L * DECISION_STATISTICS_COUNT * result.decisionInvocations.length;
+            return size;
+        }
+
     }
 
     private static final class ReferenceParseTreeDataDefinition extends ParserDataDefinition<ParserRuleContext> {
@@ -91,6 +114,11 @@ public class ParserDebuggerParserDataDefinitions {
             super("Parser Debugger Reference Parse Tree", ParserRuleContext.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<ParserRuleContext> data) {
+            return estimateParseTreeSize(data.getData());
+        }
+
     }
 
     private static final class LexerTokensDataDefinition extends ParserDataDefinition<Tagger<TokenTag<Token>>> {
@@ -9,6 +9,7 @@
 package org.antlr.works.editor.grammar.debugger;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -35,25 +36,29 @@ import org.antlr.netbeans.parsing.spi.ParserTaskDefinition;
 import org.antlr.netbeans.parsing.spi.ParserTaskManager;
 import org.antlr.netbeans.parsing.spi.ParserTaskProvider;
 import org.antlr.netbeans.parsing.spi.ParserTaskScheduler;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.ParserInterpreter;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.atn.ATN;
-import org.antlr.v4.runtime.atn.ATNDeserializer;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.works.editor.antlr4.classification.TaggerTokenSource;
 import org.antlr.works.editor.antlr4.parsing.DescriptiveErrorListener;
 import org.antlr.works.editor.antlr4.parsing.SyntaxErrorListener;
+import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
+import org.openide.util.Parameters;
 
 /**
  *
@@ -80,38 +85,103 @@ public final class ParserDebuggerReferenceAnchorsParserTask implements ParserTas
 
         //ParserDebuggerEditorKit.LEX
         synchronized (lock) {
-            ParserData<FileParseResult> fileParseResultData = taskManager.getData(snapshot, ParserDebuggerParserDataDefinitions.FILE_PARSE_RESULT, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
-            ParserData<ParserRuleContext> parseTreeResult = taskManager.getData(snapshot, ParserDebuggerParserDataDefinitions.REFERENCE_PARSE_TREE, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
+            Future<ParserData<?>>[] cachedResults = taskManager.getData(snapshot,
+                Arrays.<ParserDataDefinition<?>>asList(ParserDebuggerParserDataDefinitions.FILE_PARSE_RESULT, ParserDebuggerParserDataDefinitions.REFERENCE_PARSE_TREE),
+                EnumSet.of(ParserDataOptions.NO_UPDATE));
+            @SuppressWarnings("unchecked")
+            ParserData<FileParseResult> fileParseResultData = (ParserData<FileParseResult>)cachedResults[0].get();
+            @SuppressWarnings("unchecked")
+            ParserData<ParserRuleContext> parseTreeResult = (ParserData<ParserRuleContext>)cachedResults[1].get();
             if (fileParseResultData == null || parseTreeResult == null) {
                 Future<ParserData<Tagger<TokenTag<Token>>>> futureTokensData = taskManager.getData(snapshot, ParserDebuggerParserDataDefinitions.LEXER_TOKENS);
                 Tagger<TokenTag<Token>> tagger = futureTokensData.get().getData();
-                TaggerTokenSource tokenSource = new TaggerTokenSource(tagger, snapshot);
-                InterruptableTokenStream tokenStream = new InterruptableTokenStream(tokenSource);
                 ParserRuleContext parseResult;
 
                 ParserInterpreterData parserInterpreterData = (ParserInterpreterData)snapshot.getVersionedDocument().getDocument().getProperty(ParserDebuggerEditorKit.PROP_PARSER_INTERP_DATA);
-                String grammarFileName = parserInterpreterData.grammarFileName;
-                Vocabulary vocabulary = parserInterpreterData.vocabulary;
-                List<String> ruleNames = parserInterpreterData.ruleNames;
-                ATN atn = new ATNDeserializer().deserialize(parserInterpreterData.serializedAtn.toCharArray());
-                TracingParserInterpreter parser = new TracingParserInterpreter(grammarFileName, vocabulary, ruleNames, atn, tokenStream);
+                TracingParserInterpreter parser;
+                SyntaxErrorListener syntaxErrorListener;
 
                 long startTime = System.nanoTime();
-                parser.setInterpreter(new StatisticsParserATNSimulator(parser, atn));
-                parser.getInterpreter().optimize_ll1 = false;
-                parser.getInterpreter().reportAmbiguities = true;
-                parser.getInterpreter().setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
-                parser.removeErrorListeners();
-                parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
-                parser.addErrorListener(new StatisticsParserErrorListener());
-                SyntaxErrorListener syntaxErrorListener = new SyntaxErrorListener(snapshot);
-                parser.addErrorListener(syntaxErrorListener);
-                parser.setBuildParseTree(true);
-                parser.setErrorHandler(new DefaultErrorStrategy());
-                parseResult = parser.parse(parserInterpreterData.startRuleIndex);
+                TaggerTokenSource tokenSource = new TaggerTokenSource(tagger, snapshot);
+                InterruptableTokenStream tokenStream = new InterruptableTokenStream(tokenSource);
+
+                if (!parserInterpreterData.fastPrediction) {
+                    parser = createParser(parserInterpreterData, tokenStream);
+                    parser.getInterpreter().optimize_ll1 = false;
+                    parser.getInterpreter().reportAmbiguities = true;
+                    parser.getInterpreter().setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
+                    parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
+                    parser.addErrorListener(new StatisticsParserErrorListener());
+                    syntaxErrorListener = new SyntaxErrorListener(snapshot);
+                    parser.addErrorListener(syntaxErrorListener);
+                    parser.setErrorHandler(new DefaultErrorStrategy());
+                    parseResult = parser.parse(parserInterpreterData.startRuleIndex);
+                } else {
+                    parser = null;
+                    syntaxErrorListener = null;
+                    parseResult = null;
+                    if (!parserInterpreterData.detectAmbiguities) {
+                        // first try SLL prediction, which is sufficient for most inputs
+                        TracingParserInterpreter sllParser = createParser(parserInterpreterData, tokenStream);
+                        sllParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                        sllParser.setErrorHandler(new BailErrorStrategy());
+                        try {
+                            parseResult = sllParser.parse(parserInterpreterData.startRuleIndex);
+                            parser = sllParser;
+                            syntaxErrorListener = new SyntaxErrorListener(snapshot);
+                        } catch (ParseCancellationException ex) {
+                            if (!(ex.getCause() instanceof RecognitionException)) {
+                                throw ex;
+                            }
+
+                            // retry with full LL prediction below
+                            tokenStream.reset();
+                        }
+                    }
+
+                    if (parser == null) {
+                        parser = createParser(parserInterpreterData, tokenStream);
+                        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                        parser.getInterpreter().reportAmbiguities = parserInterpreterData.detectAmbiguities;
+                        parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
+                        parser.addErrorListener(new StatisticsParserErrorListener());
+                        syntaxErrorListener = new SyntaxErrorListener(snapshot);
+                        parser.addErrorListener(syntaxErrorListener);
+                        parser.setErrorHandler(new DefaultErrorStrategy());
+                        parseResult = parser.parse(parserInterpreterData.startRuleIndex);
+                    }
+
+                    if (parserInterpreterData.detectAmbiguities) {
+                        // only decisions which required full context can be ambiguous
+                        BitSet conflictingDecisions = new BitSet();
+                        long[] fullContextFallback = ((StatisticsParserATNSimulator)parser.getInterpreter()).fullContextFallback;
+                        for (int i = 0; i < fullContextFallback.length; i++) {
+                            if (fullContextFallback[i] > 0) {
+                                conflictingDecisions.set(i);
+                            }
+                        }
+
+                        if (!conflictingDecisions.isEmpty()) {
+                            tokenStream.reset();
+                            parser = createParser(parserInterpreterData, tokenStream);
+                            StatisticsParserATNSimulator interpreter = (StatisticsParserATNSimulator)parser.getInterpreter();
+                            interpreter.setPredictionMode(PredictionMode.LL);
+                            interpreter.reportAmbiguities = true;
+                            interpreter.exactAmbiguityDecisions = conflictingDecisions;
+                            parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
+                            parser.addErrorListener(new StatisticsParserErrorListener());
+                            syntaxErrorListener = new SyntaxErrorListener(snapshot);
+                            parser.addErrorListener(syntaxErrorListener);
+                            parser.setErrorHandler(new DefaultErrorStrategy());
+                            parseResult = parser.parse(parserInterpreterData.startRuleIndex);
+                        }
+                    }
+                }
+
+                int tokenCount = tokenStream.size();
 
                 String sourceName = (String)document.getDocument().getProperty(Document.TitleProperty);
-                FileParseResult fileParseResult = new FileParseResult(sourceName, 0, parseResult, syntaxErrorListener.getSyntaxErrors(), tokenStream.size(), startTime, null, parser);
+                FileParseResult fileParseResult = new FileParseResult(sourceName, 0, parseResult, syntaxErrorListener.getSyntaxErrors(), tokenCount, startTime, null, parser);
                 fileParseResultData = new BaseParserData<>(context, ParserDebuggerParserDataDefinitions.FILE_PARSE_RESULT, snapshot, fileParseResult);
                 parseTreeResult = new BaseParserData<>(context, ParserDebuggerParserDataDefinitions.REFERENCE_PARSE_TREE, snapshot, parseResult);
             }
@@ -121,31 +191,153 @@ public final class ParserDebuggerReferenceAnchorsParserTask implements ParserTas
         }
     }
 
+    static TracingParserInterpreter createParser(ParserInterpreterData parserInterpreterData, TokenStream tokenStream) {
+        String grammarFileName = parserInterpreterData.grammarFileName;
+        Vocabulary vocabulary = parserInterpreterData.vocabulary;
+        List<String> ruleNames = parserInterpreterData.ruleNames;
+        // the shared ATN keeps its DFA across runs, so decisions which were
+        // cached by earlier runs do not report their ambiguities again
+        ATN atn = parserInterpreterData.coldDfa ? parserInterpreterData.createPrivateATN() : parserInterpreterData.getATN();
+        TracingParserInterpreter parser = new TracingParserInterpreter(grammarFileName, vocabulary, ruleNames, atn, tokenStream);
+        StatisticsParserATNSimulator interpreter = new StatisticsParserATNSimulator(parser, atn);
+        interpreter.setInstrumentationLevel(parserInterpreterData.instrumentationLevel, parserInterpreterData.sampleInterval);
+        parser.setInterpreter(interpreter);
+        parser.setInstrumentationLevel(parserInterpreterData.instrumentationLevel, parserInterpreterData.sampleInterval);
+        parser.removeErrorListeners();
+        parser.setBuildParseTree(true);
+        return parser;
+    }
+
     public static class TracingParserInterpreter extends ParserInterpreter {
+        /**
+         * The transition which created each node of the parse tree. Only nodes
+         * inside the tree window have an entry. For
+         * {@link InstrumentationLevel#SAMPLED}, only one of every
+         * {@code sampleInterval} nodes has an entry, and for lower levels the
+         * map is empty.
+         */
         public final Map<ParseTree, Transition> associatedTransitions = new IdentityHashMap<>();
 
+        /**
+         * The number of times the rule or match transition leaving each ATN
+         * state was followed, indexed by state number. Unlike
+         * {@link #associatedTransitions}, this includes the transitions
+         * followed outside the tree window.
+         */
+        public final long[] transitionCounts;
+
+        private int treeWindowStart = 0;
+        private int treeWindowStop = Integer.MAX_VALUE;
+
+        private InstrumentationLevel instrumentationLevel = StatisticsParserATNSimulator.DEFAULT_INSTRUMENTATION_LEVEL;
+        private int sampleInterval = StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL;
+        private long traceCount;
+
         public TracingParserInterpreter(String grammarFileName, Vocabulary vocabulary, Collection<String> ruleNames, ATN atn, TokenStream input) {
             super(grammarFileName, vocabulary, ruleNames, atn, input);
+            transitionCounts = new long[atn.states.size()];
+        }
+
+        /**
+         * Limits parse tree construction to the input between two token
+         * indexes. Rule contexts which were entered before the window are
+         * attached to the tree when the window is reached, so the nodes in the
+         * window are reachable from the root.
+         *
+         * @param start The index of the first token in the window.
+         * @param stop The index of the last token in the window.
+         */
+        public void setTreeWindow(int start, int stop) {
+            this.treeWindowStart = start;
+            this.treeWindowStop = stop;
+        }
+
+        /**
+         * Sets the amount of information recorded by this interpreter. The
+         * {@link #transitionCounts} are updated for every level except
+         * {@link InstrumentationLevel#OFF}.
+         *
+         * @param level The instrumentation level.
+         * @param sampleInterval For {@link InstrumentationLevel#SAMPLED}, the
+         * transition of one of every {@code sampleInterval} parse tree nodes is
+         * recorded.
+         */
+        public void setInstrumentationLevel(@NonNull InstrumentationLevel level, int sampleInterval) {
+            Parameters.notNull("level", level);
+            if (sampleInterval <= 0) {
+                throw new IllegalArgumentException("sampleInterval must be positive");
+            }
+
+            this.instrumentationLevel = level;
+            this.sampleInterval = sampleInterval;
         }
 
         @Override
         protected void visitState(ATNState p) {
+            if (treeWindowStart > 0 || treeWindowStop < Integer.MAX_VALUE) {
+                updateTreeWindow();
+            }
+
             super.visitState(p);
 
-            if (p.getNumberOfTransitions() > 1) {
+            if (instrumentationLevel == InstrumentationLevel.OFF || p.getNumberOfTransitions() > 1) {
                 return;
             }
 
             Transition transition = p.transition(0);
+            if (transition instanceof RuleTransition || !p.onlyHasEpsilonTransitions()) {
+                transitionCounts[p.stateNumber]++;
+            }
+
+            if (!getBuildParseTree()) {
+                // no node was created for the transition
+                return;
+            }
+
             if (transition instanceof RuleTransition) {
                 // rule transition created a new context
-                associatedTransitions.put(_ctx, transition);
+                if (isTraced()) {
+                    associatedTransitions.put(_ctx, transition);
+                }
             }
-            else if (!p.onlyHasEpsilonTransitions()) {
+            else if (!p.onlyHasEpsilonTransitions() && isTraced()) {
                 // match transition created a new terminal or error node
                 associatedTransitions.put(_ctx.getChild(_ctx.getChildCount() - 1), transition);
             }
         }
+
+        private boolean isTraced() {
+            switch (instrumentationLevel) {
+            case FULL:
+                return true;
+
+            case SAMPLED:
+                return traceCount++ % sampleInterval == 0;
+
+            default:
+                return false;
+            }
+        }
+
+        private void updateTreeWindow() {
+            int index = _input.index();
+            boolean inWindow = index >= treeWindowStart && index <= treeWindowStop;
+            if (inWindow == getBuildParseTree()) {
+                return;
+            }
+
+            setBuildParseTree(inWindow);
+            if (inWindow) {
+                for (ParserRuleContext context = _ctx; context.getParent() != null; context = context.getParent()) {
+                    ParserRuleContext parent = context.getParent();
+                    if (parent.children != null && parent.children.contains(context)) {
+                        break;
+                    }
+
+                    parent.addChild(context);
+                }
+            }
+        }
     }
 
     private static class InterruptableTokenStream extends CommonTokenStream {
@@ -165,7 +357,7 @@ public final class ParserDebuggerReferenceAnchorsParserTask implements ParserTas
 
     private static final class Definition extends ParserTaskDefinition {
         private static final Collection<ParserDataDefinition<?>> INPUTS =
-            Collections.<ParserDataDefinition<?>>emptyList();
+            Collections.<ParserDataDefinition<?>>singletonList(ParserDebuggerParserDataDefinitions.LEXER_TOKENS);
         private static final Collection<ParserDataDefinition<?>> OUTPUTS =
             Arrays.<ParserDataDefinition<?>>asList(
                 ParserDebuggerParserDataDefinitions.FILE_PARSE_RESULT,
@@ -70,11 +70,24 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
             setAvailableRules(wizardPanel.getAvailableRules(), wizardPanel.getStartRule());
             setEncodingSpecified(wizardPanel.isEncodingSpecified());
             setEncoding(wizardPanel.getEncoding());
+            setFastPrediction(wizardPanel.isFastPrediction());
+            setDetectAmbiguities(wizardPanel.isDetectAmbiguities());
+            setColdDfa(wizardPanel.isColdDfa());
+            setInstrumentationLevel(wizardPanel.getInstrumentationLevel());
+            setSampleInterval(wizardPanel.getSampleInterval());
+            setStreaming(wizardPanel.isStreaming());
+            setTreeWindowStart(wizardPanel.getTreeWindowStart());
+            setTreeWindowStop(wizardPanel.getTreeWindowStop());
         }
 
         txtInputFile.getDocument().addDocumentListener(_documentListener);
         cmbStartRule.addActionListener(_actionListener);
         txtEncoding.getDocument().addDocumentListener(_documentListener);
+        cmbInstrumentationLevel.addActionListener(_actionListener);
+        txtSampleInterval.getDocument().addDocumentListener(_documentListener);
+        txtTreeWindowStart.getDocument().addDocumentListener(_documentListener);
+        txtTreeWindowStop.getDocument().addDocumentListener(_documentListener);
+        updateSampleIntervalEnabled();
     }
 
     public String getInputFile() {
@@ -124,12 +137,98 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
         txtEncoding.setText(value);
     }
 
+    public boolean isFastPrediction() {
+        return chkFastPrediction.isSelected();
+    }
+
+    public void setFastPrediction(boolean value) {
+        chkFastPrediction.setSelected(value);
+    }
+
+    public boolean isDetectAmbiguities() {
+        return chkDetectAmbiguities.isSelected();
+    }
+
+    public void setDetectAmbiguities(boolean value) {
+        chkDetectAmbiguities.setSelected(value);
+    }
+
+    public boolean isColdDfa() {
+        return chkColdDfa.isSelected();
+    }
+
+    public void setColdDfa(boolean value) {
+        chkColdDfa.setSelected(value);
+    }
+
+    public String getInstrumentationLevel() {
+        if (cmbInstrumentationLevel.getSelectedItem() == null) {
+            return StatisticsParserATNSimulator.DEFAULT_INSTRUMENTATION_LEVEL.name();
+        }
+
+        return cmbInstrumentationLevel.getSelectedItem().toString();
+    }
+
+    public void setInstrumentationLevel(String value) {
+        InstrumentationLevel level = InstrumentationLevel.fromString(value, StatisticsParserATNSimulator.DEFAULT_INSTRUMENTATION_LEVEL);
+        cmbInstrumentationLevel.setSelectedItem(level.name());
+    }
+
+    public String getSampleInterval() {
+        return txtSampleInterval.getText();
+    }
+
+    public void setSampleInterval(String value) {
+        if (value == null) {
+            value = Integer.toString(StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL);
+        }
+
+        txtSampleInterval.setText(value);
+    }
+
+    private void updateSampleIntervalEnabled() {
+        txtSampleInterval.setEnabled(InstrumentationLevel.SAMPLED.name().equals(getInstrumentationLevel()));
+    }
+
+    public boolean isStreaming() {
+        return chkStreaming.isSelected();
+    }
+
+    public void setStreaming(boolean value) {
+        chkStreaming.setSelected(value);
+    }
+
+    public String getTreeWindowStart() {
+        return txtTreeWindowStart.getText();
+    }
+
+    public void setTreeWindowStart(String value) {
+        if (value == null) {
+            value = "";
+        }
+
+        txtTreeWindowStart.setText(value);
+    }
+
+    public String getTreeWindowStop() {
+        return txtTreeWindowStop.getText();
+    }
+
+    public void setTreeWindowStop(String value) {
+        if (value == null) {
+            value = "";
+        }
+
+        txtTreeWindowStop.setText(value);
+    }
+
     @Override
     public String getName() {
         return "Parser Interpreter Options";
     }
 
     private void fireChange() {
+        updateSampleIntervalEnabled();
         if (_wizardPanel != null) {
             _wizardPanel.getChangeSupport().fireChange();
         }
@@ -154,6 +253,18 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
         chkEncoding = new javax.swing.JCheckBox();
         txtEncoding = new javax.swing.JTextField();
         btnDefaultEncoding = new javax.swing.JButton();
+        chkFastPrediction = new javax.swing.JCheckBox();
+        chkDetectAmbiguities = new javax.swing.JCheckBox();
+        chkColdDfa = new javax.swing.JCheckBox();
+        javax.swing.JLabel lblInstrumentationLevel = new javax.swing.JLabel();
+        cmbInstrumentationLevel = new javax.swing.JComboBox<String>();
+        javax.swing.JLabel lblSampleInterval = new javax.swing.JLabel();
+        txtSampleInterval = new javax.swing.JTextField();
+        chkStreaming = new javax.swing.JCheckBox();
+        javax.swing.JLabel lblTreeWindow = new javax.swing.JLabel();
+        txtTreeWindowStart = new javax.swing.JTextField();
+        javax.swing.JLabel lblTreeWindowTo = new javax.swing.JLabel();
+        txtTreeWindowStop = new javax.swing.JTextField();
 
         pnlInput.setBorder(javax.swing.BorderFactory.createTitledBorder(org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.pnlInput.border.title"))); // NOI18N
 
@@ -189,6 +300,33 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
             }
         });
 
+        org.openide.awt.Mnemonics.setLocalizedText(chkFastPrediction, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.chkFastPrediction.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(chkDetectAmbiguities, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.chkDetectAmbiguities.text")); // NOI18N
+
+        binding = org.jdesktop.beansbinding.Bindings.createAutoBinding(org.jdesktop.beansbinding.AutoBinding.UpdateStrategy.READ_WRITE, chkFastPrediction, org.jdesktop.beansbinding.ELProperty.create("${selected}"), chkDetectAmbiguities, org.jdesktop.beansbinding.BeanProperty.create("enabled"));
+        bindingGroup.addBinding(binding);
+
+        org.openide.awt.Mnemonics.setLocalizedText(chkColdDfa, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.chkColdDfa.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(lblInstrumentationLevel, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.lblInstrumentationLevel.text")); // NOI18N
+
+        cmbInstrumentationLevel.setModel(new javax.swing.DefaultComboBoxModel<String>(new String[] { "OFF", "COUNTERS", "SAMPLED", "FULL" }));
+
+        org.openide.awt.Mnemonics.setLocalizedText(lblSampleInterval, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.lblSampleInterval.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(chkStreaming, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.chkStreaming.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(lblTreeWindow, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.lblTreeWindow.text")); // NOI18N
+
+        binding = org.jdesktop.beansbinding.Bindings.createAutoBinding(org.jdesktop.beansbinding.AutoBinding.UpdateStrategy.READ_WRITE, chkStreaming, org.jdesktop.beansbinding.ELProperty.create("${selected}"), txtTreeWindowStart, org.jdesktop.beansbinding.BeanProperty.create("enabled"));
+        bindingGroup.addBinding(binding);
+
+        org.openide.awt.Mnemonics.setLocalizedText(lblTreeWindowTo, org.openide.util.NbBundle.getMessage(ParserDebuggerVisualPanel.class, "ParserDebuggerVisualPanel.lblTreeWindowTo.text")); // NOI18N
+
+        binding = org.jdesktop.beansbinding.Bindings.createAutoBinding(org.jdesktop.beansbinding.AutoBinding.UpdateStrategy.READ_WRITE, chkStreaming, org.jdesktop.beansbinding.ELProperty.create("${selected}"), txtTreeWindowStop, org.jdesktop.beansbinding.BeanProperty.create("enabled"));
+        bindingGroup.addBinding(binding);
+
         javax.swing.GroupLayout pnlInputLayout = new javax.swing.GroupLayout(pnlInput);
         pnlInput.setLayout(pnlInputLayout);
         pnlInputLayout.setHorizontalGroup(
@@ -208,6 +346,33 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
                 .addGroup(pnlInputLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
                     .addComponent(btnBrowseInput, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(btnDefaultEncoding, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)))
+            .addGroup(pnlInputLayout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(pnlInputLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(chkFastPrediction)
+                    .addGroup(pnlInputLayout.createSequentialGroup()
+                        .addGap(21, 21, 21)
+                        .addComponent(chkDetectAmbiguities))
+                    .addComponent(chkColdDfa)
+                    .addGroup(pnlInputLayout.createSequentialGroup()
+                        .addComponent(lblInstrumentationLevel)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(cmbInstrumentationLevel, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(lblSampleInterval)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(txtSampleInterval, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(chkStreaming)
+                    .addGroup(pnlInputLayout.createSequentialGroup()
+                        .addGap(21, 21, 21)
+                        .addComponent(lblTreeWindow)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(txtTreeWindowStart, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(lblTreeWindowTo)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(txtTreeWindowStop, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)))
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
         pnlInputLayout.setVerticalGroup(
             pnlInputLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -225,6 +390,26 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
                     .addComponent(chkEncoding)
                     .addComponent(txtEncoding, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(btnDefaultEncoding))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(chkFastPrediction)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(chkDetectAmbiguities)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(chkColdDfa)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(pnlInputLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblInstrumentationLevel)
+                    .addComponent(cmbInstrumentationLevel, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(lblSampleInterval)
+                    .addComponent(txtSampleInterval, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(chkStreaming)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(pnlInputLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblTreeWindow)
+                    .addComponent(txtTreeWindowStart, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(lblTreeWindowTo)
+                    .addComponent(txtTreeWindowStop, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
@@ -276,10 +461,18 @@ public final class ParserDebuggerVisualPanel extends javax.swing.JPanel {
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton btnBrowseInput;
     private javax.swing.JButton btnDefaultEncoding;
+    private javax.swing.JCheckBox chkColdDfa;
+    private javax.swing.JCheckBox chkDetectAmbiguities;
     private javax.swing.JCheckBox chkEncoding;
+    private javax.swing.JCheckBox chkFastPrediction;
+    private javax.swing.JCheckBox chkStreaming;
+    private javax.swing.JComboBox<String> cmbInstrumentationLevel;
     private javax.swing.JComboBox<String> cmbStartRule;
     private javax.swing.JTextField txtEncoding;
     private javax.swing.JTextField txtInputFile;
+    private javax.swing.JTextField txtSampleInterval;
+    private javax.swing.JTextField txtTreeWindowStart;
+    private javax.swing.JTextField txtTreeWindowStop;
     private org.jdesktop.beansbinding.BindingGroup bindingGroup;
     // End of variables declaration//GEN-END:variables
 }
@@ -9,16 +9,19 @@
 package org.antlr.works.editor.grammar.debugger;
 
 import java.nio.charset.Charset;
+import org.netbeans.api.annotations.common.NullAllowed;
 import org.openide.WizardDescriptor;
 import org.openide.util.NbPreferences;
 
 /**
+ * Reads the options of the parser interpreter wizard. When the wizard is
+ * {@code null}, the values last saved to the module preferences are used.
  *
  * @author Sam Harwell
  */
 public abstract class ParserDebuggerWizardOptions {
-    public static String getProperty(WizardDescriptor wiz, String name, String defaultValue) {
-        String result = (String)wiz.getProperty(name);
+    public static String getProperty(@NullAllowed WizardDescriptor wiz, String name, String defaultValue) {
+        String result = wiz != null ? (String)wiz.getProperty(name) : null;
         if (result != null) {
             return result;
         }
@@ -26,8 +29,8 @@ public abstract class ParserDebuggerWizardOptions {
        return NbPreferences.forModule(ParserDebuggerWizardOptions.class).get(name, defaultValue);
     }
 
-    public static boolean getBooleanProperty(WizardDescriptor wiz, String name, boolean defaultValue) {
-        String result = (String)wiz.getProperty(name);
+    public static boolean getBooleanProperty(@NullAllowed WizardDescriptor wiz, String name, boolean defaultValue) {
+        String result = wiz != null ? (String)wiz.getProperty(name) : null;
         if (result != null) {
             return Boolean.toString(true).equals(result);
         }
@@ -61,6 +64,49 @@ public abstract class ParserDebuggerWizardOptions {
         return getProperty(wiz, ParserDebuggerWizardPanel.ENCODING, Charset.defaultCharset().name());
     }
 
+    public static boolean isFastPrediction(WizardDescriptor wiz) {
+        return getBooleanProperty(wiz, ParserDebuggerWizardPanel.FAST_PREDICTION, false);
+    }
+
+    public static boolean isDetectAmbiguities(WizardDescriptor wiz) {
+        return getBooleanProperty(wiz, ParserDebuggerWizardPanel.DETECT_AMBIGUITIES, false);
+    }
+
+    public static boolean isColdDfa(WizardDescriptor wiz) {
+        return getBooleanProperty(wiz, ParserDebuggerWizardPanel.COLD_DFA, false);
+    }
+
+    public static InstrumentationLevel getInstrumentationLevel(WizardDescriptor wiz) {
+        InstrumentationLevel defaultValue = StatisticsParserATNSimulator.DEFAULT_INSTRUMENTATION_LEVEL;
+        return InstrumentationLevel.fromString(getProperty(wiz, ParserDebuggerWizardPanel.INSTRUMENTATION_LEVEL, defaultValue.name()), defaultValue);
+    }
+
+    public static int getSampleInterval(WizardDescriptor wiz) {
+        int result = getIntProperty(wiz, ParserDebuggerWizardPanel.SAMPLE_INTERVAL, StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL);
+        return result > 0 ? result : StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL;
+    }
+
+    public static boolean isStreaming(WizardDescriptor wiz) {
+        return getBooleanProperty(wiz, ParserDebuggerWizardPanel.STREAMING, false);
+    }
+
+    public static int getTreeWindowStart(WizardDescriptor wiz) {
+        return getIntProperty(wiz, ParserDebuggerWizardPanel.TREE_WINDOW_START, 0);
+    }
+
+    public static int getTreeWindowStop(WizardDescriptor wiz) {
+        return getIntProperty(wiz, ParserDebuggerWizardPanel.TREE_WINDOW_STOP, Integer.MAX_VALUE);
+    }
+
+    private static int getIntProperty(WizardDescriptor wiz, String name, int defaultValue) {
+        String result = getProperty(wiz, name, Integer.toString(defaultValue));
+        try {
+            return Integer.parseInt(result.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
     private ParserDebuggerWizardOptions() {
     }
 }
@@ -28,6 +28,14 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
     public static final String START_RULE = "startRule";
     public static final String ENCODING_SPECIFIED = "encodingSpecified";
     public static final String ENCODING = "encoding";
+    public static final String FAST_PREDICTION = "fastPrediction";
+    public static final String DETECT_AMBIGUITIES = "detectAmbiguities";
+    public static final String COLD_DFA = "coldDfa";
+    public static final String INSTRUMENTATION_LEVEL = "instrumentationLevel";
+    public static final String SAMPLE_INTERVAL = "sampleInterval";
+    public static final String STREAMING = "streaming";
+    public static final String TREE_WINDOW_START = "treeWindowStart";
+    public static final String TREE_WINDOW_STOP = "treeWindowStop";
     public static final String AVAILABLE_RULES = "availableRules";
 
     private final ChangeSupport _changeSupport = new ChangeSupport(this);
@@ -38,6 +46,14 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
     private String _startRule;
     private boolean _encodingSpecified;
     private String _encoding;
+    private boolean _fastPrediction;
+    private boolean _detectAmbiguities;
+    private boolean _coldDfa;
+    private String _instrumentationLevel;
+    private String _sampleInterval;
+    private boolean _streaming;
+    private String _treeWindowStart;
+    private String _treeWindowStop;
 
     /**
      * The visual component that displays this panel. If you need to access the
@@ -117,6 +133,134 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
         _encoding = value;
     }
 
+    public boolean isFastPrediction() {
+        if (component != null) {
+            return component.isFastPrediction();
+        }
+
+        return _fastPrediction;
+    }
+
+    public void setFastPrediction(boolean value) {
+        if (component != null) {
+            component.setFastPrediction(value);
+        }
+
+        _fastPrediction = value;
+    }
+
+    public boolean isDetectAmbiguities() {
+        if (component != null) {
+            return component.isDetectAmbiguities();
+        }
+
+        return _detectAmbiguities;
+    }
+
+    public void setDetectAmbiguities(boolean value) {
+        if (component != null) {
+            component.setDetectAmbiguities(value);
+        }
+
+        _detectAmbiguities = value;
+    }
+
+    public boolean isColdDfa() {
+        if (component != null) {
+            return component.isColdDfa();
+        }
+
+        return _coldDfa;
+    }
+
+    public void setColdDfa(boolean value) {
+        if (component != null) {
+            component.setColdDfa(value);
+        }
+
+        _coldDfa = value;
+    }
+
+    public String getInstrumentationLevel() {
+        if (component != null) {
+            return component.getInstrumentationLevel();
+        }
+
+        return _instrumentationLevel;
+    }
+
+    public void setInstrumentationLevel(String value) {
+        if (component != null) {
+            component.setInstrumentationLevel(value);
+        }
+
+        _instrumentationLevel = value;
+    }
+
+    public String getSampleInterval() {
+        if (component != null) {
+            return component.getSampleInterval();
+        }
+
+        return _sampleInterval;
+    }
+
+    public void setSampleInterval(String value) {
+        if (component != null) {
+            component.setSampleInterval(value);
+        }
+
+        _sampleInterval = value;
+    }
+
+    public boolean isStreaming() {
+        if (component != null) {
+            return component.isStreaming();
+        }
+
+        return _streaming;
+    }
+
+    public void setStreaming(boolean value) {
+        if (component != null) {
+            component.setStreaming(value);
+        }
+
+        _streaming = value;
+    }
+
+    public String getTreeWindowStart() {
+        if (component != null) {
+            return component.getTreeWindowStart();
+        }
+
+        return _treeWindowStart;
+    }
+
+    public void setTreeWindowStart(String value) {
+        if (component != null) {
+            component.setTreeWindowStart(value);
+        }
+
+        _treeWindowStart = value;
+    }
+
+    public String getTreeWindowStop() {
+        if (component != null) {
+            return component.getTreeWindowStop();
+        }
+
+        return _treeWindowStop;
+    }
+
+    public void setTreeWindowStop(String value) {
+        if (component != null) {
+            component.setTreeWindowStop(value);
+        }
+
+        _treeWindowStop = value;
+    }
+
     // Get the visual component for the panel. In this template, the component
     // is kept separate. This can be more efficient: if the wizard is created
     // but never displayed, or not all panels are displayed, it is better to
@@ -168,9 +312,45 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
             }
         }
 
+        if (InstrumentationLevel.SAMPLED.name().equals(getInstrumentationLevel())) {
+            String sampleInterval = getSampleInterval();
+            if (sampleInterval == null || sampleInterval.trim().isEmpty()) {
+                return false;
+            }
+
+            try {
+                if (Integer.parseInt(sampleInterval.trim()) <= 0) {
+                    return false;
+                }
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+
+        if (isStreaming()) {
+            // an empty bound leaves that end of the tree window open
+            int treeWindowStart = parseTreeWindowBound(getTreeWindowStart(), 0);
+            int treeWindowStop = parseTreeWindowBound(getTreeWindowStop(), Integer.MAX_VALUE);
+            if (treeWindowStart < 0 || treeWindowStop < 0 || treeWindowStart > treeWindowStop) {
+                return false;
+            }
+        }
+
         return true;
     }
 
+    private static int parseTreeWindowBound(String value, int defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
     @Override
     public void addChangeListener(ChangeListener l) {
         _changeSupport.addChangeListener(l);
@@ -193,6 +373,14 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
         setStartRule(ParserDebuggerWizardOptions.getProperty(wiz, START_RULE, ""));
         setEncodingSpecified(ParserDebuggerWizardOptions.getBooleanProperty(wiz, ENCODING_SPECIFIED, false));
         setEncoding(ParserDebuggerWizardOptions.getProperty(wiz, ENCODING, Charset.defaultCharset().name()));
+        setFastPrediction(ParserDebuggerWizardOptions.getBooleanProperty(wiz, FAST_PREDICTION, false));
+        setDetectAmbiguities(ParserDebuggerWizardOptions.getBooleanProperty(wiz, DETECT_AMBIGUITIES, false));
+        setColdDfa(ParserDebuggerWizardOptions.getBooleanProperty(wiz, COLD_DFA, false));
+        setInstrumentationLevel(ParserDebuggerWizardOptions.getInstrumentationLevel(wiz).name());
+        setSampleInterval(Integer.toString(ParserDebuggerWizardOptions.getSampleInterval(wiz)));
+        setStreaming(ParserDebuggerWizardOptions.getBooleanProperty(wiz, STREAMING, false));
+        setTreeWindowStart(ParserDebuggerWizardOptions.getProperty(wiz, TREE_WINDOW_START, ""));
+        setTreeWindowStop(ParserDebuggerWizardOptions.getProperty(wiz, TREE_WINDOW_STOP, ""));
     }
 
     @Override
@@ -201,5 +389,13 @@ public class ParserDebuggerWizardPanel implements WizardDescriptor.Panel<WizardD
         ParserDebuggerWizardOptions.setProperty(wiz, START_RULE, getStartRule());
         ParserDebuggerWizardOptions.setBooleanProperty(wiz, ENCODING_SPECIFIED, isEncodingSpecified());
         ParserDebuggerWizardOptions.setProperty(wiz, ENCODING, getEncoding());
+        ParserDebuggerWizardOptions.setBooleanProperty(wiz, FAST_PREDICTION, isFastPrediction());
+        ParserDebuggerWizardOptions.setBooleanProperty(wiz, DETECT_AMBIGUITIES, isDetectAmbiguities());
+        ParserDebuggerWizardOptions.setBooleanProperty(wiz, COLD_DFA, isColdDfa());
+        ParserDebuggerWizardOptions.setProperty(wiz, INSTRUMENTATION_LEVEL, getInstrumentationLevel());
+        ParserDebuggerWizardOptions.setProperty(wiz, SAMPLE_INTERVAL, getSampleInterval());
+        ParserDebuggerWizardOptions.setBooleanProperty(wiz, STREAMING, isStreaming());
+        ParserDebuggerWizardOptions.setProperty(wiz, TREE_WINDOW_START, getTreeWindowStart());
+        ParserDebuggerWizardOptions.setProperty(wiz, TREE_WINDOW_STOP, getTreeWindowStop());
     }
 }
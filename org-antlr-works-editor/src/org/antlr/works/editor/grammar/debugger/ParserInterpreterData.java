@@ -32,6 +32,64 @@ public class ParserInterpreterData extends AbstractInterpreterData {
 
     public LexerInterpreterData lexerInterpreterData;
 
+    /**
+     * When {@code true}, the input is parsed with SLL prediction first, and
+     * full LL prediction is only used if the SLL parse fails.
+     */
+    public boolean fastPrediction;
+
+    /**
+     * When {@code true} and {@link #fastPrediction} is set, a second pass
+     * reports exact ambiguities for the decisions which required full context
+     * during the first pass.
+     */
+    public boolean detectAmbiguities;
+
+    /**
+     * When {@code true}, each parse uses a private ATN with an empty DFA
+     * instead of the ATN shared by every run over the grammar. This is slower,
+     * but decisions which were already cached by earlier runs are predicted
+     * again, so every full context fallback and ambiguity in the input is
+     * reported.
+     */
+    public boolean coldDfa;
+
+    /**
+     * The amount of statistics gathered by the parser while interpreting the
+     * input.
+     */
+    public InstrumentationLevel instrumentationLevel = StatisticsParserATNSimulator.DEFAULT_INSTRUMENTATION_LEVEL;
+
+    /**
+     * For {@link InstrumentationLevel#SAMPLED}, the full statistics are
+     * gathered for one of every {@code sampleInterval} predictions and parse
+     * tree nodes.
+     */
+    public int sampleInterval = StatisticsParserATNSimulator.DEFAULT_SAMPLE_INTERVAL;
+
+    /**
+     * When {@code true}, the input is read from the file by
+     * {@link StreamingParserInterpreter} in a single pass over unbuffered
+     * character and token streams instead of being opened in the parser
+     * debugger, and the parse tree is only built for the tokens in
+     * {@link #treeWindowStart}..{@link #treeWindowStop}. This allows the
+     * interpreter to process inputs which are too large to hold every
+     * character, token, and parse tree node in memory.
+     */
+    public boolean streaming;
+
+    /**
+     * The index of the first token for which parse tree nodes are created when
+     * {@link #streaming} is set.
+     */
+    public int treeWindowStart;
+
+    /**
+     * The index of the last token for which parse tree nodes are created when
+     * {@link #streaming} is set.
+     */
+    public int treeWindowStop = Integer.MAX_VALUE;
+
     public static ParserInterpreterData buildFromSnapshot(DocumentSnapshot snapshot) {
         LexerInterpreterData lexerInterpreterData = LexerInterpreterData.buildFromSnapshot(snapshot);
         if (lexerInterpreterData == null) {
@@ -61,10 +119,12 @@ public class ParserInterpreterData extends AbstractInterpreterData {
 
         // then fill in the parser data
         data.grammarFileName = grammar.fileName;
+        data.grammarPath = snapshot.getVersionedDocument().getFileObject().getPath();
         data.serializedAtn = ATNSerializer.getSerializedAsString(grammar.atn, Arrays.asList(grammar.getRuleNames()));
         data.vocabulary = grammar.getVocabulary();
         data.ruleNames = new ArrayList<>(grammar.rules.keySet());
 
+        grammarUpdated(data);
         return data;
     }
 }
@@ -0,0 +1,166 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import javax.swing.JComboBox;
+import javax.swing.text.Document;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.VersionedDocumentUtilities;
+import org.antlr.netbeans.util.NotificationIcons;
+import org.antlr.works.editor.grammar.GrammarEditorKit;
+import org.antlr.works.editor.grammar.actions.RunInTestRigAction;
+import org.antlr.works.editor.grammar.codemodel.FileModel;
+import org.netbeans.modules.editor.NbEditorUtilities;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.awt.ActionRegistration;
+import org.openide.awt.NotificationDisplayer;
+import org.openide.cookies.EditorCookie;
+import org.openide.filesystems.FileChooserBuilder;
+import org.openide.util.NbBundle.Messages;
+import org.openide.util.RequestProcessor;
+import org.openide.windows.IOProvider;
+import org.openide.windows.InputOutput;
+import org.openide.windows.OutputWriter;
+
+/**
+ * Parses every file of a directory with the parser interpreter for the current
+ * grammar, and reports the decisions and files which dominate the parse time.
+ * The prediction and encoding options are the ones last used in the parser
+ * interpreter wizard.
+ *
+ * @author Sam Harwell
+ */
+@ActionID(
+    category = "Debug",
+    id = "org.antlr.works.editor.grammar.debugger.ProfileCorpusAction")
+@ActionRegistration(
+    displayName = "#CTL_ProfileCorpusAction")
+@ActionReference(path = "Menu/BuildProject", position = 250)
+@Messages("CTL_ProfileCorpusAction=Profile Parser on Corpus...")
+public final class ProfileCorpusAction implements ActionListener {
+    private static final RequestProcessor RP = new RequestProcessor(ProfileCorpusAction.class.getName(), 1, true, false);
+
+    private static final int REPORT_SIZE = Integer.getInteger(ProfileCorpusAction.class.getName() + ".reportSize", 25);
+
+    private final EditorCookie context;
+
+    public ProfileCorpusAction(EditorCookie context) {
+        this.context = context;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent ev) {
+        Document document = context.getDocument();
+        if (document == null) {
+            displayError("This command is only valid in the context of a document.");
+            return;
+        }
+
+        String mimeType = NbEditorUtilities.getMimeType(document);
+        if (!GrammarEditorKit.GRAMMAR_MIME_TYPE.equals(mimeType)) {
+            displayError("This command is only valid for ANTLR grammar files.");
+            return;
+        }
+
+        if (GrammarEditorKit.isLegacyMode(document)) {
+            displayError("This command is not valid in legacy (ANTLR 3) mode.");
+            return;
+        }
+
+        DocumentSnapshot snapshot = VersionedDocumentUtilities.getVersionedDocument(document).getCurrentSnapshot();
+        FileModel fileModel = RunInTestRigAction.getFileModel(snapshot);
+        List<String> availableRules = RunInTestRigAction.getAvailableRules(fileModel);
+        if (availableRules.isEmpty()) {
+            displayError("The grammar does not contain any parser rules.");
+            return;
+        }
+
+        JComboBox<String> startRuleComboBox = new JComboBox<>(availableRules.toArray(new String[availableRules.size()]));
+        String initialStartRule = fileModel != null ? RunInTestRigAction.getFirstRule(fileModel, true) : null;
+        if (initialStartRule != null) {
+            startRuleComboBox.setSelectedItem(initialStartRule);
+        }
+
+        DialogDescriptor descriptor = new DialogDescriptor(startRuleComboBox, "Select Start Rule");
+        if (DialogDisplayer.getDefault().notify(descriptor) != DialogDescriptor.OK_OPTION) {
+            return;
+        }
+
+        final File corpusDirectory = new FileChooserBuilder(ProfileCorpusAction.class)
+            .setTitle("Select corpus directory")
+            .setDirectoriesOnly(true)
+            .showOpenDialog();
+        if (corpusDirectory == null || !corpusDirectory.isDirectory()) {
+            return;
+        }
+
+        final ParserInterpreterData parserInterpreterData = ParserInterpreterData.buildFromSnapshot(snapshot);
+        if (parserInterpreterData == null) {
+            displayError("An error occurred while constructing a lexer or parser ATN from the grammar.");
+            return;
+        }
+
+        String startRule = (String)startRuleComboBox.getSelectedItem();
+        parserInterpreterData.startRuleIndex = parserInterpreterData.ruleNames.indexOf(startRule);
+        if (parserInterpreterData.startRuleIndex < 0) {
+            displayError(String.format("Could not locate a rule named '%s'", startRule));
+            return;
+        }
+
+        parserInterpreterData.fastPrediction = ParserDebuggerWizardOptions.isFastPrediction(null);
+        parserInterpreterData.detectAmbiguities = ParserDebuggerWizardOptions.isDetectAmbiguities(null);
+        parserInterpreterData.coldDfa = ParserDebuggerWizardOptions.isColdDfa(null);
+        parserInterpreterData.instrumentationLevel = ParserDebuggerWizardOptions.getInstrumentationLevel(null);
+        parserInterpreterData.sampleInterval = ParserDebuggerWizardOptions.getSampleInterval(null);
+
+        Charset charset = Charset.defaultCharset();
+        if (ParserDebuggerWizardOptions.isEncodingSpecified(null)) {
+            try {
+                charset = Charset.forName(ParserDebuggerWizardOptions.getEncoding(null));
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                displayError(String.format("The encoding '%s' is not supported.", ParserDebuggerWizardOptions.getEncoding(null)));
+                return;
+            }
+        }
+
+        final Charset encoding = charset;
+        RP.post(new Runnable() {
+            @Override
+            public void run() {
+                InputOutput inputOutput = IOProvider.getDefault().getIO("ANTLR Corpus Profiler", false);
+                inputOutput.select();
+                try (OutputWriter outputWriter = inputOutput.getOut()) {
+                    List<File> files = CorpusProfiler.findCorpusFiles(corpusDirectory);
+                    CorpusProfiler profiler = new CorpusProfiler(parserInterpreterData, encoding);
+                    outputWriter.format("Profiling %d files in %s (instrumentation: %s)...%n", files.size(), corpusDirectory.getPath(), profiler.getInstrumentationLevel());
+
+                    CorpusProfileResult result = profiler.profile(files, CorpusProfiler.DEFAULT_THREAD_COUNT);
+                    result.write(outputWriter, REPORT_SIZE);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private void displayError(String message) {
+        NotificationDisplayer.getDefault().notify("Profile Parser on Corpus", NotificationIcons.ERROR, message, null);
+    }
+}
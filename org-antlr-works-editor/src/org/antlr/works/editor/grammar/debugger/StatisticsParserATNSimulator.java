@@ -16,16 +16,27 @@ import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.atn.SimulatorState;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.dfa.DFAState;
 import org.antlr.v4.runtime.misc.Tuple2;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
 
 /**
+ * A parser ATN simulator which gathers per-decision prediction statistics.
+ * The amount of information gathered is controlled by the
+ * {@link InstrumentationLevel}, which defaults to the value of the
+ * {@code instrumentationLevel} system property of this class.
  *
  * @author Sam Harwell
  */
 public class StatisticsParserATNSimulator extends ParserATNSimulator {
+    public static final InstrumentationLevel DEFAULT_INSTRUMENTATION_LEVEL =
+        InstrumentationLevel.fromString(System.getProperty(StatisticsParserATNSimulator.class.getName() + ".instrumentationLevel"), InstrumentationLevel.FULL);
+    public static final int DEFAULT_SAMPLE_INTERVAL =
+        Math.max(1, Integer.getInteger(StatisticsParserATNSimulator.class.getName() + ".sampleInterval", 64));
 
     public final long[] decisionInvocations;
     public final long[] fullContextFallback;
@@ -40,9 +51,35 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
     public final long[] maxLookaheadSll;
     public final long[] minLookaheadLl;
     public final long[] maxLookaheadLl;
+    /**
+     * The total time in nanoseconds spent in {@link #adaptivePredict} for each
+     * decision.
+     */
+    public final long[] decisionTime;
+
+    /**
+     * When this is non-null, {@link PredictionMode#LL_EXACT_AMBIG_DETECTION}
+     * is used for the decisions in this set, and the current prediction mode is
+     * used for all other decisions.
+     */
+    public BitSet exactAmbiguityDecisions;
+
+    private InstrumentationLevel instrumentationLevel = DEFAULT_INSTRUMENTATION_LEVEL;
+    private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private boolean counting = DEFAULT_INSTRUMENTATION_LEVEL != InstrumentationLevel.OFF;
+    private long predictionCount;
 
     private int decision;
     private boolean reportedLookahead;
+    /**
+     * {@code true} if the full statistics are gathered for the current
+     * prediction.
+     */
+    private boolean tracing;
+    /**
+     * The number of predictions represented by the current traced prediction.
+     */
+    private int weight = 1;
 
     public StatisticsParserATNSimulator(ATN atn) {
         super(atn);
@@ -59,6 +96,7 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
         maxLookaheadSll = new long[atn.decisionToState.size()];
         minLookaheadLl = new long[atn.decisionToState.size()];
         maxLookaheadLl = new long[atn.decisionToState.size()];
+        decisionTime = new long[atn.decisionToState.size()];
         for (int i = 0; i < minLookaheadSll.length; i++) {
             minLookaheadSll[i] = Long.MAX_VALUE;
             minLookaheadLl[i] = Long.MAX_VALUE;
@@ -82,6 +120,7 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
         maxLookaheadSll = new long[atn.decisionToState.size()];
         minLookaheadLl = new long[atn.decisionToState.size()];
         maxLookaheadLl = new long[atn.decisionToState.size()];
+        decisionTime = new long[atn.decisionToState.size()];
         for (int i = 0; i < minLookaheadSll.length; i++) {
             minLookaheadSll[i] = Long.MAX_VALUE;
             minLookaheadLl[i] = Long.MAX_VALUE;
@@ -90,15 +129,76 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
         }
     }
 
+    public InstrumentationLevel getInstrumentationLevel() {
+        return instrumentationLevel;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Sets the amount of information gathered by this simulator.
+     *
+     * @param level The instrumentation level.
+     * @param sampleInterval For {@link InstrumentationLevel#SAMPLED}, the full
+     * statistics are gathered for one of every {@code sampleInterval}
+     * predictions.
+     */
+    public void setInstrumentationLevel(@NonNull InstrumentationLevel level, int sampleInterval) {
+        Parameters.notNull("level", level);
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval must be positive");
+        }
+
+        this.instrumentationLevel = level;
+        this.sampleInterval = sampleInterval;
+        this.counting = level != InstrumentationLevel.OFF;
+    }
+
     @Override
     public int adaptivePredict(TokenStream input, int decision, ParserRuleContext outerContext) {
+        PredictionMode previousPredictionMode = null;
+        if (exactAmbiguityDecisions != null && exactAmbiguityDecisions.get(decision)) {
+            previousPredictionMode = getPredictionMode();
+            setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
+        }
+
+        switch (instrumentationLevel) {
+        case FULL:
+            tracing = true;
+            weight = 1;
+            break;
+
+        case SAMPLED:
+            tracing = predictionCount++ % sampleInterval == 0;
+            weight = sampleInterval;
+            break;
+
+        default:
+            tracing = false;
+            break;
+        }
+
+        long startTime = tracing ? System.nanoTime() : 0;
         try {
             this.decision = decision;
-            this.reportedLookahead = false;
-            decisionInvocations[decision]++;
+            this.reportedLookahead = !tracing;
+            if (counting) {
+                decisionInvocations[decision]++;
+            }
+
             return super.adaptivePredict(input, decision, outerContext);
         } finally {
+            if (tracing) {
+                decisionTime[decision] += (System.nanoTime() - startTime) * weight;
+                tracing = false;
+            }
+
             this.decision = -1;
+            if (previousPredictionMode != null) {
+                setPredictionMode(previousPredictionMode);
+            }
         }
     }
 
@@ -123,12 +223,12 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
             }
 
             if (!state.useContext) {
-                totalLookaheadSll[dfa.decision] += k;
+                totalLookaheadSll[dfa.decision] += k * weight;
                 minLookaheadSll[dfa.decision] = Math.min(minLookaheadSll[dfa.decision], k);
                 maxLookaheadSll[dfa.decision] = Math.max(maxLookaheadSll[dfa.decision], k);
             }
             else {
-                totalLookaheadLl[dfa.decision] += k;
+                totalLookaheadLl[dfa.decision] += k * weight;
                 minLookaheadLl[dfa.decision] = Math.min(minLookaheadLl[dfa.decision], k);
                 maxLookaheadLl[dfa.decision] = Math.max(maxLookaheadLl[dfa.decision], k);
             }
@@ -160,12 +260,12 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
             }
 
             if (!initialState.useContext) {
-                totalLookaheadSll[dfa.decision] += k;
+                totalLookaheadSll[dfa.decision] += k * weight;
                 minLookaheadSll[dfa.decision] = Math.min(minLookaheadSll[dfa.decision], k);
                 maxLookaheadSll[dfa.decision] = Math.max(maxLookaheadSll[dfa.decision], k);
             }
             else {
-                totalLookaheadLl[dfa.decision] += k;
+                totalLookaheadLl[dfa.decision] += k * weight;
                 minLookaheadLl[dfa.decision] = Math.min(minLookaheadLl[dfa.decision], k);
                 maxLookaheadLl[dfa.decision] = Math.max(maxLookaheadLl[dfa.decision], k);
             }
@@ -178,19 +278,25 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
 
     @Override
     protected DFAState getExistingTargetState(DFAState previousD, int t) {
-        totalTransitions[decision]++;
+        if (counting) {
+            totalTransitions[decision]++;
+        }
+
         return super.getExistingTargetState(previousD, t);
     }
 
     @Override
     protected Tuple2<DFAState, ParserRuleContext> computeTargetState(DFA dfa, DFAState s, ParserRuleContext remainingGlobalContext, int t, boolean useContext, PredictionContextCache contextCache) {
-        computedTransitions[decision]++;
+        if (counting) {
+            computedTransitions[decision]++;
+        }
+
         return super.computeTargetState(dfa, s, remainingGlobalContext, t, useContext, contextCache);
     }
 
     @Override
     protected SimulatorState computeReachSet(DFA dfa, SimulatorState previous, int t, PredictionContextCache contextCache) {
-        if (previous.useContext) {
+        if (previous.useContext && counting) {
             totalTransitions[decision]++;
             computedTransitions[decision]++;
             fullContextTransitions[decision]++;
@@ -202,6 +308,14 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
     @Override
     protected void reportAttemptingFullContext(DFA dfa, BitSet conflictingAlts, SimulatorState conflictState, int startIndex, int stopIndex) {
         super.reportAttemptingFullContext(dfa, conflictingAlts, conflictState, startIndex, stopIndex);
+        // counted at every level, since the ambiguity detection pass of the
+        // parser debugger selects its decisions from these counts
+        fullContextFallback[dfa.decision]++;
+
+        if (!tracing) {
+            return;
+        }
+
             int k;
             if (startIndex == stopIndex) {
                 k = 1;
@@ -217,8 +331,7 @@ public class StatisticsParserATNSimulator extends ParserATNSimulator {
                 }
             }
 
-        fullContextFallback[dfa.decision]++;
-        totalLookaheadSll[dfa.decision] += k;
+        totalLookaheadSll[dfa.decision] += k * weight;
         minLookaheadSll[dfa.decision] = Math.min(minLookaheadSll[dfa.decision], k);
         maxLookaheadSll[dfa.decision] = Math.max(maxLookaheadSll[dfa.decision], k);
     }
@@ -0,0 +1,221 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+
+package org.antlr.works.editor.grammar.debugger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.works.editor.grammar.debugger.ParserDebuggerReferenceAnchorsParserTask.TracingParserInterpreter;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.netbeans.api.progress.ProgressHandle;
+import org.openide.util.Parameters;
+
+/**
+ * Runs the parser interpreter for a grammar over a single input file without
+ * loading the file into an editor document. The characters and tokens are read
+ * through unbuffered streams, so the memory used by a run does not depend on
+ * the size of the input. Parse tree nodes are only created for the tokens in
+ * {@link ParserInterpreterData#treeWindowStart}..{@link ParserInterpreterData#treeWindowStop}.
+ *
+ * @author Sam Harwell
+ */
+public final class StreamingParserInterpreter {
+    private final ParserInterpreterData parserInterpreterData;
+    private final Charset encoding;
+
+    public StreamingParserInterpreter(@NonNull ParserInterpreterData parserInterpreterData, @NonNull Charset encoding) {
+        Parameters.notNull("parserInterpreterData", parserInterpreterData);
+        Parameters.notNull("encoding", encoding);
+        this.parserInterpreterData = parserInterpreterData;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Parses the specified file and writes the syntax errors, the parse tree
+     * of the tree window, and the decision statistics of the run.
+     *
+     * @param file The input file.
+     * @param writer The output writer.
+     * @param reportSize The maximum number of syntax errors and decisions to
+     * list.
+     * @param progress The progress handle to update with the fraction of the
+     * input which was read, or {@code null}.
+     * @throws IOException if an I/O error occurred while reading the input.
+     * @throws CancellationException if the current thread was interrupted
+     * while parsing.
+     */
+    public void parse(@NonNull File file, @NonNull final PrintWriter writer, final int reportSize, @NullAllowed ProgressHandle progress) throws IOException {
+        Parameters.notNull("file", file);
+        Parameters.notNull("writer", writer);
+
+        CountingInputStream inputStream = new CountingInputStream(new FileInputStream(file));
+        try (Reader reader = new InputStreamReader(inputStream, encoding)) {
+            UnbufferedCharStream input = new UnbufferedCharStream(reader);
+            input.name = file.getPath();
+
+            long startTime = System.nanoTime();
+            LexerInterpreterData lexerInterpreterData = parserInterpreterData.lexerInterpreterData;
+            LexerInterpreter lexer = new LexerInterpreter(lexerInterpreterData.grammarFileName, lexerInterpreterData.vocabulary, lexerInterpreterData.ruleNames, lexerInterpreterData.modeNames, lexerInterpreterData.getATN(), input);
+            // the unbuffered character stream releases the text of consumed tokens
+            lexer.setTokenFactory(new CommonTokenFactory(true));
+            lexer.removeErrorListeners();
+            InterruptableUnbufferedTokenStream tokenStream = new InterruptableUnbufferedTokenStream(lexer, inputStream, file.length(), progress);
+
+            // a single pass, since the unbuffered stream cannot be reset for a second prediction mode
+            TracingParserInterpreter parser = ParserDebuggerReferenceAnchorsParserTask.createParser(parserInterpreterData, tokenStream);
+            boolean hasTreeWindow = parserInterpreterData.treeWindowStart > 0 || parserInterpreterData.treeWindowStop < Integer.MAX_VALUE;
+            if (hasTreeWindow) {
+                parser.setTreeWindow(parserInterpreterData.treeWindowStart, parserInterpreterData.treeWindowStop);
+            } else {
+                parser.setBuildParseTree(false);
+            }
+
+            StatisticsParserATNSimulator interpreter = (StatisticsParserATNSimulator)parser.getInterpreter();
+            if (parserInterpreterData.fastPrediction) {
+                interpreter.setPredictionMode(PredictionMode.LL);
+                interpreter.reportAmbiguities = parserInterpreterData.detectAmbiguities;
+            } else {
+                interpreter.optimize_ll1 = false;
+                interpreter.reportAmbiguities = true;
+                interpreter.setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
+            }
+
+            parser.addErrorListener(new StatisticsParserErrorListener());
+            parser.addErrorListener(new BaseErrorListener() {
+                private int reported;
+
+                @Override
+                public <T extends Token> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                    if (reported++ < reportSize) {
+                        writer.format("line %d:%d %s%n", line, charPositionInLine, msg);
+                    }
+                }
+            });
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            ParserRuleContext parseResult = parser.parse(parserInterpreterData.startRuleIndex);
+            long elapsedTime = System.nanoTime() - startTime;
+
+            if (hasTreeWindow) {
+                writer.println(parseResult.toStringTree(parser));
+            }
+
+            // the EOF token is included in the token count of the buffered stream
+            int tokenCount = tokenStream.index() + 1;
+            CorpusProfileResult result = new CorpusProfileResult(parserInterpreterData, elapsedTime);
+            result.addWorkerStatistics(interpreter, Collections.singletonList(new CorpusProfileResult.FileProfile(file, tokenCount, parser.getNumberOfSyntaxErrors(), elapsedTime, null)));
+            result.write(writer, reportSize);
+        }
+    }
+
+    private static class InterruptableUnbufferedTokenStream extends UnbufferedTokenStream {
+        private static final int PROGRESS_UNITS = 1000;
+        private static final int PROGRESS_INTERVAL = 4096;
+
+        private final CountingInputStream inputStream;
+        private final long inputLength;
+        private final ProgressHandle progress;
+        private int consumed;
+
+        public InterruptableUnbufferedTokenStream(TokenSource tokenSource, CountingInputStream inputStream, long inputLength, ProgressHandle progress) {
+            super(tokenSource);
+            this.inputStream = inputStream;
+            this.inputLength = Math.max(1, inputLength);
+            this.progress = progress;
+            if (progress != null) {
+                progress.switchToDeterminate(PROGRESS_UNITS);
+            }
+        }
+
+        @Override
+        public void consume() {
+            if (Thread.interrupted()) {
+                throw new CancellationException();
+            }
+
+            super.consume();
+            if (progress != null && ++consumed % PROGRESS_INTERVAL == 0) {
+                // the reader buffers ahead of the lexer, so this slightly overestimates the progress
+                long units = inputStream.getCount() * PROGRESS_UNITS / inputLength;
+                progress.progress((int)Math.min(PROGRESS_UNITS, units));
+            }
+        }
+
+        @Override
+        public String getText(Interval interval) {
+            try {
+                return super.getText(interval);
+            } catch (UnsupportedOperationException ex) {
+                // the tokens were released from the buffer; this only affects error messages
+                return "...";
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+}
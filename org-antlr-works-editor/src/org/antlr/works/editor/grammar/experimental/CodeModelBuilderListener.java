@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import org.antlr.netbeans.editor.text.DocumentSnapshot;
@@ -24,6 +25,9 @@ import org.antlr.v4.runtime.RuleDependencies;
 import org.antlr.v4.runtime.RuleDependency;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.works.editor.antlr4.parsing.ParseTrees;
 import org.antlr.works.editor.grammar.codemodel.impl.ChannelModelImpl;
@@ -70,9 +74,13 @@ public class CodeModelBuilderListener extends GrammarParserBaseListener {
     private final Project project;
     private final DocumentSnapshot snapshot;
     private final TokenStream tokens;
+    @NullAllowed
+    private final Map<ParserRuleContext, RuleModelImpl> reusableRuleModels;
 
     // final result
     private FileModelImpl fileModel;
+    private final Map<ParserRuleContext, RuleModelImpl> ruleModels = new IdentityHashMap<>();
+    private int reusedRuleCount;
 
     private final Deque<ModeModelImpl> modeModelStack = new ArrayDeque<>();
     private final Deque<RuleModelImpl> ruleModelStack = new ArrayDeque<>();
@@ -86,16 +94,67 @@ public class CodeModelBuilderListener extends GrammarParserBaseListener {
     private final Deque<Map<String, Collection<TerminalNode>>> labelUses = new ArrayDeque<>();
 
     public CodeModelBuilderListener(DocumentSnapshot snapshot, TokenStream tokens) {
+        this(snapshot, tokens, null);
+    }
+
+    /**
+     * Creates a listener which reuses the rule models of a previous build for
+     * rule contexts which appear unchanged in the tree being walked. Reuse
+     * only applies when the tree is walked with {@link #walk}.
+     *
+     * @param snapshot The snapshot.
+     * @param tokens The token stream for the parse tree.
+     * @param reusableRuleModels The rule models of a previous build, as
+     * returned by {@link #getRuleModels}, or {@code null} to build every rule.
+     */
+    public CodeModelBuilderListener(DocumentSnapshot snapshot, TokenStream tokens, @NullAllowed Map<ParserRuleContext, RuleModelImpl> reusableRuleModels) {
         FileObject fileObject = snapshot.getVersionedDocument().getFileObject();
         this.project = fileObject != null ? FileOwnerQuery.getOwner(fileObject) : null;
         this.snapshot = snapshot;
         this.tokens = tokens;
+        this.reusableRuleModels = reusableRuleModels;
     }
 
     public FileModelImpl getFileModel() {
         return fileModel;
     }
 
+    /**
+     * Gets the parser and lexer rule models of the file model, keyed by the
+     * context each one was created from.
+     */
+    @NonNull
+    public Map<ParserRuleContext, RuleModelImpl> getRuleModels() {
+        return ruleModels;
+    }
+
+    public int getReusedRuleCount() {
+        return reusedRuleCount;
+    }
+
+    /**
+     * Walks {@code tree} with this listener, skipping the subtrees of rules
+     * whose models can be reused from the previous build.
+     */
+    public void walk(@NonNull ParseTree tree) {
+        new ReusingParseTreeWalker().walk(this, tree);
+    }
+
+    private boolean tryReuseRule(ParserRuleContext ctx) {
+        if (reusableRuleModels == null || fileModel == null || !modeModelStack.isEmpty()) {
+            return false;
+        }
+
+        RuleModelImpl ruleModel = reusableRuleModels.get(ctx);
+        if (ruleModel == null || !fileModel.reuseRule(ruleModel)) {
+            return false;
+        }
+
+        ruleModels.put(ctx, ruleModel);
+        reusedRuleCount++;
+        return true;
+    }
+
     @Override
     @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_grammarSpec, version=0, dependents=Dependents.PARENTS)
     public void enterGrammarSpec(GrammarSpecContext ctx) {
@@ -149,6 +208,7 @@ public class CodeModelBuilderListener extends GrammarParserBaseListener {
         }
 
         ruleContainerStack.peek().add(ruleModel);
+        ruleModels.put(ctx, ruleModel);
         ruleModelStack.push(ruleModel);
         parameterContainerStack.push(ruleModel.getParameters());
         returnValueContainerStack.push(ruleModel.getReturnValues());
@@ -413,4 +473,17 @@ public class CodeModelBuilderListener extends GrammarParserBaseListener {
         return tokens.getText(context.start, context.stop);
     }
 
+    private class ReusingParseTreeWalker extends ParseTreeWalker {
+
+        @Override
+        public void walk(ParseTreeListener listener, ParseTree t) {
+            if (t instanceof ParserRuleContext && tryReuseRule((ParserRuleContext)t)) {
+                return;
+            }
+
+            super.walk(listener, t);
+        }
+
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.grammar.experimental;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.VersionedDocument;
+import org.antlr.netbeans.editor.text.VersionedDocumentUtilities;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.works.editor.antlr4.classification.DocumentSnapshotCharStream;
+import org.antlr.works.editor.grammar.GrammarEditorKit;
+import org.antlr.works.editor.grammar.codemodel.impl.CodeModelCacheImpl;
+import org.antlr.works.editor.grammar.codemodel.impl.CodeModelIndex;
+import org.antlr.works.editor.grammar.codemodel.impl.CodeModelProjectCache;
+import org.antlr.works.editor.grammar.codemodel.impl.FileModelImpl;
+import org.antlr.works.editor.grammar.experimental.generated.AbstractGrammarParser.GrammarSpecContext;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Loads the code model of every grammar in a project in the background. Files
+ * which are unchanged since the last session are read from the project's
+ * {@link CodeModelIndex}; other files are parsed, and the index is updated.
+ *
+ * <p>Models of files which have already been published by an open editor are
+ * not replaced.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class CodeModelProjectIndexer {
+    // -J-Dorg.antlr.works.editor.grammar.experimental.CodeModelProjectIndexer.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(CodeModelProjectIndexer.class.getName());
+
+    /**
+     * When {@code true}, the code model of a project is loaded from the
+     * on-disk index the first time a grammar in the project is parsed.
+     */
+    private static final boolean ENABLE_PROJECT_INDEX = true;
+
+    private static final RequestProcessor RP = new RequestProcessor(CodeModelProjectIndexer.class.getName(), 1, false, false);
+
+    private static final Set<Project> indexedProjects = Collections.newSetFromMap(new WeakHashMap<Project, Boolean>());
+
+    private CodeModelProjectIndexer() {
+    }
+
+    /**
+     * Schedules indexing of {@code project}, unless it was already scheduled
+     * during this session.
+     */
+    public static void ensureIndexed(@NullAllowed final Project project) {
+        if (!ENABLE_PROJECT_INDEX || project == null) {
+            return;
+        }
+
+        synchronized (indexedProjects) {
+            if (!indexedProjects.add(project)) {
+                return;
+            }
+        }
+
+        RP.post(new Runnable() {
+
+            @Override
+            public void run() {
+                indexProject(project);
+            }
+
+        });
+    }
+
+    private static void indexProject(@NonNull Project project) {
+        long startTime = System.nanoTime();
+        CodeModelProjectCache projectCache = CodeModelCacheImpl.getInstance().getProjectCache(project, true);
+        if (projectCache == null) {
+            return;
+        }
+
+        CodeModelIndex index = CodeModelIndex.load(project);
+        List<String> paths = new ArrayList<>();
+        int loadedCount = 0;
+        int parsedCount = 0;
+
+        Enumeration<? extends FileObject> children = project.getProjectDirectory().getChildren(true);
+        while (children.hasMoreElements()) {
+            FileObject fileObject = children.nextElement();
+            if (!isGrammarFile(fileObject) || FileOwnerQuery.getOwner(fileObject) != project) {
+                continue;
+            }
+
+            String path = index.getRelativePath(fileObject);
+            if (path == null) {
+                continue;
+            }
+
+            paths.add(path);
+            FileModelImpl fileModel = index.getFileModel(fileObject);
+            if (fileModel != null) {
+                loadedCount++;
+            } else {
+                // read the stamp first, so a save during the parse is detected
+                long lastModified = fileObject.lastModified().getTime();
+                long size = fileObject.getSize();
+                try {
+                    fileModel = buildFileModel(fileObject);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.FINE, "Could not index " + fileObject.getPath(), ex);
+                }
+
+                if (fileModel == null) {
+                    continue;
+                }
+
+                if (fileObject.lastModified().getTime() == lastModified && fileObject.getSize() == size) {
+                    index.putFileModel(fileObject, fileModel, lastModified, size);
+                }
+
+                parsedCount++;
+            }
+
+            projectCache.addIndexedFile(fileModel);
+        }
+
+        index.retainAll(paths);
+        try {
+            index.save();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Could not save the code model index.", ex);
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            long elapsed = (System.nanoTime() - startTime) / 1000000;
+            LOGGER.log(Level.FINE, "Indexed {0}: {1} files loaded from the index, {2} files parsed in {3}ms.",
+                new Object[] { project.getProjectDirectory().getPath(), loadedCount, parsedCount, elapsed });
+        }
+    }
+
+    private static boolean isGrammarFile(@NonNull FileObject fileObject) {
+        if (!fileObject.isData()) {
+            return false;
+        }
+
+        String ext = fileObject.getExt();
+        return "g4".equals(ext) || "g".equals(ext);
+    }
+
+    /**
+     * Builds the model of the saved contents of {@code fileObject}. The
+     * versioned document created for a {@link FileObject} is not backed by an
+     * editor document, so unsaved changes in an open editor are never indexed.
+     */
+    @CheckForNull
+    private static FileModelImpl buildFileModel(@NonNull FileObject fileObject) {
+        VersionedDocument versionedDocument = VersionedDocumentUtilities.getVersionedDocument(fileObject);
+        assert versionedDocument.getDocument() == null;
+        DocumentSnapshot snapshot = versionedDocument.getCurrentSnapshot();
+        if (GrammarEditorKit.isLegacyMode(snapshot)) {
+            return null;
+        }
+
+        CommonTokenStream tokenStream = new CommonTokenStream(new GrammarLexer(new DocumentSnapshotCharStream(snapshot)));
+        GrammarSpecContext parseResult;
+        GrammarParser parser = GrammarParserFactory.DEFAULT.getParser(tokenStream);
+        try {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.removeErrorListeners();
+            parser.setBuildParseTree(true);
+            parser.setErrorHandler(new BailErrorStrategy());
+            parseResult = parser.grammarSpec();
+        } catch (ParseCancellationException ex) {
+            if (ex.getCause() instanceof RecognitionException) {
+                // retry with default error handler
+                tokenStream.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setInputStream(tokenStream);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parseResult = parser.grammarSpec();
+            } else {
+                throw ex;
+            }
+        } finally {
+            GrammarParserFactory.DEFAULT.putParser(parser);
+        }
+
+        CodeModelBuilderListener listener = new CodeModelBuilderListener(snapshot, tokenStream);
+        listener.walk(parseResult);
+        return listener.getFileModel();
+    }
+}
@@ -124,6 +124,8 @@ public final class CurrentRuleContextParserTask implements ParserTask {
                             } else {
                                 throw ex;
                             }
+                        } finally {
+                            GrammarParserFactory.DEFAULT.putParser(parser);
                         }
                     }
                 }
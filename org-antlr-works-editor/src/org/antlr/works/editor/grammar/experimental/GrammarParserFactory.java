@@ -11,6 +11,7 @@ package org.antlr.works.editor.grammar.experimental;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.works.editor.antlr4.completion.AbstractParserCache;
 import org.antlr.works.editor.antlr4.parsing.DescriptiveErrorListener;
 import org.netbeans.api.annotations.common.NonNull;
 
@@ -21,6 +22,15 @@ import org.netbeans.api.annotations.common.NonNull;
 public class GrammarParserFactory {
     public static final GrammarParserFactory DEFAULT = new GrammarParserFactory();
 
+    private final AbstractParserCache<GrammarParser> cache = new AbstractParserCache<GrammarParser>(GrammarParserFactory.class.getName()) {
+
+        @Override
+        protected GrammarParser createParser(TokenStream input) {
+            return GrammarParserFactory.this.createParser(input);
+        }
+
+    };
+
     @NonNull
     protected GrammarParser createParser(@NonNull TokenStream input) {
         GrammarParser parser = new GrammarParser(input);
@@ -29,7 +39,7 @@ public class GrammarParserFactory {
 
     @NonNull
     public GrammarParser getParser(@NonNull TokenStream input) {
-        GrammarParser result = createParser(input);
+        GrammarParser result = cache.getParser(input);
         result.getInterpreter().setPredictionMode(PredictionMode.LL);
         result.removeErrorListeners();
         result.addErrorListener(DescriptiveErrorListener.INSTANCE);
@@ -37,4 +47,17 @@ public class GrammarParserFactory {
         result.setErrorHandler(new DefaultErrorStrategy());
         return result;
     }
+
+    /**
+     * Returns a parser obtained from {@link #getParser} to the pool after the
+     * caller is done with it.
+     */
+    public void putParser(@NonNull GrammarParser parser) {
+        cache.putParser(parser);
+    }
+
+    @NonNull
+    public AbstractParserCache<GrammarParser> getCache() {
+        return cache;
+    }
 }
@@ -8,11 +8,8 @@
  */
 package org.antlr.works.editor.grammar.experimental;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
-import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
 import org.antlr.netbeans.editor.classification.TokenTag;
 import org.antlr.netbeans.editor.tagging.Tagger;
@@ -30,6 +27,7 @@ import org.antlr.netbeans.parsing.spi.ParserTaskManager;
 import org.antlr.netbeans.parsing.spi.ParserTaskProvider;
 import org.antlr.netbeans.parsing.spi.ParserTaskScheduler;
 import org.antlr.v4.runtime.Token;
+import org.antlr.works.editor.antlr4.classification.TokensTaskTaggerCache;
 import org.antlr.works.editor.grammar.GrammarEditorKit;
 import org.antlr.works.editor.grammar.GrammarParserDataDefinitions;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
@@ -42,8 +40,6 @@ public final class LexerTokensParserTask implements ParserTask {
 
     private static final String DOCUMENT_CACHE_KEY = LexerTokensParserTask.class.getName() + "-snapshot-data";
 
-    private final Object lock = new Object();
-
     private LexerTokensParserTask() {
     }
 
@@ -57,17 +53,7 @@ public final class LexerTokensParserTask implements ParserTask {
         throws InterruptedException, ExecutionException {
 
         if (requestedData.contains(GrammarParserDataDefinitions.LEXER_TOKENS)) {
-            DocumentCacheMap documentCache;
-
-            synchronized (lock) {
-                documentCache = (DocumentCacheMap)snapshot.getVersionedDocument().getProperty(DOCUMENT_CACHE_KEY);
-
-                if (documentCache == null) {
-                    documentCache = new DocumentCacheMap();
-                    snapshot.getVersionedDocument().putProperty(DOCUMENT_CACHE_KEY, documentCache);
-                }
-            }
-
+            TokensTaskTaggerCache documentCache = TokensTaskTaggerCache.getCache(snapshot.getVersionedDocument(), DOCUMENT_CACHE_KEY);
             ParserData<Tagger<TokenTag<Token>>> result;
             synchronized (documentCache) {
                 if (GrammarEditorKit.isLegacyMode(snapshot)) {
@@ -80,21 +66,7 @@ public final class LexerTokensParserTask implements ParserTask {
                 result = documentCache.get(snapshot);
 
                 if (result == null) {
-                    int requestedVersion = snapshot.getVersion().getVersionNumber();
-                    ParserData<Tagger<TokenTag<Token>>> previousResult = null;
-                    int previousVersion = -1;
-                    List<ParserData<Tagger<TokenTag<Token>>>> values;
-                    synchronized (documentCache) {
-                        values = new ArrayList<>(documentCache.values());
-                    }
-
-                    for (ParserData<Tagger<TokenTag<Token>>> data : values) {
-                        int dataVersion = data.getSnapshot().getVersion().getVersionNumber();
-                        if (dataVersion > previousVersion && dataVersion < requestedVersion) {
-                            previousResult = data;
-                            previousVersion = dataVersion;
-                        }
-                    }
+                    ParserData<Tagger<TokenTag<Token>>> previousResult = documentCache.getPredecessor(snapshot);
 
                     if (previousResult != null) {
                         GrammarTokensTaskTaggerSnapshot previousTagger = (GrammarTokensTaskTaggerSnapshot)previousResult.getData();
@@ -105,14 +77,7 @@ public final class LexerTokensParserTask implements ParserTask {
                         result = new BaseParserData<>(context, GrammarParserDataDefinitions.LEXER_TOKENS, snapshot, tagger);
                     }
 
-                    synchronized (documentCache) {
-                        ParserData<Tagger<TokenTag<Token>>> updatedResult = documentCache.get(snapshot);
-                        if (updatedResult != null) {
-                            result = updatedResult;
-                        } else {
-                            documentCache.put(snapshot, result);
-                        }
-                    }
+                    result = documentCache.putIfAbsent(result);
                 }
             }
 
@@ -148,7 +113,4 @@ public final class LexerTokensParserTask implements ParserTask {
 
     }
 
-    private static class DocumentCacheMap extends WeakHashMap<DocumentSnapshot, ParserData<Tagger<TokenTag<Token>>>> {
-    }
-
 }
@@ -0,0 +1,220 @@
+/*
+ *  Copyright (c) 2014 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.grammar.experimental;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+
+/**
+ * Creates deep copies of generated parse tree contexts, so a subtree of a
+ * published parse tree can be placed in a new tree without changing the
+ * parent of any node in the published tree. Tokens are shared by the copies,
+ * unless the subtree is copied to a new token stream with
+ * {@link #copy(ParserRuleContext, ParserRuleContext, TokenStream, int, int)}.
+ * The label fields of the generated contexts are updated to refer to the
+ * copied contexts and tokens.
+ *
+ * <p>Instances of this class are not thread-safe.</p>
+ *
+ * @author Sam Harwell
+ */
+final class ParseTreeCopier {
+    private static final Map<Class<?>, Field[]> LABEL_FIELDS = new HashMap<>();
+
+    private final Map<ParserRuleContext, ParserRuleContext> copies = new IdentityHashMap<>();
+
+    /*
+     * The token stream the tokens of the current copy are taken from, or null
+     * if the tokens are shared with the original.
+     */
+    private TokenStream tokens;
+    private int tokenIndexDelta;
+    private int offsetDelta;
+
+    /**
+     * Gets the copies created by this instance, keyed by the original
+     * contexts.
+     */
+    @NonNull
+    public Map<ParserRuleContext, ParserRuleContext> getCopies() {
+        return copies;
+    }
+
+    /**
+     * Copies {@code context} and its descendants.
+     *
+     * @param context The context to copy.
+     * @param parent The parent of the copy.
+     * @return The copy of {@code context}.
+     * @throws IllegalStateException if the context type cannot be copied.
+     */
+    @NonNull
+    public <T extends ParserRuleContext> T copy(@NonNull T context, @NullAllowed ParserRuleContext parent) {
+        @SuppressWarnings("unchecked")
+        T result = (T)createContext(context.getClass(), parent, context.invokingState);
+        result.start = mapToken(context.start);
+        result.stop = mapToken(context.stop);
+        result.exception = context.exception;
+        copies.put(context, result);
+
+        if (context.children != null) {
+            for (ParseTree child : context.children) {
+                if (child instanceof ErrorNode) {
+                    result.addErrorNode(mapToken(((ErrorNode)child).getSymbol()));
+                } else if (child instanceof TerminalNode) {
+                    result.addChild(mapToken(((TerminalNode)child).getSymbol()));
+                } else {
+                    result.addChild(copy((ParserRuleContext)child, result));
+                }
+            }
+        }
+
+        copyLabels(context, result);
+        return result;
+    }
+
+    /**
+     * Copies {@code context} and its descendants to a new version of the
+     * document, in which the text of the subtree is unchanged but moved by
+     * {@code offsetDelta} characters and {@code tokenIndexDelta} tokens. The
+     * copies refer to the tokens of {@code tokens} instead of the original
+     * tokens.
+     *
+     * @param context The context to copy.
+     * @param parent The parent of the copy.
+     * @param tokens The token stream of the new version of the document. The
+     * stream must be filled.
+     * @param tokenIndexDelta The difference between the index of a token in
+     * {@code tokens} and the index of the same token in the original stream.
+     * @param offsetDelta The difference between the offset of a token in the
+     * new version of the document and its offset in the original version.
+     * @return The copy of {@code context}.
+     * @throws IllegalStateException if the context type cannot be copied, or
+     * if a token of the subtree does not appear in {@code tokens} at the
+     * shifted index and offset.
+     */
+    @NonNull
+    public <T extends ParserRuleContext> T copy(@NonNull T context, @NullAllowed ParserRuleContext parent, @NonNull TokenStream tokens, int tokenIndexDelta, int offsetDelta) {
+        this.tokens = tokens;
+        this.tokenIndexDelta = tokenIndexDelta;
+        this.offsetDelta = offsetDelta;
+        try {
+            return copy(context, parent);
+        } finally {
+            this.tokens = null;
+            this.tokenIndexDelta = 0;
+            this.offsetDelta = 0;
+        }
+    }
+
+    private Token mapToken(Token token) {
+        if (tokens == null || token == null) {
+            return token;
+        }
+
+        int index = token.getTokenIndex() + tokenIndexDelta;
+        if (index < 0 || index >= tokens.size()) {
+            throw new IllegalStateException("The token at index " + token.getTokenIndex() + " was removed.");
+        }
+
+        Token result = tokens.get(index);
+        if (result.getType() != token.getType()
+            || result.getStartIndex() != token.getStartIndex() + offsetDelta
+            || result.getStopIndex() != token.getStopIndex() + offsetDelta) {
+            throw new IllegalStateException("The token at index " + token.getTokenIndex() + " changed.");
+        }
+
+        return result;
+    }
+
+    private void copyLabels(ParserRuleContext context, ParserRuleContext result) {
+        try {
+            for (Field field : getLabelFields(context.getClass())) {
+                Object value = field.get(context);
+                if (value instanceof ParserRuleContext) {
+                    field.set(result, map((ParserRuleContext)value));
+                } else if (value instanceof Token) {
+                    field.set(result, mapToken((Token)value));
+                } else if (value instanceof List<?>) {
+                    List<Object> list = new ArrayList<>(((List<?>)value).size());
+                    for (Object element : (List<?>)value) {
+                        if (element instanceof ParserRuleContext) {
+                            list.add(map((ParserRuleContext)element));
+                        } else if (element instanceof Token) {
+                            list.add(mapToken((Token)element));
+                        } else {
+                            list.add(element);
+                        }
+                    }
+
+                    field.set(result, list);
+                } else {
+                    field.set(result, value);
+                }
+            }
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private ParserRuleContext map(ParserRuleContext context) {
+        ParserRuleContext copy = copies.get(context);
+        // labels only refer to descendants, so this is only reached for malformed trees
+        return copy != null ? copy : context;
+    }
+
+    private static ParserRuleContext createContext(Class<? extends ParserRuleContext> contextClass, ParserRuleContext parent, int invokingState) {
+        try {
+            Constructor<? extends ParserRuleContext> constructor = contextClass.getConstructor(ParserRuleContext.class, int.class);
+            return constructor.newInstance(parent, invokingState);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Cannot copy a context of type " + contextClass.getName(), ex);
+        }
+    }
+
+    private static Field[] getLabelFields(Class<?> contextClass) {
+        synchronized (LABEL_FIELDS) {
+            Field[] fields = LABEL_FIELDS.get(contextClass);
+            if (fields == null) {
+                List<Field> labelFields = new ArrayList<>();
+                for (Class<?> current = contextClass; current != ParserRuleContext.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                            continue;
+                        }
+
+                        field.setAccessible(true);
+                        labelFields.add(field);
+                    }
+                }
+
+                fields = labelFields.toArray(new Field[labelFields.size()]);
+                LABEL_FIELDS.put(contextClass, fields);
+            }
+
+            return fields;
+        }
+    }
+}
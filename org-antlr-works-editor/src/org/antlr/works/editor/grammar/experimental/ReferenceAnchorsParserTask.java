@@ -8,18 +8,26 @@
  */
 package org.antlr.works.editor.grammar.experimental;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.antlr.netbeans.editor.classification.TokenTag;
 import org.antlr.netbeans.editor.completion.Anchor;
 import org.antlr.netbeans.editor.tagging.Tagger;
+import org.antlr.netbeans.editor.text.DocumentChange;
 import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.DocumentVersion;
+import org.antlr.netbeans.editor.text.NormalizedDocumentChangeCollection;
 import org.antlr.netbeans.editor.text.VersionedDocument;
 import org.antlr.netbeans.parsing.spi.BaseParserData;
 import org.antlr.netbeans.parsing.spi.DocumentParserTaskProvider;
@@ -37,13 +45,17 @@ import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.Dependents;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.RuleDependencies;
 import org.antlr.v4.runtime.RuleDependency;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.works.editor.antlr4.classification.TaggerTokenSource;
 import org.antlr.works.editor.antlr4.parsing.DescriptiveErrorListener;
 import org.antlr.works.editor.grammar.GrammarEditorKit;
@@ -51,19 +63,54 @@ import org.antlr.works.editor.grammar.GrammarParserDataDefinitions;
 import org.antlr.works.editor.grammar.codemodel.FileModel;
 import org.antlr.works.editor.grammar.codemodel.impl.CodeModelCacheImpl;
 import org.antlr.works.editor.grammar.codemodel.impl.FileModelImpl;
+import org.antlr.works.editor.grammar.codemodel.impl.RuleModelImpl;
 import org.antlr.works.editor.grammar.experimental.generated.AbstractGrammarParser.GrammarSpecContext;
+import org.antlr.works.editor.grammar.experimental.generated.AbstractGrammarParser.RuleSpecContext;
+import org.antlr.works.editor.grammar.experimental.generated.AbstractGrammarParser.RulesContext;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 
 /**
+ * Produces the reference parse tree, anchor points, and file model of a
+ * grammar.
+ *
+ * <p>After a parse without syntax errors, the next snapshot is parsed
+ * incrementally: the rules which end before the first change and the rules
+ * which start after the last change are reused from the previous parse tree,
+ * and only the rules between them are parsed again. The whole file is parsed
+ * again when a change touches the grammar header or a mode section, or when
+ * the changed rules contain a syntax error.</p>
  *
  * @author Sam Harwell
  */
 public final class ReferenceAnchorsParserTask implements ParserTask {
+    // -J-Dorg.antlr.works.editor.grammar.experimental.ReferenceAnchorsParserTask.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(ReferenceAnchorsParserTask.class.getName());
 
     private final VersionedDocument document;
 
     private final Object lock = new Object();
 
+    /**
+     * When {@code true}, rules from the previous parse tree whose text did not
+     * change are reused instead of parsed again.
+     */
+    private static final boolean INCREMENTAL_PARSE = true;
+
+    /*
+     * The last snapshot which was parsed without syntax errors, and its parse
+     * tree. These fields are only accessed while holding lock.
+     */
+    private DocumentSnapshot previousSnapshot;
+    private GrammarSpecContext previousParseTree;
+
+    /*
+     * The rule models of the last file model, keyed by the context they were
+     * built from. When the incremental parse copies a rule context, the rule
+     * model is moved to the copy. This field is only accessed while holding
+     * lock.
+     */
+    private Map<ParserRuleContext, RuleModelImpl> previousRuleModels;
+
     private ReferenceAnchorsParserTask(VersionedDocument document) {
         this.document = document;
     }
@@ -86,9 +133,15 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
         }
 
         synchronized (lock) {
-            ParserData<GrammarSpecContext> parseTreeResult = taskManager.getData(snapshot, GrammarParserDataDefinitions.REFERENCE_PARSE_TREE, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
-            ParserData<List<Anchor>> anchorPointsResult = taskManager.getData(snapshot, GrammarParserDataDefinitions.REFERENCE_ANCHOR_POINTS, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
-            ParserData<FileModel> fileModelResult = taskManager.getData(snapshot, GrammarParserDataDefinitions.FILE_MODEL, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
+            Future<ParserData<?>>[] cachedResults = taskManager.getData(snapshot,
+                Arrays.<ParserDataDefinition<?>>asList(GrammarParserDataDefinitions.REFERENCE_PARSE_TREE, GrammarParserDataDefinitions.REFERENCE_ANCHOR_POINTS, GrammarParserDataDefinitions.FILE_MODEL),
+                EnumSet.of(ParserDataOptions.NO_UPDATE));
+            @SuppressWarnings("unchecked")
+            ParserData<GrammarSpecContext> parseTreeResult = (ParserData<GrammarSpecContext>)cachedResults[0].get();
+            @SuppressWarnings("unchecked")
+            ParserData<List<Anchor>> anchorPointsResult = (ParserData<List<Anchor>>)cachedResults[1].get();
+            @SuppressWarnings("unchecked")
+            ParserData<FileModel> fileModelResult = (ParserData<FileModel>)cachedResults[2].get();
             if (parseTreeResult == null || anchorPointsResult == null || fileModelResult == null) {
                 Future<ParserData<Tagger<TokenTag<Token>>>> futureTokensData = taskManager.getData(snapshot, GrammarParserDataDefinitions.LEXER_TOKENS);
                 Tagger<TokenTag<Token>> tagger = futureTokensData.get().getData();
@@ -97,28 +150,48 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
         //        input.setSourceName((String)document.getDocument().getProperty(Document.TitleProperty));
         //        GrammarLexer lexer = new GrammarLexer(input);
                 InterruptableTokenStream tokenStream = new InterruptableTokenStream(tokenSource);
-                GrammarSpecContext parseResult;
-                GrammarParser parser = GrammarParserFactory.DEFAULT.getParser(tokenStream);
-                try {
-                    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-                    parser.removeErrorListeners();
-                    parser.setBuildParseTree(true);
-                    parser.setErrorHandler(new BailErrorStrategy());
-                    parseResult = parser.grammarSpec();
-                } catch (ParseCancellationException ex) {
-                    if (ex.getCause() instanceof RecognitionException) {
-                        // retry with default error handler
-                        tokenStream.reset();
-                        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
-                        parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
-                        parser.setInputStream(tokenStream);
-                        parser.setErrorHandler(new DefaultErrorStrategy());
+                GrammarSpecContext parseResult = null;
+                if (INCREMENTAL_PARSE) {
+                    parseResult = tryParseIncremental(snapshot, tokenStream);
+                }
+
+                boolean cleanParse = true;
+                if (parseResult == null) {
+                    tokenStream.reset();
+                    GrammarParser parser = GrammarParserFactory.DEFAULT.getParser(tokenStream);
+                    try {
+                        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                        parser.removeErrorListeners();
+                        parser.setBuildParseTree(true);
+                        parser.setErrorHandler(new BailErrorStrategy());
                         parseResult = parser.grammarSpec();
-                    } else {
-                        throw ex;
+                    } catch (ParseCancellationException ex) {
+                        if (ex.getCause() instanceof RecognitionException) {
+                            // retry with default error handler
+                            tokenStream.reset();
+                            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                            parser.addErrorListener(DescriptiveErrorListener.INSTANCE);
+                            parser.setInputStream(tokenStream);
+                            parser.setErrorHandler(new DefaultErrorStrategy());
+                            parseResult = parser.grammarSpec();
+                            cleanParse = false;
+                        } else {
+                            throw ex;
+                        }
+                    } finally {
+                        GrammarParserFactory.DEFAULT.putParser(parser);
                     }
                 }
 
+                if (cleanParse) {
+                    previousSnapshot = snapshot;
+                    previousParseTree = parseResult;
+                } else {
+                    previousSnapshot = null;
+                    previousParseTree = null;
+                    previousRuleModels = null;
+                }
+
                 parseTreeResult = new BaseParserData<>(context, GrammarParserDataDefinitions.REFERENCE_PARSE_TREE, snapshot, parseResult);
 
                 if (anchorPointsResult == null && snapshot.getVersionedDocument().getDocument() != null) {
@@ -130,10 +203,19 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
                 if (fileModelResult == null) {
                     FileModelImpl fileModel = null;
                     if (snapshot.getVersionedDocument().getFileObject() != null) {
-                        CodeModelBuilderListener codeModelBuilderListener = new CodeModelBuilderListener(snapshot, tokenStream);
-                        ParseTreeWalker.DEFAULT.walk(codeModelBuilderListener, parseResult);
+                        CodeModelBuilderListener codeModelBuilderListener = new CodeModelBuilderListener(snapshot, tokenStream, INCREMENTAL_PARSE ? previousRuleModels : null);
+                        codeModelBuilderListener.walk(parseResult);
                         fileModel = codeModelBuilderListener.getFileModel();
                         if (fileModel != null) {
+                            if (cleanParse) {
+                                previousRuleModels = codeModelBuilderListener.getRuleModels();
+                            }
+
+                            if (LOGGER.isLoggable(Level.FINE)) {
+                                LOGGER.log(Level.FINE, "Built file model for {0}, reused {1} of {2} rules.",
+                                    new Object[] { fileModel.getName(), codeModelBuilderListener.getReusedRuleCount(), codeModelBuilderListener.getRuleModels().size() });
+                            }
+
                             updateCodeModelCache(fileModel);
                         }
                     }
@@ -150,9 +232,360 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
         }
     }
 
+    /**
+     * Attempts to produce the parse tree for {@code snapshot} by reusing the
+     * rules of the previous parse tree whose text did not change, and parsing
+     * only the rules between them.
+     *
+     * <p>The rules which end before the first change are reused as they are.
+     * The rules which start after the last change, and the modes following
+     * the rules, are reused with their tokens replaced by the tokens of the
+     * new token stream at the shifted positions. The reused subtrees are
+     * copied to the new tree, so the previous tree is not modified.</p>
+     *
+     * @return The parse tree, or {@code null} if the previous tree cannot be
+     * reused, a change affects the header or the modes of the grammar, or the
+     * changed rules could not be parsed without errors.
+     */
+    @RuleDependencies({
+        @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_grammarSpec, version=0, dependents=Dependents.SELF),
+        @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_rules, version=0, dependents=Dependents.SELF),
+        @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_ruleSpec, version=0, dependents=Dependents.SELF),
+        @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_modeSpec, version=3, dependents=Dependents.SELF),
+    })
+    private GrammarSpecContext tryParseIncremental(DocumentSnapshot snapshot, InterruptableTokenStream tokenStream) {
+        DocumentSnapshot previous = previousSnapshot;
+        GrammarSpecContext previousTree = previousParseTree;
+        if (previous == null || previousTree == null || previousTree.children == null) {
+            return null;
+        }
+
+        int firstChange = getFirstChangeOffset(previous, snapshot);
+        int unchangedSuffixLength = getUnchangedSuffixLength(previous, snapshot);
+        if (firstChange < 0 || unchangedSuffixLength < 0) {
+            return null;
+        }
+
+        // the offset in the previous snapshot where the unchanged text at the end starts
+        int lastChange = previous.length() - unchangedSuffixLength;
+        int offsetDelta = snapshot.length() - previous.length();
+
+        int rulesIndex = -1;
+        for (int i = 0; i < previousTree.children.size(); i++) {
+            if (previousTree.children.get(i) instanceof RulesContext) {
+                rulesIndex = i;
+                break;
+            }
+        }
+
+        if (rulesIndex <= 0) {
+            return null;
+        }
+
+        RulesContext previousRules = (RulesContext)previousTree.children.get(rulesIndex);
+        List<RuleSpecContext> previousRuleSpecs = previousRules.ruleSpec();
+        if (previousRuleSpecs.isEmpty()) {
+            return null;
+        }
+
+        // the mode sections follow the rules, and are only reused if they are unchanged
+        List<ParserRuleContext> previousModes = new ArrayList<>();
+        for (int i = rulesIndex + 1; i < previousTree.children.size() - 1; i++) {
+            ParseTree child = previousTree.children.get(i);
+            if (!(child instanceof ParserRuleContext)) {
+                return null;
+            }
+
+            ParserRuleContext mode = (ParserRuleContext)child;
+            // require one unchanged character before the mode, so the lexer
+            // produced the same first token
+            if (mode.start == null || mode.start.getStartIndex() - 1 < lastChange) {
+                return null;
+            }
+
+            previousModes.add(mode);
+        }
+
+        int reusedCount = 0;
+        for (RuleSpecContext ruleSpec : previousRuleSpecs) {
+            // require one unchanged character after the rule, so the lexer
+            // produced the same final token
+            if (ruleSpec.exception != null || ruleSpec.stop == null || ruleSpec.stop.getStopIndex() + 1 >= firstChange) {
+                break;
+            }
+
+            reusedCount++;
+        }
+
+        int trailingCount = 0;
+        for (int i = previousRuleSpecs.size() - 1; i >= reusedCount; i--) {
+            RuleSpecContext ruleSpec = previousRuleSpecs.get(i);
+            if (ruleSpec.exception != null || ruleSpec.start == null || ruleSpec.start.getStartIndex() - 1 < lastChange) {
+                break;
+            }
+
+            trailingCount++;
+        }
+
+        if (reusedCount == 0 && trailingCount == 0 && previousModes.isEmpty()) {
+            return null;
+        }
+
+        // the last token before the first rule which is parsed again
+        Token lastReusedToken;
+        if (reusedCount > 0) {
+            lastReusedToken = previousRuleSpecs.get(reusedCount - 1).stop;
+        } else {
+            ParseTree header = previousTree.children.get(rulesIndex - 1);
+            lastReusedToken = header instanceof TerminalNode ? ((TerminalNode)header).getSymbol() : ((ParserRuleContext)header).stop;
+            if (lastReusedToken == null || lastReusedToken.getStopIndex() + 1 >= firstChange) {
+                return null;
+            }
+        }
+
+        tokenStream.fill();
+        if (lastReusedToken.getTokenIndex() >= tokenStream.size()) {
+            return null;
+        }
+
+        Token currentToken = tokenStream.get(lastReusedToken.getTokenIndex());
+        if (currentToken.getType() != lastReusedToken.getType()
+            || currentToken.getStartIndex() != lastReusedToken.getStartIndex()
+            || currentToken.getStopIndex() != lastReusedToken.getStopIndex()) {
+            return null;
+        }
+
+        // the first context after the rules which are parsed again
+        ParserRuleContext firstTrailingContext = null;
+        if (trailingCount > 0) {
+            firstTrailingContext = previousRuleSpecs.get(previousRuleSpecs.size() - trailingCount);
+        } else if (!previousModes.isEmpty()) {
+            firstTrailingContext = previousModes.get(0);
+        }
+
+        int trailingTokenIndex = -1;
+        int tokenIndexDelta = 0;
+        if (firstTrailingContext != null) {
+            trailingTokenIndex = findTokenIndex(tokenStream.getTokens(), firstTrailingContext.start.getStartIndex() + offsetDelta);
+            if (trailingTokenIndex < 0) {
+                return null;
+            }
+
+            tokenIndexDelta = trailingTokenIndex - firstTrailingContext.start.getTokenIndex();
+        }
+
+        tokenStream.seek(lastReusedToken.getTokenIndex() + 1);
+        List<RuleSpecContext> parsedRuleSpecs = new ArrayList<>();
+        GrammarParser parser = GrammarParserFactory.DEFAULT.getParser(tokenStream);
+        try {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.removeErrorListeners();
+            parser.setBuildParseTree(true);
+            parser.setErrorHandler(new BailErrorStrategy());
+            while (isRuleSpecStart(tokenStream.LA(1)) && (trailingTokenIndex < 0 || tokenStream.index() < trailingTokenIndex)) {
+                parsedRuleSpecs.add(parser.ruleSpec());
+            }
+        } catch (ParseCancellationException ex) {
+            if (ex.getCause() instanceof RecognitionException) {
+                return null;
+            }
+
+            throw ex;
+        } finally {
+            GrammarParserFactory.DEFAULT.putParser(parser);
+        }
+
+        if (trailingTokenIndex >= 0 ? tokenStream.index() != trailingTokenIndex : tokenStream.LA(1) != Token.EOF) {
+            return null;
+        }
+
+        Token eof = tokenStream.get(tokenStream.size() - 1);
+        if (eof.getType() != Token.EOF) {
+            return null;
+        }
+
+        // the previous tree was published, so the reused contexts are copied
+        // instead of attached to the new tree
+        ParseTreeCopier copier = new ParseTreeCopier();
+        GrammarSpecContext result = new GrammarSpecContext(null, previousTree.invokingState);
+        result.start = previousTree.start;
+        try {
+            for (int i = 0; i < rulesIndex; i++) {
+                ParseTree child = previousTree.children.get(i);
+                if (child instanceof TerminalNode) {
+                    result.addChild(((TerminalNode)child).getSymbol());
+                } else {
+                    result.addChild(copier.copy((ParserRuleContext)child, result));
+                }
+            }
+
+            RulesContext rules = new RulesContext(result, previousRules.invokingState);
+            rules.start = previousRules.start;
+            result.addChild(rules);
+
+            int ruleSpecInvokingState = previousRuleSpecs.get(0).invokingState;
+            for (int i = 0; i < reusedCount; i++) {
+                rules.addChild(copier.copy(previousRuleSpecs.get(i), rules));
+            }
+
+            for (RuleSpecContext ruleSpec : parsedRuleSpecs) {
+                ruleSpec.parent = rules;
+                ruleSpec.invokingState = ruleSpecInvokingState;
+                rules.addChild(ruleSpec);
+            }
+
+            for (int i = previousRuleSpecs.size() - trailingCount; i < previousRuleSpecs.size(); i++) {
+                rules.addChild(copier.copy(previousRuleSpecs.get(i), rules, tokenStream, tokenIndexDelta, offsetDelta));
+            }
+
+            rules.stop = rules.getChildCount() > 0 ? ((ParserRuleContext)rules.getChild(rules.getChildCount() - 1)).stop : lastReusedToken;
+            result.stop = rules.stop;
+            for (ParserRuleContext mode : previousModes) {
+                ParserRuleContext copy = copier.copy(mode, result, tokenStream, tokenIndexDelta, offsetDelta);
+                result.addChild(copy);
+                result.stop = copy.stop;
+            }
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.FINE, "Could not copy the reused rules of the previous parse tree.", ex);
+            return null;
+        }
+
+        result.addChild(eof);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Incremental parse reused {0} leading and {1} trailing rules, and parsed {2} rules.",
+                new Object[] { reusedCount, trailingCount, parsedRuleSpecs.size() });
+        }
+
+        // the rule models of the reused rules now belong to the copied
+        // contexts; rule models hold offsets, so the models of trailing rules
+        // which moved are rebuilt
+        if (previousRuleModels != null) {
+            Map<ParserRuleContext, RuleModelImpl> ruleModels = new IdentityHashMap<>();
+            for (Map.Entry<ParserRuleContext, ParserRuleContext> entry : copier.getCopies().entrySet()) {
+                RuleModelImpl ruleModel = previousRuleModels.get(entry.getKey());
+                if (ruleModel != null && (offsetDelta == 0 || entry.getKey().start == entry.getValue().start)) {
+                    ruleModels.put(entry.getValue(), ruleModel);
+                }
+            }
+
+            previousRuleModels = ruleModels;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the index of the token in {@code tokens} which starts at
+     * {@code startIndex}.
+     *
+     * @return The index of the token, or -1 if no token starts at
+     * {@code startIndex}.
+     */
+    private static int findTokenIndex(List<? extends Token> tokens, int startIndex) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midStart = tokens.get(mid).getStartIndex();
+            if (midStart < startIndex) {
+                low = mid + 1;
+            } else if (midStart > startIndex) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+
+    private static boolean isRuleSpecStart(int tokenType) {
+        switch (tokenType) {
+        case GrammarParser.DOC_COMMENT:
+        case GrammarParser.RULE_REF:
+        case GrammarParser.TOKEN_REF:
+        case GrammarParser.PUBLIC:
+        case GrammarParser.PRIVATE:
+        case GrammarParser.PROTECTED:
+        case GrammarParser.FRAGMENT:
+            return true;
+
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Gets the length of the text at the start of {@code snapshot} which is
+     * unchanged since {@code previous}.
+     *
+     * @return The offset of the first change, or -1 if the changes between the
+     * snapshots are not available.
+     */
+    private static int getFirstChangeOffset(DocumentSnapshot previous, DocumentSnapshot snapshot) {
+        if (!previous.getVersionedDocument().equals(snapshot.getVersionedDocument())) {
+            return -1;
+        }
+
+        int targetVersion = snapshot.getVersion().getVersionNumber();
+        if (previous.getVersion().getVersionNumber() >= targetVersion) {
+            return -1;
+        }
+
+        int firstChange = snapshot.length();
+        for (DocumentVersion version = previous.getVersion(); version.getVersionNumber() < targetVersion; version = version.getNext()) {
+            NormalizedDocumentChangeCollection changes = version.getChanges();
+            if (changes == null || version.getNext() == null) {
+                return -1;
+            }
+
+            if (!changes.isEmpty()) {
+                firstChange = Math.min(firstChange, changes.get(0).getOldOffset());
+            }
+        }
+
+        return firstChange;
+    }
+
+    /**
+     * Gets the length of the text at the end of {@code snapshot} which is
+     * unchanged since {@code previous}.
+     *
+     * @return The length of the unchanged text following the last change, or
+     * -1 if the changes between the snapshots are not available.
+     */
+    private static int getUnchangedSuffixLength(DocumentSnapshot previous, DocumentSnapshot snapshot) {
+        if (!previous.getVersionedDocument().equals(snapshot.getVersionedDocument())) {
+            return -1;
+        }
+
+        int targetVersion = snapshot.getVersion().getVersionNumber();
+        if (previous.getVersion().getVersionNumber() >= targetVersion) {
+            return -1;
+        }
+
+        int suffixLength = snapshot.length();
+        for (DocumentVersion version = previous.getVersion(); version.getVersionNumber() < targetVersion; version = version.getNext()) {
+            NormalizedDocumentChangeCollection changes = version.getChanges();
+            if (changes == null || version.getNext() == null) {
+                return -1;
+            }
+
+            if (!changes.isEmpty()) {
+                DocumentChange lastChange = changes.get(changes.size() - 1);
+                suffixLength = Math.min(suffixLength, version.getSnapshot().length() - lastChange.getOldEnd());
+            }
+        }
+
+        return suffixLength;
+    }
+
     private void updateCodeModelCache(FileModelImpl fileModel) {
         CodeModelCacheImpl codeModelCache = CodeModelCacheImpl.getInstance();
         codeModelCache.updateFile(fileModel);
+        CodeModelProjectIndexer.ensureIndexed(fileModel.getProject());
     }
 
     private static class InterruptableTokenStream extends CommonTokenStream {
@@ -172,7 +605,7 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
 
     private static final class Definition extends ParserTaskDefinition {
         private static final Collection<ParserDataDefinition<?>> INPUTS =
-            Collections.<ParserDataDefinition<?>>emptyList();
+            Collections.<ParserDataDefinition<?>>singletonList(GrammarParserDataDefinitions.LEXER_TOKENS);
         private static final Collection<ParserDataDefinition<?>> OUTPUTS =
             Arrays.<ParserDataDefinition<?>>asList(
                 GrammarParserDataDefinitions.REFERENCE_ANCHOR_POINTS,
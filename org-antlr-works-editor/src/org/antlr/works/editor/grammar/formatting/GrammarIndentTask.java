@@ -153,11 +153,6 @@ public class GrammarIndentTask extends AbstractIndentTask {
     @Override
     @RuleDependency(recognizer=GrammarParser.class, rule=GrammarParser.RULE_ruleSpec, version=0, dependents=Dependents.SELF)
     protected Map<RuleContext, CaretReachedException> getParseTrees(CommonTokenStream tokens, ReferenceAnchors anchors) {
-        CodeCompletionGrammarParser parser = ParserFactory.DEFAULT.getParser(tokens);
-
-        parser.setBuildParseTree(true);
-        parser.setErrorHandler(new CodeCompletionErrorStrategy());
-
         GrammarForestParser forestParser;
         if (anchors.getPrevious() != null) {
             switch (anchors.getPrevious().getRule()) {
@@ -176,6 +171,10 @@ public class GrammarIndentTask extends AbstractIndentTask {
             return null;
         }
 
+        CodeCompletionGrammarParser parser = ParserFactory.DEFAULT.getParser(tokens);
+        parser.setBuildParseTree(true);
+        parser.setErrorHandler(new CodeCompletionErrorStrategy());
+
         CompletionParserATNSimulator originalInterpreter = parser.getInterpreter();
         try {
             parser.setInterpreter(new CompletionParserATNSimulator(parser, GrammarParser._ATN) {
@@ -207,7 +206,9 @@ public class GrammarIndentTask extends AbstractIndentTask {
             Map<RuleContext, CaretReachedException> parseTrees = forestParser.getParseTrees(parser);
             return parseTrees;
         } finally {
+            // the interpreter is restored before the parser is returned to the pool
             parser.setInterpreter(originalInterpreter);
+            ParserFactory.DEFAULT.putParser(parser);
         }
     }
 
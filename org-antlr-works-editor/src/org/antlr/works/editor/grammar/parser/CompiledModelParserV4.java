@@ -12,6 +12,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -52,6 +53,7 @@ import org.antlr.works.editor.grammar.codemodel.TokenVocabModel;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.spi.editor.hints.Severity;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
 import org.openide.util.Lookup;
 import org.openide.util.Parameters;
 import org.stringtemplate.v4.ST;
@@ -64,11 +66,35 @@ public class CompiledModelParserV4 extends CompiledModelParser {
     // -J-Dorg.antlr.works.editor.grammar.parser.CompiledModelParserV4.level=FINE
     private static final Logger LOGGER = Logger.getLogger(CompiledModelParserV4.class.getName());
 
+    /**
+     * When {@code true}, compiled results are retained for recently compiled
+     * document contents, keyed by the document text. A snapshot whose text
+     * matches a previous compilation (for example after an undo, redo, or a
+     * revert) does not run the tool. Any other change recompiles the whole
+     * grammar.
+     */
+    private static final boolean CACHE_COMPILED_RESULTS = true;
+    private static final int MAX_CACHED_RESULTS = 4;
+
     private final Object lock = new Object();
     private DocumentSnapshot lastSnapshot;
     private CompiledFileModelV4 lastResult;
     private Throwable lastException;
 
+    /**
+     * Recently compiled results keyed by the document text they were compiled
+     * from, in access order.
+     */
+    private final Map<String, CachedCompilation> cachedResults =
+        new LinkedHashMap<String, CachedCompilation>(MAX_CACHED_RESULTS + 1, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCompilation> eldest) {
+                return size() > MAX_CACHED_RESULTS;
+            }
+
+        };
+
     @Override
     protected CompiledModelV4 parseImpl(ParserTaskManager taskManager, ParseContext context, final DocumentSnapshot snapshot)
         throws InterruptedException, ExecutionException {
@@ -88,13 +114,28 @@ public class CompiledModelParserV4 extends CompiledModelParser {
                 LOGGER.log(Level.FINE, "Reparsing snapshot {0}", new Object[] { snapshot });
             }
 
+            String text = snapshot.getText();
+            if (CACHE_COMPILED_RESULTS) {
+                CachedCompilation cached = cachedResults.get(text);
+                if (cached != null && cached.isCurrent()) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Reusing compiled result of version {0} for snapshot {1}", new Object[] { cached.versionNumber, snapshot });
+                    }
+
+                    lastSnapshot = snapshot;
+                    lastResult = cached.result;
+                    lastException = null;
+                    return new CompiledModelV4(snapshot, cached.result);
+                }
+            }
+
             try {
                 final List<SyntaxError> syntaxErrors = new ArrayList<>();
                 final Tool tool = new CustomTool(snapshot);
                 tool.errMgr = new CustomErrorManager(tool);
                 tool.addListener(new ErrorListener(snapshot, tool, syntaxErrors));
                 tool.libDirectory = new File(snapshot.getVersionedDocument().getFileObject().getPath()).getParent();
-                GrammarRootAST root = tool.parseGrammarFromString(snapshot.getText().toString());
+                GrammarRootAST root = tool.parseGrammarFromString(text);
 
                 Grammar grammar = null;
                 CommonToken[] tokens = null;
@@ -112,6 +153,10 @@ public class CompiledModelParserV4 extends CompiledModelParser {
                 }
 
                 CompiledFileModelV4 currentResult = new CompiledFileModelV4(grammar, root, syntaxErrors, snapshot.getVersionedDocument().getFileObject(), tokens);
+                if (CACHE_COMPILED_RESULTS) {
+                    cachedResults.put(text, new CachedCompilation(snapshot.getVersion().getVersionNumber(), currentResult, (CustomTool)tool));
+                }
+
                 lastSnapshot = snapshot;
                 lastResult = currentResult;
                 lastException = null;
@@ -125,6 +170,56 @@ public class CompiledModelParserV4 extends CompiledModelParser {
         }
     }
 
+    /**
+     * A compiled result along with the state of the imported grammars and
+     * token vocabularies it was compiled against.
+     */
+    private static final class CachedCompilation {
+        private final int versionNumber;
+        private final CompiledFileModelV4 result;
+        private final Map<File, Long> importedFiles = new HashMap<>();
+        private final Map<VersionedDocument, Integer> vocabularyDocuments;
+
+        public CachedCompilation(int versionNumber, CompiledFileModelV4 result, CustomTool tool) {
+            this.versionNumber = versionNumber;
+            this.result = result;
+            this.importedFiles.putAll(tool.vocabularyFiles);
+            this.vocabularyDocuments = new HashMap<>(tool.vocabularyDocuments);
+
+            Grammar grammar = result.getGrammar();
+            if (grammar != null && grammar.importedGrammars != null) {
+                for (Grammar imported : grammar.importedGrammars) {
+                    if (imported.fileName == null) {
+                        continue;
+                    }
+
+                    File file = new File(imported.fileName);
+                    importedFiles.put(file, file.lastModified());
+                }
+            }
+        }
+
+        /**
+         * Determines whether the imported grammars and token vocabularies used
+         * by this result are unchanged, both on disk and in open editors.
+         */
+        public boolean isCurrent() {
+            for (Map.Entry<File, Long> entry : importedFiles.entrySet()) {
+                if (entry.getKey().lastModified() != entry.getValue()) {
+                    return false;
+                }
+            }
+
+            for (Map.Entry<VersionedDocument, Integer> entry : vocabularyDocuments.entrySet()) {
+                if (entry.getKey().getCurrentSnapshot().getVersion().getVersionNumber() != entry.getValue()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     private static ParserTaskManager getTaskManager() {
         return Lookup.getDefault().lookup(ParserTaskManager.class);
     }
@@ -132,6 +227,18 @@ public class CompiledModelParserV4 extends CompiledModelParser {
     public static class CustomTool extends Tool {
         private final DocumentSnapshot snapshot;
 
+        /**
+         * The modification times of the token vocabulary files read during
+         * compilation. Files which did not exist are recorded with a
+         * modification time of 0.
+         */
+        final Map<File, Long> vocabularyFiles = new HashMap<>();
+        /**
+         * The versions of the token vocabulary grammars read from the
+         * documents of the IDE during compilation.
+         */
+        final Map<VersionedDocument, Integer> vocabularyDocuments = new HashMap<>();
+
         public CustomTool(DocumentSnapshot snapshot) {
             this.snapshot = snapshot;
         }
@@ -241,14 +348,16 @@ public class CompiledModelParserV4 extends CompiledModelParser {
 
         @Override
         public Map<String, Integer> load() {
+            CustomTool tool = (CustomTool)g.tool;
             File vocabFile = getImportedVocabFile();
+            tool.vocabularyFiles.put(vocabFile, vocabFile.lastModified());
             if (vocabFile.isFile()) {
                 return super.load();
             }
 
             String vocabName = g.getOptionString("tokenVocab");
             if (vocabName != null && !vocabName.isEmpty()) {
-                FileObject fileObject = ((CustomTool)g.tool).snapshot.getVersionedDocument().getFileObject();
+                FileObject fileObject = tool.snapshot.getVersionedDocument().getFileObject();
                 if (fileObject == null) {
                     LOGGER.log(Level.WARNING, "Could not find source for token vocabulary.");
                     return Collections.emptyMap();
@@ -271,12 +380,27 @@ public class CompiledModelParserV4 extends CompiledModelParser {
                 }
 
                 if (sourceFileObject == null) {
+                    // the result is stale once any of the candidate sources is created
+                    File folder = FileUtil.toFile(containingFolder);
+                    if (folder != null) {
+                        for (String extension : new String[] { "g4", "g3", "g" }) {
+                            tool.vocabularyFiles.put(new File(folder, vocabName + "." + extension), 0L);
+                        }
+                    }
+
                     LOGGER.log(Level.WARNING, "Could not find source for token vocabulary.");
                     return Collections.emptyMap();
                 }
 
                 VersionedDocument sourceDocument = VersionedDocumentUtilities.getVersionedDocument(sourceFileObject);
-                Future<ParserData<FileModel>> futureData = getTaskManager().getData(sourceDocument.getCurrentSnapshot(), GrammarParserDataDefinitions.FILE_MODEL);
+                DocumentSnapshot sourceSnapshot = sourceDocument.getCurrentSnapshot();
+                tool.vocabularyDocuments.put(sourceDocument, sourceSnapshot.getVersion().getVersionNumber());
+                File sourceFile = FileUtil.toFile(sourceFileObject);
+                if (sourceFile != null) {
+                    tool.vocabularyFiles.put(sourceFile, sourceFile.lastModified());
+                }
+
+                Future<ParserData<FileModel>> futureData = getTaskManager().getData(sourceSnapshot, GrammarParserDataDefinitions.FILE_MODEL);
                 if (futureData == null) {
                     LOGGER.log(Level.WARNING, "Failed to load source for token vocabulary.");
                     return Collections.emptyMap();
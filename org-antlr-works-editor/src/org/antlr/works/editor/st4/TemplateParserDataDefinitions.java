@@ -13,6 +13,7 @@ import org.antlr.netbeans.editor.classification.TokenTag;
 import org.antlr.netbeans.editor.completion.Anchor;
 import org.antlr.netbeans.editor.navigation.Description;
 import org.antlr.netbeans.editor.tagging.Tagger;
+import org.antlr.netbeans.parsing.spi.ParserData;
 import org.antlr.netbeans.parsing.spi.ParserDataDefinition;
 import org.antlr.netbeans.parsing.spi.ParserTaskScheduler;
 import org.antlr.v4.runtime.Dependents;
@@ -22,6 +23,7 @@ import org.antlr.works.editor.st4.codemodel.FileModel;
 import org.antlr.works.editor.st4.experimental.CurrentTemplateContextData;
 import org.antlr.works.editor.st4.experimental.generated.TemplateParser;
 import org.antlr.works.editor.st4.experimental.generated.TemplateParser.GroupFileContext;
+import org.antlr.works.editor.st4.parser.CompiledFileModel;
 import org.antlr.works.editor.st4.parser.CompiledModel;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 
@@ -30,6 +32,13 @@ import org.netbeans.api.editor.mimelookup.MimeRegistration;
  * @author Sam Harwell
  */
 public class TemplateParserDataDefinitions {
+    /**
+     * The estimated number of bytes retained per token of a compiled template
+     * group, which covers the token, its AST node, and the share of the
+     * compiled templates.
+     */
+    private static final int COMPILED_MODEL_BYTES_PER_TOKEN = 384;
+
     public static final ParserDataDefinition<CompiledModel> COMPILED_MODEL = new CompiledModelDataDefinition();
 
     public static final ParserDataDefinition<List<Anchor>> REFERENCE_ANCHOR_POINTS = new ReferenceAnchorPointsDataDefinition();
@@ -95,6 +104,23 @@ public class TemplateParserDataDefinitions {
             super("StringTemplate Compiled Model", CompiledModel.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<CompiledModel> data) {
+            CompiledModel model = data.getData();
+            if (model == null || model.getResult().getTokens() == null) {
+                return super.estimateRetainedSize(data);
+            }
+
+            long tokenCount = model.getResult().getTokens().length;
+            for (CompiledFileModel importedResult : model.getImportedGroupResults()) {
+                if (importedResult.getTokens() != null) {
+                    tokenCount += importedResult.getTokens().length;
+                }
+            }
+
+            return COMPILED_MODEL_BYTES_PER_TOKEN * tokenCount;
+        }
+
     }
 
     private static final class ReferenceAnchorPointsDataDefinition extends ParserDataDefinition<List<Anchor>> {
@@ -114,6 +140,11 @@ public class TemplateParserDataDefinitions {
             super("StringTemplate Reference Parse Tree", GroupFileContext.class, false, true, ParserTaskScheduler.CONTENT_SENSITIVE_TASK_SCHEDULER);
         }
 
+        @Override
+        public long estimateRetainedSize(ParserData<GroupFileContext> data) {
+            return estimateParseTreeSize(data.getData());
+        }
+
     }
 
     private static final class DynamicAnchorPointsDataDefinition extends ParserDataDefinition<List<Anchor>> {
@@ -120,6 +120,8 @@ public final class CurrentTemplateContextParserTask implements ParserTask {
                     } else {
                         throw ex;
                     }
+                } finally {
+                    TemplateParserFactory.DEFAULT.putParser(parser);
                 }
             }
         }
@@ -8,11 +8,8 @@
  */
 package org.antlr.works.editor.st4.experimental;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
-import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
 import org.antlr.netbeans.editor.classification.TokenTag;
 import org.antlr.netbeans.editor.tagging.Tagger;
@@ -30,6 +27,7 @@ import org.antlr.netbeans.parsing.spi.ParserTaskManager;
 import org.antlr.netbeans.parsing.spi.ParserTaskProvider;
 import org.antlr.netbeans.parsing.spi.ParserTaskScheduler;
 import org.antlr.v4.runtime.Token;
+import org.antlr.works.editor.antlr4.classification.TokensTaskTaggerCache;
 import org.antlr.works.editor.st4.StringTemplateEditorKit;
 import org.antlr.works.editor.st4.TemplateParserDataDefinitions;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
@@ -42,8 +40,6 @@ public final class LexerTokensParserTask implements ParserTask {
 
     private static final String DOCUMENT_CACHE_KEY = LexerTokensParserTask.class.getName() + "-snapshot-data";
 
-    private final Object lock = new Object();
-
     private LexerTokensParserTask() {
     }
 
@@ -57,37 +53,13 @@ public final class LexerTokensParserTask implements ParserTask {
         throws InterruptedException, ExecutionException {
 
         if (requestedData.contains(TemplateParserDataDefinitions.LEXER_TOKENS)) {
-            DocumentCacheMap documentCache;
-            
-            synchronized (lock) {
-                documentCache = (DocumentCacheMap)snapshot.getVersionedDocument().getProperty(DOCUMENT_CACHE_KEY);
-
-                if (documentCache == null) {
-                    documentCache = new DocumentCacheMap();
-                    snapshot.getVersionedDocument().putProperty(DOCUMENT_CACHE_KEY, documentCache);
-                }
-            }
-
+            TokensTaskTaggerCache documentCache = TokensTaskTaggerCache.getCache(snapshot.getVersionedDocument(), DOCUMENT_CACHE_KEY);
             ParserData<Tagger<TokenTag<Token>>> result;
             synchronized (documentCache) {
                 result = documentCache.get(snapshot);
 
                 if (result == null) {
-                    int requestedVersion = snapshot.getVersion().getVersionNumber();
-                    ParserData<Tagger<TokenTag<Token>>> previousResult = null;
-                    int previousVersion = -1;
-                    List<ParserData<Tagger<TokenTag<Token>>>> values;
-                    synchronized (documentCache) {
-                        values = new ArrayList<>(documentCache.values());
-                    }
-
-                    for (ParserData<Tagger<TokenTag<Token>>> data : values) {
-                        int dataVersion = data.getSnapshot().getVersion().getVersionNumber();
-                        if (dataVersion > previousVersion && dataVersion < requestedVersion) {
-                            previousResult = data;
-                            previousVersion = dataVersion;
-                        }
-                    }
+                    ParserData<Tagger<TokenTag<Token>>> previousResult = documentCache.getPredecessor(snapshot);
 
                     if (previousResult != null) {
                         TemplateTokensTaskTaggerSnapshot previousTagger = (TemplateTokensTaskTaggerSnapshot)previousResult.getData();
@@ -98,14 +70,7 @@ public final class LexerTokensParserTask implements ParserTask {
                         result = new BaseParserData<>(context, TemplateParserDataDefinitions.LEXER_TOKENS, snapshot, tagger);
                     }
 
-                    synchronized (documentCache) {
-                        ParserData<Tagger<TokenTag<Token>>> updatedResult = documentCache.get(snapshot);
-                        if (updatedResult != null) {
-                            result = updatedResult;
-                        } else {
-                            documentCache.put(snapshot, result);
-                        }
-                    }
+                    result = documentCache.putIfAbsent(result);
                 }
             }
             
@@ -141,7 +106,4 @@ public final class LexerTokensParserTask implements ParserTask {
 
     }
 
-    private static class DocumentCacheMap extends WeakHashMap<DocumentSnapshot, ParserData<Tagger<TokenTag<Token>>>> {
-    }
-
 }
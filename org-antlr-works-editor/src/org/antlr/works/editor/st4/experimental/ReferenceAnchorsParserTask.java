@@ -73,9 +73,15 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
     @RuleDependency(recognizer=TemplateParser.class, rule=TemplateParser.RULE_groupFile, version=4, dependents=Dependents.SELF)
     public void parse(ParserTaskManager taskManager, ParseContext context, DocumentSnapshot snapshot, Collection<? extends ParserDataDefinition<?>> requestedData, ParserResultHandler results) throws InterruptedException, ExecutionException {
         synchronized (lock) {
-            ParserData<GroupFileContext> parseTreeResult = taskManager.getData(snapshot, TemplateParserDataDefinitions.REFERENCE_PARSE_TREE, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
-            ParserData<List<Anchor>> anchorPointsResult = taskManager.getData(snapshot, TemplateParserDataDefinitions.REFERENCE_ANCHOR_POINTS, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
-            ParserData<FileModel> fileModelResult = taskManager.getData(snapshot, TemplateParserDataDefinitions.FILE_MODEL, EnumSet.of(ParserDataOptions.NO_UPDATE)).get();
+            Future<ParserData<?>>[] cachedResults = taskManager.getData(snapshot,
+                Arrays.<ParserDataDefinition<?>>asList(TemplateParserDataDefinitions.REFERENCE_PARSE_TREE, TemplateParserDataDefinitions.REFERENCE_ANCHOR_POINTS, TemplateParserDataDefinitions.FILE_MODEL),
+                EnumSet.of(ParserDataOptions.NO_UPDATE));
+            @SuppressWarnings("unchecked")
+            ParserData<GroupFileContext> parseTreeResult = (ParserData<GroupFileContext>)cachedResults[0].get();
+            @SuppressWarnings("unchecked")
+            ParserData<List<Anchor>> anchorPointsResult = (ParserData<List<Anchor>>)cachedResults[1].get();
+            @SuppressWarnings("unchecked")
+            ParserData<FileModel> fileModelResult = (ParserData<FileModel>)cachedResults[2].get();
             if (parseTreeResult == null || anchorPointsResult == null || fileModelResult == null) {
                 Future<ParserData<Tagger<TokenTag<Token>>>> futureTokensData = taskManager.getData(snapshot, TemplateParserDataDefinitions.LEXER_TOKENS);
                 Tagger<TokenTag<Token>> tagger = futureTokensData.get().getData();
@@ -104,6 +110,8 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
                     } else {
                         throw ex;
                     }
+                } finally {
+                    TemplateParserFactory.DEFAULT.putParser(parser);
                 }
 
                 parseTreeResult = new BaseParserData<>(context, TemplateParserDataDefinitions.REFERENCE_PARSE_TREE, snapshot, parseResult);
@@ -146,7 +154,7 @@ public final class ReferenceAnchorsParserTask implements ParserTask {
 
     private static final class Definition extends ParserTaskDefinition {
         private static final Collection<ParserDataDefinition<?>> INPUTS =
-            Collections.<ParserDataDefinition<?>>emptyList();
+            Collections.<ParserDataDefinition<?>>singletonList(TemplateParserDataDefinitions.LEXER_TOKENS);
         private static final Collection<ParserDataDefinition<?>> OUTPUTS =
             Arrays.<ParserDataDefinition<?>>asList(
                 TemplateParserDataDefinitions.REFERENCE_ANCHOR_POINTS,
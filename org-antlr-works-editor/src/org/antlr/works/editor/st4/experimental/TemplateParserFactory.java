@@ -11,6 +11,7 @@ package org.antlr.works.editor.st4.experimental;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.works.editor.antlr4.completion.AbstractParserCache;
 import org.antlr.works.editor.antlr4.parsing.DescriptiveErrorListener;
 import org.antlr.works.editor.st4.experimental.generated.TemplateParser;
 import org.netbeans.api.annotations.common.NonNull;
@@ -22,6 +23,15 @@ import org.netbeans.api.annotations.common.NonNull;
 public class TemplateParserFactory {
     public static final TemplateParserFactory DEFAULT = new TemplateParserFactory();
 
+    private final AbstractParserCache<TemplateParser> cache = new AbstractParserCache<TemplateParser>(TemplateParserFactory.class.getName()) {
+
+        @Override
+        protected TemplateParser createParser(TokenStream input) {
+            return TemplateParserFactory.this.createParser(input);
+        }
+
+    };
+
     @NonNull
     protected TemplateParser createParser(@NonNull TokenStream input) {
         TemplateParser parser = new TemplateParser(input);
@@ -30,7 +40,7 @@ public class TemplateParserFactory {
 
     @NonNull
     public TemplateParser getParser(@NonNull TokenStream input) {
-        TemplateParser result = createParser(input);
+        TemplateParser result = cache.getParser(input);
         result.getInterpreter().setPredictionMode(PredictionMode.LL);
         result.removeErrorListeners();
         result.addErrorListener(DescriptiveErrorListener.INSTANCE);
@@ -39,4 +49,17 @@ public class TemplateParserFactory {
         return result;
     }
 
+    /**
+     * Returns a parser obtained from {@link #getParser} to the pool after the
+     * caller is done with it.
+     */
+    public void putParser(@NonNull TemplateParser parser) {
+        cache.putParser(parser);
+    }
+
+    @NonNull
+    public AbstractParserCache<TemplateParser> getCache() {
+        return cache;
+    }
+
 }
@@ -47,6 +47,11 @@ public class CompiledModelParser {
     private DocumentSnapshot lastSnapshot;
     private CompiledFileModel lastResult;
     private Throwable lastException;
+    /**
+     * The most recent group which was parsed without errors. Its compiled
+     * templates are reused by the next parse.
+     */
+    private TemplateGroupWrapper lastGroup;
 
     public void parse(ParserTaskManager taskManager, ParseContext context, DocumentSnapshot snapshot, Collection<? extends ParserDataDefinition<?>> requestedData, ParserResultHandler results)
         throws InterruptedException, ExecutionException {
@@ -90,9 +95,15 @@ public class CompiledModelParser {
                 GroupLexer lexer = new GroupLexer(input);
                 CommonTokenStream tokens = new CommonTokenStream(lexer);
                 GroupParserWrapper parser = new GroupParserWrapper(tokens, snapshot);
-                TemplateGroupWrapper group = new TemplateGroupWrapper('<', '>');
+                TemplateGroupWrapper group = new TemplateGroupWrapper('<', '>', lastGroup);
                 try {
                     parser.group(group, "/");
+                    group.releaseReusableTemplates();
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Reused {0} of {1} compiled templates.", new Object[] { group.getReusedTemplateCount(), group.getCompiledTemplateCount() });
+                    }
+
+                    lastGroup = group;
                     TemplateGroupRuleReturnScope returnScope = buildAstForGroupTemplates(group);
                     FileObject fileObject = snapshot.getVersionedDocument().getFileObject();
                     CommonToken[] groupTokens = tokens.getTokens().toArray(new CommonToken[0]);
@@ -122,6 +133,8 @@ public class CompiledModelParser {
     private TemplateGroupRuleReturnScope buildAstForGroupTemplates(TemplateGroupWrapper group) {
         TreeAdaptor adaptor = new CommonTreeAdaptor();
         Object tree = adaptor.nil();
+        // reused templates were copied with their trees, so attaching the trees
+        // here does not change the group published by the previous parse
         for (CompiledST template : group.getCompiledTemplates()) {
             adaptor.addChild(tree, template.ast);
         }
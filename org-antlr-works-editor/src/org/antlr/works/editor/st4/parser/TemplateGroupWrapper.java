@@ -8,13 +8,20 @@
  */
 package org.antlr.works.editor.st4.parser;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.netbeans.api.annotations.common.NullAllowed;
 import org.openide.util.Parameters;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.compiler.CompiledST;
@@ -23,13 +30,174 @@ import org.stringtemplate.v4.misc.Interval;
 
 public class TemplateGroupWrapper extends STGroup {
 
+    private static final Map<Class<?>, Field[]> INSTANCE_FIELDS = new HashMap<>();
+
     private final List<TemplateInformation> templateInformation = new ArrayList<>();
 
     private final Map<CompiledST, TemplateInformation> compiledTemplateInformation =
         new HashMap<>();
 
+    /**
+     * The templates compiled for this group, keyed by the input to the
+     * template compiler.
+     */
+    private final Map<CompiledTemplateKey, CompiledST> compiledTemplates =
+        new HashMap<>();
+
+    /**
+     * The templates compiled for the previous group which have not been reused
+     * by this group.
+     */
+    private Map<CompiledTemplateKey, CompiledST> reusableTemplates;
+    private int reusedTemplateCount;
+    private boolean definingRegion;
+
     public TemplateGroupWrapper(char delimiterStartChar, char delimiterStopChar) {
+        this(delimiterStartChar, delimiterStopChar, null);
+    }
+
+    /**
+     * Creates a template group which reuses the compiled templates of
+     * {@code previous} for templates whose definition did not change. The
+     * compiled form of a template only depends on its name, formal arguments,
+     * text, and the delimiters; references to other templates are resolved by
+     * name when the template is rendered.
+     *
+     * <p>The group which defines a template updates the compiled template and
+     * its implicitly defined templates, so a reused template is copied rather
+     * than shared with {@code previous}, which may still be in use.</p>
+     *
+     * @param delimiterStartChar The start delimiter.
+     * @param delimiterStopChar The stop delimiter.
+     * @param previous The group created for a previous version of the same
+     * group file, or {@code null} to compile every template.
+     */
+    public TemplateGroupWrapper(char delimiterStartChar, char delimiterStopChar, @NullAllowed TemplateGroupWrapper previous) {
         super(delimiterStartChar, delimiterStopChar);
+        if (previous != null) {
+            this.reusableTemplates = new HashMap<>(previous.compiledTemplates);
+        } else {
+            this.reusableTemplates = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Gets the number of templates which were reused from the previous group
+     * instead of being compiled.
+     */
+    public int getReusedTemplateCount() {
+        return reusedTemplateCount;
+    }
+
+    /**
+     * Gets the number of templates compiled or reused by this group.
+     */
+    public int getCompiledTemplateCount() {
+        return compiledTemplates.size();
+    }
+
+    /**
+     * Releases the compiled templates of the previous group which were not
+     * reused. This is called after the group file is parsed.
+     */
+    public void releaseReusableTemplates() {
+        reusableTemplates = Collections.emptyMap();
+    }
+
+    @Override
+    public CompiledST compile(String srcName, String name, List<FormalArgument> args, String template, Token templateToken) {
+        CompiledTemplateKey key = new CompiledTemplateKey(name, definingRegion, delimiterStartChar, delimiterStopChar, args, template);
+        CompiledST reusable = reusableTemplates.isEmpty() ? null : reusableTemplates.remove(key);
+        CompiledST result;
+        if (reusable != null) {
+            result = copyTemplate(reusable, args);
+            result.templateDefStartToken = templateToken;
+            reusedTemplateCount++;
+        } else {
+            result = super.compile(srcName, name, args, template, templateToken);
+        }
+
+        if (result != null) {
+            compiledTemplates.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies a compiled template of the previous group for use by this group.
+     * The bytecode, strings, and source map of the template are shared, since
+     * they are not changed after compilation. The formal arguments are taken
+     * from the current parse, since their default values are compiled when the
+     * template is defined.
+     *
+     * @param template The compiled template of the previous group.
+     * @param args The formal arguments of the template in the current parse.
+     * @return A copy of {@code template} which belongs to this group.
+     */
+    private CompiledST copyTemplate(CompiledST template, List<FormalArgument> args) {
+        CompiledST result = copyImplicitTemplate(template);
+        result.ast = (CommonTree)new CommonTreeAdaptor().dupTree(template.ast);
+        if (template.formalArguments != null && args != null) {
+            Map<String, FormalArgument> formalArguments = Collections.synchronizedMap(new LinkedHashMap<String, FormalArgument>());
+            for (FormalArgument arg : args) {
+                arg.index = formalArguments.size();
+                formalArguments.put(arg.name, arg);
+            }
+
+            result.formalArguments = formalArguments;
+        }
+
+        return result;
+    }
+
+    private CompiledST copyImplicitTemplate(CompiledST template) {
+        CompiledST result = new CompiledST();
+        copyFields(template, result);
+        result.nativeGroup = this;
+        if (template.implicitlyDefinedTemplates != null) {
+            result.implicitlyDefinedTemplates = new ArrayList<>(template.implicitlyDefinedTemplates.size());
+            for (CompiledST implicitTemplate : template.implicitlyDefinedTemplates) {
+                result.implicitlyDefinedTemplates.add(copyImplicitTemplate(implicitTemplate));
+            }
+        }
+
+        return result;
+    }
+
+    private static void copyFields(Object source, Object target) {
+        try {
+            for (Field field : getInstanceFields(source.getClass())) {
+                field.set(target, field.get(source));
+            }
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Field[] getInstanceFields(Class<?> type) {
+        synchronized (INSTANCE_FIELDS) {
+            Field[] fields = INSTANCE_FIELDS.get(type);
+            if (fields == null) {
+                List<Field> instanceFields = new ArrayList<>();
+                for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                            continue;
+                        }
+
+                        field.setAccessible(true);
+                        instanceFields.add(field);
+                    }
+                }
+
+                fields = instanceFields.toArray(new Field[instanceFields.size()]);
+                INSTANCE_FIELDS.put(type, fields);
+            }
+
+            return fields;
+        }
     }
 
     public Collection<CompiledST> getCompiledTemplates() {
@@ -44,7 +212,14 @@ public class TemplateGroupWrapper extends STGroup {
 
     @Override
     public CompiledST defineRegion(String enclosingTemplateName, Token regionT, String template, Token templateToken) {
-        CompiledST result = super.defineRegion(enclosingTemplateName, regionT, template, templateToken);
+        CompiledST result;
+        definingRegion = true;
+        try {
+            result = super.defineRegion(enclosingTemplateName, regionT, template, templateToken);
+        } finally {
+            definingRegion = false;
+        }
+
         if (result == null) {
             return null;
         }
@@ -89,6 +264,67 @@ public class TemplateGroupWrapper extends STGroup {
         return compiledTemplateInformation.get(template);
     }
 
+    private static final class CompiledTemplateKey {
+        private final String name;
+        private final boolean region;
+        private final char delimiterStartChar;
+        private final char delimiterStopChar;
+        /**
+         * The name and default value text of each formal argument.
+         */
+        private final List<String> arguments;
+        private final String template;
+
+        public CompiledTemplateKey(String name, boolean region, char delimiterStartChar, char delimiterStopChar, List<FormalArgument> args, String template) {
+            this.name = name;
+            this.region = region;
+            this.delimiterStartChar = delimiterStartChar;
+            this.delimiterStopChar = delimiterStopChar;
+            if (args != null) {
+                this.arguments = new ArrayList<>(2 * args.size());
+                for (FormalArgument arg : args) {
+                    this.arguments.add(arg.name);
+                    this.arguments.add(arg.defaultValueToken != null ? arg.defaultValueToken.getText() : null);
+                }
+            } else {
+                this.arguments = null;
+            }
+
+            this.template = template;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof CompiledTemplateKey)) {
+                return false;
+            }
+
+            CompiledTemplateKey other = (CompiledTemplateKey)obj;
+            return this.region == other.region
+                && this.delimiterStartChar == other.delimiterStartChar
+                && this.delimiterStopChar == other.delimiterStopChar
+                && (this.name != null ? this.name.equals(other.name) : other.name == null)
+                && (this.template != null ? this.template.equals(other.template) : other.template == null)
+                && (this.arguments != null ? this.arguments.equals(other.arguments) : other.arguments == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 79 * hash + (this.name != null ? this.name.hashCode() : 0);
+            hash = 79 * hash + (this.region ? 1 : 0);
+            hash = 79 * hash + this.delimiterStartChar;
+            hash = 79 * hash + this.delimiterStopChar;
+            hash = 79 * hash + (this.arguments != null ? this.arguments.hashCode() : 0);
+            hash = 79 * hash + (this.template != null ? this.template.hashCode() : 0);
+            return hash;
+        }
+    }
+
     public static class TemplateInformation {
         private final String enclosingTemplateName;
         private final CommonToken nameToken;
@@ -8,7 +8,9 @@
  */
 package org.antlr.works.editor.antlr4.classification;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -30,12 +32,24 @@ import org.antlr.netbeans.editor.text.SnapshotPositionRegion;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
 import org.antlr.works.editor.antlr4.highlighting.TokenSourceWithStateV4;
 import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
 import org.openide.util.Parameters;
 
 /**
+ * In addition to the lexer state at the end of each line, the tagger keeps
+ * the tokens of each clean line as a token run: an {@code int[]} holding the
+ * start, stop, type, and channel of each token which starts on the line, with
+ * offsets relative to the start of the line. A request which only covers lines
+ * with token runs is answered without running the lexer. Since the offsets are
+ * line-relative, the runs of unchanged lines are shared by the tagger snapshots
+ * created for later versions of the document. The number of tokens held by a
+ * tagger snapshot is limited by the {@code tokenRunBudget} system property.
  *
  * @author Sam Harwell
  * @param <TState>
@@ -44,11 +58,41 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
     // -J-Dorg.antlr.works.editor.antlr4.classification.AbstractTokensTaskTaggerSnapshot.level=FINE
     private static final Logger LOGGER = Logger.getLogger(AbstractTokensTaskTaggerSnapshot.class.getName());
 
+    /**
+     * The maximum number of tokens held in the token runs of a tagger snapshot.
+     * Each token uses 16 bytes. A value of 0 disables the token run cache.
+     */
+    private static final int TOKEN_RUN_BUDGET = Math.max(0, Integer.getInteger(AbstractTokensTaskTaggerSnapshot.class.getName() + ".tokenRunBudget", 32 * 1024));
+
+    private static final int TOKEN_RUN_ELEMENT_SIZE = 4;
+    private static final int TOKEN_RUN_START = 0;
+    private static final int TOKEN_RUN_STOP = 1;
+    private static final int TOKEN_RUN_TYPE = 2;
+    private static final int TOKEN_RUN_CHANNEL = 3;
+    private static final int[] EMPTY_TOKEN_RUN = new int[0];
+
     @NonNull
     private final DocumentSnapshot snapshot;
 
     private final Object lock = new Object();
     private final ArrayList<TState> lineStates = new ArrayList<>();
+    /**
+     * The token run of each line, or {@code null} if the tokens of the line
+     * are not cached. This list is kept the same size as {@link #lineStates}.
+     */
+    private final ArrayList<int[]> tokenRuns = new ArrayList<>();
+    private int tokenRunTokenCount;
+    /**
+     * The lines of {@link #tokenRuns} in the order their token runs were
+     * stored, which is the order they are released when the budget is
+     * exceeded. Entries for lines whose run was since removed are skipped when
+     * they are reached.
+     */
+    private final ArrayDeque<Integer> tokenRunLines = new ArrayDeque<>();
+    /**
+     * The token source reported by tokens created from the token runs.
+     */
+    private TokenSource tokenRunSource;
 
     private Integer firstDirtyLine;
     private Integer lastDirtyLine;
@@ -74,6 +118,10 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
 
         this.snapshot = snapshot;
         this.lineStates.addAll(reference.lineStates);
+        synchronized (reference.lock) {
+            this.tokenRuns.addAll(reference.tokenRuns);
+        }
+
         this.firstDirtyLine = reference.firstDirtyLine;
         this.lastDirtyLine = reference.lastDirtyLine;
         Integer firstChangedLine = null;
@@ -99,6 +147,9 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
                 int oldEndLine = oldLength == 0 ? oldStartLine : source.findLineNumber(oldOffset + oldLength - 1);
                 if (lineCountDelta < 0) {
                     lineStates.subList(oldStartLine, oldStartLine + Math.abs(lineCountDelta)).clear();
+                    if (!tokenRuns.isEmpty()) {
+                        tokenRuns.subList(oldStartLine, oldStartLine + Math.abs(lineCountDelta)).clear();
+                    }
                 } else if (lineCountDelta > 0) {
                     TState endLineState = lineStates.get(oldStartLine);
                     ArrayList<TState> insertedElements = new ArrayList<>();
@@ -106,6 +157,9 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
                         insertedElements.add(endLineState);
                     }
                     lineStates.addAll(oldStartLine, insertedElements);
+                    if (!tokenRuns.isEmpty()) {
+                        tokenRuns.addAll(oldStartLine, Collections.<int[]>nCopies(lineCountDelta, null));
+                    }
                 }
 
                 if (lastDirtyLine != null && lastDirtyLine > oldStartLine) {
@@ -119,6 +173,9 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
                 for (int j = oldStartLine; j <= oldEndLine + lineCountDelta; j++) {
                     TState state = lineStates.get(i);
                     lineStates.set(j, state.createDirtyState());
+                    if (!tokenRuns.isEmpty()) {
+                        tokenRuns.set(j, null);
+                    }
                 }
 
                 firstChangedLine = firstChangedLine != null ? Math.min(firstChangedLine, oldStartLine) : oldStartLine;
@@ -149,6 +206,14 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
 
         firstDirtyLine = Math.min(firstDirtyLine, snapshot.getLineCount() - 1);
         lastDirtyLine = Math.min(lastDirtyLine, snapshot.getLineCount() - 1);
+
+        for (int i = 0; i < tokenRuns.size(); i++) {
+            int[] run = tokenRuns.get(i);
+            if (run != null) {
+                tokenRunTokenCount += run.length / TOKEN_RUN_ELEMENT_SIZE;
+                tokenRunLines.add(i);
+            }
+        }
     }
 
     public void initialize() {
@@ -160,10 +225,28 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
                 lineStates.add(dirtyState);
             }
 
+            synchronized (lock) {
+                tokenRuns.ensureCapacity(lineCount);
+                while (tokenRuns.size() < lineCount) {
+                    tokenRuns.add(null);
+                }
+            }
+
             forceRehighlightLines(0, lineCount - 1);
         }
     }
 
+    /**
+     * Gets an estimate of the memory used by the line states and token runs of
+     * this tagger, in bytes. Token runs shared with other tagger snapshots are
+     * included in the estimate.
+     */
+    public long getEstimatedRetainedSize() {
+        synchronized (lock) {
+            return 16L * lineStates.size() + 4L * TOKEN_RUN_ELEMENT_SIZE * tokenRunTokenCount;
+        }
+    }
+
     @Override
     public Iterable<TaggedPositionRegion<TokenTag<Token>>> getTags(NormalizedSnapshotPositionRegionCollection regions) {
         Parameters.notNull("regions", regions);
@@ -204,6 +287,10 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
         synchronized (lock) {
             OffsetRegion requestedSpan = span;
 
+            if (getCachedHighlights(requestedSpan, tags)) {
+                return tags;
+            }
+
             ParseRequest<TState> request = adjustParseSpan(span);
             TState startState = request.getState();
             span = request.getRegion();
@@ -217,11 +304,19 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
             }
 
             TokenSourceWithStateV4<TState> lexer = createLexer(input, startState);
-            lexer.setTokenFactory(new DocumentSnapshotTokenFactory(getEffectiveTokenSource(lexer)));
+            TokenSource effectiveTokenSource = getEffectiveTokenSource(lexer);
+            lexer.setTokenFactory(new DocumentSnapshotTokenFactory(effectiveTokenSource));
+            tokenRunSource = effectiveTokenSource;
 
             Token previousToken = null;
             boolean previousTokenEndsLine = false;
 
+            // the token run of the line currently being lexed
+            int runLine = snapshot.findLineNumber(span.getStart());
+            int runLineStart = span.getStart();
+            IntegerList run = new IntegerList();
+            boolean runValid = true;
+
             /* this is held outside the loop because only tokens which end at the end of a line
              * impact its value.
              */
@@ -267,6 +362,39 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
                     }
                 }
 
+                if (TOKEN_RUN_BUDGET > 0) {
+                    int tokenLine = token.getType() == Token.EOF ? snapshot.getLineCount() : snapshot.findLineNumber(token.getStartIndex());
+                    if (tokenLine > runLine) {
+                        if (runValid) {
+                            setTokenRun(runLine, run.toArray());
+                        }
+
+                        // lines without tokens are only complete if no token spans them
+                        int lastTokenStop = previousToken != null ? previousToken.getStopIndex() : -1;
+                        for (int i = runLine + 1; i < tokenLine; i++) {
+                            if (lastTokenStop < snapshot.findLineFromLineNumber(i).getStart().getOffset()) {
+                                setTokenRun(i, EMPTY_TOKEN_RUN);
+                            }
+                        }
+
+                        runLine = tokenLine;
+                        runLineStart = tokenLine < snapshot.getLineCount() ? snapshot.findLineFromLineNumber(tokenLine).getStart().getOffset() : snapshot.length();
+                        run.clear();
+                        runValid = lastTokenStop < runLineStart;
+                    }
+
+                    if (token.getType() != Token.EOF) {
+                        if (runValid && snapshot.findLineNumber(token.getStopIndex()) == runLine) {
+                            run.add(token.getStartIndex() - runLineStart);
+                            run.add(token.getStopIndex() - runLineStart);
+                            run.add(token.getType());
+                            run.add(token.getChannel());
+                        } else {
+                            runValid = false;
+                        }
+                    }
+                }
+
                 if (token.getType() == Token.EOF)
                     break;
 
@@ -361,7 +489,12 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
 
     protected void setLineState(int line, TState state) {
         synchronized (lock) {
-            lineStates.set(line, state);
+            TState previousState = lineStates.set(line, state);
+            if (!state.equals(previousState) && line + 1 < tokenRuns.size()) {
+                // the following line was lexed from a different start state
+                setTokenRun(line + 1, null);
+            }
+
             if (!state.getIsDirty() && firstDirtyLine != null && firstDirtyLine.equals(line)) {
                 firstDirtyLine++;
             }
@@ -373,6 +506,138 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
         }
     }
 
+    /**
+     * Gets the tags for {@code span} from the token runs of the lines it
+     * covers, if every one of those lines has a token run.
+     *
+     * @param span The requested region.
+     * @param tags The list to add the tags to.
+     * @return {@code true} if the tags were added to {@code tags}; otherwise,
+     * {@code false} if the region must be lexed.
+     */
+    private boolean getCachedHighlights(OffsetRegion span, List<TaggedPositionRegion<TokenTag<Token>>> tags) {
+        assert Thread.holdsLock(lock);
+
+        if (TOKEN_RUN_BUDGET == 0 || span.isEmpty() || tokenRuns.size() != snapshot.getLineCount()) {
+            return false;
+        }
+
+        int startLine = snapshot.findLineNumber(span.getStart());
+        int endLine = snapshot.findLineNumber(span.getEnd() - 1);
+        if (firstDirtyLine != null && firstDirtyLine <= endLine) {
+            return false;
+        }
+
+        for (int line = startLine; line <= endLine; line++) {
+            if (tokenRuns.get(line) == null) {
+                return false;
+            }
+        }
+
+        if (tokenRunSource == null) {
+            tokenRunSource = getEffectiveTokenSource(createLexer(new DocumentSnapshotCharStream(snapshot), getStartState()));
+        }
+
+        // the char stream caches text, so each request uses its own instance
+        Tuple2<? extends TokenSource, CharStream> source = Tuple.create(tokenRunSource, (CharStream)new DocumentSnapshotCharStream(snapshot));
+        for (int line = startLine; line <= endLine; line++) {
+            int lineStart = snapshot.findLineFromLineNumber(line).getStart().getOffset();
+            int[] run = tokenRuns.get(line);
+            for (int i = 0; i < run.length; i += TOKEN_RUN_ELEMENT_SIZE) {
+                int start = lineStart + run[i + TOKEN_RUN_START];
+                int stop = lineStart + run[i + TOKEN_RUN_STOP];
+                if (stop < span.getStart()) {
+                    continue;
+                } else if (start >= span.getEnd()) {
+                    return true;
+                }
+
+                Token token = new DocumentSnapshotToken(source, run[i + TOKEN_RUN_TYPE], run[i + TOKEN_RUN_CHANNEL], start, stop);
+                Collection<TaggedPositionRegion<TokenTag<Token>>> tokenClassificationSpans = getTagsForToken(token);
+                if (tokenClassificationSpans != null) {
+                    tags.addAll(tokenClassificationSpans);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the token run of a line. If the token runs exceed the budget, the
+     * runs which were stored first are released.
+     *
+     * @param line The line number.
+     * @param run The token run of the line, or {@code null} to remove the
+     * token run of the line.
+     */
+    private void setTokenRun(int line, @NullAllowed int[] run) {
+        assert Thread.holdsLock(lock);
+
+        if (line >= tokenRuns.size()) {
+            return;
+        }
+
+        int[] previousRun = tokenRuns.set(line, run);
+        if (previousRun != null) {
+            tokenRunTokenCount -= previousRun.length / TOKEN_RUN_ELEMENT_SIZE;
+        }
+
+        if (run == null) {
+            return;
+        }
+
+        tokenRunTokenCount += run.length / TOKEN_RUN_ELEMENT_SIZE;
+        if (tokenRunLines.size() >= 2 * tokenRuns.size()) {
+            compactTokenRunLines();
+        }
+
+        tokenRunLines.add(line);
+
+        if (tokenRunTokenCount <= TOKEN_RUN_BUDGET) {
+            return;
+        }
+
+        // the last element is the entry for line
+        while (tokenRunTokenCount > TOKEN_RUN_BUDGET && tokenRunLines.size() > 1) {
+            int evicted = tokenRunLines.remove();
+            if (evicted == line || evicted >= tokenRuns.size()) {
+                continue;
+            }
+
+            int[] evictedRun = tokenRuns.set(evicted, null);
+            if (evictedRun != null) {
+                tokenRunTokenCount -= evictedRun.length / TOKEN_RUN_ELEMENT_SIZE;
+            }
+        }
+
+        if (tokenRunTokenCount > TOKEN_RUN_BUDGET) {
+            // a single line exceeds the budget
+            tokenRuns.set(line, null);
+            tokenRunTokenCount -= run.length / TOKEN_RUN_ELEMENT_SIZE;
+            tokenRunLines.clear();
+        }
+
+        LOGGER.log(Level.FINE, "Token runs of {0} exceeded the budget of {1} tokens.", new Object[] { snapshot, TOKEN_RUN_BUDGET });
+    }
+
+    /**
+     * Removes the entries of {@link #tokenRunLines} which no longer refer to a
+     * token run, keeping the first entry of each remaining line.
+     */
+    private void compactTokenRunLines() {
+        assert Thread.holdsLock(lock);
+
+        BitSet seen = new BitSet(tokenRuns.size());
+        for (int i = tokenRunLines.size(); i > 0; i--) {
+            int line = tokenRunLines.remove();
+            if (line < tokenRuns.size() && tokenRuns.get(line) != null && !seen.get(line)) {
+                seen.set(line);
+                tokenRunLines.add(line);
+            }
+        }
+    }
+
     protected abstract TState getStartState();
 
     protected TokenSource getEffectiveTokenSource(TokenSourceWithStateV4<TState> lexer) {
@@ -459,13 +724,7 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
     }
 
     protected CharStream createInputStream(OffsetRegion span) throws BadLocationException {
-        CharStream input;
-        if (span.getLength() > 1000) {
-            input = new DocumentSnapshotCharStream(snapshot, span);
-        } else {
-            input = new DocumentSnapshotCharStream(snapshot);
-        }
-
+        CharStream input = new DocumentSnapshotCharStream(snapshot);
         input.seek(span.getStart());
         return input;
     }
@@ -495,6 +754,12 @@ public abstract class AbstractTokensTaskTaggerSnapshot<TState extends LineStateI
         firstDirtyLine = firstDirtyLine != null ? Math.min(firstDirtyLine, startLine) : startLine;
         lastDirtyLine = lastDirtyLine != null ? Math.max(lastDirtyLine, endLineInclusive) : endLineInclusive;
 
+        synchronized (lock) {
+            for (int i = startLine; i <= endLineInclusive && i < tokenRuns.size(); i++) {
+                setTokenRun(i, null);
+            }
+        }
+
 //        int start = snapshot.findLineFromOffset(startLine).getStart().getOffset();
 //        int end = (endLineInclusive == lineStates.size() - 1) ? snapshot.length() : snapshot.findLineFromOffset(endLineInclusive + 1).getStart().getOffset();
 //        if (FIX_HIGHLIGHTER_UPDATE_BUG) {
@@ -9,7 +9,7 @@
 package org.antlr.works.editor.antlr4.classification;
 
 import org.antlr.netbeans.editor.text.DocumentSnapshot;
-import org.antlr.netbeans.editor.text.DocumentSnapshotLine;
+import org.antlr.netbeans.editor.text.DocumentSnapshotTextCursor;
 import org.antlr.netbeans.editor.text.OffsetRegion;
 import org.antlr.netbeans.editor.text.SnapshotPositionRegion;
 import org.antlr.v4.runtime.CharStream;
@@ -36,6 +36,7 @@ public class DocumentSnapshotCharStream implements CharStream {
     private boolean explicitCache;
     private int currentSnapshotLineStartIndex;
     private String currentSnapshotLine;
+    private DocumentSnapshotTextCursor cursor;
 
     public DocumentSnapshotCharStream(DocumentSnapshot snapshot) {
         Parameters.notNull("snapshot", snapshot);
@@ -62,6 +63,14 @@ public class DocumentSnapshotCharStream implements CharStream {
         return snapshot;
     }
 
+    private DocumentSnapshotTextCursor getCursor() {
+        if (cursor == null) {
+            cursor = getSnapshot().createTextCursor(Math.min(Math.max(index(), 0), size()));
+        }
+
+        return cursor;
+    }
+
     public int getLine() {
         return line;
     }
@@ -121,7 +130,24 @@ public class DocumentSnapshotCharStream implements CharStream {
             stop = size() - 1;
         }
 
-        return getSnapshot().subSequence(start, stop + 1).toString();
+        if (stop < start) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder(stop + 1 - start);
+        DocumentSnapshotTextCursor textCursor = getCursor();
+        textCursor.moveTo(start);
+        while (true) {
+            String text = textCursor.getLineText();
+            int lineStart = textCursor.getLineStart();
+            int lineEnd = lineStart + text.length();
+            builder.append(text, Math.max(start, lineStart) - lineStart, Math.min(stop + 1, lineEnd) - lineStart);
+            if (lineEnd > stop || !textCursor.moveNext()) {
+                break;
+            }
+        }
+
+        return builder.toString();
     }
 
     @Override
@@ -174,7 +200,7 @@ public class DocumentSnapshotCharStream implements CharStream {
             return currentLine.charAt(actualIndex - currentLineStartIndex);
         }
 
-        return getSnapshot().charAt(actualIndex);
+        return getCursor().charAt(actualIndex);
     }
 
     @Override
@@ -196,9 +222,10 @@ public class DocumentSnapshotCharStream implements CharStream {
         }
 
         setIndex(index);
-        DocumentSnapshotLine currentLine = getSnapshot().findLineFromOffset(index());
+        DocumentSnapshotTextCursor currentLine = getCursor();
+        currentLine.moveTo(index());
         setLine(currentLine.getLineNumber());
-        setCharPositionInLine(index() - currentLine.getStart().getOffset());
+        setCharPositionInLine(index() - currentLine.getLineStart());
         updateCachedLine();
     }
 
@@ -211,9 +238,10 @@ public class DocumentSnapshotCharStream implements CharStream {
             || index() < currentSnapshotLineStartIndex
             || index() >= currentSnapshotLineStartIndex + currentSnapshotLine.length()) {
             if (index() >= 0 && index() < size()) {
-                DocumentSnapshotLine currentLine = getSnapshot().findLineFromOffset(index());
-                currentSnapshotLineStartIndex = currentLine.getStart().getOffset();
-                currentSnapshotLine = currentLine.getTextIncludingLineBreak();
+                DocumentSnapshotTextCursor currentLine = getCursor();
+                currentLine.moveTo(index());
+                currentSnapshotLineStartIndex = currentLine.getLineStart();
+                currentSnapshotLine = currentLine.getLineText();
             } else {
                 currentSnapshotLine = null;
                 currentSnapshotLineStartIndex = 0;
@@ -0,0 +1,162 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.antlr4.classification;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.netbeans.editor.classification.TokenTag;
+import org.antlr.netbeans.editor.tagging.Tagger;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.VersionedDocument;
+import org.antlr.netbeans.parsing.spi.ParserData;
+import org.antlr.v4.runtime.Token;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * The token taggers created for the snapshots of a single document, indexed
+ * by version number. A lexer tokens parser task uses this cache to translate
+ * the tagger of the closest earlier version to a new snapshot, which preserves
+ * the line states and token runs of the unchanged lines.
+ *
+ * <p>The cache holds at most {@code maxEntries} taggers, and the estimated
+ * retained size of the taggers is limited to {@code maxRetainedSize} bytes. The
+ * taggers of the oldest versions are evicted first, and the tagger of the
+ * newest version is never evicted.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class TokensTaskTaggerCache {
+    // -J-Dorg.antlr.works.editor.antlr4.classification.TokensTaskTaggerCache.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(TokensTaskTaggerCache.class.getName());
+
+    private static final int MAX_ENTRIES = Math.max(1, Integer.getInteger(TokensTaskTaggerCache.class.getName() + ".maxEntries", 8));
+    private static final long MAX_RETAINED_SIZE = Long.getLong(TokensTaskTaggerCache.class.getName() + ".maxRetainedSize", 16L * 1024 * 1024);
+
+    private static final Object LOCK = new Object();
+
+    private final NavigableMap<Integer, ParserData<Tagger<TokenTag<Token>>>> taggers = new TreeMap<>();
+
+    private TokensTaskTaggerCache() {
+    }
+
+    /**
+     * Gets the tagger cache stored in a property of a document, creating it if
+     * necessary.
+     *
+     * @param document The document.
+     * @param key The name of the document property holding the cache.
+     * @return The tagger cache for {@code document}.
+     */
+    @NonNull
+    public static TokensTaskTaggerCache getCache(@NonNull VersionedDocument document, @NonNull String key) {
+        Parameters.notNull("document", document);
+        Parameters.notNull("key", key);
+
+        synchronized (LOCK) {
+            TokensTaskTaggerCache cache = (TokensTaskTaggerCache)document.getProperty(key);
+            if (cache == null) {
+                cache = new TokensTaskTaggerCache();
+                document.putProperty(key, cache);
+            }
+
+            return cache;
+        }
+    }
+
+    /**
+     * Gets the cached tagger data for a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @return The tagger data for {@code snapshot}, or {@code null} if the
+     * cache does not contain data for the snapshot.
+     */
+    @CheckForNull
+    public synchronized ParserData<Tagger<TokenTag<Token>>> get(@NonNull DocumentSnapshot snapshot) {
+        ParserData<Tagger<TokenTag<Token>>> data = taggers.get(snapshot.getVersion().getVersionNumber());
+        if (data != null && data.getSnapshot().equals(snapshot)) {
+            return data;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the cached tagger data for the newest version of the document which
+     * is older than {@code snapshot}.
+     *
+     * @param snapshot The snapshot.
+     * @return The tagger data of the closest earlier version, or {@code null}
+     * if the cache does not contain data for an earlier version.
+     */
+    @CheckForNull
+    public synchronized ParserData<Tagger<TokenTag<Token>>> getPredecessor(@NonNull DocumentSnapshot snapshot) {
+        Map.Entry<Integer, ParserData<Tagger<TokenTag<Token>>>> entry = taggers.lowerEntry(snapshot.getVersion().getVersionNumber());
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Adds tagger data to the cache, unless the cache already contains data
+     * for the same snapshot.
+     *
+     * @param data The tagger data.
+     * @return The tagger data in the cache for the snapshot of {@code data}.
+     */
+    @NonNull
+    public synchronized ParserData<Tagger<TokenTag<Token>>> putIfAbsent(@NonNull ParserData<Tagger<TokenTag<Token>>> data) {
+        Parameters.notNull("data", data);
+
+        ParserData<Tagger<TokenTag<Token>>> existing = get(data.getSnapshot());
+        if (existing != null) {
+            return existing;
+        }
+
+        taggers.put(data.getSnapshot().getVersion().getVersionNumber(), data);
+        evict();
+        return data;
+    }
+
+    public synchronized void clear() {
+        taggers.clear();
+    }
+
+    private void evict() {
+        assert Thread.holdsLock(this);
+
+        while (taggers.size() > MAX_ENTRIES) {
+            taggers.pollFirstEntry();
+        }
+
+        long retainedSize = 0;
+        for (ParserData<Tagger<TokenTag<Token>>> data : taggers.values()) {
+            retainedSize += getEstimatedRetainedSize(data);
+        }
+
+        while (retainedSize > MAX_RETAINED_SIZE && taggers.size() > 1) {
+            Map.Entry<Integer, ParserData<Tagger<TokenTag<Token>>>> evicted = taggers.pollFirstEntry();
+            retainedSize -= getEstimatedRetainedSize(evicted.getValue());
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Evicted the token tagger for version {0} to limit the retained size.", evicted.getKey());
+            }
+        }
+    }
+
+    private static long getEstimatedRetainedSize(ParserData<Tagger<TokenTag<Token>>> data) {
+        Tagger<TokenTag<Token>> tagger = data.getData();
+        if (tagger instanceof AbstractTokensTaskTaggerSnapshot<?>) {
+            return ((AbstractTokensTaskTaggerSnapshot<?>)tagger).getEstimatedRetainedSize();
+        }
+
+        return 0;
+    }
+}
@@ -17,7 +17,6 @@ import com.tvl.spi.editor.completion.support.AsyncCompletionQuery;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -34,6 +33,7 @@ import org.antlr.netbeans.editor.text.TrackingPositionRegion;
 import org.antlr.netbeans.editor.text.VersionedDocument;
 import org.antlr.netbeans.editor.text.VersionedDocumentUtilities;
 import org.antlr.netbeans.parsing.spi.ParserTaskManager;
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.editor.BaseDocument;
@@ -73,6 +73,9 @@ public abstract class AbstractCompletionQuery extends AsyncCompletionQuery {
     private CompletionToolTip toolTip;
     private int toolTipOffset;
     private String filterPrefix;
+    private CompletionMatchIndex filterIndex;
+    private String filteredPrefix;
+    private IntegerList filteredItems;
     private byte hasAdditionalItems;
     protected TrackingPositionRegion applicableTo;
 
@@ -321,19 +324,25 @@ public abstract class AbstractCompletionQuery extends AsyncCompletionQuery {
             return data;
         }
 
-        Pattern prefixBoundaryPattern = BaseCompletionController.getPrefixBoundaryPattern(prefix, false);
-        Pattern letterOrderPattern = BaseCompletionController.getLetterOrderPattern(prefix, false);
-        String lowercasePrefix = prefix.toLowerCase(Locale.getDefault());
-        List<CompletionItem> result = new ArrayList<>();
-        for (CompletionItem item : data) {
-            String insertPrefix = item.getInsertPrefix().toString();
-            if (insertPrefix.toLowerCase(Locale.getDefault()).contains(lowercasePrefix)) {
-                result.add(item);
-            } else if (prefixBoundaryPattern != null && prefixBoundaryPattern.matcher(insertPrefix).matches()) {
-                result.add(item);
-            } else if (letterOrderPattern != null && letterOrderPattern.matcher(insertPrefix).find()) {
-                result.add(item);
-            }
+        if (filterIndex == null || filterIndex.getItems() != data || filterIndex.size() != data.size()) {
+            filterIndex = new CompletionMatchIndex(data);
+            filteredPrefix = null;
+            filteredItems = null;
+        }
+
+        // items which do not match a prefix of the filter text cannot match the filter text
+        IntegerList candidates = null;
+        if (filteredPrefix != null && prefix.startsWith(filteredPrefix)) {
+            candidates = filteredItems;
+        }
+
+        IntegerList matches = filterIndex.filter(new CompletionMatchEvaluator(prefix), candidates);
+        filteredPrefix = prefix;
+        filteredItems = matches;
+
+        List<CompletionItem> result = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            result.add(filterIndex.getItem(matches.get(i)));
         }
 
         return result;
@@ -9,17 +9,28 @@
 package org.antlr.works.editor.antlr4.completion;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.FailedPredicateException;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.ATNConfig;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.DecisionState;
@@ -29,6 +40,8 @@ import org.antlr.v4.runtime.atn.StarLoopEntryState;
 import org.antlr.v4.runtime.atn.StarLoopbackState;
 import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.IntervalSet;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
 
 /**
  *
@@ -39,20 +52,63 @@ public abstract class AbstractForestParser<TParser extends CodeCompletionParser>
     // -J-Dorg.antlr.works.editor.antlr4.completion.AbstractForestParser.level=FINE
     protected static final Logger LOGGER = Logger.getLogger(AbstractForestParser.class.getName());
 
+    /**
+     * The name of the system property holding the time budget, in
+     * milliseconds, for constructing the parse forest of a single query. When
+     * the budget is exhausted, the parse trees constructed so far are returned.
+     */
+    public static final String TIMEOUT_PROPERTY = AbstractForestParser.class.getName() + ".timeout";
+
+    /**
+     * When {@code true}, alternative paths are parsed in parallel when the
+     * implementation supports creating additional parsers. See
+     * {@link #createParser}.
+     */
+    private static final boolean PARALLEL_FOREST_PARSE = true;
+
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong(TIMEOUT_PROPERTY, 2000));
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     @Override
     public Map<RuleContext, CaretReachedException> getParseTrees(TParser parser) {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
         List<MultipleDecisionData> potentialAlternatives = new ArrayList<>();
         IntegerList currentPath = new IntegerList();
         Map<RuleContext, CaretReachedException> results = new IdentityHashMap<>();
         // make sure the token stream is initialized before getting the index
         parser.getInputStream().LA(1);
         int initialToken = parser.getInputStream().index();
-        while (true) {
-            parser.getInputStream().seek(initialToken);
+        boolean complete;
+        if (PARALLEL_FOREST_PARSE) {
+            // the first path is always parsed on the current thread, so the
+            // token stream is filled through the caret for the worker parsers
             tryParse(parser, potentialAlternatives, currentPath, results);
-            if (!incrementCurrentPath(potentialAlternatives, currentPath)) {
-                break;
+            if (potentialAlternatives.isEmpty()) {
+                complete = true;
+            } else {
+                ParallelForestParse forest = new ParallelForestParse(parser, initialToken, deadline, results);
+                if (forest.createWorker() != null) {
+                    complete = forest.run(potentialAlternatives, currentPath);
+                    results = forest.getResults();
+                    if (complete) {
+                        // tasks which are still running after the time budget
+                        // expires continue to use their workers
+                        forest.releaseWorkers();
+                    }
+                } else {
+                    complete = parseSerial(parser, initialToken, deadline, potentialAlternatives, currentPath, results);
+                }
             }
+        } else {
+            parser.getInputStream().seek(initialToken);
+            tryParse(parser, potentialAlternatives, currentPath, results);
+            complete = parseSerial(parser, initialToken, deadline, potentialAlternatives, currentPath, results);
+        }
+
+        if (!complete) {
+            LOGGER.log(Level.FINE, "Forest parser exceeded its time budget; returning a partial result.");
+            results = new PartialParseTrees(results);
         }
 
         LOGGER.log(Level.FINE, "Forest parser constructed {0} parse trees.", results.size());
@@ -66,6 +122,54 @@ public abstract class AbstractForestParser<TParser extends CodeCompletionParser>
         return results;
     }
 
+    /**
+     * Determines whether a result of {@link #getParseTrees} contains every
+     * parse tree of the forest, or only the trees constructed before the time
+     * budget expired.
+     */
+    public static boolean isComplete(@NonNull Map<RuleContext, CaretReachedException> parseTrees) {
+        return !(parseTrees instanceof PartialParseTrees);
+    }
+
+    /**
+     * Creates an additional parser for {@code input} which behaves the same as
+     * {@code parser}, for parsing alternative paths of the forest in parallel.
+     * The default implementation returns {@code null}, in which case the
+     * forest is parsed serially.
+     *
+     * @param input The token stream for the new parser.
+     * @param parser The parser passed to {@link #getParseTrees}.
+     * @return The new parser, or {@code null} if the forest cannot be parsed in
+     * parallel.
+     */
+    @CheckForNull
+    protected TParser createParser(@NonNull TokenStream input, @NonNull TParser parser) {
+        return null;
+    }
+
+    /**
+     * Called when a parser returned by {@link #createParser} is no longer in
+     * use, so the implementation can return it to a pool. The default
+     * implementation does nothing.
+     *
+     * @param parser The parser.
+     */
+    protected void releaseParser(@NonNull TParser parser) {
+    }
+
+    private boolean parseSerial(TParser parser, int initialToken, long deadline, List<MultipleDecisionData> potentialAlternatives, IntegerList currentPath, Map<RuleContext, CaretReachedException> results) {
+        while (incrementCurrentPath(potentialAlternatives, currentPath)) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+
+            parser.getInputStream().seek(initialToken);
+            tryParse(parser, potentialAlternatives, currentPath, results);
+        }
+
+        return true;
+    }
+
     protected boolean incrementCurrentPath(List<MultipleDecisionData> potentialAlternatives, IntegerList currentPath) {
         for (int i = currentPath.size() - 1; i >= 0; i--) {
             if (currentPath.get(i) < potentialAlternatives.get(i).alternatives.length - 1) {
@@ -167,4 +271,170 @@ public abstract class AbstractForestParser<TParser extends CodeCompletionParser>
 
     protected abstract RuleContext parseImpl(TParser parser);
 
+    /**
+     * Parses the alternative paths of a forest on {@link #POOL}. Each
+     * decision point discovered while parsing a path forks one task per
+     * alternative; the tasks share the decisions leading to the fork, and
+     * each one parses with a parser taken from a pool of worker parsers
+     * reading the tokens already buffered by the original parser.
+     */
+    private final class ParallelForestParse {
+        private final TParser parser;
+        private final int initialToken;
+        private final long deadline;
+        private final List<Token> tokens;
+        private final Map<RuleContext, CaretReachedException> results;
+        private final Queue<TParser> workers = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
+
+        public ParallelForestParse(TParser parser, int initialToken, long deadline, Map<RuleContext, CaretReachedException> results) {
+            this.parser = parser;
+            this.initialToken = initialToken;
+            this.deadline = deadline;
+
+            TokenStream input = parser.getInputStream();
+            this.tokens = new ArrayList<>(input.size());
+            for (int i = 0; i < input.size(); i++) {
+                this.tokens.add(input.get(i));
+            }
+
+            this.results = Collections.synchronizedMap(new IdentityHashMap<RuleContext, CaretReachedException>(results));
+        }
+
+        public Map<RuleContext, CaretReachedException> getResults() {
+            synchronized (results) {
+                return new IdentityHashMap<>(results);
+            }
+        }
+
+        @CheckForNull
+        public TParser createWorker() {
+            TParser worker = createParser(new CommonTokenStream(new TokenListSource(tokens, parser.getInputStream().getTokenSource())), parser);
+            if (worker != null) {
+                workers.add(worker);
+            }
+
+            return worker;
+        }
+
+        /**
+         * Parses every path following the most recently discovered decision in
+         * {@code potentialAlternatives}.
+         *
+         * @return {@code true} if every path was parsed, or {@code false} if
+         * the time budget expired or the current thread was interrupted.
+         */
+        public boolean run(List<MultipleDecisionData> potentialAlternatives, IntegerList currentPath) {
+            ForkJoinTask<Void> task = POOL.submit(new AlternativesTask(potentialAlternatives, currentPath));
+            try {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                return !cancelled;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                LOGGER.log(Level.WARNING, "An exception occurred while parsing the forest.", ex.getCause());
+            } catch (TimeoutException ex) {
+                // partial results are returned below
+            }
+
+            cancelled = true;
+            return false;
+        }
+
+        public void releaseWorkers() {
+            for (TParser worker = workers.poll(); worker != null; worker = workers.poll()) {
+                releaseParser(worker);
+            }
+        }
+
+        private boolean isExpired() {
+            if (!cancelled && System.nanoTime() - deadline > 0) {
+                cancelled = true;
+            }
+
+            return cancelled;
+        }
+
+        private TParser acquireWorker() {
+            TParser worker = workers.poll();
+            if (worker == null) {
+                worker = createParser(new CommonTokenStream(new TokenListSource(tokens, parser.getInputStream().getTokenSource())), parser);
+                assert worker != null;
+            }
+
+            return worker;
+        }
+
+        private class AlternativesTask extends RecursiveAction {
+            private final List<MultipleDecisionData> decisions;
+            private final IntegerList path;
+
+            public AlternativesTask(List<MultipleDecisionData> decisions, IntegerList path) {
+                this.decisions = decisions;
+                this.path = path;
+            }
+
+            @Override
+            protected void compute() {
+                MultipleDecisionData decision = decisions.get(decisions.size() - 1);
+                List<PathTask> tasks = new ArrayList<>(decision.alternatives.length);
+                for (int i = 0; i < decision.alternatives.length; i++) {
+                    IntegerList alternativePath = copy(path);
+                    alternativePath.set(alternativePath.size() - 1, i);
+                    tasks.add(new PathTask(decisions, alternativePath));
+                }
+
+                invokeAll(tasks);
+            }
+        }
+
+        private class PathTask extends RecursiveAction {
+            private final List<MultipleDecisionData> decisions;
+            private final IntegerList path;
+
+            public PathTask(List<MultipleDecisionData> decisions, IntegerList path) {
+                this.decisions = decisions;
+                this.path = path;
+            }
+
+            @Override
+            protected void compute() {
+                if (isExpired()) {
+                    return;
+                }
+
+                List<MultipleDecisionData> potentialAlternatives = new ArrayList<>(decisions);
+                IntegerList currentPath = copy(path);
+                TParser worker = acquireWorker();
+                try {
+                    worker.getInputStream().seek(initialToken);
+                    tryParse(worker, potentialAlternatives, currentPath, results);
+                } finally {
+                    workers.add(worker);
+                }
+
+                if (potentialAlternatives.size() > decisions.size()) {
+                    new AlternativesTask(potentialAlternatives, currentPath).compute();
+                }
+            }
+        }
+    }
+
+    private static final class PartialParseTrees extends IdentityHashMap<RuleContext, CaretReachedException> {
+        private static final long serialVersionUID = 1L;
+
+        public PartialParseTrees(Map<RuleContext, CaretReachedException> parseTrees) {
+            super(parseTrees);
+        }
+    }
+
+    private static IntegerList copy(IntegerList list) {
+        IntegerList result = new IntegerList();
+        for (int i = 0; i < list.size(); i++) {
+            result.add(list.get(i));
+        }
+
+        return result;
+    }
+
 }
@@ -12,18 +12,59 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.TokenStream;
 
 /**
+ * A pool of parsers which are reused for parsing different inputs. Parsers
+ * are held by soft references while they are in the pool. A reused parser is
+ * reset by {@link Parser#setInputStream}; callers are responsible for any
+ * other configuration.
  *
  * @author Sam Harwell
  * @param <T>
  */
 public abstract class AbstractParserCache<T extends Parser> {
+    // -J-Dorg.antlr.works.editor.antlr4.completion.AbstractParserCache.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(AbstractParserCache.class.getName());
 
+    /**
+     * The maximum number of idle parsers held by a cache.
+     */
+    private static final int MAX_IDLE_PARSERS = 16;
+
+    /**
+     * The hit rate is logged each time this many parsers have been requested.
+     */
+    private static final int STATISTICS_INTERVAL = 256;
+
+    private final String name;
     private final Deque<Reference<T>> parsers = new ArrayDeque<>();
 
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+
+    public AbstractParserCache() {
+        this(null);
+    }
+
+    /**
+     * Creates a parser cache.
+     *
+     * @param name The name of the cache, which is used when reporting the hit
+     * rate of the cache.
+     */
+    public AbstractParserCache(String name) {
+        this.name = name != null ? name : getClass().getName();
+    }
+
+    public String getName() {
+        return name;
+    }
+
     public T getParser(TokenStream input) {
         T parser = null;
         synchronized (parsers) {
@@ -32,21 +73,70 @@ public abstract class AbstractParserCache<T extends Parser> {
             }
         }
 
+        long requests = requestCount.incrementAndGet();
         if (parser != null) {
+            hitCount.incrementAndGet();
             parser.setInputStream(input);
         } else {
             parser = createParser(input);
         }
 
+        if (requests % STATISTICS_INTERVAL == 0 && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "{0}: {1}", new Object[] { getName(), this });
+        }
+
         return parser;
     }
 
     public void putParser(T parser) {
         synchronized (parsers) {
+            if (parsers.size() >= MAX_IDLE_PARSERS) {
+                // drop references which were already cleared before giving up on the parser
+                while (!parsers.isEmpty() && parsers.peek().get() == null) {
+                    parsers.poll();
+                }
+
+                if (parsers.size() >= MAX_IDLE_PARSERS) {
+                    return;
+                }
+            }
+
             parsers.add(new SoftReference<>(parser));
         }
     }
 
+    /**
+     * Gets the number of parsers requested from this cache.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the number of requests which were satisfied by reusing a parser.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the fraction of requests which were satisfied by reusing a parser,
+     * or 0 if no parsers were requested.
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        if (requests == 0) {
+            return 0;
+        }
+
+        return (double)getHitCount() / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d hits (%.1f%%)", getRequestCount(), getHitCount(), getHitRate() * 100);
+    }
+
     protected abstract T createParser(TokenStream input);
 
 }
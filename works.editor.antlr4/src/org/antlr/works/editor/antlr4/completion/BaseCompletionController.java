@@ -135,13 +135,16 @@ public class BaseCompletionController implements CompletionController {
 
         String completionPrefix = getCompletionPrefix();
         String evaluatedText = completionPrefix;
+        CompletionMatchIndex matchIndex = new CompletionMatchIndex(items);
         while (true) {
             CompletionItem bestMatch = null;
+            int bestMatchIndex = -1;
             int bestMatchValue = 0;
             int prefixMatch = 0;
             CompletionMatchEvaluator evaluator = getCompletionMatchEvaluator(evaluatedText);
-            for (CompletionItem item : items) {
-                int matchValue = evaluator.getMatchStrength(item);
+            for (int i = 0; i < matchIndex.size(); i++) {
+                CompletionItem item = matchIndex.getItem(i);
+                int matchValue = evaluator.getMatchStrength(matchIndex, i);
                 if (matchValue > 0) {
                     if ((matchValue & (CompletionMatchEvaluator.PREFIX_CASE_SENSITIVE | CompletionMatchEvaluator.PREFIX)) != 0) {
                         prefixMatch++;
@@ -152,13 +155,14 @@ public class BaseCompletionController implements CompletionController {
 
                     if (improved) {
                         bestMatch = item;
+                        bestMatchIndex = i;
                         bestMatchValue = matchValue;
                     }
                 }
             }
 
             if (bestMatch != null) {
-                int index = items.indexOf(bestMatch);
+                int index = bestMatchIndex;
                 boolean selected =
                     declarationItems.isEmpty()
                     && (!(bestMatch instanceof AbstractCompletionItem) || ((AbstractCompletionItem)bestMatch).allowInitialSelection())
@@ -11,7 +11,7 @@ package org.antlr.works.editor.antlr4.completion;
 import com.tvl.spi.editor.completion.CompletionItem;
 import java.text.Collator;
 import java.util.Locale;
-import java.util.regex.Pattern;
+import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.api.annotations.common.NullAllowed;
 import org.openide.util.Parameters;
@@ -38,14 +38,14 @@ public class CompletionMatchEvaluator {
     private final String evaluatedText;
     @NonNull
     private final String lowerCaseEvaluatedText;
+    private final long characterMask;
+    /**
+     * The start offsets of the words in {@link #evaluatedText} when it matches
+     * {@code ^([A-Z][a-z]*){2,}$}, followed by the length of the text;
+     * otherwise, {@code null}.
+     */
     @NullAllowed
-    private final Pattern caseSensitiveWordMatch;
-    @NullAllowed
-    private final Pattern caseInsensitiveWordMatch;
-    @NullAllowed
-    private final Pattern caseSensitiveLetterOrderMatch;
-    @NullAllowed
-    private final Pattern caseInsensitiveLetterOrderMatch;
+    private final int[] wordBoundaries;
 
     static {
         recentCompletionsCollator = Collator.getInstance(Locale.getDefault());
@@ -57,10 +57,8 @@ public class CompletionMatchEvaluator {
         Parameters.notNull("evaluatedText", evaluatedText);
         this.evaluatedText = evaluatedText;
         this.lowerCaseEvaluatedText = evaluatedText.toLowerCase(Locale.getDefault());
-        this.caseSensitiveWordMatch = BaseCompletionController.getPrefixBoundaryPattern(evaluatedText, true);
-        this.caseInsensitiveWordMatch = BaseCompletionController.getPrefixBoundaryPattern(evaluatedText, false);
-        this.caseSensitiveLetterOrderMatch = BaseCompletionController.getLetterOrderPattern(evaluatedText, true);
-        this.caseInsensitiveLetterOrderMatch = BaseCompletionController.getLetterOrderPattern(evaluatedText, false);
+        this.characterMask = CompletionMatchIndex.getCharacterMask(evaluatedText, true);
+        this.wordBoundaries = getWordBoundaries(evaluatedText);
     }
 
     public int getMatchStrength(@NonNull CompletionItem completionItem) {
@@ -73,7 +71,79 @@ public class CompletionMatchEvaluator {
         CompletionMatchResult letterOrder = isLetterOrderMatch(completionItem);
         CompletionMatchResult valid = isValidMatch(completionItem);
         int recent = getRecentlyUsed(completionItem);
+        return getMatchStrength(exact, prefix, substring, word, letterOrder, valid, recent);
+    }
+
+    /**
+     * Gets the match strength of an item in a {@link CompletionMatchIndex}.
+     * This method produces the same result as
+     * {@link #getMatchStrength(CompletionItem)}, without converting the insert
+     * prefix of the item to a string for each evaluated text.
+     *
+     * @param index The completion match index.
+     * @param item The index of the item in {@code index}.
+     * @return The match strength.
+     */
+    public int getMatchStrength(@NonNull CompletionMatchIndex index, int item) {
+        Parameters.notNull("index", index);
+
+        CompletionItem completionItem = index.getItem(item);
+        String text = index.getText(item);
+        String lowerCaseText = index.getLowerCaseText(item);
+
+        CompletionMatchResult exact;
+        CompletionMatchResult prefix;
+        CompletionMatchResult substring;
+        CompletionMatchResult word;
+        CompletionMatchResult letterOrder;
+        if ((index.getCharacterMask(item) & characterMask) == characterMask) {
+            exact = isExactMatch(text, lowerCaseText);
+            prefix = isPrefixMatch(text, lowerCaseText);
+            substring = isSubstringMatch(text, lowerCaseText);
+            word = isWordBoundaryMatch(text, index.isWordText(item));
+            letterOrder = isLetterOrderMatch(text);
+        } else {
+            // the item does not contain every character of the evaluated text
+            exact = CompletionMatchResult.None;
+            prefix = CompletionMatchResult.None;
+            substring = CompletionMatchResult.None;
+            word = CompletionMatchResult.None;
+            letterOrder = CompletionMatchResult.None;
+        }
+
+        CompletionMatchResult valid = isValidMatch(completionItem);
+        int recent = BaseCompletionController.getRecentCompletionWeight(text, getRecentCompletionsCollator());
+        return getMatchStrength(exact, prefix, substring, word, letterOrder, valid, recent);
+    }
+
+    /**
+     * Determines whether an item in a {@link CompletionMatchIndex} passes the
+     * completion list filter for the evaluated text, which requires a case
+     * insensitive substring, word boundary, or letter order match.
+     *
+     * @param index The completion match index.
+     * @param item The index of the item in {@code index}.
+     * @return {@code true} if the item passes the filter; otherwise,
+     * {@code false}.
+     */
+    public boolean isFilterMatch(@NonNull CompletionMatchIndex index, int item) {
+        Parameters.notNull("index", index);
+
+        if (evaluatedText.isEmpty()) {
+            return true;
+        }
+
+        if ((index.getCharacterMask(item) & characterMask) != characterMask) {
+            return false;
+        }
 
+        String text = index.getText(item);
+        return index.getLowerCaseText(item).contains(lowerCaseEvaluatedText)
+            || isWordBoundaryMatch(text, index.isWordText(item)) != CompletionMatchResult.None
+            || isLetterOrderMatch(text) != CompletionMatchResult.None;
+    }
+
+    private static int getMatchStrength(CompletionMatchResult exact, CompletionMatchResult prefix, CompletionMatchResult substring, CompletionMatchResult word, CompletionMatchResult letterOrder, CompletionMatchResult valid, int recent) {
         boolean caseSensitive;
         if (exact != CompletionMatchResult.None) {
             caseSensitive = exact == CompletionMatchResult.MatchCaseSensitive;
@@ -139,73 +209,97 @@ public class CompletionMatchEvaluator {
     protected @NonNull CompletionMatchResult isExactMatch(@NonNull CompletionItem completionItem) {
         Parameters.notNull("completionItem", completionItem);
 
+        String insertText = completionItem.getInsertPrefix().toString();
+        return isExactMatch(insertText, insertText.toLowerCase(Locale.getDefault()));
+    }
+
+    protected @NonNull CompletionMatchResult isPrefixMatch(@NonNull CompletionItem completionItem) {
+        Parameters.notNull("completionItem", completionItem);
+
+        String insertText = completionItem.getInsertPrefix().toString();
+        return isPrefixMatch(insertText, insertText.toLowerCase(Locale.getDefault()));
+    }
+
+    public @NonNull CompletionMatchResult isSubstringMatch(@NonNull CompletionItem completionItem) {
+        Parameters.notNull("completionItem", completionItem);
+
+        String insertText = completionItem.getInsertPrefix().toString();
+        return isSubstringMatch(insertText, insertText.toLowerCase(Locale.getDefault()));
+    }
+
+    public @NonNull CompletionMatchResult isWordBoundaryMatch(@NonNull CompletionItem completionItem) {
+        Parameters.notNull("completionItem", completionItem);
+
+        String insertText = completionItem.getInsertPrefix().toString();
+        return isWordBoundaryMatch(insertText, CompletionMatchIndex.isWordText(insertText));
+    }
+
+    public @NonNull CompletionMatchResult isLetterOrderMatch(@NonNull CompletionItem completionItem) {
+        Parameters.notNull("completionItem", completionItem);
+
+        return isLetterOrderMatch(completionItem.getInsertPrefix().toString());
+    }
+
+    private @NonNull CompletionMatchResult isExactMatch(@NonNull String text, @NonNull String lowerCaseText) {
         if (evaluatedText.isEmpty()) {
             return CompletionMatchResult.None;
         }
 
-        String insertText = completionItem.getInsertPrefix().toString();
-        if (evaluatedText.equals(insertText)) {
+        if (evaluatedText.equals(text)) {
             return CompletionMatchResult.MatchCaseSensitive;
         }
 
-        insertText = insertText.toLowerCase(Locale.getDefault());
-        if (lowerCaseEvaluatedText.equals(insertText)) {
+        if (lowerCaseEvaluatedText.equals(lowerCaseText)) {
             return CompletionMatchResult.Match;
         }
 
         return CompletionMatchResult.None;
     }
 
-    protected @NonNull CompletionMatchResult isPrefixMatch(@NonNull CompletionItem completionItem) {
-        Parameters.notNull("completionItem", completionItem);
-
+    private @NonNull CompletionMatchResult isPrefixMatch(@NonNull String text, @NonNull String lowerCaseText) {
         if (evaluatedText.isEmpty()) {
             return CompletionMatchResult.MatchCaseSensitive;
         }
 
-        String insertText = completionItem.getInsertPrefix().toString();
-        if (insertText.startsWith(evaluatedText)) {
+        if (text.startsWith(evaluatedText)) {
             return CompletionMatchResult.MatchCaseSensitive;
         }
 
-        insertText = insertText.toLowerCase(Locale.getDefault());
-        if (insertText.startsWith(lowerCaseEvaluatedText)) {
+        if (lowerCaseText.startsWith(lowerCaseEvaluatedText)) {
             return CompletionMatchResult.Match;
         }
 
         return CompletionMatchResult.None;
     }
 
-    public @NonNull CompletionMatchResult isSubstringMatch(@NonNull CompletionItem completionItem) {
-        Parameters.notNull("completionItem", completionItem);
-
+    private @NonNull CompletionMatchResult isSubstringMatch(@NonNull String text, @NonNull String lowerCaseText) {
         if (evaluatedText.isEmpty()) {
             return CompletionMatchResult.MatchCaseSensitive;
         }
 
-        String insertText = completionItem.getInsertPrefix().toString();
-        if (insertText.contains(evaluatedText)) {
+        if (text.contains(evaluatedText)) {
             return CompletionMatchResult.MatchCaseSensitive;
         }
 
-        insertText = insertText.toLowerCase(Locale.getDefault());
-        if (insertText.contains(lowerCaseEvaluatedText)) {
+        if (lowerCaseText.contains(lowerCaseEvaluatedText)) {
             return CompletionMatchResult.Match;
         }
 
         return CompletionMatchResult.None;
     }
 
-    public @NonNull CompletionMatchResult isWordBoundaryMatch(@NonNull CompletionItem completionItem) {
-        Parameters.notNull("completionItem", completionItem);
-
-        if (evaluatedText.isEmpty() || caseSensitiveWordMatch == null || caseInsensitiveWordMatch == null) {
+    /**
+     * Matches {@code text} against the words of the evaluated text. This is
+     * equivalent to matching the patterns returned by
+     * {@link BaseCompletionController#getPrefixBoundaryPattern}.
+     */
+    private @NonNull CompletionMatchResult isWordBoundaryMatch(@NonNull String text, boolean wordText) {
+        if (wordBoundaries == null || !wordText) {
             return CompletionMatchResult.None;
         }
 
-        String insertText = completionItem.getInsertPrefix().toString();
-        if (caseInsensitiveWordMatch.matcher(insertText).matches()) {
-            if (caseSensitiveWordMatch.matcher(insertText).matches()) {
+        if (matchWords(text, 0, 0, false)) {
+            if (matchWords(text, 0, 0, true)) {
                 return CompletionMatchResult.MatchCaseSensitive;
             }
 
@@ -215,16 +309,18 @@ public class CompletionMatchEvaluator {
         return CompletionMatchResult.None;
     }
 
-    public @NonNull CompletionMatchResult isLetterOrderMatch(@NonNull CompletionItem completionItem) {
-        Parameters.notNull("completionItem", completionItem);
-
-        if (evaluatedText.isEmpty() || caseSensitiveLetterOrderMatch == null || caseInsensitiveLetterOrderMatch == null) {
+    /**
+     * Matches {@code text} against the letters of the evaluated text in order.
+     * This is equivalent to finding the patterns returned by
+     * {@link BaseCompletionController#getLetterOrderPattern}.
+     */
+    private @NonNull CompletionMatchResult isLetterOrderMatch(@NonNull String text) {
+        if (evaluatedText.isEmpty()) {
             return CompletionMatchResult.None;
         }
 
-        String insertText = completionItem.getInsertPrefix().toString();
-        if (caseInsensitiveLetterOrderMatch.matcher(insertText).find()) {
-            if (caseSensitiveLetterOrderMatch.matcher(insertText).find()) {
+        if (containsInOrder(text, false)) {
+            if (containsInOrder(text, true)) {
                 return CompletionMatchResult.MatchCaseSensitive;
             }
 
@@ -234,6 +330,108 @@ public class CompletionMatchEvaluator {
         return CompletionMatchResult.None;
     }
 
+    private boolean containsInOrder(@NonNull String text, boolean caseSensitive) {
+        int j = 0;
+        for (int i = 0; i < text.length() && j < evaluatedText.length(); i++) {
+            if (charEquals(text.charAt(i), evaluatedText.charAt(j), caseSensitive)) {
+                j++;
+            }
+        }
+
+        return j == evaluatedText.length();
+    }
+
+    /**
+     * Determines whether the words of the evaluated text starting with word
+     * {@code word} can be matched in {@code text} starting at offset
+     * {@code start}. Each word starts at the beginning of the remaining text,
+     * or after a lower case letter, digit, or underscore.
+     */
+    private boolean matchWords(@NonNull String text, int word, int start, boolean caseSensitive) {
+        if (word == wordBoundaries.length - 1) {
+            return true;
+        }
+
+        int wordStart = wordBoundaries[word];
+        int wordLength = wordBoundaries[word + 1] - wordStart;
+        char upper = evaluatedText.charAt(wordStart);
+        char lower = Character.toLowerCase(upper);
+        for (int i = start; i <= text.length() - wordLength; i++) {
+            char ch = text.charAt(i);
+            boolean boundary;
+            if (ch == upper) {
+                boundary = i == start || !isUpperCase(text.charAt(i - 1));
+            } else if (ch == lower && !caseSensitive) {
+                boundary = i == start || isDigitOrUnderscore(text.charAt(i - 1));
+            } else {
+                boundary = false;
+            }
+
+            if (!boundary || !text.regionMatches(!caseSensitive, i + 1, evaluatedText, wordStart + 1, wordLength - 1)) {
+                continue;
+            }
+
+            if (matchWords(text, word + 1, i + wordLength, caseSensitive)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @CheckForNull
+    private static int[] getWordBoundaries(@NonNull String text) {
+        if (text.isEmpty() || !isUpperCase(text.charAt(0))) {
+            return null;
+        }
+
+        int words = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (isUpperCase(ch)) {
+                words++;
+            } else if (ch < 'a' || ch > 'z') {
+                return null;
+            }
+        }
+
+        if (words < 2) {
+            return null;
+        }
+
+        int[] result = new int[words + 1];
+        int word = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isUpperCase(text.charAt(i))) {
+                result[word++] = i;
+            }
+        }
+
+        result[words] = text.length();
+        return result;
+    }
+
+    private static boolean charEquals(char x, char y, boolean caseSensitive) {
+        if (x == y) {
+            return true;
+        }
+
+        if (caseSensitive) {
+            return false;
+        }
+
+        // Pattern.CASE_INSENSITIVE only folds the case of US-ASCII characters
+        return x < 0x80 && y < 0x80 && Character.toLowerCase(x) == Character.toLowerCase(y);
+    }
+
+    private static boolean isUpperCase(char ch) {
+        return ch >= 'A' && ch <= 'Z';
+    }
+
+    private static boolean isDigitOrUnderscore(char ch) {
+        return (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
     public @NonNull CompletionMatchResult isValidMatch(@NonNull CompletionItem completionItem) {
         Parameters.notNull("completionItem", completionItem);
 
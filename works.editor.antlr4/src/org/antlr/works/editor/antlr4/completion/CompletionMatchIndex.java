@@ -0,0 +1,214 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.antlr4.completion;
+
+import com.tvl.spi.editor.completion.CompletionItem;
+import java.util.List;
+import java.util.Locale;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.netbeans.api.annotations.common.NonNull;
+import org.netbeans.api.annotations.common.NullAllowed;
+import org.openide.util.Parameters;
+
+/**
+ * Precomputed match data for a list of completion items. The insert prefix
+ * of each item is converted to a string and lower-cased once when the index
+ * is created, so a {@link CompletionMatchEvaluator} can score the items on
+ * each keystroke without allocating.
+ *
+ * <p>Each item also has a character mask, which is a conservative summary of
+ * the characters in its insert prefix. Every kind of text match requires the
+ * characters of the evaluated text to appear in the insert prefix, so items
+ * whose mask does not include the mask of the evaluated text are rejected
+ * without examining the text.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class CompletionMatchIndex {
+    private static final int DIGIT_BIT = 26;
+    private static final int UNDERSCORE_BIT = 36;
+    private static final int DOLLAR_BIT = 37;
+    private static final int OTHER_BIT = 63;
+
+    @NonNull
+    private final List<? extends CompletionItem> items;
+    @NonNull
+    private final String[] text;
+    @NonNull
+    private final String[] lowerCaseText;
+    @NonNull
+    private final long[] characterMasks;
+    @NonNull
+    private final boolean[] wordText;
+
+    public CompletionMatchIndex(@NonNull List<? extends CompletionItem> items) {
+        Parameters.notNull("items", items);
+
+        this.items = items;
+        this.text = new String[items.size()];
+        this.lowerCaseText = new String[items.size()];
+        this.characterMasks = new long[items.size()];
+        this.wordText = new boolean[items.size()];
+
+        Locale locale = Locale.getDefault();
+        for (int i = 0; i < items.size(); i++) {
+            String insertPrefix = items.get(i).getInsertPrefix().toString();
+            text[i] = insertPrefix;
+            lowerCaseText[i] = insertPrefix.toLowerCase(locale);
+            characterMasks[i] = getCharacterMask(insertPrefix, false);
+            wordText[i] = isWordText(insertPrefix);
+        }
+    }
+
+    /**
+     * Gets the list of items this index was created for.
+     */
+    @NonNull
+    public List<? extends CompletionItem> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return text.length;
+    }
+
+    @NonNull
+    public CompletionItem getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Gets the insert prefix of an item.
+     */
+    @NonNull
+    public String getText(int index) {
+        return text[index];
+    }
+
+    /**
+     * Gets the insert prefix of an item, lower-cased according to the default
+     * locale.
+     */
+    @NonNull
+    public String getLowerCaseText(int index) {
+        return lowerCaseText[index];
+    }
+
+    public long getCharacterMask(int index) {
+        return characterMasks[index];
+    }
+
+    /**
+     * Determines whether the insert prefix of an item consists entirely of the
+     * characters {@code [A-Za-z0-9_]}, which is a requirement for a word
+     * boundary match.
+     */
+    public boolean isWordText(int index) {
+        return wordText[index];
+    }
+
+    /**
+     * Gets the indexes of the items which pass the completion filter for the
+     * text of {@code evaluator}. See
+     * {@link CompletionMatchEvaluator#isFilterMatch(CompletionMatchIndex, int)}.
+     *
+     * <p>An item which passes the filter for some text also passes the filter
+     * for every prefix of that text, so when the evaluated text grows the
+     * result for the previous text may be passed as {@code candidates} to
+     * avoid examining items which are already known not to match.</p>
+     *
+     * @param evaluator The evaluator for the filter text.
+     * @param candidates The indexes of items to examine, or {@code null} to
+     * examine every item in the index.
+     * @return The indexes of the matching items, in increasing order.
+     */
+    @NonNull
+    public IntegerList filter(@NonNull CompletionMatchEvaluator evaluator, @NullAllowed IntegerList candidates) {
+        Parameters.notNull("evaluator", evaluator);
+
+        IntegerList result = new IntegerList();
+        if (candidates == null) {
+            for (int i = 0; i < size(); i++) {
+                if (evaluator.isFilterMatch(this, i)) {
+                    result.add(i);
+                }
+            }
+        } else {
+            for (int i = 0; i < candidates.size(); i++) {
+                int index = candidates.get(i);
+                if (evaluator.isFilterMatch(this, index)) {
+                    result.add(index);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the character mask of {@code text}. ASCII letters are mapped
+     * without regard to case, and non-ASCII characters may match ASCII
+     * characters when lower-cased in some locales, so the mask of text
+     * containing such a character either includes every character (for
+     * indexed text) or ignores the character (for evaluated text).
+     *
+     * @param text The text.
+     * @param evaluated {@code true} to compute the mask of evaluated text;
+     * otherwise, {@code false} to compute the mask of indexed text.
+     * @return The character mask.
+     */
+    static long getCharacterMask(@NonNull CharSequence text, boolean evaluated) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            int bit;
+            if (ch >= 'a' && ch <= 'z') {
+                bit = ch - 'a';
+            } else if (ch >= 'A' && ch <= 'Z') {
+                // 'I' is lower-cased to a non-ASCII character in some locales
+                bit = ch == 'I' && evaluated ? -1 : ch - 'A';
+            } else if (ch >= '0' && ch <= '9') {
+                bit = DIGIT_BIT + ch - '0';
+            } else if (ch == '_') {
+                bit = UNDERSCORE_BIT;
+            } else if (ch == '$') {
+                bit = DOLLAR_BIT;
+            } else if (ch < 0x80) {
+                bit = OTHER_BIT;
+            } else if (evaluated) {
+                bit = -1;
+            } else {
+                return -1L;
+            }
+
+            if (bit >= 0) {
+                mask |= 1L << bit;
+            }
+        }
+
+        return mask;
+    }
+
+    static boolean isWordText(@NonNull CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!isWordChar(text.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return (ch >= 'a' && ch <= 'z')
+            || (ch >= 'A' && ch <= 'Z')
+            || (ch >= '0' && ch <= '9')
+            || ch == '_';
+    }
+}
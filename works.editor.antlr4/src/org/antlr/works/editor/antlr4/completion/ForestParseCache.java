@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.antlr4.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.antlr.netbeans.editor.text.VersionedDocument;
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * Remembers the most recent parse forest computed for code completion in each
+ * document, so a completion query whose input through the caret matches the
+ * previous query does not parse the forest again. This is the common case
+ * while a word is typed at the caret: each keystroke only changes the text of
+ * the caret token.
+ *
+ * <p>Two inputs match when every token before the caret has the same type,
+ * channel, position and text, and the caret token starts at the same offset
+ * and replaces a token of the same type.</p>
+ *
+ * @author Sam Harwell
+ */
+public final class ForestParseCache {
+    // -J-Dorg.antlr.works.editor.antlr4.completion.ForestParseCache.level=FINE
+    private static final Logger LOGGER = Logger.getLogger(ForestParseCache.class.getName());
+
+    public static final ForestParseCache DEFAULT = new ForestParseCache();
+
+    private final Map<VersionedDocument, Entry> entries = new WeakHashMap<>();
+
+    /**
+     * Buffers the tokens of {@code tokens} through the caret token, and
+     * returns them. The position of the stream is not changed.
+     *
+     * @return The buffered tokens, where the last token is the
+     * {@link CaretToken}, or {@code null} if the stream ends before the caret.
+     */
+    @CheckForNull
+    public static List<Token> getTokensThroughCaret(@NonNull BufferedTokenStream tokens) {
+        for (int i = 1; ; i++) {
+            Token token = tokens.LT(i);
+            if (token instanceof CaretToken) {
+                break;
+            } else if (token == null || token.getType() == Token.EOF) {
+                return null;
+            }
+        }
+
+        List<Token> result = new ArrayList<>();
+        for (Token token : tokens.getTokens()) {
+            result.add(token);
+            if (token instanceof CaretToken) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the parse forest previously computed by {@code forestParser} for
+     * matching input in {@code document}.
+     *
+     * @param document The document.
+     * @param forestParser The forest parser.
+     * @param tokens The input through the caret, as returned by
+     * {@link #getTokensThroughCaret}.
+     * @return The cached parse trees, or {@code null} if no matching result is
+     * available.
+     */
+    @CheckForNull
+    public synchronized Map<RuleContext, CaretReachedException> getParseTrees(@NonNull VersionedDocument document, @NonNull ForestParser<?> forestParser, @NonNull List<Token> tokens) {
+        Parameters.notNull("document", document);
+        Parameters.notNull("forestParser", forestParser);
+        Parameters.notNull("tokens", tokens);
+
+        Entry entry = entries.get(document);
+        if (entry == null || entry.forestParser != forestParser || !matches(entry.tokens, tokens)) {
+            return null;
+        }
+
+        LOGGER.log(Level.FINE, "Reusing the parse forest of the previous completion query.");
+        return entry.parseTrees;
+    }
+
+    public synchronized void putParseTrees(@NonNull VersionedDocument document, @NonNull ForestParser<?> forestParser, @NonNull List<Token> tokens, @NonNull Map<RuleContext, CaretReachedException> parseTrees) {
+        Parameters.notNull("document", document);
+        Parameters.notNull("forestParser", forestParser);
+        Parameters.notNull("tokens", tokens);
+        Parameters.notNull("parseTrees", parseTrees);
+
+        entries.put(document, new Entry(forestParser, tokens, Collections.unmodifiableMap(parseTrees)));
+    }
+
+    public synchronized void clear(@NonNull VersionedDocument document) {
+        entries.remove(document);
+    }
+
+    private static boolean matches(List<Token> previous, List<Token> current) {
+        if (previous.size() != current.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < previous.size(); i++) {
+            Token x = previous.get(i);
+            Token y = current.get(i);
+            if (x.getType() != y.getType()
+                || x.getChannel() != y.getChannel()
+                || x.getStartIndex() != y.getStartIndex()) {
+                return false;
+            }
+
+            if (x instanceof CaretToken) {
+                Token originalX = ((CaretToken)x).getOriginalToken();
+                Token originalY = ((CaretToken)y).getOriginalToken();
+                if (originalX == null || originalY == null) {
+                    if (originalX != originalY) {
+                        return false;
+                    }
+                } else if (originalX.getType() != originalY.getType()) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            if (x.getStopIndex() != y.getStopIndex()) {
+                return false;
+            }
+
+            String textX = x.getText();
+            if (textX == null ? y.getText() != null : !textX.equals(y.getText())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class Entry {
+        private final ForestParser<?> forestParser;
+        private final List<Token> tokens;
+        private final Map<RuleContext, CaretReachedException> parseTrees;
+
+        public Entry(ForestParser<?> forestParser, List<Token> tokens, Map<RuleContext, CaretReachedException> parseTrees) {
+            this.forestParser = forestParser;
+            this.tokens = tokens;
+            this.parseTrees = parseTrees;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.antlr4.completion;
+
+import java.util.List;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * Replays tokens which were already produced by another token source. Like
+ * {@link CodeCompletionTokenSource}, this source does not provide tokens past
+ * the last token in the list.
+ *
+ * @author Sam Harwell
+ */
+class TokenListSource implements TokenSource {
+    private final List<? extends Token> tokens;
+    private final TokenSource source;
+    private int index;
+
+    public TokenListSource(List<? extends Token> tokens, TokenSource source) {
+        this.tokens = tokens;
+        this.source = source;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (index >= tokens.size()) {
+            throw new UnsupportedOperationException("Attempted to look past the caret.");
+        }
+
+        return tokens.get(index++);
+    }
+
+    @Override
+    public int getLine() {
+        return index < tokens.size() ? tokens.get(index).getLine() : source.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return index < tokens.size() ? tokens.get(index).getCharPositionInLine() : source.getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return source.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    @Override
+    public TokenFactory getTokenFactory() {
+        return source.getTokenFactory();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory tokenFactory) {
+        throw new UnsupportedOperationException("The tokens were already created.");
+    }
+}
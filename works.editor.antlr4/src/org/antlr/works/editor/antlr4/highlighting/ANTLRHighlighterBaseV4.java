@@ -10,11 +10,14 @@ package org.antlr.works.editor.antlr4.highlighting;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.event.DocumentEvent;
@@ -27,11 +30,16 @@ import org.antlr.netbeans.editor.highlighting.HighlightsList;
 import org.antlr.netbeans.editor.highlighting.LineStateInfo;
 import org.antlr.netbeans.editor.highlighting.ParseRequest;
 import org.antlr.netbeans.editor.highlighting.SingleHighlightSequence;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
 import org.antlr.netbeans.editor.text.OffsetRegion;
+import org.antlr.netbeans.editor.text.VersionedDocument;
+import org.antlr.netbeans.editor.text.VersionedDocumentUtilities;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.Utils;
+import org.antlr.works.editor.antlr4.classification.DocumentSnapshotCharStream;
 import org.netbeans.api.annotations.common.CheckForNull;
 import org.netbeans.api.annotations.common.NonNull;
 import org.netbeans.api.annotations.common.NullAllowed;
@@ -39,8 +47,20 @@ import org.netbeans.spi.editor.highlighting.HighlightsSequence;
 import org.netbeans.spi.editor.highlighting.support.AbstractHighlightsContainer;
 import org.openide.text.NbDocument;
 import org.openide.util.Parameters;
+import org.openide.util.RequestProcessor;
 
 /**
+ * When highlights are computed synchronously, the highlighter keeps a token
+ * run for each clean line in addition to the lexer state at the end of the
+ * line. The token run of a line is an {@code int[]} holding the start, end,
+ * and attributes of the highlights produced for the tokens which start on the
+ * line, with offsets relative to the start of the line. The attributes are
+ * stored as indexes into a table of the attribute sets returned by
+ * {@link #getHighlightsForToken}, since the attributes of a token may depend
+ * on the state of the lexer when the token was created. A request which only
+ * covers lines with token runs is answered without running the lexer. The
+ * number of highlights held in token runs is limited by the
+ * {@code tokenRunBudget} system property.
  *
  * @author Sam Harwell
  * @param <TState>
@@ -52,13 +72,77 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
     private static final boolean FULL_CHECKS = false;
     private static final boolean FIX_HIGHLIGHTER_UPDATE_BUG = false;
 
+    /**
+     * When this system property is {@code true}, highlighters tokenize the
+     * document on a background thread by default, and
+     * {@link #getHighlights(int, int)} only reads the most recently published
+     * {@link HighlightsSnapshot}.
+     */
+    public static final String BACKGROUND_TOKENIZATION_PROPERTY = ANTLRHighlighterBaseV4.class.getName() + ".background";
+
+    private static final boolean BACKGROUND_TOKENIZATION = Boolean.getBoolean(BACKGROUND_TOKENIZATION_PROPERTY);
+
+    /**
+     * The delay in milliseconds between a document change and the background
+     * tokenization which follows it, so consecutive keystrokes are handled by
+     * a single update.
+     */
+    private static final int BACKGROUND_TOKENIZATION_DELAY = 100;
+
+    private static final RequestProcessor RP = new RequestProcessor(ANTLRHighlighterBaseV4.class.getName(), 1, false, false);
+
+    /**
+     * The maximum number of highlights held in the token runs of a highlighter.
+     * Each highlight uses 12 bytes. A value of 0 disables the token run cache.
+     */
+    private static final int TOKEN_RUN_BUDGET = Math.max(0, Integer.getInteger(ANTLRHighlighterBaseV4.class.getName() + ".tokenRunBudget", 32 * 1024));
+
+    /**
+     * The maximum number of distinct attribute sets referenced by token runs.
+     * When a highlighter creates more attribute sets than this, the token runs
+     * are cleared.
+     */
+    private static final int MAX_TOKEN_RUN_ATTRIBUTES = 256;
+
+    private static final int TOKEN_RUN_ELEMENT_SIZE = 3;
+    private static final int TOKEN_RUN_START = 0;
+    private static final int TOKEN_RUN_END = 1;
+    private static final int TOKEN_RUN_ATTRIBUTES = 2;
+    private static final int[] EMPTY_TOKEN_RUN = new int[0];
+
     private static boolean timeoutReported;
 
     private final Object lock = new Object();
     private final StyledDocument document;
     private final DocumentListenerImpl documentListener;
     private final ArrayList<TState> lineStates = new ArrayList<>();
+    /**
+     * The token run of each line, or {@code null} if the highlights of the line
+     * are not cached. This list is kept the same size as {@link #lineStates}.
+     */
+    private final ArrayList<int[]> tokenRuns = new ArrayList<>();
+    private final List<AttributeSet> tokenRunAttributes = new ArrayList<>();
+    private final Map<AttributeSet, Integer> tokenRunAttributeIndexes = new IdentityHashMap<>();
+    private int tokenRunHighlightCount;
+    /**
+     * The lines of {@link #tokenRuns} in the order their token runs were
+     * stored, which is the order they are released when the budget is
+     * exceeded. Entries for lines whose run was since removed are skipped when
+     * they are reached.
+     */
+    private final ArrayDeque<Integer> tokenRunLines = new ArrayDeque<>();
+    /**
+     * Incremented when the document changes or the token runs are cleared, so
+     * a request which released the lock while lexing does not store token runs
+     * computed for an earlier version of the document.
+     */
+    private int tokenRunGeneration;
     private final boolean propagateChangedImmediately;
+    private final boolean backgroundTokenization;
+    private final RequestProcessor.Task backgroundTokenizationTask;
+
+    private volatile HighlightsSnapshot<TState> publishedSnapshot;
+    private volatile boolean fullTokenizationRequired;
 
     private Integer firstDirtyLine;
     private Integer lastDirtyLine;
@@ -72,9 +156,27 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
     }
 
     public ANTLRHighlighterBaseV4(@NonNull StyledDocument document, boolean propagateChanges) {
+        this(document, propagateChanges, BACKGROUND_TOKENIZATION);
+    }
+
+    /**
+     * Creates a highlighter for {@code document}.
+     *
+     * @param document The document.
+     * @param propagateChanges {@code true} to update the line states following
+     * a change immediately; otherwise, {@code false} to update them as
+     * highlights are requested.
+     * @param backgroundTokenization {@code true} to tokenize the document on a
+     * background thread, in which case {@link #getHighlights(int, int)} does
+     * not lex, and text which changed since the most recent tokenization is
+     * not highlighted until the tokenization completes.
+     */
+    public ANTLRHighlighterBaseV4(@NonNull StyledDocument document, boolean propagateChanges, boolean backgroundTokenization) {
         Parameters.notNull("document", document);
         this.document = document;
         this.propagateChangedImmediately = propagateChanges;
+        this.backgroundTokenization = backgroundTokenization;
+        this.backgroundTokenizationTask = backgroundTokenization ? RP.create(new BackgroundTokenizer()) : null;
         this.documentListener = new DocumentListenerImpl();
     }
 
@@ -91,12 +193,23 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
             this.lineStates.add(dirtyState);
         }
 
+        synchronized (lock) {
+            this.tokenRuns.ensureCapacity(lineCount);
+            while (this.tokenRuns.size() < lineCount) {
+                this.tokenRuns.add(null);
+            }
+        }
+
         subscribeEvents();
         firstDirtyLine = 0;
         lastDirtyLine = lineStates.size() - 1;
         forceRehighlightLines(0, lineStates.size() - 1);
     }
 
+    public final boolean isBackgroundTokenization() {
+        return backgroundTokenization;
+    }
+
     @Override
     public HighlightsSequence getHighlights(int startOffset, int endOffset) {
         Iterable<Highlight> highlights = getHighlightsIncremental(startOffset, endOffset, true);
@@ -109,7 +222,16 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
             return Collections.emptyList();
         }
 
+        if (backgroundTokenization) {
+            return getPublishedHighlights(startOffset, endOffset);
+        }
+
         final int adjustedEndOffset = Math.min(document.getLength(), endOffset);
+        List<Highlight> cachedHighlights = getCachedHighlights(startOffset, adjustedEndOffset);
+        if (cachedHighlights != null) {
+            return cachedHighlights;
+        }
+
         return new Iterable<Highlight>() {
 
             @Override
@@ -128,6 +250,7 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                     private final ParseRequest<TState> request;
                     private TState startState;
                     private final CharStream input;
+                    private final TokenRunBuilder tokenRunBuilder;
 
                     private Token previousToken = null;
                     //private int previousTokenLine = 0;
@@ -159,6 +282,9 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                         }
 
                         input = inputStream;
+                        synchronized (lock) {
+                            tokenRunBuilder = new TokenRunBuilder(updateOffsets, span.getStart());
+                        }
                     }
 
                     @Override
@@ -223,6 +349,7 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                                     }
 
                                     if (token.getType() == Token.EOF) {
+                                        tokenRunBuilder.tokenLexed(token, null);
                                         _complete = true;
                                         break;
                                     }
@@ -278,15 +405,18 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                                     }
 
                                     if (token.getStartIndex() >= span.getEnd()) {
+                                        tokenRunBuilder.tokenLexed(token, null);
                                         _complete = true;
                                         break;
                                     }
 
                                     if (token.getStopIndex() < requestedSpan.getStart()) {
+                                        tokenRunBuilder.tokenLexed(token, null);
                                         continue;
                                     }
 
                                     Collection<Highlight> tokenClassificationSpans = getHighlightsForToken(token);
+                                    tokenRunBuilder.tokenLexed(token, tokenClassificationSpans);
                                     if (tokenClassificationSpans != null) {
                                         buffer.addAll(tokenClassificationSpans);
                                     }
@@ -350,6 +480,23 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
             return null;
         }
 
+        if (backgroundTokenization) {
+            // the line states are maintained by the background tokenizer in this mode
+            if (highlights != null) {
+                highlights.addAll(getPublishedHighlights(startOffset, endOffset));
+            }
+
+            return null;
+        }
+
+        if (highlights != null && tokens == null && !propagate) {
+            List<Highlight> cachedHighlights = getCachedHighlights(startOffset, endOffset);
+            if (cachedHighlights != null) {
+                highlights.addAll(cachedHighlights);
+                return null;
+            }
+        }
+
         if (LOGGER.isLoggable(Level.FINER)) {
             LOGGER.log(Level.FINE, "Recalculating line offsets; requested [{0}..{1}), adjusted to [{2})", new Object[] { startOffset, requestedEndOffset, span });
         }
@@ -376,6 +523,7 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                 return null;
             }
 
+            TokenRunBuilder tokenRunBuilder = new TokenRunBuilder(updateOffsets && highlights != null, span.getStart());
             try (TokenSourceWithStateV4<TState> lexer = createLexer(input, startState)) {
                 Token previousToken = null;
     //            int previousTokenLine = 0;
@@ -430,8 +578,10 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                         }
                     }
 
-                    if (token.getType() == Token.EOF)
+                    if (token.getType() == Token.EOF) {
+                        tokenRunBuilder.tokenLexed(token, null);
                         break;
+                    }
 
                     if (updateOffsets && isMultiLineToken(lexer, token))
                     {
@@ -497,10 +647,12 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                     }
 
                     if (canBreak && (token.getStartIndex() >= span.getEnd())) {
+                        tokenRunBuilder.tokenLexed(token, null);
                         break;
                     }
 
                     if (token.getStopIndex() < requestedSpan.getStart()) {
+                        tokenRunBuilder.tokenLexed(token, null);
                         continue;
                     }
 
@@ -510,6 +662,7 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
 
                     if (highlights != null) {
                         Collection<Highlight> tokenClassificationSpans = getHighlightsForToken(token);
+                        tokenRunBuilder.tokenLexed(token, tokenClassificationSpans);
                         if (tokenClassificationSpans != null) {
                             highlights.addAll(tokenClassificationSpans);
                         }
@@ -554,6 +707,15 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
 
             assert firstDirtyLine == null || line <= firstDirtyLine || state.getIsDirty();
             TState previous = lineStates.set(line, state);
+            if (!state.equals(previous)) {
+                // the following lines were lexed from a different start state
+                for (int i = line + 1; i < tokenRuns.size(); i++) {
+                    setTokenRun(i, null);
+                    if (!lineStates.get(i).getIsMultiLineToken()) {
+                        break;
+                    }
+                }
+            }
             if (!state.getIsDirty() && firstDirtyLine != null && firstDirtyLine.equals(line)) {
                 firstDirtyLine++;
             }
@@ -574,6 +736,184 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
         return true;
     }
 
+    /**
+     * Gets the highlights for {@code [startOffset, endOffset)} from the token
+     * runs of the lines it covers, if every one of those lines has a token run.
+     *
+     * @param startOffset The start of the requested region.
+     * @param endOffset The end of the requested region.
+     * @return The highlights, or {@code null} if the region must be lexed.
+     */
+    @CheckForNull
+    private List<Highlight> getCachedHighlights(int startOffset, int endOffset) {
+        if (TOKEN_RUN_BUDGET == 0 || startOffset >= endOffset) {
+            return null;
+        }
+
+        synchronized (lock) {
+            if (tokenRuns.size() != NbDocument.findLineRootElement(document).getElementCount()) {
+                return null;
+            }
+
+            int startLine = NbDocument.findLineNumber(document, startOffset);
+            int endLine = NbDocument.findLineNumber(document, endOffset - 1);
+            if (firstDirtyLine != null && firstDirtyLine <= endLine) {
+                return null;
+            }
+
+            for (int line = startLine; line <= endLine; line++) {
+                if (tokenRuns.get(line) == null) {
+                    return null;
+                }
+            }
+
+            List<Highlight> highlights = new ArrayList<>();
+            for (int line = startLine; line <= endLine; line++) {
+                int lineStart = NbDocument.findLineOffset(document, line);
+                int[] run = tokenRuns.get(line);
+                for (int i = 0; i < run.length; i += TOKEN_RUN_ELEMENT_SIZE) {
+                    int start = lineStart + run[i + TOKEN_RUN_START];
+                    int end = lineStart + run[i + TOKEN_RUN_END];
+                    if (end <= startOffset) {
+                        continue;
+                    } else if (start >= endOffset) {
+                        return highlights;
+                    }
+
+                    highlights.add(new Highlight(start, end, tokenRunAttributes.get(run[i + TOKEN_RUN_ATTRIBUTES])));
+                }
+            }
+
+            return highlights;
+        }
+    }
+
+    /**
+     * Sets the token run of a line. If the token runs exceed the budget, the
+     * runs which were stored first are released.
+     *
+     * @param line The line number.
+     * @param run The token run of the line, or {@code null} to remove the
+     * token run of the line.
+     */
+    private void setTokenRun(int line, @NullAllowed int[] run) {
+        assert Thread.holdsLock(lock);
+
+        if (line >= tokenRuns.size()) {
+            return;
+        }
+
+        int[] previousRun = tokenRuns.set(line, run);
+        if (previousRun != null) {
+            tokenRunHighlightCount -= previousRun.length / TOKEN_RUN_ELEMENT_SIZE;
+        }
+
+        if (run == null) {
+            return;
+        }
+
+        tokenRunHighlightCount += run.length / TOKEN_RUN_ELEMENT_SIZE;
+        if (tokenRunLines.size() >= 2 * tokenRuns.size()) {
+            compactTokenRunLines();
+        }
+
+        tokenRunLines.add(line);
+
+        if (tokenRunHighlightCount <= TOKEN_RUN_BUDGET) {
+            return;
+        }
+
+        // the last element is the entry for line
+        while (tokenRunHighlightCount > TOKEN_RUN_BUDGET && tokenRunLines.size() > 1) {
+            int evicted = tokenRunLines.remove();
+            if (evicted == line || evicted >= tokenRuns.size()) {
+                continue;
+            }
+
+            int[] evictedRun = tokenRuns.set(evicted, null);
+            if (evictedRun != null) {
+                tokenRunHighlightCount -= evictedRun.length / TOKEN_RUN_ELEMENT_SIZE;
+            }
+        }
+
+        if (tokenRunHighlightCount > TOKEN_RUN_BUDGET) {
+            // a single line exceeds the budget
+            tokenRuns.set(line, null);
+            tokenRunHighlightCount -= run.length / TOKEN_RUN_ELEMENT_SIZE;
+            tokenRunLines.clear();
+        }
+
+        LOGGER.log(Level.FINE, "Token runs of {0} exceeded the budget of {1} highlights.", new Object[] { document, TOKEN_RUN_BUDGET });
+    }
+
+    /**
+     * Removes the entries of {@link #tokenRunLines} which no longer refer to a
+     * token run, keeping the first entry of each remaining line.
+     */
+    private void compactTokenRunLines() {
+        assert Thread.holdsLock(lock);
+
+        BitSet seen = new BitSet(tokenRuns.size());
+        for (int i = tokenRunLines.size(); i > 0; i--) {
+            int line = tokenRunLines.remove();
+            if (line < tokenRuns.size() && tokenRuns.get(line) != null && !seen.get(line)) {
+                seen.set(line);
+                tokenRunLines.add(line);
+            }
+        }
+    }
+
+    /**
+     * Updates the line numbers in {@link #tokenRunLines} after lines were
+     * inserted or removed at {@code line}.
+     *
+     * @param line The first inserted or removed line.
+     * @param lineCountDelta The number of inserted lines, or the negated number
+     * of removed lines.
+     */
+    private void shiftTokenRunLines(int line, int lineCountDelta) {
+        assert Thread.holdsLock(lock);
+
+        int removedEnd = lineCountDelta < 0 ? line - lineCountDelta : line;
+        for (int i = tokenRunLines.size(); i > 0; i--) {
+            int current = tokenRunLines.remove();
+            if (current >= removedEnd) {
+                tokenRunLines.add(current + lineCountDelta);
+            } else if (current < line) {
+                tokenRunLines.add(current);
+            }
+        }
+    }
+
+    private int getTokenRunAttributesIndex(@NonNull AttributeSet attributes) {
+        assert Thread.holdsLock(lock);
+
+        Integer index = tokenRunAttributeIndexes.get(attributes);
+        if (index == null) {
+            if (tokenRunAttributes.size() == MAX_TOKEN_RUN_ATTRIBUTES) {
+                // the existing runs refer to the table, so they are released with it
+                clearTokenRuns();
+            }
+
+            index = tokenRunAttributes.size();
+            tokenRunAttributes.add(attributes);
+            tokenRunAttributeIndexes.put(attributes, index);
+        }
+
+        return index;
+    }
+
+    private void clearTokenRuns() {
+        assert Thread.holdsLock(lock);
+
+        Collections.fill(tokenRuns, null);
+        tokenRunHighlightCount = 0;
+        tokenRunLines.clear();
+        tokenRunAttributes.clear();
+        tokenRunAttributeIndexes.clear();
+        tokenRunGeneration++;
+    }
+
     private void checkDirtyLineBounds() {
         if (!FULL_CHECKS) {
             return;
@@ -732,15 +1072,32 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
     }
 
     protected void forceRehighlightLines(int startLine, int endLineInclusive, boolean setDirtyLines) {
+        if (backgroundTokenization && setDirtyLines) {
+            // the lexer may behave differently, so the previous snapshot cannot be reused
+            fullTokenizationRequired = true;
+            backgroundTokenizationTask.schedule(0);
+        }
+
         checkDirtyLineBounds();
 
         if (setDirtyLines) {
+            // the lexer or the highlighted attributes may have changed
+            synchronized (lock) {
+                for (int i = startLine; i <= endLineInclusive && i < tokenRuns.size(); i++) {
+                    setTokenRun(i, null);
+                }
+
+                tokenRunGeneration++;
+            }
+
             firstDirtyLine = firstDirtyLine != null ? Math.min(firstDirtyLine, startLine) : startLine;
             lastDirtyLine = lastDirtyLine != null ? Math.max(lastDirtyLine, endLineInclusive) : endLineInclusive;
         }
 
         int start = NbDocument.findLineOffset(document, startLine);
-        int end = (endLineInclusive == lineStates.size() - 1) ? document.getLength() : NbDocument.findLineOffset(document, endLineInclusive + 1);
+        // the line states are not updated for document changes when tokenizing in the background
+        int lineCount = backgroundTokenization ? NbDocument.findLineRootElement(document).getElementCount() : lineStates.size();
+        int end = (endLineInclusive >= lineCount - 1) ? document.getLength() : NbDocument.findLineOffset(document, endLineInclusive + 1);
         if (FIX_HIGHLIGHTER_UPDATE_BUG) {
             fireHighlightsChange(start, document.getLength());
         } else {
@@ -750,6 +1107,311 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
         checkDirtyLineBounds();
     }
 
+    /**
+     * Gets the published highlights which intersect
+     * {@code [startOffset, endOffset)} of the current document. This method
+     * does not lex, and does not block while the document is tokenized.
+     */
+    @NonNull
+    private List<Highlight> getPublishedHighlights(int startOffset, int endOffset) {
+        HighlightsSnapshot<TState> snapshot = publishedSnapshot;
+        if (snapshot == null) {
+            return Collections.emptyList();
+        }
+
+        DocumentSnapshot currentSnapshot = snapshot.getSnapshot().getVersionedDocument().getCurrentSnapshot();
+        if (currentSnapshot.length() != document.getLength()) {
+            // the versioned document has not processed the most recent change
+            return Collections.emptyList();
+        }
+
+        return snapshot.getHighlights(currentSnapshot, startOffset, Math.min(endOffset, currentSnapshot.length()));
+    }
+
+    /**
+     * Tokenizes {@code snapshot}, starting at the first line which changed
+     * since {@code previous}. Tokenization stops early when the lexer reaches
+     * unchanged text at the end of the document in the same state it had in
+     * {@code previous}, in which case the remaining highlights and line states
+     * are copied from {@code previous}.
+     *
+     * <p>This method is only called by the background tokenizer, which is
+     * the only caller of {@link #createLexer} in this mode.</p>
+     *
+     * @param previous The previously published snapshot, or {@code null} to
+     * tokenize the complete document.
+     * @param snapshot The document snapshot to tokenize.
+     * @param tokenizedRegion Receives the start and end offsets of the region
+     * of {@code snapshot} which was tokenized.
+     * @return The new snapshot.
+     */
+    @NonNull
+    private HighlightsSnapshot<TState> tokenize(@NullAllowed HighlightsSnapshot<TState> previous, @NonNull DocumentSnapshot snapshot, @NonNull int[] tokenizedRegion) {
+        int lineCount = snapshot.getLineCount();
+        List<Highlight> highlights = new ArrayList<>();
+        List<TState> states = new ArrayList<>(lineCount);
+        int startLine = 0;
+        TState startState = getStartState();
+
+        int suffixStart = Integer.MAX_VALUE;
+        int delta = 0;
+        int lineDelta = 0;
+        int[] unchanged = previous != null ? HighlightsSnapshot.getUnchangedLengths(previous.getSnapshot(), snapshot) : null;
+        if (unchanged != null) {
+            List<TState> previousStates = previous.getLineStates();
+            startLine = Math.min(snapshot.findLineNumber(unchanged[0]), previousStates.size());
+            while (startLine > 0 && (previousStates.get(startLine - 1) == null || previousStates.get(startLine - 1).getIsMultiLineToken())) {
+                startLine--;
+            }
+
+            if (startLine > 0) {
+                startState = previousStates.get(startLine - 1);
+            }
+
+            states.addAll(previousStates.subList(0, startLine));
+            int startOffset = snapshot.findLineFromLineNumber(startLine).getStart().getOffset();
+            List<Highlight> previousHighlights = previous.getHighlights();
+            for (int i = 0; i < previousHighlights.size() && previousHighlights.get(i).getEndOffset() <= startOffset; i++) {
+                highlights.add(previousHighlights.get(i));
+            }
+
+            suffixStart = snapshot.length() - unchanged[1];
+            delta = snapshot.length() - previous.getSnapshot().length();
+            lineDelta = lineCount - previousStates.size();
+        }
+
+        while (states.size() < lineCount) {
+            states.add(null);
+        }
+
+        int startOffset = snapshot.findLineFromLineNumber(startLine).getStart().getOffset();
+        tokenizedRegion[0] = startOffset;
+        tokenizedRegion[1] = snapshot.length();
+
+        CharStream input = new DocumentSnapshotCharStream(snapshot);
+        input.seek(startOffset);
+        try (TokenSourceWithStateV4<TState> lexer = createLexer(input, startState)) {
+            Token previousToken = null;
+            boolean previousTokenEndsLine = false;
+            while (true) {
+                Token token = lexer.nextToken();
+
+                int startLineCurrent;
+                if (token.getType() == Token.EOF) {
+                    startLineCurrent = lineCount;
+                } else {
+                    startLineCurrent = snapshot.findLineNumber(token.getStartIndex());
+                }
+
+                int endLinePrevious;
+                if (previousToken != null) {
+                    endLinePrevious = snapshot.findLineNumber(previousToken.getStopIndex());
+                } else {
+                    endLinePrevious = startLine - 1;
+                }
+
+                if (startLineCurrent > endLinePrevious + 1 || (startLineCurrent == endLinePrevious + 1 && !previousTokenEndsLine)) {
+                    int firstMultilineLine = endLinePrevious;
+                    if (previousToken == null || previousTokenEndsLine) {
+                        firstMultilineLine++;
+                    }
+
+                    TState multiLineState = lexer.getCurrentState().createMultiLineState();
+                    for (int i = Math.max(0, firstMultilineLine); i < startLineCurrent && i < lineCount; i++) {
+                        states.set(i, multiLineState);
+                    }
+                }
+
+                if (token.getType() == Token.EOF) {
+                    break;
+                }
+
+                int tokenStartLine = snapshot.findLineNumber(token.getStartIndex());
+                int tokenStopLine = snapshot.findLineNumber(Math.min(token.getStopIndex() + 1, snapshot.length()));
+                if (tokenStartLine != tokenStopLine) {
+                    TState multiLineState = lexer.getCurrentState().createMultiLineState();
+                    for (int i = tokenStartLine; i < tokenStopLine; i++) {
+                        states.set(i, multiLineState);
+                    }
+                }
+
+                Collection<Highlight> tokenHighlights = getHighlightsForToken(token);
+                if (tokenHighlights != null) {
+                    highlights.addAll(tokenHighlights);
+                }
+
+                boolean tokenEndsLine = tokenEndsAtEndOfLine(lexer, token);
+                if (tokenEndsLine) {
+                    TState stateAtEndOfLine = lexer.getCurrentState();
+                    int line = snapshot.findLineNumber(token.getStopIndex());
+                    states.set(line, stateAtEndOfLine);
+
+                    int nextOffset = token.getStopIndex() + 1;
+                    int previousLine = line - lineDelta;
+                    if (previous != null && nextOffset >= suffixStart && nextOffset < snapshot.length()
+                        && previousLine >= 0 && previousLine < previous.getLineStates().size()) {
+                        TState previousState = previous.getLineStates().get(previousLine);
+                        if (previousState != null && !previousState.getIsMultiLineToken() && previousState.equals(stateAtEndOfLine)) {
+                            // the remaining text is unchanged, and the lexer is in the same state
+                            List<TState> previousStates = previous.getLineStates();
+                            for (int i = line + 1; i < lineCount; i++) {
+                                states.set(i, previousStates.get(i - lineDelta));
+                            }
+
+                            List<Highlight> previousHighlights = previous.getHighlights();
+                            for (int i = previous.findFirstHighlight(nextOffset - delta); i < previousHighlights.size(); i++) {
+                                Highlight highlight = previousHighlights.get(i);
+                                if (highlight.getStartOffset() < nextOffset - delta) {
+                                    continue;
+                                }
+
+                                highlights.add(delta == 0 ? highlight : new Highlight(highlight.getStartOffset() + delta, highlight.getEndOffset() + delta, highlight.getAttributes()));
+                            }
+
+                            tokenizedRegion[1] = nextOffset;
+                            break;
+                        }
+                    }
+                }
+
+                previousToken = token;
+                previousTokenEndsLine = tokenEndsLine;
+            }
+        }
+
+        return new HighlightsSnapshot<>(snapshot, highlights, states);
+    }
+
+    /**
+     * Records the token runs of the lines lexed by a single highlights request.
+     * The run of a line is stored when the lexer reaches a token on a later
+     * line, and only if the lexer passed through the complete line, the
+     * highlights of every token on the line were computed, and no token or
+     * highlight crosses the bounds of the line.
+     */
+    private final class TokenRunBuilder {
+        private final int generation;
+        private final IntegerList run = new IntegerList();
+        private boolean enabled;
+        private int line;
+        private int lineStart;
+        private int lineEnd;
+        private int lastTokenStop = -1;
+        private boolean valid;
+
+        public TokenRunBuilder(boolean enabled, int startOffset) {
+            assert Thread.holdsLock(lock);
+
+            this.enabled = enabled && TOKEN_RUN_BUDGET > 0;
+            this.generation = tokenRunGeneration;
+            this.line = NbDocument.findLineNumber(document, startOffset);
+            this.lineStart = NbDocument.findLineOffset(document, line);
+            this.lineEnd = getLineEnd(line);
+            this.valid = lineStart == startOffset;
+        }
+
+        /**
+         * Called for each token created by the lexer, in order.
+         *
+         * @param token The token.
+         * @param highlights The highlights of the token, or {@code null} if
+         * the highlights of the token were not computed.
+         */
+        public void tokenLexed(@NonNull Token token, @NullAllowed Collection<Highlight> highlights) {
+            if (!enabled) {
+                return;
+            }
+
+            assert Thread.holdsLock(lock);
+            if (generation != tokenRunGeneration) {
+                // the document changed since the lexer started
+                enabled = false;
+                return;
+            }
+
+            int lineCount = NbDocument.findLineRootElement(document).getElementCount();
+            int tokenLine = token.getType() == Token.EOF ? lineCount : NbDocument.findLineNumber(document, token.getStartIndex());
+            if (tokenLine > line) {
+                if (valid) {
+                    setTokenRun(line, run.toArray());
+                }
+
+                // lines without tokens are only complete if no token spans them
+                for (int i = line + 1; i < tokenLine; i++) {
+                    if (lastTokenStop < NbDocument.findLineOffset(document, i)) {
+                        setTokenRun(i, EMPTY_TOKEN_RUN);
+                    }
+                }
+
+                line = tokenLine;
+                lineStart = tokenLine < lineCount ? NbDocument.findLineOffset(document, tokenLine) : document.getLength();
+                lineEnd = getLineEnd(tokenLine);
+                run.clear();
+                valid = lastTokenStop < lineStart;
+            }
+
+            if (token.getType() == Token.EOF) {
+                return;
+            }
+
+            lastTokenStop = token.getStopIndex();
+            if (!valid || highlights == null || token.getStopIndex() >= lineEnd) {
+                valid = false;
+                return;
+            }
+
+            for (Highlight highlight : highlights) {
+                if (highlight.getStartOffset() < lineStart || highlight.getEndOffset() > lineEnd) {
+                    valid = false;
+                    return;
+                }
+
+                run.add(highlight.getStartOffset() - lineStart);
+                run.add(highlight.getEndOffset() - lineStart);
+                run.add(getTokenRunAttributesIndex(highlight.getAttributes()));
+            }
+
+            if (generation != tokenRunGeneration) {
+                // the attributes table was cleared
+                enabled = false;
+            }
+        }
+
+        private int getLineEnd(int line) {
+            int lineCount = NbDocument.findLineRootElement(document).getElementCount();
+            return line < lineCount - 1 ? NbDocument.findLineOffset(document, line + 1) : document.getLength();
+        }
+
+    }
+
+    private final class BackgroundTokenizer implements Runnable {
+
+        @Override
+        public void run() {
+            VersionedDocument versionedDocument = VersionedDocumentUtilities.getVersionedDocument(document);
+            DocumentSnapshot snapshot = versionedDocument.getCurrentSnapshot();
+            HighlightsSnapshot<TState> previous = publishedSnapshot;
+            boolean fullTokenization = fullTokenizationRequired;
+            fullTokenizationRequired = false;
+            if (!fullTokenization && previous != null && previous.getSnapshot().getVersion().getVersionNumber() == snapshot.getVersion().getVersionNumber()) {
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            int[] tokenizedRegion = new int[2];
+            HighlightsSnapshot<TState> result = tokenize(fullTokenization ? null : previous, snapshot, tokenizedRegion);
+            publishedSnapshot = result;
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                long elapsed = (System.nanoTime() - startTime) / 1000000;
+                LOGGER.log(Level.FINE, "Tokenized [{0}..{1}) of version {2} in {3}ms.", new Object[] { tokenizedRegion[0], tokenizedRegion[1], snapshot.getVersion().getVersionNumber(), elapsed });
+            }
+
+            fireHighlightsChange(tokenizedRegion[0], tokenizedRegion[1]);
+        }
+
+    }
+
     protected void subscribeEvents() {
         this.document.addDocumentListener(this.documentListener);
     }
@@ -762,6 +1424,11 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
 
         @Override
         public void changedUpdate(DocumentEvent e) {
+            if (backgroundTokenization) {
+                backgroundTokenizationTask.schedule(BACKGROUND_TOKENIZATION_DELAY);
+                return;
+            }
+
             int lineCountDelta = NbDocument.findLineRootElement(document).getElementCount() - lineStates.size();
             int oldOffset = e.getOffset();
             int oldLength = e.getLength();
@@ -778,6 +1445,11 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
 
         @Override
         public void insertUpdate(DocumentEvent e) {
+            if (backgroundTokenization) {
+                backgroundTokenizationTask.schedule(BACKGROUND_TOKENIZATION_DELAY);
+                return;
+            }
+
             int lineCountDelta = NbDocument.findLineRootElement(document).getElementCount() - lineStates.size();
             int oldOffset = e.getOffset();
             int oldLength = 0;
@@ -794,6 +1466,11 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
 
         @Override
         public void removeUpdate(DocumentEvent e) {
+            if (backgroundTokenization) {
+                backgroundTokenizationTask.schedule(BACKGROUND_TOKENIZATION_DELAY);
+                return;
+            }
+
             int lineCountDelta = NbDocument.findLineRootElement(document).getElementCount() - lineStates.size();
             int oldOffset = e.getOffset();
             int oldLength = e.getLength();
@@ -812,8 +1489,18 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
             synchronized (lock) {
                 int lineNumberFromPosition = NbDocument.findLineNumber(document, newOffset);
                 int num2 = NbDocument.findLineNumber(document, newOffset + newLength);
+                tokenRunGeneration++;
                 if (lineCountDelta < 0) {
                     lineStates.subList(lineNumberFromPosition, lineNumberFromPosition + Math.abs(lineCountDelta)).clear();
+                    List<int[]> removedRuns = tokenRuns.subList(lineNumberFromPosition, lineNumberFromPosition + Math.abs(lineCountDelta));
+                    for (int[] run : removedRuns) {
+                        if (run != null) {
+                            tokenRunHighlightCount -= run.length / TOKEN_RUN_ELEMENT_SIZE;
+                        }
+                    }
+
+                    removedRuns.clear();
+                    shiftTokenRunLines(lineNumberFromPosition, lineCountDelta);
                 } else if (lineCountDelta > 0) {
                     TState endLineState = lineStates.get(lineNumberFromPosition);
                     List<TState> insertedElements = new ArrayList<>();
@@ -821,6 +1508,8 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                         insertedElements.add(endLineState);
                     }
                     lineStates.addAll(lineNumberFromPosition, insertedElements);
+                    tokenRuns.addAll(lineNumberFromPosition, Collections.<int[]>nCopies(lineCountDelta, null));
+                    shiftTokenRunLines(lineNumberFromPosition, lineCountDelta);
                 }
 
                 if (lastDirtyLine != null && lastDirtyLine > lineNumberFromPosition) {
@@ -834,6 +1523,7 @@ public abstract class ANTLRHighlighterBaseV4<TState extends LineStateInfo<TState
                 for (int i = lineNumberFromPosition; i <= num2; i++) {
                     TState state = lineStates.get(i);
                     lineStates.set(i, state.createDirtyState());
+                    setTokenRun(i, null);
                 }
 
                 firstDirtyLine = firstDirtyLine != null ? Math.min(firstDirtyLine, lineNumberFromPosition) : lineNumberFromPosition;
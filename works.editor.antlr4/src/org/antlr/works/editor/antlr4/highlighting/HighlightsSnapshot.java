@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2012 Sam Harwell, Tunnel Vision Laboratories LLC
+ *  All rights reserved.
+ *
+ *  The source code of this document is proprietary work, and is not licensed for
+ *  distribution. For information about licensing, contact Sam Harwell at:
+ *      sam@tunnelvisionlabs.com
+ */
+package org.antlr.works.editor.antlr4.highlighting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.antlr.netbeans.editor.highlighting.Highlight;
+import org.antlr.netbeans.editor.highlighting.LineStateInfo;
+import org.antlr.netbeans.editor.text.DocumentChange;
+import org.antlr.netbeans.editor.text.DocumentSnapshot;
+import org.antlr.netbeans.editor.text.DocumentVersion;
+import org.antlr.netbeans.editor.text.NormalizedDocumentChangeCollection;
+import org.netbeans.api.annotations.common.CheckForNull;
+import org.netbeans.api.annotations.common.NonNull;
+import org.openide.util.Parameters;
+
+/**
+ * The immutable result of tokenizing a complete {@link DocumentSnapshot} for
+ * highlighting. Snapshots are created by the background tokenizer of
+ * {@link ANTLRHighlighterBaseV4} and read without locking by
+ * {@link ANTLRHighlighterBaseV4#getHighlights(int, int)}.
+ *
+ * @author Sam Harwell
+ * @param <TState>
+ */
+final class HighlightsSnapshot<TState extends LineStateInfo<TState>> {
+    @NonNull
+    private final DocumentSnapshot snapshot;
+    /**
+     * The highlights of the snapshot, ordered by start offset.
+     */
+    @NonNull
+    private final List<Highlight> highlights;
+    /**
+     * The state of the lexer at the end of each line of the snapshot.
+     */
+    @NonNull
+    private final List<TState> lineStates;
+
+    public HighlightsSnapshot(@NonNull DocumentSnapshot snapshot, @NonNull List<Highlight> highlights, @NonNull List<TState> lineStates) {
+        Parameters.notNull("snapshot", snapshot);
+        Parameters.notNull("highlights", highlights);
+        Parameters.notNull("lineStates", lineStates);
+
+        this.snapshot = snapshot;
+        this.highlights = Collections.unmodifiableList(highlights);
+        this.lineStates = Collections.unmodifiableList(lineStates);
+    }
+
+    @NonNull
+    public DocumentSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @NonNull
+    public List<Highlight> getHighlights() {
+        return highlights;
+    }
+
+    @NonNull
+    public List<TState> getLineStates() {
+        return lineStates;
+    }
+
+    /**
+     * Gets the highlights of this snapshot which intersect
+     * {@code [startOffset, endOffset)} of {@code target}, translated to the
+     * offsets of {@code target}. Highlights in text which changed between this
+     * snapshot and {@code target} are omitted, so that text appears without
+     * highlighting until a snapshot of {@code target} is published.
+     *
+     * @param target A snapshot of the same document which is the same as, or
+     * newer than, this snapshot.
+     * @param startOffset The start offset in {@code target}.
+     * @param endOffset The end offset in {@code target}.
+     * @return The highlights, ordered by start offset.
+     */
+    @NonNull
+    public List<Highlight> getHighlights(@NonNull DocumentSnapshot target, int startOffset, int endOffset) {
+        int[] unchanged = getUnchangedLengths(snapshot, target);
+        if (unchanged == null) {
+            return Collections.emptyList();
+        }
+
+        int prefixEnd = unchanged[0];
+        int delta = target.length() - snapshot.length();
+        int suffixStart = snapshot.length() - unchanged[1];
+
+        List<Highlight> result = new ArrayList<>();
+        int first;
+        if (startOffset < prefixEnd) {
+            first = findFirstHighlight(startOffset);
+        } else {
+            first = findFirstHighlight(Math.max(suffixStart, startOffset - delta));
+        }
+
+        for (int i = first; i < highlights.size(); i++) {
+            Highlight highlight = highlights.get(i);
+            if (highlight.getEndOffset() <= prefixEnd) {
+                if (highlight.getStartOffset() >= endOffset) {
+                    break;
+                }
+
+                if (highlight.getEndOffset() > startOffset) {
+                    result.add(highlight);
+                }
+            } else if (highlight.getStartOffset() >= suffixStart) {
+                int start = highlight.getStartOffset() + delta;
+                if (start >= endOffset) {
+                    break;
+                }
+
+                int end = highlight.getEndOffset() + delta;
+                if (end > startOffset) {
+                    result.add(delta == 0 ? highlight : new Highlight(start, end, highlight.getAttributes()));
+                }
+            } else if (endOffset <= prefixEnd) {
+                // the remaining highlights are in changed text or follow the requested region
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the index of the first highlight which ends after {@code offset}.
+     */
+    int findFirstHighlight(int offset) {
+        int low = 0;
+        int high = highlights.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (highlights.get(mid).getStartOffset() < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        while (low > 0 && highlights.get(low - 1).getEndOffset() > offset) {
+            low--;
+        }
+
+        return low;
+    }
+
+    /**
+     * Computes the lengths of the text at the start and end of {@code previous}
+     * which is unchanged in {@code snapshot}.
+     *
+     * @return An array containing the length of the unchanged prefix followed
+     * by the length of the unchanged suffix, or {@code null} if the changes
+     * between the snapshots are not available.
+     */
+    @CheckForNull
+    static int[] getUnchangedLengths(@NonNull DocumentSnapshot previous, @NonNull DocumentSnapshot snapshot) {
+        if (!previous.getVersionedDocument().equals(snapshot.getVersionedDocument())) {
+            return null;
+        }
+
+        int targetVersion = snapshot.getVersion().getVersionNumber();
+        if (previous.getVersion().getVersionNumber() > targetVersion) {
+            return null;
+        }
+
+        int prefix = previous.length();
+        int suffix = previous.length();
+        for (DocumentVersion version = previous.getVersion(); version.getVersionNumber() < targetVersion; version = version.getNext()) {
+            NormalizedDocumentChangeCollection changes = version.getChanges();
+            DocumentVersion next = version.getNext();
+            if (changes == null || next == null) {
+                return null;
+            }
+
+            if (!changes.isEmpty()) {
+                DocumentChange first = changes.get(0);
+                DocumentChange last = changes.get(changes.size() - 1);
+                prefix = Math.min(prefix, first.getOldOffset());
+                suffix = Math.min(suffix, next.getLength() - last.getNewEnd());
+            }
+        }
+
+        prefix = Math.min(prefix, snapshot.length());
+        suffix = Math.min(suffix, Math.min(previous.length(), snapshot.length()) - prefix);
+        return new int[] { prefix, suffix };
+    }
+}